@@ -324,6 +324,7 @@ CREATE TABLE aging_schedules (
     schedule_type VARCHAR(20) DEFAULT 'daily', -- daily, weekly, monthly
     execution_time VARCHAR(10) DEFAULT '02:00',
     retention_days INTEGER DEFAULT 30,
+    retention_mode VARCHAR(20) DEFAULT 'documents', -- documents, partitions
     created_at TIMESTAMP(0) DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP(0) DEFAULT CURRENT_TIMESTAMP
 );
@@ -332,6 +333,48 @@ CREATE TABLE aging_schedules (
 INSERT INTO aging_schedules (enabled, schedule_type, execution_time, retention_days) 
 VALUES (false, 'daily', '02:00', 30);
 
+-- 创建ES删除任务表（服务重启后恢复未完成的任务）
+CREATE TABLE es_deletion_tasks (
+    task_id VARCHAR(36) PRIMARY KEY,
+    kind VARCHAR(20) NOT NULL, -- SESSION, FILE_PATHS, INDICES
+    state VARCHAR(20) NOT NULL, -- PENDING, RUNNING, DONE, FAILED, CANCELLED
+    session_id VARCHAR(255),
+    file_paths TEXT,
+    indices TEXT,
+    excluded_indices TEXT, -- FILE_PATHS 任务额外排除的索引模式
+    before_millis BIGINT,
+    es_task_id VARCHAR(100),
+    deleted_count BIGINT,
+    total BIGINT,
+    batches BIGINT,
+    version_conflicts BIGINT,
+    progress DOUBLE PRECISION,
+    cancel_requested BOOLEAN DEFAULT FALSE,
+    error_message TEXT,
+    started_at BIGINT,
+    finished_at BIGINT,
+    created_at TIMESTAMP(0) DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_es_deletion_tasks_state ON es_deletion_tasks(state);
+
+
 
 
 
+-- 采集会话目录表（按 sessionId 汇总的首末时间、各索引文档数与平均连接时长）
+CREATE TABLE capture_sessions (
+    id SERIAL PRIMARY KEY,
+    session_id VARCHAR(255) NOT NULL UNIQUE,
+    collector_id BIGINT,
+    status VARCHAR(20) NOT NULL, -- RUNNING, SETTLING, COMPLETED
+    first_timestamp BIGINT,
+    last_timestamp BIGINT,
+    total_docs BIGINT,
+    index_stats TEXT, -- JSON: {index: {docs, first, last, avgConnDuration}}
+    stopped_at TIMESTAMP(0),
+    refreshed_at TIMESTAMP(0),
+    created_at TIMESTAMP(0) DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_capture_sessions_status ON capture_sessions(status);
@@ -563,47 +563,41 @@ export class CollectorComponent implements OnInit {
 
                 this.collectorService.startEsDelete(user.id).subscribe({
                   next: ({ taskId }) => {
-                    // 2) Poll status until DONE/FAILED
-                    const pollInterval = 3000;
-                    const poller = setInterval(() => {
-                      this.collectorService.getEsDeleteStatus(taskId).subscribe({
-                        next: (s) => {
-                          if (!s || !s.state) return;
-                          if (s.state === 'DONE') {
-                            clearInterval(poller);
-                            // 3) After ES deletion, delete the collector record
-                            this.collectorService.deleteCollector(user.id).subscribe({
-                              next: () => {
-                                Swal.close();
-                                this.loadCollectors();
-                                this.translate.get('collectorMessages.collectorDeletedSuccessfully').subscribe(msg => {
-                                  this.showMessage(msg);
-                                });
-                              },
-                              error: () => {
-                                Swal.close();
-                                this.translate.get('collectorMessages.errorDeletingCollectorRecord').subscribe(msg => {
-                                  this.showMessage(msg, 'error');
-                                });
-                              }
-                            });
-                          } else if (s.state === 'FAILED') {
-                            clearInterval(poller);
-                            Swal.close();
-                            this.translate.get('collectorMessages.esDeletionFailed', { errorMessage: s.errorMessage || '' }).subscribe(msg => {
-                              this.showMessage(msg, 'error');
-                            });
-                          }
-                        },
-                        error: () => {
-                          clearInterval(poller);
+                    // 2) Watch status (SSE) until DONE/FAILED/CANCELLED
+                    this.collectorService.watchEsDeleteStatus(taskId).subscribe({
+                      next: (s) => {
+                        if (!s || !s.state) return;
+                        if (s.state === 'DONE') {
+                          // 3) After ES deletion, delete the collector record
+                          this.collectorService.deleteCollector(user.id).subscribe({
+                            next: () => {
+                              Swal.close();
+                              this.loadCollectors();
+                              this.translate.get('collectorMessages.collectorDeletedSuccessfully').subscribe(msg => {
+                                this.showMessage(msg);
+                              });
+                            },
+                            error: () => {
+                              Swal.close();
+                              this.translate.get('collectorMessages.errorDeletingCollectorRecord').subscribe(msg => {
+                                this.showMessage(msg, 'error');
+                              });
+                            }
+                          });
+                        } else if (s.state === 'FAILED' || s.state === 'CANCELLED') {
                           Swal.close();
-                          this.translate.get('collectorMessages.failedToQueryDeletionStatus').subscribe(msg => {
+                          this.translate.get('collectorMessages.esDeletionFailed', { errorMessage: s.errorMessage || '' }).subscribe(msg => {
                             this.showMessage(msg, 'error');
                           });
                         }
-                      });
-                    }, pollInterval);
+                      },
+                      error: () => {
+                        Swal.close();
+                        this.translate.get('collectorMessages.failedToQueryDeletionStatus').subscribe(msg => {
+                          this.showMessage(msg, 'error');
+                        });
+                      }
+                    });
                   },
                   error: () => {
                     Swal.close();
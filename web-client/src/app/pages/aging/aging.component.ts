@@ -1,4 +1,4 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { environment } from '../../../environments/environment';
 import { TranslateService } from '@ngx-translate/core';
@@ -7,7 +7,7 @@ import { CollectorService, Collector } from 'src/app/services/collector.service'
 
 interface TaskStatus {
     taskId: string;
-    state: string;  // PENDING, RUNNING, DONE, FAILED
+    state: string;  // PENDING, RUNNING, DONE, FAILED, CANCELLED
     deletedCount: number;
     errorMessage?: string;
     startedAt: number;
@@ -19,6 +19,7 @@ interface AgingSchedule {
     scheduleType: string;
     executionTime: string;
     retentionDays: number;
+    retentionMode?: string;  // documents, partitions
 }
 
 @Component({
@@ -26,10 +27,12 @@ interface AgingSchedule {
     templateUrl: './aging.component.html',
     styleUrls: ['./aging.component.scss']
 })
-export class AgingComponent implements OnInit {
+export class AgingComponent implements OnInit, OnDestroy {
     targetSessionId = 'eaec0ddf-8600-4d4a-ad5b-e19b72c960fa';
     isLoading = false;
     currentTask: TaskStatus | null = null;
+    // 任务进度订阅（SSE）
+    private taskEvents: EventSource | null = null;
     // 展示 ens33 的采集器名称（逗号分隔）和对应的 sessionId 列表
     ens33CollectorNames: string = '';
     ens33SessionIds: string[] = [];
@@ -42,9 +45,16 @@ export class AgingComponent implements OnInit {
         enabled: false,
         scheduleType: 'daily',
         executionTime: '02:00',
-        retentionDays: 30
+        retentionDays: 30,
+        retentionMode: 'documents'
     };
 
+    retentionModeOptions = [
+        { value: 'documents', label: 'aiAssistant.aging.schedule.modeDocuments', disabled: false },
+        // 未启用分区索引时不可选（见 /aging/retention-modes）
+        { value: 'partitions', label: 'aiAssistant.aging.schedule.modePartitions', disabled: true }
+    ];
+
     scheduleOptions = [
         { value: 'daily', label: 'aiAssistant.aging.schedule.daily' },
         { value: 'weekly', label: 'aiAssistant.aging.schedule.weekly' },
@@ -58,6 +68,7 @@ export class AgingComponent implements OnInit {
     ) {}
 
     ngOnInit() {
+        this.loadRetentionModes();
         this.loadScheduleSettings();
         this.loadEns33Collectors();
         // 默认时间设为当前时间
@@ -95,6 +106,17 @@ export class AgingComponent implements OnInit {
         });
     }
 
+    private loadRetentionModes() {
+        this.http.get<Record<string, boolean>>(`${environment.apiUrl}/aging/retention-modes`).subscribe({
+            next: (modes) => {
+                this.retentionModeOptions.forEach(o => o.disabled = !modes?.[o.value]);
+            },
+            error: () => {
+                this.retentionModeOptions.forEach(o => o.disabled = o.value !== 'documents');
+            }
+        });
+    }
+
     loadScheduleSettings() {
         // 加载当前的调度设置
         this.http.get<AgingSchedule>(`${environment.apiUrl}/aging/schedule`).subscribe({
@@ -181,38 +203,46 @@ export class AgingComponent implements OnInit {
             },
             error: (error) => {
                 console.error('Error saving schedule:', error);
-                this.showError('Failed to save schedule settings');
+                this.showError(error?.error?.error || 'Failed to save schedule settings');
             }
         });
     }
 
+    ngOnDestroy() {
+        this.taskEvents?.close();
+    }
+
     private monitorTask(taskId: string) {
-        const pollInterval = setInterval(() => {
-            this.http.get<TaskStatus>(`${environment.apiUrl}/aging/status/${taskId}`).subscribe({
-                next: (status) => {
-                    this.currentTask = status;
-                    
-                    if (status.state === 'DONE' || status.state === 'FAILED') {
-                        clearInterval(pollInterval);
-                        
-                        if (status.state === 'DONE') {
-                            this.showSuccess(this.translate.instant('aiAssistant.aging.completed', { 
-                                count: status.deletedCount 
-                            }));
-                        } else {
-                            this.showError(this.translate.instant('aiAssistant.aging.failed', { 
-                                error: status.errorMessage 
-                            }));
-                        }
-                    }
-                },
-                error: (error) => {
-                    console.error('Error polling task status:', error);
-                    clearInterval(pollInterval);
-                    this.currentTask = null;
+        this.taskEvents?.close();
+        const source = new EventSource(`${environment.apiUrl}/aging/status/${taskId}/events`);
+        this.taskEvents = source;
+        source.addEventListener('progress', (e: MessageEvent) => {
+            const status = JSON.parse(e.data) as TaskStatus;
+            if (!status.state) {
+                source.close();
+                return;
+            }
+            this.currentTask = status;
+
+            if (status.state === 'DONE' || status.state === 'FAILED' || status.state === 'CANCELLED') {
+                source.close();
+
+                if (status.state === 'DONE') {
+                    this.showSuccess(this.translate.instant('aiAssistant.aging.completed', { 
+                        count: status.deletedCount 
+                    }));
+                } else {
+                    this.showError(this.translate.instant('aiAssistant.aging.failed', { 
+                        error: status.errorMessage 
+                    }));
                 }
-            });
-        }, 2000);
+            }
+        });
+        source.onerror = (error) => {
+            console.error('Error watching task status:', error);
+            source.close();
+            this.currentTask = null;
+        };
     }
 
     isTaskRunning(): boolean {
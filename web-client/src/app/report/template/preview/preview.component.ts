@@ -90,7 +90,8 @@ export class PreviewComponent implements OnInit {
                 this.loadTemplate();
             } else if (timeChanged) {
                 // 仅时间变化时，重新加载每个 widget 的数据
-                this.dashboard.forEach(item => this.loadWidgetData(item));
+                this.pendingWidgets = this.dashboard.length;
+                this.loadAllWidgetData();
             }
         });
     }
@@ -165,9 +166,7 @@ export class PreviewComponent implements OnInit {
                             console.debug('Preview render complete (no widgets)');
                         }, 100);
                     } else {
-                        this.dashboard.forEach(item => {
-                            this.loadWidgetData(item);
-                        });
+                        this.loadAllWidgetData();
                     }
                 }
 
@@ -244,8 +243,34 @@ export class PreviewComponent implements OnInit {
         return ['id', 'email', 'lastName', 'firstName'];
     }
 
-    // 加载 widget 数据
-    private loadWidgetData(item: CustomGridsterItem) {
+    // 批量加载全部 widget 数据：一次请求返回所有 widget 的结果（按顺序对应）
+    private loadAllWidgetData() {
+        const reqs = this.dashboard.map(item => this.buildWidgetRequest(item));
+        this.http.post<any[]>(`${environment.apiUrl}/es/widget/query/batch`, reqs).subscribe({
+            next: (results: any[]) => {
+                this.dashboard.forEach((item, i) => {
+                    const res = results?.[i];
+                    if (!res || res.error) {
+                        console.error('Error loading widget data:', res?.error);
+                        this.translate.get('Load data failed').subscribe(msg => this.showMessage(msg, 'error'));
+                    } else {
+                        this.applyWidgetData(item, reqs[i], res);
+                    }
+                    this.markWidgetDone();
+                });
+            },
+            error: (error) => {
+                console.error('Error loading widget data:', error);
+                this.translate.get('Load data failed').subscribe(msg => this.showMessage(msg, 'error'));
+                // 出错也要推进，避免永远不就绪
+                this.pendingWidgets = 1;
+                this.markWidgetDone();
+            }
+        });
+    }
+
+    // 构建单个 widget 的查询请求
+    private buildWidgetRequest(item: CustomGridsterItem): any {
     const req: any = {
             index: (item as any).index,
             widgetType: item.chartType || item.type,
@@ -268,86 +293,77 @@ export class PreviewComponent implements OnInit {
         }
 
         console.log('Sending widget query request:', req);
+        return req;
+    }
 
-    this.http.post(`${environment.apiUrl}/es/widget/query`, req).subscribe({
-            next: (res: any) => {
-                if (item.type === 'chart') {
-                    if (item.chartType === 'line' || item.chartType === 'bar') {
-                        const x: any[] = res.x || [];
-                        const y: any[] = res.y || [];
-                        let categories: string[];
-
-                        if (res.chartType === 'category') {
-                            categories = x.map(v => String(v));
-                        } else {
-                            categories = x.map(v => new Date(v).toLocaleString());
-                        }
+    // 将查询结果渲染到 widget
+    private applyWidgetData(item: CustomGridsterItem, req: any, res: any) {
+        if (item.type === 'chart') {
+            if (item.chartType === 'line' || item.chartType === 'bar') {
+                const x: any[] = res.x || [];
+                const y: any[] = res.y || [];
+                let categories: string[];
 
-                        item.chartConfig = {
-                            tooltip: { trigger: 'axis' },
-                            xAxis: { type: 'category', data: categories },
-                            yAxis: { type: 'value' },
-                            series: [{ name: req.aggregationType, type: item.chartType, data: y }]
-                        };
-                    } else if (item.chartType === 'pie') {
-                        const labels: string[] = res.labels || [];
-                        const values: number[] = res.values || [];
-                        item.chartConfig = {
-                            tooltip: { trigger: 'item' },
-                            legend: { orient: 'vertical', left: 'left' },
-                            series: [{
-                                type: 'pie',
-                                radius: '60%',
-                                data: labels.map((l, i) => ({ name: l, value: values[i] })),
-                                emphasis: { itemStyle: { shadowBlur: 10, shadowOffsetX: 0, shadowColor: 'rgba(0,0,0,0.5)' } }
-                            }]
-                        };
-                    }
-                } else if (item.type === 'table') {
-                    // 确保表格数据正确设置
-                    const tableData = res.data || [];
-                    (item as any).tableData = tableData;
-
-                    console.log('Table data set:', tableData);
-                    console.log('Table total records:', res.total);
-                    console.log('Table columns to display:', item.titles);
-
-                    // 如果没有设置列标题，使用数据的键作为默认列
-                    if (!item.titles || item.titles.length === 0) {
-                        if (tableData.length > 0) {
-                            // 从第一行数据中提取字段名，包括嵌套字段
-                            const firstRow = tableData[0];
-                            const allFields = this.extractAllFields(firstRow);
-
-                            // 选择前5个字段作为默认列
-                            item.titles = allFields.slice(0, 5);
-                            console.log('Auto-selected table columns:', item.titles);
-                        }
-                    }
-                }
-                // 每个 widget 完成后递减计数
-                this.pendingWidgets = Math.max(0, this.pendingWidgets - 1);
-                if (this.pendingWidgets === 0) {
-                    // 略等一帧，确保 ECharts 完成渲染
-                    setTimeout(() => {
-                        (window as any).__reportReady__ = true;
-                        console.debug('Preview render complete: __reportReady__=true');
-                    }, 200);
+                if (res.chartType === 'category') {
+                    categories = x.map(v => String(v));
+                } else {
+                    categories = x.map(v => new Date(v).toLocaleString());
                 }
-            },
-            error: (error) => {
-                console.error('Error loading widget data:', error);
-                this.translate.get('Load data failed').subscribe(msg => this.showMessage(msg, 'error'));
-                // 出错也要推进，避免永远不就绪
-                this.pendingWidgets = Math.max(0, this.pendingWidgets - 1);
-                if (this.pendingWidgets === 0) {
-                    setTimeout(() => {
-                        (window as any).__reportReady__ = true;
-                        console.debug('Preview render complete with errors: __reportReady__=true');
-                    }, 200);
+
+                item.chartConfig = {
+                    tooltip: { trigger: 'axis' },
+                    xAxis: { type: 'category', data: categories },
+                    yAxis: { type: 'value' },
+                    series: [{ name: req.aggregationType, type: item.chartType, data: y }]
+                };
+            } else if (item.chartType === 'pie') {
+                const labels: string[] = res.labels || [];
+                const values: number[] = res.values || [];
+                item.chartConfig = {
+                    tooltip: { trigger: 'item' },
+                    legend: { orient: 'vertical', left: 'left' },
+                    series: [{
+                        type: 'pie',
+                        radius: '60%',
+                        data: labels.map((l, i) => ({ name: l, value: values[i] })),
+                        emphasis: { itemStyle: { shadowBlur: 10, shadowOffsetX: 0, shadowColor: 'rgba(0,0,0,0.5)' } }
+                    }]
+                };
+            }
+        } else if (item.type === 'table') {
+            // 确保表格数据正确设置
+            const tableData = res.data || [];
+            (item as any).tableData = tableData;
+
+            console.log('Table data set:', tableData);
+            console.log('Table total records:', res.total);
+            console.log('Table columns to display:', item.titles);
+
+            // 如果没有设置列标题，使用数据的键作为默认列
+            if (!item.titles || item.titles.length === 0) {
+                if (tableData.length > 0) {
+                    // 从第一行数据中提取字段名，包括嵌套字段
+                    const firstRow = tableData[0];
+                    const allFields = this.extractAllFields(firstRow);
+
+                    // 选择前5个字段作为默认列
+                    item.titles = allFields.slice(0, 5);
+                    console.log('Auto-selected table columns:', item.titles);
                 }
             }
-        });
+        }
+    }
+
+    // 每个 widget 完成（成功或失败）后递减计数
+    private markWidgetDone() {
+        this.pendingWidgets = Math.max(0, this.pendingWidgets - 1);
+        if (this.pendingWidgets === 0) {
+            // 略等一帧，确保 ECharts 完成渲染
+            setTimeout(() => {
+                (window as any).__reportReady__ = true;
+                console.debug('Preview render complete: __reportReady__=true');
+            }, 200);
+        }
     }
 
     // 提取对象的所有字段路径（包括嵌套字段）
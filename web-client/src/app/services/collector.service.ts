@@ -96,8 +96,11 @@ export interface CaptureFileItem {
 
 export interface EsDeleteTaskStatus {
   taskId: string;
-  state: 'PENDING' | 'RUNNING' | 'DONE' | 'FAILED';
+  kind?: 'SESSION' | 'FILE_PATHS' | 'INDICES';
+  state: 'PENDING' | 'RUNNING' | 'DONE' | 'FAILED' | 'CANCELLED';
   deletedCount?: number;
+  total?: number;
+  progress?: number;
   errorMessage?: string;
   startedAt?: number;
   finishedAt?: number;
@@ -271,6 +274,26 @@ export class CollectorService {
     return this.http.get<EsDeleteTaskStatus>(`${this.apiUrl}/collectors/es-delete/${taskId}`);
   }
 
+  // Watch ES deletion task status via SSE; completes after a terminal state (DONE/FAILED/CANCELLED)
+  watchEsDeleteStatus(taskId: string): Observable<EsDeleteTaskStatus> {
+    return new Observable<EsDeleteTaskStatus>(observer => {
+      const source = new EventSource(`${this.apiUrl}/collectors/es-delete/${taskId}/events`);
+      source.addEventListener('progress', (e: MessageEvent) => {
+        const status = JSON.parse(e.data) as EsDeleteTaskStatus;
+        observer.next(status);
+        if (!status.state || status.state === 'DONE' || status.state === 'FAILED' || status.state === 'CANCELLED') {
+          source.close();
+          observer.complete();
+        }
+      });
+      source.onerror = () => {
+        source.close();
+        observer.error(new Error('ES deletion status stream closed'));
+      };
+      return () => source.close();
+    });
+  }
+
   // ========== Session-based ES queries ==========
   getSessionConnStats(sessionId: string, startTime?: number, endTime?: number): Observable<SessionConnStats> {
     const params: any = { sessionId };
@@ -0,0 +1,65 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 接口异步执行配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-async")
+public class EsAsyncProperties {
+
+    /**
+     * 是否启用异步执行；关闭时 ES 调用直接在请求线程上执行
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同时执行中的 ES 查询上限，仅在限流器关闭（app.es-limiter.enabled=false）时生效；
+     * 限流器启用时并发只由 EsConcurrencyLimiter 按查询类别约束。
+     */
+    private int maxInFlight = 10;
+
+    /**
+     * 等待执行名额的查询数上限，超出后直接返回 503（仅限流器关闭时生效）
+     */
+    private int maxQueued = 200;
+
+    /**
+     * 等待执行名额的最长时间（毫秒），超时返回 503（仅限流器关闭时生效）
+     */
+    private long acquireTimeoutMillis = 30000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 异步查询（提交/轮询）配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-async-search")
+public class EsAsyncSearchProperties {
+
+    /**
+     * 查询结果保留时间（毫秒），同时作为 _async_search 的 keep_alive；期间相同请求直接复用已有查询
+     */
+    private long keepAliveMillis = 3600000;
+
+    /**
+     * 提交时最多等待完成的时间（毫秒），在此时间内完成的查询直接随提交响应返回结果
+     */
+    private long waitForCompletionMillis = 1000;
+
+    /**
+     * 同时保留的异步查询数上限，超出后新的提交返回 503
+     */
+    private int maxJobs = 500;
+
+    /**
+     * 同时在后台执行的趋势查询数，超出的查询排队等待；与同步查询的 EsAsyncExecutor 名额互不占用
+     */
+    private int trendConcurrency = 2;
+
+    /**
+     * 后台趋势查询中单次 ES 请求的读超时（毫秒），替代 app.es-transport.socket-timeout-millis
+     */
+    private int trendSocketTimeoutMillis = 600000;
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public long getWaitForCompletionMillis() {
+        return waitForCompletionMillis;
+    }
+
+    public void setWaitForCompletionMillis(long waitForCompletionMillis) {
+        this.waitForCompletionMillis = waitForCompletionMillis;
+    }
+
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
+    public void setMaxJobs(int maxJobs) {
+        this.maxJobs = maxJobs;
+    }
+
+    public int getTrendConcurrency() {
+        return trendConcurrency;
+    }
+
+    public void setTrendConcurrency(int trendConcurrency) {
+        this.trendConcurrency = trendConcurrency;
+    }
+
+    public int getTrendSocketTimeoutMillis() {
+        return trendSocketTimeoutMillis;
+    }
+
+    public void setTrendSocketTimeoutMillis(int trendSocketTimeoutMillis) {
+        this.trendSocketTimeoutMillis = trendSocketTimeoutMillis;
+    }
+}
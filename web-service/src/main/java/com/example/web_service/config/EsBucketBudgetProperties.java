@@ -0,0 +1,51 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 聚合桶数预算配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-bucket-budget")
+public class EsBucketBudgetProperties {
+
+    /**
+     * 是否在执行趋势查询前检查预估桶数
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单次查询允许的最大桶数（每个序列的时间桶数 × 序列数），应低于 ES 的 search.max_buckets（默认 65536）
+     */
+    private long maxBuckets = 50000;
+
+    /**
+     * 超出预算时是否直接拒绝请求；false 表示自动放大间隔直到满足预算
+     */
+    private boolean reject = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public void setMaxBuckets(long maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    public boolean isReject() {
+        return reject;
+    }
+
+    public void setReject(boolean reject) {
+        this.reject = reject;
+    }
+}
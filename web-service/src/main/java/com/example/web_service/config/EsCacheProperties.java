@@ -0,0 +1,117 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 聚合结果缓存配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-cache")
+public class EsCacheProperties {
+
+    /**
+     * 是否启用聚合结果缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最大缓存条目数，超出后按最近最少使用淘汰
+     */
+    private int maxEntries = 500;
+
+    /**
+     * 缓存条目存活时间（秒）
+     */
+    private long ttlSeconds = 60;
+
+    /**
+     * 缓存 key 中起止时间的对齐粒度上限（毫秒）。
+     * 实际对齐粒度取 min(interval, 此值)，使同一时间窗口内的刷新命中同一条缓存。
+     */
+    private long keyAlignMaxMillis = 60000;
+
+    /**
+     * 是否按天缓存已结束日期（UTC）的部分聚合结果，趋势查询只对未结束的日期实时查询
+     */
+    private boolean dayPartialEnabled = true;
+
+    /**
+     * 按天部分聚合缓存的容量（所有条目的桶数之和），超出后按最近最少使用淘汰整天的条目
+     */
+    private long dayPartialMaxBuckets = 500000;
+
+    /**
+     * 日期结束后再等待该时间（毫秒）才视为不再变化、可以缓存
+     */
+    private long dayPartialSettleMillis = 600000;
+
+    /**
+     * 按天部分聚合中 terms 的桶数；某天的分组数超过该值时合并后的 Top N 标记为近似结果
+     */
+    private int dayPartialTermsSize = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public long getKeyAlignMaxMillis() {
+        return keyAlignMaxMillis;
+    }
+
+    public void setKeyAlignMaxMillis(long keyAlignMaxMillis) {
+        this.keyAlignMaxMillis = keyAlignMaxMillis;
+    }
+
+    public boolean isDayPartialEnabled() {
+        return dayPartialEnabled;
+    }
+
+    public void setDayPartialEnabled(boolean dayPartialEnabled) {
+        this.dayPartialEnabled = dayPartialEnabled;
+    }
+
+    public long getDayPartialMaxBuckets() {
+        return dayPartialMaxBuckets;
+    }
+
+    public void setDayPartialMaxBuckets(long dayPartialMaxBuckets) {
+        this.dayPartialMaxBuckets = dayPartialMaxBuckets;
+    }
+
+    public long getDayPartialSettleMillis() {
+        return dayPartialSettleMillis;
+    }
+
+    public void setDayPartialSettleMillis(long dayPartialSettleMillis) {
+        this.dayPartialSettleMillis = dayPartialSettleMillis;
+    }
+
+    public int getDayPartialTermsSize() {
+        return dayPartialTermsSize;
+    }
+
+    public void setDayPartialTermsSize(int dayPartialTermsSize) {
+        this.dayPartialTermsSize = dayPartialTermsSize;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 索引时间范围目录配置属性（按时间范围裁剪通配符查询的目标索引）
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-catalog")
+public class EsCatalogProperties {
+
+    /**
+     * 是否按目录裁剪查询目标索引；关闭时查询仍使用原始通配符
+     */
+    private boolean enabled = true;
+
+    /**
+     * 目录刷新间隔（毫秒）。只对文档数变化的索引重新计算时间范围；
+     * 也是新写入数据可能被裁剪掉的最长时间
+     */
+    private long refreshIntervalMillis = 60000;
+
+    /**
+     * 文档数持续不变多久（毫秒）后视为已封存并参与裁剪；应大于数据导入可能的最长停顿
+     */
+    private long sealQuietMillis = 3600000;
+
+    /**
+     * 时间字段
+     */
+    private String timestampField = "timestamp";
+
+    /**
+     * 单个通配符最多追加的排除索引数，避免请求行过长
+     */
+    private int maxExclusions = 100;
+
+    /**
+     * 不纳入目录的索引模式（系统/内部索引）
+     */
+    private List<String> excludedIndices = new ArrayList<>(List.of(".*", "kibana*", "security*", "apm-*"));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public long getSealQuietMillis() {
+        return sealQuietMillis;
+    }
+
+    public void setSealQuietMillis(long sealQuietMillis) {
+        this.sealQuietMillis = sealQuietMillis;
+    }
+
+    public String getTimestampField() {
+        return timestampField;
+    }
+
+    public void setTimestampField(String timestampField) {
+        this.timestampField = timestampField;
+    }
+
+    public int getMaxExclusions() {
+        return maxExclusions;
+    }
+
+    public void setMaxExclusions(int maxExclusions) {
+        this.maxExclusions = maxExclusions;
+    }
+
+    public List<String> getExcludedIndices() {
+        return excludedIndices;
+    }
+
+    public void setExcludedIndices(List<String> excludedIndices) {
+        this.excludedIndices = excludedIndices;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 数据删除（delete_by_query 任务）配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-delete")
+public class EsDeletionProperties {
+
+    /**
+     * 删除限速（每秒文档数），小于等于 0 表示不限速
+     */
+    private float requestsPerSecond = -1;
+
+    /**
+     * 通过 Tasks API 轮询删除进度的间隔（毫秒）
+     */
+    private long pollIntervalMillis = 2000;
+
+    /**
+     * 不参与删除的索引模式（系统/内部索引）
+     */
+    private List<String> excludedIndices = new ArrayList<>(List.of(".*", "kibana*", "security*", "apm-*"));
+
+    /**
+     * 各类删除任务同时执行的上限，key 为任务类型（session / file-paths / indices），未配置的类型为 1
+     */
+    private Map<String, Integer> maxConcurrent = new LinkedHashMap<>(Map.of("session", 2, "file-paths", 1, "indices", 1));
+
+    /**
+     * 每类任务排队等待的上限，超过时拒绝提交（503）
+     */
+    private int queueCapacity = 20;
+
+    /**
+     * SSE 进度推送连接的超时时间（毫秒）
+     */
+    private long sseTimeoutMillis = 1800000;
+
+    /**
+     * 已结束任务在数据库中保留的天数
+     */
+    private int historyRetentionDays = 7;
+
+    public float getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(float requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public List<String> getExcludedIndices() {
+        return excludedIndices;
+    }
+
+    public void setExcludedIndices(List<String> excludedIndices) {
+        this.excludedIndices = excludedIndices;
+    }
+
+    public Map<String, Integer> getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(Map<String, Integer> maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getSseTimeoutMillis() {
+        return sseTimeoutMillis;
+    }
+
+    public void setSseTimeoutMillis(long sseTimeoutMillis) {
+        this.sseTimeoutMillis = sseTimeoutMillis;
+    }
+
+    public int getHistoryRetentionDays() {
+        return historyRetentionDays;
+    }
+
+    public void setHistoryRetentionDays(int historyRetentionDays) {
+        this.historyRetentionDays = historyRetentionDays;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 数据流式导出配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-export")
+public class EsExportProperties {
+
+    /**
+     * 导出使用的 PIT 在两批之间的保留时间（毫秒）；客户端读取慢导致两批间隔超过该值时 PIT 失效、导出中断
+     */
+    private long pitKeepAliveMillis = 300000;
+
+    public long getPitKeepAliveMillis() {
+        return pitKeepAliveMillis;
+    }
+
+    public void setPitKeepAliveMillis(long pitKeepAliveMillis) {
+        this.pitKeepAliveMillis = pitKeepAliveMillis;
+    }
+}
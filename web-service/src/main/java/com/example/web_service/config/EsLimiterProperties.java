@@ -0,0 +1,234 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 请求自适应并发限制与熔断配置属性（按查询类别分别限制，见 EsConcurrencyLimiter）
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-limiter")
+public class EsLimiterProperties {
+
+    /**
+     * 是否启用；关闭后 ES 调用不受限流与熔断约束
+     */
+    private boolean enabled = true;
+
+    /**
+     * 聚合类查询（带 aggregations 的 search / msearch / 异步搜索）初始并发上限
+     */
+    private int aggregationInitialLimit = 10;
+
+    /**
+     * 聚合类查询并发上限的下界
+     */
+    private int aggregationMinLimit = 2;
+
+    /**
+     * 聚合类查询并发上限的上界
+     */
+    private int aggregationMaxLimit = 40;
+
+    /**
+     * 轻量请求（明细查询、get、count、_cat 等其余请求）初始并发上限
+     */
+    private int lookupInitialLimit = 20;
+
+    /**
+     * 轻量请求并发上限的下界
+     */
+    private int lookupMinLimit = 4;
+
+    /**
+     * 轻量请求并发上限的上界
+     */
+    private int lookupMaxLimit = 100;
+
+    /**
+     * 达到并发上限时等待空闲名额的最长时间（毫秒），超时返回 503。
+     * 限流器是 ES 查询唯一的并发闸门（EsAsyncExecutor 不再排队），需容纳仪表盘一次加载多个图表的突发
+     */
+    private long maxWaitMillis = 5000;
+
+    /**
+     * 延迟容忍倍数：单次耗时超过长期平均耗时的该倍数时开始收缩上限
+     */
+    private double rttTolerance = 1.5;
+
+    /**
+     * 上限调整的平滑系数（0~1），越大调整越快
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * 请求失败（超时、5xx、429）时上限乘以该系数
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * 熔断器统计最近多少次调用的失败率
+     */
+    private int breakerWindowSize = 20;
+
+    /**
+     * 窗口内调用数达到该值后才计算失败率
+     */
+    private int breakerMinimumCalls = 10;
+
+    /**
+     * 失败率（百分比）达到该值时熔断
+     */
+    private int breakerFailureRateThreshold = 50;
+
+    /**
+     * 耗时超过该值（毫秒）的调用按失败计入熔断统计
+     */
+    private long breakerSlowCallMillis = 30000;
+
+    /**
+     * 熔断持续时间（毫秒），期间该类请求直接返回 503
+     */
+    private long breakerOpenMillis = 10000;
+
+    /**
+     * 熔断结束后放行的试探调用数，全部成功则恢复，任一失败则重新熔断
+     */
+    private int breakerHalfOpenCalls = 3;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getAggregationInitialLimit() {
+        return aggregationInitialLimit;
+    }
+
+    public void setAggregationInitialLimit(int aggregationInitialLimit) {
+        this.aggregationInitialLimit = aggregationInitialLimit;
+    }
+
+    public int getAggregationMinLimit() {
+        return aggregationMinLimit;
+    }
+
+    public void setAggregationMinLimit(int aggregationMinLimit) {
+        this.aggregationMinLimit = aggregationMinLimit;
+    }
+
+    public int getAggregationMaxLimit() {
+        return aggregationMaxLimit;
+    }
+
+    public void setAggregationMaxLimit(int aggregationMaxLimit) {
+        this.aggregationMaxLimit = aggregationMaxLimit;
+    }
+
+    public int getLookupInitialLimit() {
+        return lookupInitialLimit;
+    }
+
+    public void setLookupInitialLimit(int lookupInitialLimit) {
+        this.lookupInitialLimit = lookupInitialLimit;
+    }
+
+    public int getLookupMinLimit() {
+        return lookupMinLimit;
+    }
+
+    public void setLookupMinLimit(int lookupMinLimit) {
+        this.lookupMinLimit = lookupMinLimit;
+    }
+
+    public int getLookupMaxLimit() {
+        return lookupMaxLimit;
+    }
+
+    public void setLookupMaxLimit(int lookupMaxLimit) {
+        this.lookupMaxLimit = lookupMaxLimit;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public int getBreakerWindowSize() {
+        return breakerWindowSize;
+    }
+
+    public void setBreakerWindowSize(int breakerWindowSize) {
+        this.breakerWindowSize = breakerWindowSize;
+    }
+
+    public int getBreakerMinimumCalls() {
+        return breakerMinimumCalls;
+    }
+
+    public void setBreakerMinimumCalls(int breakerMinimumCalls) {
+        this.breakerMinimumCalls = breakerMinimumCalls;
+    }
+
+    public int getBreakerFailureRateThreshold() {
+        return breakerFailureRateThreshold;
+    }
+
+    public void setBreakerFailureRateThreshold(int breakerFailureRateThreshold) {
+        this.breakerFailureRateThreshold = breakerFailureRateThreshold;
+    }
+
+    public long getBreakerSlowCallMillis() {
+        return breakerSlowCallMillis;
+    }
+
+    public void setBreakerSlowCallMillis(long breakerSlowCallMillis) {
+        this.breakerSlowCallMillis = breakerSlowCallMillis;
+    }
+
+    public long getBreakerOpenMillis() {
+        return breakerOpenMillis;
+    }
+
+    public void setBreakerOpenMillis(long breakerOpenMillis) {
+        this.breakerOpenMillis = breakerOpenMillis;
+    }
+
+    public int getBreakerHalfOpenCalls() {
+        return breakerHalfOpenCalls;
+    }
+
+    public void setBreakerHalfOpenCalls(int breakerHalfOpenCalls) {
+        this.breakerHalfOpenCalls = breakerHalfOpenCalls;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 段维护（老化后 forcemerge only_expunge_deletes）配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-maintenance")
+public class EsMaintenanceProperties {
+
+    /**
+     * 是否启用定时段维护
+     */
+    private boolean enabled = true;
+
+    /**
+     * 低峰窗口开始时间（HH:mm，服务器本地时区），窗口可跨零点
+     */
+    private String windowStart = "03:00";
+
+    /**
+     * 低峰窗口结束时间（HH:mm），窗口外不再开始新的合并
+     */
+    private String windowEnd = "06:00";
+
+    /**
+     * 已删除文档占比（deleted / (count + deleted)）达到该值的索引才合并
+     */
+    private double minDeletedRatio = 0.1;
+
+    /**
+     * 已删除文档数下限，过小的索引不值得合并
+     */
+    private long minDeletedDocs = 10000;
+
+    /**
+     * 单次窗口内最多合并的索引数
+     */
+    private int maxIndicesPerRun = 20;
+
+    /**
+     * 两个索引合并之间的间隔（毫秒），用于限流
+     */
+    private long pauseBetweenIndicesMillis = 60000;
+
+    /**
+     * 通过 Tasks API 轮询合并进度的间隔（毫秒）
+     */
+    private long pollIntervalMillis = 10000;
+
+    /**
+     * 检查是否进入窗口的间隔（毫秒）
+     */
+    private long checkIntervalMillis = 300000;
+
+    /**
+     * 内存中保留的合并报告条数
+     */
+    private int reportHistorySize = 100;
+
+    /**
+     * 不参与合并的索引模式（系统/内部索引）
+     */
+    private List<String> excludedIndices = new ArrayList<>(List.of(".*", "kibana*", "security*", "apm-*"));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(String windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    public String getWindowEnd() {
+        return windowEnd;
+    }
+
+    public void setWindowEnd(String windowEnd) {
+        this.windowEnd = windowEnd;
+    }
+
+    public double getMinDeletedRatio() {
+        return minDeletedRatio;
+    }
+
+    public void setMinDeletedRatio(double minDeletedRatio) {
+        this.minDeletedRatio = minDeletedRatio;
+    }
+
+    public long getMinDeletedDocs() {
+        return minDeletedDocs;
+    }
+
+    public void setMinDeletedDocs(long minDeletedDocs) {
+        this.minDeletedDocs = minDeletedDocs;
+    }
+
+    public int getMaxIndicesPerRun() {
+        return maxIndicesPerRun;
+    }
+
+    public void setMaxIndicesPerRun(int maxIndicesPerRun) {
+        this.maxIndicesPerRun = maxIndicesPerRun;
+    }
+
+    public long getPauseBetweenIndicesMillis() {
+        return pauseBetweenIndicesMillis;
+    }
+
+    public void setPauseBetweenIndicesMillis(long pauseBetweenIndicesMillis) {
+        this.pauseBetweenIndicesMillis = pauseBetweenIndicesMillis;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    public void setCheckIntervalMillis(long checkIntervalMillis) {
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    public int getReportHistorySize() {
+        return reportHistorySize;
+    }
+
+    public void setReportHistorySize(int reportHistorySize) {
+        this.reportHistorySize = reportHistorySize;
+    }
+
+    public List<String> getExcludedIndices() {
+        return excludedIndices;
+    }
+
+    public void setExcludedIndices(List<String> excludedIndices) {
+        this.excludedIndices = excludedIndices;
+    }
+}
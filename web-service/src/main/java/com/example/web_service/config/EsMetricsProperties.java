@@ -0,0 +1,55 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 调用指标（耗时直方图、took、响应字节数、命中/桶数）配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-metrics")
+public class EsMetricsProperties {
+
+    /**
+     * 是否记录 ES 调用指标
+     */
+    private boolean enabled = true;
+
+    /**
+     * 指标序列（operation/index/endpoint/outcome 组合）数量上限，超出的组合合并到 operation="other"
+     */
+    private int maxSeries = 2000;
+
+    /**
+     * 耗时直方图的桶上界（秒）
+     */
+    private List<Double> histogramBuckets = new ArrayList<>(List.of(
+            0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 30.0, 60.0));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public List<Double> getHistogramBuckets() {
+        return histogramBuckets;
+    }
+
+    public void setHistogramBuckets(List<Double> histogramBuckets) {
+        this.histogramBuckets = histogramBuckets;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按时间分区的 ES 索引配置属性。
+ * 分区索引命名为 {base}-yyyy.MM.dd（按天）或 {base}-yyyy.wNN（按 ISO 周，UTC），
+ * 写入方通过写别名 {base}-write 写入当前分区。
+ * 启用前提：采集端（不在本服务内）已改为写入 {base}-write；分区的 mapping 来自服务自动安装的
+ * 索引模板 {base}-partitions（复制现有非分区索引的 mapping），也可预先手工创建同名模板。
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-partition")
+public class EsPartitionProperties {
+
+    /**
+     * 是否启用分区索引维护（安装索引模板、创建当前/下一分区并切换写别名）；
+     * 需先把采集端的写入目标改为写别名，否则分区为空
+     */
+    private boolean enabled = false;
+
+    /**
+     * 分区粒度：daily 或 weekly
+     */
+    private String granularity = "daily";
+
+    /**
+     * 分区索引的基础名称
+     */
+    private List<String> bases = new ArrayList<>(List.of("conn", "event", "octopusx-data"));
+
+    /**
+     * 写别名后缀，写别名为 {base}{writeAliasSuffix}
+     */
+    private String writeAliasSuffix = "-write";
+
+    /**
+     * 分区检查间隔（毫秒）
+     */
+    private long checkIntervalMillis = 600000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    public List<String> getBases() {
+        return bases;
+    }
+
+    public void setBases(List<String> bases) {
+        this.bases = bases;
+    }
+
+    public String getWriteAliasSuffix() {
+        return writeAliasSuffix;
+    }
+
+    public void setWriteAliasSuffix(String writeAliasSuffix) {
+        this.writeAliasSuffix = writeAliasSuffix;
+    }
+
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    public void setCheckIntervalMillis(long checkIntervalMillis) {
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 预聚合（分钟/小时汇总）配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-rollup")
+public class EsRollupProperties {
+
+    /**
+     * 是否启用汇总；关闭后既不写入也不读取汇总，趋势查询全部走原始索引
+     */
+    private boolean enabled = true;
+
+    /**
+     * 汇总索引前缀，实际索引为 {prefix}-1m 与 {prefix}-1h（隐藏索引，不被 * 通配符匹配）
+     */
+    private String indexPrefix = "np-rollup";
+
+    /**
+     * 汇总任务执行间隔（毫秒）
+     */
+    private long runIntervalMillis = 60000;
+
+    /**
+     * 距当前时间不足该值的数据暂不汇总（毫秒），等待写入完成；这段时间由原始索引补齐
+     */
+    private long settleDelayMillis = 120000;
+
+    /**
+     * 每次执行都重新汇总的最近时间窗口（毫秒），吸收迟到写入的文档
+     */
+    private long lateWindowMillis = 3600000;
+
+    /**
+     * 首次启用时向前回填的天数
+     */
+    private int backfillDays = 30;
+
+    /**
+     * 分钟汇总保留天数
+     */
+    private int minuteRetentionDays = 14;
+
+    /**
+     * 小时汇总保留天数
+     */
+    private int hourRetentionDays = 400;
+
+    /**
+     * composite 聚合每页桶数，同时也是每批 bulk 写入的文档数
+     */
+    private int pageSize = 1000;
+
+    /**
+     * 单次执行最多处理的时间块数（每块 360 个桶：分钟级 6 小时，小时级 15 天），限制回填对集群的压力；
+     * 重算（rebuild）另按同样的上限分批推进，进度保存在汇总索引的状态文档中
+     */
+    private int maxChunksPerRun = 12;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getIndexPrefix() {
+        return indexPrefix;
+    }
+
+    public void setIndexPrefix(String indexPrefix) {
+        this.indexPrefix = indexPrefix;
+    }
+
+    public long getRunIntervalMillis() {
+        return runIntervalMillis;
+    }
+
+    public void setRunIntervalMillis(long runIntervalMillis) {
+        this.runIntervalMillis = runIntervalMillis;
+    }
+
+    public long getSettleDelayMillis() {
+        return settleDelayMillis;
+    }
+
+    public void setSettleDelayMillis(long settleDelayMillis) {
+        this.settleDelayMillis = settleDelayMillis;
+    }
+
+    public long getLateWindowMillis() {
+        return lateWindowMillis;
+    }
+
+    public void setLateWindowMillis(long lateWindowMillis) {
+        this.lateWindowMillis = lateWindowMillis;
+    }
+
+    public int getBackfillDays() {
+        return backfillDays;
+    }
+
+    public void setBackfillDays(int backfillDays) {
+        this.backfillDays = backfillDays;
+    }
+
+    public int getMinuteRetentionDays() {
+        return minuteRetentionDays;
+    }
+
+    public void setMinuteRetentionDays(int minuteRetentionDays) {
+        this.minuteRetentionDays = minuteRetentionDays;
+    }
+
+    public int getHourRetentionDays() {
+        return hourRetentionDays;
+    }
+
+    public void setHourRetentionDays(int hourRetentionDays) {
+        this.hourRetentionDays = hourRetentionDays;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getMaxChunksPerRun() {
+        return maxChunksPerRun;
+    }
+
+    public void setMaxChunksPerRun(int maxChunksPerRun) {
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 索引字段信息（_field_caps）缓存配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-schema")
+public class EsSchemaProperties {
+
+    /**
+     * 后台刷新间隔（毫秒），刷新所有已加载过的索引
+     */
+    private long refreshIntervalMillis = 300000;
+
+    /**
+     * 启动时预加载的索引/别名/通配表达式
+     */
+    private List<String> preloadIndices = new ArrayList<>(List.of("conn-*", "event-*", "octopusx-data-*"));
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public List<String> getPreloadIndices() {
+        return preloadIndices;
+    }
+
+    public void setPreloadIndices(List<String> preloadIndices) {
+        this.preloadIndices = preloadIndices;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 慢查询记录配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-slowlog")
+public class EsSlowLogProperties {
+
+    /**
+     * 是否启用慢查询记录
+     */
+    private boolean enabled = true;
+
+    /**
+     * 端到端耗时达到该值（毫秒）的 ES 调用记录完整请求体
+     */
+    private long thresholdMillis = 2000;
+
+    /**
+     * 未达到阈值的调用按该比例（0~1）随机采样记录，用于了解常规查询的形态；0 表示只记录慢查询
+     */
+    private double sampleRate = 0.0;
+
+    /**
+     * 内存中保留的最近记录数
+     */
+    private int ringSize = 500;
+
+    /**
+     * 请求体最多保留的字符数，超出部分截断
+     */
+    private int maxBodyChars = 65536;
+
+    /**
+     * 记录文件（每行一个 JSON），为空表示只保存在内存
+     */
+    private String file = "logs/es-slow-queries.log";
+
+    /**
+     * 单个记录文件的大小上限（字节），超过后滚动为 .1/.2/...
+     */
+    private long fileMaxBytes = 52428800;
+
+    /**
+     * 保留的历史滚动文件数
+     */
+    private int fileMaxHistory = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public void setRingSize(int ringSize) {
+        this.ringSize = ringSize;
+    }
+
+    public int getMaxBodyChars() {
+        return maxBodyChars;
+    }
+
+    public void setMaxBodyChars(int maxBodyChars) {
+        this.maxBodyChars = maxBodyChars;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public long getFileMaxBytes() {
+        return fileMaxBytes;
+    }
+
+    public void setFileMaxBytes(long fileMaxBytes) {
+        this.fileMaxBytes = fileMaxBytes;
+    }
+
+    public int getFileMaxHistory() {
+        return fileMaxHistory;
+    }
+
+    public void setFileMaxHistory(int fileMaxHistory) {
+        this.fileMaxHistory = fileMaxHistory;
+    }
+}
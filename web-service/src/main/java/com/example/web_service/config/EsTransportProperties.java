@@ -0,0 +1,159 @@
+package com.example.web_service.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ES 传输层（低级 RestClient）配置属性：多节点、连接池、超时、keep-alive 与压缩
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-transport")
+public class EsTransportProperties {
+
+    /**
+     * 节点地址列表（如 http://es1:9200），请求在可用节点间轮询，失败节点暂时剔除并自动重试其他节点；
+     * 为空时使用 elasticsearch.host / elasticsearch.port / elasticsearch.scheme 单节点
+     */
+    private List<String> hosts = new ArrayList<>();
+
+    /**
+     * 建立连接超时（毫秒）
+     */
+    private int connectTimeoutMillis = 5000;
+
+    /**
+     * 读取响应超时（毫秒），需大于最慢的聚合查询耗时
+     */
+    private int socketTimeoutMillis = 60000;
+
+    /**
+     * 连接池总连接数上限
+     */
+    private int maxConnTotal = 60;
+
+    /**
+     * 每个节点的连接数上限（RestClient 默认仅 10）
+     */
+    private int maxConnPerRoute = 20;
+
+    /**
+     * 空闲连接保持时间（毫秒），服务端未返回 Keep-Alive 时使用；应小于中间防火墙/负载均衡的空闲断开时间
+     */
+    private long keepAliveMillis = 60000;
+
+    /**
+     * 是否启用 gzip：请求体压缩并发送 Accept-Encoding: gzip，ES 压缩响应（大聚合结果多为重复 JSON，压缩比高）
+     */
+    private boolean compressionEnabled = true;
+
+    /**
+     * 不向专用 master 节点发送请求（需通过节点发现获得角色后才生效）
+     */
+    private boolean skipDedicatedMasters = true;
+
+    /**
+     * 是否定时通过 _nodes/http 发现集群节点并替换节点列表
+     */
+    private boolean sniffEnabled = false;
+
+    /**
+     * 节点发现间隔（毫秒）
+     */
+    private long sniffIntervalMillis = 300000;
+
+    /**
+     * 节点请求失败后延迟多久触发一次节点发现（毫秒），合并短时间内的连续失败
+     */
+    private long sniffAfterFailureDelayMillis = 60000;
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(List<String> hosts) {
+        this.hosts = hosts;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public int getMaxConnTotal() {
+        return maxConnTotal;
+    }
+
+    public void setMaxConnTotal(int maxConnTotal) {
+        this.maxConnTotal = maxConnTotal;
+    }
+
+    public int getMaxConnPerRoute() {
+        return maxConnPerRoute;
+    }
+
+    public void setMaxConnPerRoute(int maxConnPerRoute) {
+        this.maxConnPerRoute = maxConnPerRoute;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public boolean isSkipDedicatedMasters() {
+        return skipDedicatedMasters;
+    }
+
+    public void setSkipDedicatedMasters(boolean skipDedicatedMasters) {
+        this.skipDedicatedMasters = skipDedicatedMasters;
+    }
+
+    public boolean isSniffEnabled() {
+        return sniffEnabled;
+    }
+
+    public void setSniffEnabled(boolean sniffEnabled) {
+        this.sniffEnabled = sniffEnabled;
+    }
+
+    public long getSniffIntervalMillis() {
+        return sniffIntervalMillis;
+    }
+
+    public void setSniffIntervalMillis(long sniffIntervalMillis) {
+        this.sniffIntervalMillis = sniffIntervalMillis;
+    }
+
+    public long getSniffAfterFailureDelayMillis() {
+        return sniffAfterFailureDelayMillis;
+    }
+
+    public void setSniffAfterFailureDelayMillis(long sniffAfterFailureDelayMillis) {
+        this.sniffAfterFailureDelayMillis = sniffAfterFailureDelayMillis;
+    }
+}
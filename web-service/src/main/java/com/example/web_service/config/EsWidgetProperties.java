@@ -0,0 +1,51 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Widget 查询计划缓存配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.es-widget")
+public class EsWidgetProperties {
+
+    /**
+     * 最多缓存的查询计划数（按 Widget 定义区分），超出后按最近最少使用淘汰
+     */
+    private int planCacheSize = 256;
+
+    /**
+     * 查询计划存活时间（秒）。计划中的字段校验依赖索引字段信息，过期后重新编译
+     */
+    private long planTtlSeconds = 300;
+
+    /**
+     * 是否在日志中输出每次执行的完整查询 DSL（调试用）
+     */
+    private boolean logDsl = false;
+
+    public int getPlanCacheSize() {
+        return planCacheSize;
+    }
+
+    public void setPlanCacheSize(int planCacheSize) {
+        this.planCacheSize = planCacheSize;
+    }
+
+    public long getPlanTtlSeconds() {
+        return planTtlSeconds;
+    }
+
+    public void setPlanTtlSeconds(long planTtlSeconds) {
+        this.planTtlSeconds = planTtlSeconds;
+    }
+
+    public boolean isLogDsl() {
+        return logDsl;
+    }
+
+    public void setLogDsl(boolean logDsl) {
+        this.logDsl = logDsl;
+    }
+}
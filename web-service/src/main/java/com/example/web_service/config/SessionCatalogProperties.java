@@ -0,0 +1,64 @@
+package com.example.web_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 采集会话目录配置属性
+ */
+@Component
+@ConfigurationProperties(prefix = "app.session-catalog")
+public class SessionCatalogProperties {
+
+    /**
+     * 是否启用会话目录；关闭时会话接口直接查询 ES
+     */
+    private boolean enabled = true;
+
+    /**
+     * 采集中会话的刷新间隔（毫秒），也是未完成会话在读取时允许的最大陈旧时间
+     */
+    private long refreshIntervalMillis = 30000;
+
+    /**
+     * 采集停止后继续刷新的时长（毫秒），等待解析结果全部写入 ES 后再固定为最终结果
+     */
+    private long settleMillis = 300000;
+
+    /**
+     * 单个会话最多统计的索引数
+     */
+    private int maxIndices = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public long getSettleMillis() {
+        return settleMillis;
+    }
+
+    public void setSettleMillis(long settleMillis) {
+        this.settleMillis = settleMillis;
+    }
+
+    public int getMaxIndices() {
+        return maxIndices;
+    }
+
+    public void setMaxIndices(int maxIndices) {
+        this.maxIndices = maxIndices;
+    }
+}
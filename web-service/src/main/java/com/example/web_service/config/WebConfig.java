@@ -14,6 +14,7 @@ public class WebConfig implements WebMvcConfigurer {
             .allowedOrigins("*")
             .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
             .allowedHeaders("*")
+            .exposedHeaders("X-Effective-Interval", "X-Requested-Interval", "X-Estimated-Buckets")
             .allowCredentials(false);  // 当 allowedOrigins 为 * 时必须为 false
     }
     
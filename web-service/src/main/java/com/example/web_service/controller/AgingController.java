@@ -1,7 +1,9 @@
 package com.example.web_service.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.example.web_service.service.AgingService;
 import com.example.web_service.service.AgingScheduleService;
 import com.example.web_service.service.EsDeletionTaskService;
@@ -63,6 +65,24 @@ public class AgingController {
         return esDeletionTaskService.getStatus(taskId);
     }
 
+    @GetMapping(value = "/status/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅老化任务进度", description = "通过SSE推送任务状态（事件名progress），订阅时立即推送当前状态，任务结束后关闭连接")
+    public SseEmitter subscribeTaskStatus(@PathVariable String taskId) {
+        return esDeletionTaskService.subscribe(taskId);
+    }
+
+    @GetMapping("/tasks/stats")
+    @Operation(summary = "删除任务执行器状态", description = "各类删除任务的并发上限、执行中与排队中的任务数")
+    public Map<String, Object> getTaskStats() {
+        return esDeletionTaskService.stats();
+    }
+
+    @PostMapping("/status/{taskId}/cancel")
+    @Operation(summary = "取消老化任务", description = "取消执行中的老化删除任务（同时取消ES端的delete_by_query任务），已删除的数据不会恢复")
+    public Map<String, Object> cancelTask(@PathVariable String taskId) {
+        return Map.of("taskId", taskId, "cancelled", esDeletionTaskService.cancel(taskId));
+    }
+
     @PostMapping("/schedule")
     @Operation(summary = "保存自动删除计划", description = "配置自动删除的计划设置")
     public Map<String, String> saveSchedule(@RequestBody AgingSchedule schedule) {
@@ -76,6 +96,12 @@ public class AgingController {
         return agingService.getSchedule();
     }
 
+    @GetMapping("/retention-modes")
+    @Operation(summary = "获取可用的老化方式", description = "partitions 仅在启用分区索引(app.es-partition.enabled)时可用")
+    public Map<String, Boolean> getRetentionModes() {
+        return Map.of("documents", true, "partitions", agingService.isPartitionAgingAvailable());
+    }
+
     @PostMapping("/execute-auto")
     @Operation(summary = "手动执行自动老化", description = "手动触发针对ens33接口的自动老化删除")
     public Map<String, String> executeAutoAging() {
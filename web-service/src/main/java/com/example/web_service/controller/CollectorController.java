@@ -1,7 +1,9 @@
 package com.example.web_service.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.example.web_service.entity.Collector;
 import com.example.web_service.service.CollectorService;
 import com.example.web_service.service.LogService;
@@ -51,6 +53,22 @@ public class CollectorController {
     public EsDeletionTaskService.TaskStatus getEsDeletionStatus(@PathVariable String taskId) {
         return esDeletionTaskService.getStatus(taskId);
     }
+
+    // Subscribe to async deletion progress (SSE, event name "progress"; closed when the task finishes)
+    @GetMapping(value = "/es-delete/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeEsDeletion(@PathVariable String taskId) {
+        return esDeletionTaskService.subscribe(taskId);
+    }
+
+    // Cancel async deletion (also cancels the ES delete_by_query task)
+    @PostMapping("/es-delete/{taskId}/cancel")
+    public Map<String, Object> cancelEsDeletion(@PathVariable String taskId) {
+        boolean cancelled = esDeletionTaskService.cancel(taskId);
+        if (cancelled) {
+            logService.warn("admin", "Collector", "Cancel ES deletion taskId=" + taskId);
+        }
+        return java.util.Map.of("taskId", taskId, "cancelled", cancelled);
+    }
     
     @GetMapping("/{id}")
     public Collector getCollectorById(@PathVariable Long id) {
@@ -1,9 +1,25 @@
 package com.example.web_service.controller;
 
+import com.example.web_service.entity.CaptureSession;
 import com.example.web_service.model.es.ConnRecord;
 import com.example.web_service.model.es.TrendingData;
 import com.example.web_service.model.es.widget.WidgetQueryRequest;
+import com.example.web_service.service.SessionCatalogService;
+import com.example.web_service.service.elasticsearch.ElasticsearchAsyncService;
 import com.example.web_service.service.elasticsearch.ElasticsearchSyncService;
+import com.example.web_service.service.elasticsearch.EsAsyncExecutor;
+import com.example.web_service.service.elasticsearch.EsAsyncSearchService;
+import com.example.web_service.service.elasticsearch.EsBucketBudget;
+import com.example.web_service.service.elasticsearch.EsConcurrencyLimiter;
+import com.example.web_service.service.elasticsearch.EsDownsampler;
+import com.example.web_service.service.elasticsearch.EsExportService;
+import com.example.web_service.service.elasticsearch.EsIndexCatalog;
+import com.example.web_service.service.elasticsearch.EsProfiler;
+import com.example.web_service.service.elasticsearch.EsRawSearchService;
+import com.example.web_service.service.elasticsearch.EsRollupService;
+import com.example.web_service.service.elasticsearch.EsSchemaRegistry;
+import com.example.web_service.service.elasticsearch.EsSegmentMaintenanceService;
+import com.example.web_service.service.elasticsearch.WidgetQueryCompiler;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.json.JsonData;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
@@ -11,14 +27,21 @@ import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.CountResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/es")
@@ -29,10 +52,52 @@ public class ElasticsearchController {
 
     @Autowired
     private ElasticsearchSyncService elasticsearchSyncService;
+
+    @Autowired
+    private ElasticsearchAsyncService elasticsearchAsyncService;
+
+    @Autowired
+    private EsAsyncExecutor esAsyncExecutor;
+
+    @Autowired
+    private EsConcurrencyLimiter esConcurrencyLimiter;
+
+    @Autowired
+    private EsExportService esExportService;
+
+    @Autowired
+    private EsRawSearchService esRawSearchService;
+
+    @Autowired
+    private EsSchemaRegistry esSchemaRegistry;
+
+    @Autowired
+    private WidgetQueryCompiler widgetQueryCompiler;
+
+    @Autowired
+    private EsDownsampler esDownsampler;
+
+    @Autowired
+    private EsSegmentMaintenanceService esSegmentMaintenanceService;
+
+    @Autowired
+    private EsIndexCatalog esIndexCatalog;
+
+    @Autowired
+    private EsRollupService esRollupService;
+
+    @Autowired
+    private SessionCatalogService sessionCatalogService;
     
     @Autowired
     private ElasticsearchClient esClient;
 
+    @Autowired
+    private EsBucketBudget bucketBudget;
+
+    @Autowired
+    private EsAsyncSearchService asyncSearchService;
+
     private static final String INDEX_NAME = "conn-realtime";
 
     private static String autoIntervalFromSpan(long spanMillis, int desiredPoints) {
@@ -71,117 +136,197 @@ public class ElasticsearchController {
         return "1y";
     }
 
+    // 自动间隔的目标桶数：指定 points 时按其 OVERSAMPLE 倍预聚合，再由 LTTB 降到 points 个点
+    private static int autoBuckets(Integer points) {
+        return points != null && points > 0 ? points * EsDownsampler.OVERSAMPLE : 200;
+    }
+
     @GetMapping("/search")
     @Operation(summary = "查询ES数据", description = "从conn-realtime索引中查询数据")
-    public List<ConnRecord> searchData(@RequestParam(required = false) String keyword) throws IOException {
+    public CompletableFuture<List<ConnRecord>> searchData(@RequestParam(required = false) String keyword) {
         Query query = keyword != null 
             ? Query.of(q -> q.match(m -> m.field("message").query(keyword)))
             : Query.of(q -> q.matchAll(m -> m));
             
-        return elasticsearchSyncService.searchConnRecords(INDEX_NAME, query);
+        return esAsyncExecutor.submitAsync(() -> elasticsearchAsyncService.searchConnRecordsAsync(INDEX_NAME, query));
     }
 
     @PostMapping("/search/advanced")
     @Operation(summary = "高级查询", description = "使用自定义查询条件搜索数据")
-    public List<ConnRecord> advancedSearch(@RequestBody Query query) throws IOException {
-        return elasticsearchSyncService.searchConnRecords(INDEX_NAME, query);
+    public CompletableFuture<List<ConnRecord>> advancedSearch(@RequestBody Query query) {
+        return esAsyncExecutor.submitAsync(() -> elasticsearchAsyncService.searchConnRecordsAsync(INDEX_NAME, query));
     }
 
     @GetMapping("/trending")
-    @Operation(summary = "查询趋势数据", description = "根据时间范围和其他条件查询数据趋势")
-    public List<TrendingData> getTrending(
+    @Operation(summary = "查询趋势数据", description = "根据时间范围和其他条件查询数据趋势；profile=true 时返回 {result, profile}，附带ES分片级查询剖析耗时；预估桶数超出预算时自动放大间隔，实际间隔见响应头 X-Effective-Interval；async=true 时在后台执行并返回查询id，通过 /es/async-search/{id} 轮询结果（运行期间不返回部分结果）")
+    public CompletableFuture<?> getTrending(
             @RequestParam String startTime,
             @RequestParam String endTime,
             @RequestParam(required = false) String filePath,
             @RequestParam(defaultValue = "conn-realtime") String index,
-            @RequestParam(defaultValue = "auto") String interval
-    ) throws IOException {
+            @RequestParam(defaultValue = "auto") String interval,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(defaultValue = "false") boolean profile,
+            @RequestParam(defaultValue = "false") boolean async,
+            HttpServletResponse response
+    ) {
         String useInterval = interval;
         if ("auto".equalsIgnoreCase(interval)) {
             try {
                 long s = java.time.Instant.parse(startTime).toEpochMilli();
                 long e = java.time.Instant.parse(endTime).toEpochMilli();
-                useInterval = autoIntervalFromSpan(Math.max(0, e - s), 200);
+                useInterval = autoIntervalFromSpan(Math.max(0, e - s), autoBuckets(points));
             } catch (Exception ignore) { useInterval = "1h"; }
         }
-        return elasticsearchSyncService.getTrending(startTime, endTime, filePath, index, useInterval);
+        EsBucketBudget.Decision budget = bucketBudget.check("trending", EsIndexCatalog.toMillis(startTime),
+                EsIndexCatalog.toMillis(endTime), useInterval, 1);
+        reportInterval(response, budget);
+        final String finalInterval = budget.interval();
+        return submitTrend(trendKey("trending", startTime, endTime, filePath, index, finalInterval, points, profile), profile, async, () -> EsDownsampler.downsample(
+                elasticsearchSyncService.getTrending(startTime, endTime, filePath, index, finalInterval), points));
     }
 
     @GetMapping("/protocol-trends")
-    @Operation(summary = "查询协议交易趋势", description = "按serviceName聚合获取前10个服务的时间序列趋势数据，时间参数使用毫秒时间戳")
-    public Map<String, List<TrendingData>> getProtocolTrends(
+    @Operation(summary = "查询协议交易趋势", description = "按serviceName聚合获取前10个服务的时间序列趋势数据，时间参数使用毫秒时间戳；profile=true 时返回 {result, profile}，附带ES分片级查询剖析耗时；预估桶数超出预算时自动放大间隔，实际间隔见响应头 X-Effective-Interval；async=true 时在后台执行并返回查询id，通过 /es/async-search/{id} 轮询结果（运行期间不返回部分结果）")
+    public CompletableFuture<?> getProtocolTrends(
             @RequestParam Long startTime,
             @RequestParam Long endTime,
             @RequestParam(required = false) String filePath,
-            @RequestParam(defaultValue = "auto") String interval
-    ) throws IOException {
-        String useInterval = "auto".equalsIgnoreCase(interval)
-                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), 200)
+            @RequestParam(defaultValue = "auto") String interval,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(defaultValue = "false") boolean profile,
+            @RequestParam(defaultValue = "false") boolean async,
+            HttpServletResponse response
+    ) {
+        String requestedInterval = "auto".equalsIgnoreCase(interval)
+                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), autoBuckets(points))
                 : interval;
-        return elasticsearchSyncService.getProtocolTrends(startTime, endTime, filePath, useInterval);
+        EsBucketBudget.Decision budget = bucketBudget.check("protocolTrends", startTime, endTime, requestedInterval,
+                ElasticsearchSyncService.PROTOCOL_TREND_TOP);
+        reportInterval(response, budget);
+        String useInterval = budget.interval();
+        return submitTrend(trendKey("protocolTrends", startTime, endTime, filePath, useInterval, points, profile), profile, async, () -> EsDownsampler.downsample(
+                elasticsearchSyncService.getProtocolTrends(startTime, endTime, filePath, useInterval), points));
     }
 
     @GetMapping("/bandwidth-trends")
-    @Operation(summary = "查询带宽趋势", description = "获取所有可用Channel的带宽利用率趋势数据，时间参数使用毫秒时间戳")
-    public Map<String, List<TrendingData>> getBandwidthTrends(
+    @Operation(summary = "查询带宽趋势", description = "获取所有可用Channel的带宽利用率趋势数据，时间参数使用毫秒时间戳；profile=true 时返回 {result, profile}，附带ES分片级查询剖析耗时；预估桶数超出预算时自动放大间隔，实际间隔见响应头 X-Effective-Interval；async=true 时在后台执行并返回查询id，通过 /es/async-search/{id} 轮询结果（运行期间不返回部分结果）")
+    public CompletableFuture<?> getBandwidthTrends(
             @RequestParam Long startTime,
             @RequestParam Long endTime,
             @RequestParam(required = false) String filePath,
-            @RequestParam(defaultValue = "auto") String interval
-    ) throws IOException {
-        String useInterval = "auto".equalsIgnoreCase(interval)
-                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), 200)
+            @RequestParam(defaultValue = "auto") String interval,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(defaultValue = "false") boolean profile,
+            @RequestParam(defaultValue = "false") boolean async,
+            HttpServletResponse response
+    ) {
+        String requestedInterval = "auto".equalsIgnoreCase(interval)
+                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), autoBuckets(points))
                 : interval;
+        EsBucketBudget.Decision budget = bucketBudget.check("bandwidthTrends", startTime, endTime, requestedInterval,
+                ElasticsearchSyncService.BANDWIDTH_TREND_PORTS);
+        reportInterval(response, budget);
+        String useInterval = budget.interval();
         log.info("Received bandwidth trends request - startTime: {}, endTime: {}, filePath: {}, interval: {}", startTime, endTime, filePath, useInterval);
-        Map<String, List<TrendingData>> result = elasticsearchSyncService.getBandwidthTrends(startTime, endTime, filePath, useInterval);
-        log.info("Returning bandwidth trends with {} channels", result.size());
-        return result;
+        return submitTrend(trendKey("bandwidthTrends", startTime, endTime, filePath, useInterval, points, profile), profile, async, () -> {
+            Map<String, List<TrendingData>> result = elasticsearchSyncService.getBandwidthTrends(startTime, endTime, filePath, useInterval);
+            log.info("Returning bandwidth trends with {} channels", result.size());
+            return EsDownsampler.downsample(result, points);
+        });
     }
 
     @GetMapping("/network-protocol-trends")
-    @Operation(summary = "查询网络协议趋势", description = "从conn-realtime索引根据protoName统计时间序列趋势，时间参数使用毫秒时间戳")
-    public Map<String, List<TrendingData>> getNetworkProtocolTrends(
+    @Operation(summary = "查询网络协议趋势", description = "从conn-realtime索引根据protoName统计时间序列趋势，时间参数使用毫秒时间戳；profile=true 时返回 {result, profile}，附带ES分片级查询剖析耗时；预估桶数超出预算时自动放大间隔，实际间隔见响应头 X-Effective-Interval；async=true 时在后台执行并返回查询id，通过 /es/async-search/{id} 轮询结果（运行期间不返回部分结果）")
+    public CompletableFuture<?> getNetworkProtocolTrends(
             @RequestParam Long startTime,
             @RequestParam Long endTime,
             @RequestParam(required = false) String filePath,
-            @RequestParam(defaultValue = "auto") String interval
-    ) throws IOException {
-        String useInterval = "auto".equalsIgnoreCase(interval)
-                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), 200)
+            @RequestParam(defaultValue = "auto") String interval,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(defaultValue = "false") boolean profile,
+            @RequestParam(defaultValue = "false") boolean async,
+            HttpServletResponse response
+    ) {
+        String requestedInterval = "auto".equalsIgnoreCase(interval)
+                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), autoBuckets(points))
                 : interval;
+        EsBucketBudget.Decision budget = bucketBudget.check("connProtocolNameTrends", startTime, endTime, requestedInterval,
+                ElasticsearchSyncService.NETWORK_PROTOCOL_TREND_TOP);
+        reportInterval(response, budget);
+        String useInterval = budget.interval();
         log.info("Received network protocol trends request - startTime: {}, endTime: {}, filePath: {}, interval: {}", startTime, endTime, filePath, useInterval);
-        Map<String, List<TrendingData>> result = elasticsearchSyncService.getConnProtocolNameTrends(startTime, endTime, filePath, useInterval);
-        log.info("Returning network protocol trends with {} protocols", result.size());
-        return result;
+        return submitTrend(trendKey("connProtocolNameTrends", startTime, endTime, filePath, useInterval, points, profile), profile, async, () -> {
+            Map<String, List<TrendingData>> result = elasticsearchSyncService.getConnProtocolNameTrends(startTime, endTime, filePath, useInterval);
+            log.info("Returning network protocol trends with {} protocols", result.size());
+            return EsDownsampler.downsample(result, points);
+        });
+    }
+
+    @GetMapping("/event-severity-trends")
+    @Operation(summary = "查询告警级别趋势", description = "在event-*索引中按alert.severity(1高/2中/3低)统计事件数的时间序列，时间参数使用毫秒时间戳；不指定filePath时读取预聚合；profile=true 时返回 {result, profile}，附带ES分片级查询剖析耗时；预估桶数超出预算时自动放大间隔，实际间隔见响应头 X-Effective-Interval；async=true 时在后台执行并返回查询id，通过 /es/async-search/{id} 轮询结果（运行期间不返回部分结果）")
+    public CompletableFuture<?> getEventSeverityTrends(
+            @RequestParam Long startTime,
+            @RequestParam Long endTime,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(defaultValue = "auto") String interval,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(defaultValue = "false") boolean profile,
+            @RequestParam(defaultValue = "false") boolean async,
+            HttpServletResponse response
+    ) {
+        String requestedInterval = "auto".equalsIgnoreCase(interval)
+                ? autoIntervalFromSpan(Math.max(0, endTime - startTime), autoBuckets(points))
+                : interval;
+        EsBucketBudget.Decision budget = bucketBudget.check("eventSeverityTrends", startTime, endTime, requestedInterval,
+                ElasticsearchSyncService.EVENT_SEVERITY_LEVELS);
+        reportInterval(response, budget);
+        String useInterval = budget.interval();
+        return submitTrend(trendKey("eventSeverityTrends", startTime, endTime, filePath, useInterval, points, profile), profile, async, () -> EsDownsampler.downsample(
+                elasticsearchSyncService.getEventSeverityTrends(startTime, endTime, filePath, useInterval), points));
+    }
+
+    // 通过响应头告知实际使用的间隔，响应体结构保持不变
+    private static void reportInterval(HttpServletResponse response, EsBucketBudget.Decision budget) {
+        response.setHeader("X-Effective-Interval", budget.interval());
+        response.setHeader("X-Requested-Interval", budget.requestedInterval());
+        if (budget.estimatedBuckets() >= 0) {
+            response.setHeader("X-Estimated-Buckets", String.valueOf(budget.estimatedBuckets()));
+        }
+    }
+
+    // profile=true 时以剖析模式执行同一查询，返回 {result, profile}（见 EsProfiler）；
+    // async=true 时提交到后台并立即返回查询状态，相同 key 的查询在保留期内直接复用（见 EsAsyncSearchService）
+    private <T> CompletableFuture<?> submitTrend(String key, boolean profile, boolean async, EsAsyncExecutor.EsCall<T> call) {
+        EsAsyncExecutor.EsCall<?> effective = profile ? () -> EsProfiler.profile(call) : call;
+        if (async) {
+            return CompletableFuture.completedFuture(asyncSearchService.submit(key, effective));
+        }
+        return esAsyncExecutor.submit(effective);
+    }
+
+    private static String trendKey(Object... parts) {
+        return java.util.Arrays.stream(parts).map(String::valueOf).collect(java.util.stream.Collectors.joining("|"));
     }
 
     @GetMapping("/service-name-aggregation")
     @Operation(summary = "查询服务名称聚合数据", description = "获取conn-realtime索引中serviceName字段的Top N聚合统计数据，支持时间范围过滤")
-    public Map<String, Object> getServiceNameAggregation(
+    public CompletableFuture<Map<String, Object>> getServiceNameAggregation(
             @RequestParam(defaultValue = "10") Integer topN,
             @RequestParam(required = false) Long startTime,
             @RequestParam(required = false) Long endTime,
             @RequestParam(required = false) String filePath
-    ) throws IOException {
+    ) {
         log.info("Received service name aggregation request - topN: {}, startTime: {}, endTime: {}, filePath: {}", topN, startTime, endTime, filePath);
-        Map<String, Object> result = elasticsearchSyncService.getServiceNameAggregation(topN, startTime, endTime, filePath);
-        log.info("Returning service name aggregation with {} entries", result.size());
-        return result;
+        return esAsyncExecutor.submit(() -> {
+            Map<String, Object> result = elasticsearchSyncService.getServiceNameAggregation(topN, startTime, endTime, filePath);
+            log.info("Returning service name aggregation with {} entries", result.size());
+            return result;
+        });
     }
 
-    @GetMapping("/query")
-    @Operation(summary = "查询ES数据", description = "根据时间范围和其他条件查询数据")
-    public Map<String, Object> queryData(
-            @RequestParam String startTime,
-            @RequestParam String endTime,
-            @RequestParam(required = false) String filePath,
-            @RequestParam(defaultValue = "conn-realtime") String index,
-            @RequestParam(defaultValue = "10") Integer size,
-            @RequestParam(defaultValue = "0") Integer from,
-            @RequestParam(required = false) String search,
-            @RequestParam(required = false) String sortField,
-            @RequestParam(defaultValue = "asc") String sortOrder
-    ) throws IOException {
+    // /query 与 /export 共用的查询条件：时间范围 + 可选 filePath + 可选关键词
+    private static Query buildQueryDataQuery(String startTime, String endTime, String filePath, String search) {
         // 构建时间范围查询
         var rangeQuery = Query.of(q -> q
             .range(r -> r
@@ -219,14 +364,106 @@ public class ElasticsearchController {
         }
 
         // 构建最终查询
-        var query = Query.of(q -> q
+        return Query.of(q -> q
             .bool(b -> {
                 b.must(mustQueries);
                 return b;
             })
         );
+    }
+
+    @GetMapping("/query")
+    @Operation(summary = "查询ES数据", description = "根据时间范围和其他条件查询数据。paging=cursor 或携带 cursor 时使用 PIT + search_after 游标分页，响应中的 cursor 用于获取下一页(为 null 表示已到末页)，from 参数被忽略")
+    public CompletableFuture<Map<String, Object>> queryData(
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(defaultValue = "conn-realtime") String index,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(defaultValue = "0") Integer from,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String sortField,
+            @RequestParam(defaultValue = "asc") String sortOrder,
+            @RequestParam(defaultValue = "offset") String paging,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "2m") String keepAlive,
+            @RequestParam(required = false) String fields
+    ) {
+        var query = buildQueryDataQuery(startTime, endTime, filePath, search);
+        String targets = resolveTargets(index, startTime, endTime);
+
+        if ("cursor".equalsIgnoreCase(paging) || (cursor != null && !cursor.isBlank())) {
+            return esAsyncExecutor.submit(() -> elasticsearchSyncService.searchRawWithCursor(targets, query, size, cursor, keepAlive, fields));
+        }
+        return esAsyncExecutor.submit(() -> elasticsearchSyncService.searchRawWithPagination(targets, query, size, from, fields));
+    }
+
+    @GetMapping("/query/raw")
+    @Operation(summary = "查询ES数据(直通模式)", description = "与 /query 的分页模式参数相同, 但直接把ES返回的 _source 流式写入响应, 不在服务端构建对象; fields 为逗号分隔的 _source 投影, '-' 前缀表示排除")
+    public ResponseEntity<StreamingResponseBody> queryDataRaw(
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(defaultValue = "conn-realtime") String index,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(defaultValue = "0") Integer from,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String fields
+    ) throws IOException {
+        Query query = buildQueryDataQuery(startTime, endTime, filePath, search);
+        var stream = esRawSearchService.search(elasticsearchSyncService.buildPaginationRequest(
+                resolveTargets(index, startTime, endTime), query, size, from, fields));
+        StreamingResponseBody body = stream::writeTo;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "流式导出ES数据", description = "按与 /query 相同的条件以 NDJSON 或 CSV 流式导出全部结果(PIT + search_after 分批拉取, 内存占用恒定, 直接写出响应流, 不受 MVC 异步请求超时限制)。columns 为 zeek_logs.yml 中的字段别名, 逗号分隔; 为空时导出 defaultShow 字段, all 表示全部字段")
+    public void exportData(
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(defaultValue = "conn-realtime") String index,
+            @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String columns,
+            @RequestParam(required = false) String logName,
+            @RequestParam(required = false) Long limit,
+            HttpServletResponse response
+    ) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+        String useLogName = logName != null && !logName.isBlank() ? logName : EsExportService.logNameOf(index);
+        // 在开始输出前解析列，列名错误时仍可返回正常的错误响应
+        List<String> cols = esExportService.resolveColumns(useLogName, columns);
+        if (csv && cols.isEmpty()) {
+            throw new IllegalArgumentException("No columns resolved for log type " + useLogName + ", please specify columns");
+        }
+        Query query = buildQueryDataQuery(startTime, endTime, filePath, search);
+        log.info("Export request - index: {}, format: {}, columns: {}, limit: {}", index, format, cols, limit);
+
+        String targets = resolveTargets(index, startTime, endTime);
+        String filename = (useLogName != null && !useLogName.isBlank() ? useLogName : "export") + (csv ? ".csv" : ".ndjson");
+        // 在请求线程上同步写出：导出耗时与数据量成正比，StreamingResponseBody 会受 spring.mvc.async.request-timeout 约束
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        response.setContentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8).toString() : "application/x-ndjson");
+        esExportService.export(targets, query, cols, format, limit, response.getOutputStream());
+    }
 
-        return elasticsearchSyncService.searchRawWithPagination(index, query, size, from);
+    // 按时间范围裁剪通配符目标（见 EsIndexCatalog），返回逗号分隔的 index 表达式
+    private String resolveTargets(String index, String startTime, String endTime) {
+        return String.join(",", esIndexCatalog.resolve(index, EsIndexCatalog.toMillis(startTime), EsIndexCatalog.toMillis(endTime)));
+    }
+
+    @DeleteMapping("/query/cursor")
+    @Operation(summary = "关闭查询游标", description = "提前结束游标分页时释放对应的 PIT；翻到末页时 PIT 会自动关闭")
+    public Map<String, Object> closeQueryCursor(@RequestParam String cursor) {
+        elasticsearchSyncService.closeCursor(cursor);
+        return Map.of("closed", true);
     }
 
     @GetMapping("/query-by-filepath")
@@ -235,6 +472,8 @@ public class ElasticsearchController {
             @RequestParam String filePath,
             @RequestParam(defaultValue = "*") String index
     ) throws IOException {
+        // 不限时间，但只需查询有 timestamp 数据的索引
+        final List<String> targets = esIndexCatalog.resolveTimestamped(index);
         // 统一输出格式为: yyyy-MM-dd'T'HH:mm:ss.SSS （UTC，包含毫秒，无时区后缀）
         final java.time.format.DateTimeFormatter targetFormatter =
             java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS")
@@ -312,6 +551,25 @@ public class ElasticsearchController {
             return String.valueOf(value);
         };
 
+        // 会话目录命中时直接读取首末时间（单行查询），未启用或失败时回退到下面的 ES 查询
+        if (sessionCatalogService.isEnabled()) {
+            try {
+                SessionCatalogService.Summary summary = sessionCatalogService.summarize(filePath, index);
+                if (summary.first() != null && summary.last() != null) {
+                    return Map.of(
+                        "filePath", filePath,
+                        "firstTimestamp", normalizeTimestamp.apply(summary.first()),
+                        "lastTimestamp", normalizeTimestamp.apply(summary.last()),
+                        "hasData", true,
+                        "isDefaultRange", false,
+                        "queryMode", "catalog"
+                    );
+                }
+            } catch (Exception e) {
+                log.warn("Session catalog lookup failed for filePath={}, falling back to ES query", filePath, e);
+            }
+        }
+
         // ===== 构建 filePath 精确过滤 =====
         // 问题背景: 原先使用 match(filePath) 可能因分词/分析器导致模糊匹配, 引入非该 session 的旧文档, 造成最早时间异常 (如 1970…).
         // 修复策略: 优先使用 term 查询 filePath.keyword (exact), 失败则回退 term(filePath), 再回退 match(filePath)。
@@ -331,7 +589,7 @@ public class ElasticsearchController {
         for (var candidate : new Query[]{termKeyword, termPlain, matchPlain}) {
             try {
                 SearchResponse<JsonData> testFirst = esClient.search(s -> s
-                    .index(index)
+                    .index(targets)
                     .query(candidate)
                     .size(1)
                     .sort(sort -> sort.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Asc)))
@@ -355,7 +613,7 @@ public class ElasticsearchController {
             selectedQueryRef.v = matchPlain;
             try {
                 firstResponseRef.v = esClient.search(s -> s
-                    .index(index)
+                    .index(targets)
                     .query(selectedQueryRef.v)
                     .size(1)
                     .sort(sort -> sort.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Asc)))
@@ -370,7 +628,7 @@ public class ElasticsearchController {
         // 使用相同的查询策略获取最后一条记录
         try {
             lastResponse = esClient.search(s -> s
-                .index(index)
+                .index(targets)
                 .query(selectedQueryRef.v)
                 .size(1)
                 .sort(sort -> sort.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Desc)))
@@ -460,34 +718,159 @@ public class ElasticsearchController {
         return elasticsearchSyncService.listIndexFields(index, fieldType);
     }
 
+    @PostMapping("/schema/refresh")
+    @Operation(summary = "刷新索引字段缓存", description = "立即丢弃指定索引（不传则全部）的 _field_caps 缓存，下次使用时重新加载；用于新建索引或修改 mapping 后")
+    public Map<String, Object> refreshSchema(@RequestParam(required = false) String index) {
+        esSchemaRegistry.invalidate(index);
+        // Widget 查询计划中的字段校验依赖字段信息，一并丢弃
+        widgetQueryCompiler.clear();
+        return Map.of("success", true);
+    }
+
     @GetMapping("/assets")
     @Operation(summary = "资产表聚合", description = "在event-*索引中按assetIP聚合，返回每个资产的最小severity(1高/2中/3低)、事件总数与最后发生时间，支持timeRange与filePath过滤")
-    public Map<String, Object> getAssets(
+    public CompletableFuture<Map<String, Object>> getAssets(
             @RequestParam Long startTime,
             @RequestParam Long endTime,
             @RequestParam(required = false) String filePath,
             @RequestParam(defaultValue = "5") Integer size
-    ) throws IOException {
-        return elasticsearchSyncService.getAssetAggregation(startTime, endTime, filePath, size);
+    ) {
+        return esAsyncExecutor.submit(() -> elasticsearchSyncService.getAssetAggregation(startTime, endTime, filePath, size));
     }
 
     @GetMapping("/alarms")
     @Operation(summary = "告警表聚合", description = "在event-*索引中按severity->SourceClass->signature聚合，返回每组的最后发生时间，支持timeRange与filePath过滤")
-    public Map<String, Object> getAlarms(
+    public CompletableFuture<Map<String, Object>> getAlarms(
             @RequestParam Long startTime,
             @RequestParam Long endTime,
             @RequestParam(required = false) String filePath,
             @RequestParam(defaultValue = "5") Integer size
-    ) throws IOException {
-        return elasticsearchSyncService.getAlarmAggregation(startTime, endTime, filePath, size);
+    ) {
+        return esAsyncExecutor.submit(() -> elasticsearchSyncService.getAlarmAggregation(startTime, endTime, filePath, size));
     }
 
     @PostMapping("/widget/query")
-    @Operation(summary = "Widget数据查询", description = "根据Widget配置(索引/过滤/聚合)返回图表或表格数据, 默认最近7天")
-    public Map<String,Object> widgetQuery(@RequestBody WidgetQueryRequest req) throws IOException {
-        log.info("Controller received widget query request: {}", req);
-        log.info("Controller yField check: '{}'", req.getYField());
-        return elasticsearchSyncService.executeWidgetQuery(req);
+    @Operation(summary = "Widget数据查询", description = "根据Widget配置(索引/过滤/聚合)返回图表或表格数据, 默认最近7天; profile=true 时返回 {result, profile}, 附带ES分片级查询剖析耗时; async=true 时提交为ES _async_search 并返回查询id, 通过 /es/async-search/{id} 轮询(含部分结果), 此时忽略profile")
+    public CompletableFuture<Map<String,Object>> widgetQuery(@RequestBody WidgetQueryRequest req,
+                                                           @RequestParam(defaultValue = "false") boolean profile,
+                                                           @RequestParam(defaultValue = "false") boolean async) {
+        log.debug("Controller received widget query request: {}", req);
+        if (async) {
+            return esAsyncExecutor.submit(() -> asyncSearchService.submitWidget(req));
+        }
+        if (profile) {
+            return esAsyncExecutor.submit(() -> EsProfiler.profile(() -> elasticsearchSyncService.executeWidgetQuery(req)));
+        }
+        return esAsyncExecutor.submit(() -> elasticsearchSyncService.executeWidgetQuery(req));
+    }
+
+    @GetMapping("/async-search/{id}")
+    @Operation(summary = "查询异步查询结果", description = "返回async=true提交的查询状态(running/partial)与结果; Widget查询运行期间返回已完成分片的部分结果, 趋势查询运行期间只返回状态、完成后一次性返回结果; id不存在或已过期时返回404")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getAsyncSearch(@PathVariable String id) {
+        return esAsyncExecutor.submit(() -> {
+            Map<String, Object> status = asyncSearchService.get(id);
+            return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+        });
+    }
+
+    @DeleteMapping("/async-search/{id}")
+    @Operation(summary = "取消异步查询", description = "取消仍在执行的查询并删除保留的结果")
+    public ResponseEntity<Void> deleteAsyncSearch(@PathVariable String id) throws IOException {
+        return asyncSearchService.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/async-search")
+    @Operation(summary = "列出异步查询", description = "返回当前保留的异步查询id、类型、请求key与过期时间")
+    public List<Map<String, Object>> listAsyncSearches() {
+        return asyncSearchService.list();
+    }
+
+    @PostMapping("/widget/query/batch")
+    @Operation(summary = "Widget数据批量查询", description = "一次请求查询多个Widget, 合并为单次_msearch; 返回结果与请求顺序一致, 单个Widget失败时对应位置返回error")
+    public CompletableFuture<List<Map<String,Object>>> widgetQueryBatch(@RequestBody List<WidgetQueryRequest> reqs) {
+        log.debug("Controller received widget batch query request: {} widgets", reqs != null ? reqs.size() : 0);
+        return esAsyncExecutor.submit(() -> elasticsearchSyncService.executeWidgetQueries(reqs));
+    }
+
+    @GetMapping("/widget/plans/stats")
+    @Operation(summary = "查询Widget查询计划缓存统计", description = "返回已编译的Widget查询计划数量及命中、未命中、淘汰次数")
+    public Map<String, Object> getWidgetPlanStats() {
+        return widgetQueryCompiler.stats();
+    }
+
+    @GetMapping("/async/stats")
+    @Operation(summary = "查询ES异步执行统计", description = "返回ES查询并发上限、执行中/排队中的查询数以及完成、失败、拒绝次数")
+    public Map<String, Object> getAsyncStats() {
+        return esAsyncExecutor.stats();
+    }
+
+    @GetMapping("/bucket-budget/stats")
+    @Operation(summary = "查询桶数预算统计", description = "返回趋势查询桶数预算配置以及检查、自动放大间隔、拒绝的次数")
+    public Map<String, Object> getBucketBudgetStats() {
+        return bucketBudget.stats();
+    }
+
+    @GetMapping("/limiter/stats")
+    @Operation(summary = "查询ES并发限制与熔断状态", description = "按查询类别（聚合/轻量请求）返回当前自适应并发上限、执行中请求数、平均耗时、熔断状态以及失败与拒绝次数")
+    public Map<String, Object> getLimiterStats() {
+        return esConcurrencyLimiter.stats();
+    }
+
+    @GetMapping("/catalog")
+    @Operation(summary = "查询索引时间范围目录", description = "返回各数据索引的文档数、timestamp 最小/最大值及是否已封存；查询按此裁剪与时间范围不重叠的索引")
+    public List<EsIndexCatalog.IndexRange> getIndexCatalog() {
+        return esIndexCatalog.list();
+    }
+
+    @PostMapping("/catalog/refresh")
+    @Operation(summary = "刷新索引时间范围目录", description = "立即增量刷新目录，只重新计算文档数变化的索引")
+    public Map<String, Object> refreshIndexCatalog() throws IOException {
+        esIndexCatalog.refresh();
+        return Map.of("success", true, "indices", esIndexCatalog.list().size());
+    }
+
+    @GetMapping("/maintenance/segments")
+    @Operation(summary = "查询待合并索引", description = "返回已删除文档占比达到阈值的索引（主分片文档数、已删除文档数、段数、磁盘占用），按已删除文档数降序")
+    public List<EsSegmentMaintenanceService.SegmentStats> getSegmentCandidates() throws IOException {
+        return esSegmentMaintenanceService.candidates();
+    }
+
+    @GetMapping("/maintenance/reports")
+    @Operation(summary = "查询段合并报告", description = "返回最近的 forcemerge(only_expunge_deletes) 结果，包含合并前后的段数与磁盘占用")
+    public Map<String, Object> getSegmentReports() {
+        return Map.of("running", esSegmentMaintenanceService.isRunning(),
+                "reports", esSegmentMaintenanceService.reports());
+    }
+
+    @PostMapping("/maintenance/forcemerge")
+    @Operation(summary = "立即执行段维护", description = "不等待低峰窗口，立即在后台逐个合并待合并索引；已有一轮在执行时返回 started=false")
+    public Map<String, Object> runSegmentMaintenance() {
+        return Map.of("started", esSegmentMaintenanceService.trigger(true));
+    }
+
+    @GetMapping("/rollup/status")
+    @Operation(summary = "查询预聚合进度", description = "返回分钟/小时汇总的覆盖起点(coverageStart)、已汇总到的时间(watermark)与未完成的重算进度(rebuilds)")
+    public List<EsRollupService.Level> getRollupStatus() {
+        return esRollupService.levels();
+    }
+
+    @PostMapping("/rollup/rebuild")
+    @Operation(summary = "重算预聚合", description = "从下一次汇总任务开始分批重算指定时间范围（毫秒时间戳）的分钟/小时汇总，用于导入历史数据后；重算完成前该范围的趋势查询改查原始索引")
+    public Map<String, Object> rebuildRollups(@RequestParam Long startTime, @RequestParam Long endTime) {
+        esRollupService.rebuild(startTime, endTime);
+        return Map.of("scheduled", true);
+    }
+
+    @GetMapping("/session/catalog")
+    @Operation(summary = "查询采集会话目录", description = "返回会话的首末时间、各索引文档数与平均连接时长；记录不存在或采集中已过期时先刷新")
+    public CaptureSession getSessionCatalog(@RequestParam String sessionId) throws IOException {
+        return sessionCatalogService.getOrRefresh(sessionId);
+    }
+
+    @PostMapping("/session/catalog/refresh")
+    @Operation(summary = "刷新采集会话目录", description = "立即重新聚合该会话在各索引中的统计")
+    public CaptureSession refreshSessionCatalog(@RequestParam String sessionId) throws IOException {
+        return sessionCatalogService.refresh(sessionId);
     }
 
     // ============ Session-based helper endpoints ============
@@ -500,6 +883,15 @@ public class ElasticsearchController {
             @RequestParam(required = false) Long endTime,
             @RequestParam(defaultValue = "conn-*") String index
     ) throws IOException {
+        // 不限时间时读取会话目录中按索引汇总的文档数与平均时长
+        if (startTime == null && endTime == null && sessionCatalogService.isEnabled()) {
+            SessionCatalogService.Summary summary = sessionCatalogService.summarize(sessionId, index);
+            Map<String, Object> result = new java.util.LinkedHashMap<>();
+            result.put("sessionId", sessionId);
+            result.put("logs", summary.docs());
+            result.put("avgConnDuration", summary.avgConnDuration());
+            return result;
+        }
         Query filePathQuery = Query.of(q -> q.match(m -> m.field("filePath").query(sessionId)));
 
         Query finalQuery = (startTime != null && endTime != null)
@@ -512,17 +904,19 @@ public class ElasticsearchController {
                         ))
                 ))
                 : filePathQuery;
+        List<String> targets = startTime != null && endTime != null
+                ? esIndexCatalog.resolve(index, startTime, endTime) : List.of(index);
 
     // 使用 count API 获取真实文档总数（避免默认 10,000 的上限）
     var countResp = esClient.count(c -> c
-        .index(index)
+        .index(targets)
         .query(finalQuery)
     );
     long logs = countResp != null ? countResp.count() : 0L;
 
     // 使用一次轻量 search 获取平均会话时长聚合
     var response = esClient.search(s -> s
-            .index(index)
+            .index(targets)
             .size(0)
             .query(finalQuery)
             .aggregations("avgDuration", a -> a.avg(v -> v.field("connDuration")))
@@ -546,114 +940,19 @@ public class ElasticsearchController {
     }
 
     @GetMapping("/session/traffic")
-    @Operation(summary = "根据sessionId查询流量趋势", description = "在octopusx-data-*索引中按filePath=sessionId过滤, 返回时间序列原始记录(util/pps/bps/port/timestamp)")
+    @Operation(summary = "根据sessionId查询流量趋势", description = "在octopusx-data-*索引中按filePath=sessionId过滤, 由date_histogram预聚合后按通道做LTTB降采样, 返回每通道最多points个点(timestamp/port/util/bps/pps)")
     public List<Map<String, Object>> getTrafficBySession(
             @RequestParam String sessionId,
             @RequestParam(defaultValue = "octopusx-data-*") String index,
-            @RequestParam(defaultValue = "20") Integer desiredPoints
+            @RequestParam(defaultValue = "20") Integer desiredPoints,
+            @RequestParam(required = false) Integer points
     ) throws IOException {
-        int targetPoints = Math.max(1, Math.min(desiredPoints != null ? desiredPoints : 20, 20));
+        // points 优先；desiredPoints 为旧参数，保持最多 20 个点的原有行为
+        int targetPoints = points != null
+                ? Math.max(2, Math.min(points, 5000))
+                : Math.max(1, Math.min(desiredPoints != null ? desiredPoints : 20, 20));
         Query finalQuery = Query.of(q -> q.match(m -> m.field("filePath").query(sessionId)));
-
-        SearchResponse<JsonData> resp = esClient.search(s -> s
-                .index(index)
-                .size(1000)
-                .query(finalQuery)
-                .sort(sort -> sort.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Asc)))
-        , JsonData.class);
-
-        java.util.ArrayList<Map<String, Object>> raw = new java.util.ArrayList<>();
-        if (resp.hits() != null && resp.hits().hits() != null) {
-            for (var h : resp.hits().hits()) {
-                var src = h.source();
-                if (src != null) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> record = (Map<String, Object>) src.to(Map.class);
-                    raw.add(record);
-                }
-            }
-        }
-
-        // If data is small, return directly
-        if (raw.size() <= targetPoints) {
-            return raw;
-        }
-
-        // Downsample based on time range to approximately desiredPoints
-        long minTs = Long.MAX_VALUE;
-        long maxTs = Long.MIN_VALUE;
-        for (Map<String, Object> r : raw) {
-            Object tsv = r.get("timestamp");
-            if (tsv == null) continue;
-            long t;
-            if (tsv instanceof Number) {
-                t = ((Number) tsv).longValue();
-            } else {
-                try {
-                    t = java.time.Instant.parse(String.valueOf(tsv)).toEpochMilli();
-                } catch (Exception e) {
-                    // fallback
-                    t = 0L;
-                }
-            }
-            if (t < minTs) minTs = t;
-            if (t > maxTs) maxTs = t;
-        }
-        if (minTs == Long.MAX_VALUE || maxTs == Long.MIN_VALUE || maxTs <= minTs) {
-            return raw; // cannot determine range
-        }
-
-        long span = maxTs - minTs;
-        long bucketMs = Math.max(1L, (long) Math.ceil((double) span / Math.max(1, targetPoints)));
-
-        // port -> bucketStart -> [sumUtil, count, sampleRecordForOtherFields]
-        java.util.Map<String, java.util.Map<Long, double[]>> acc = new java.util.HashMap<>();
-        java.util.Map<String, java.util.Map<Long, Map<String, Object>>> sample = new java.util.HashMap<>();
-
-        for (Map<String, Object> r : raw) {
-            String port = String.valueOf(r.getOrDefault("port", 0));
-            Object tsv = r.get("timestamp");
-            long t;
-            if (tsv instanceof Number) {
-                t = ((Number) tsv).longValue();
-            } else {
-                try {
-                    t = java.time.Instant.parse(String.valueOf(tsv)).toEpochMilli();
-                } catch (Exception e) {
-                    continue;
-                }
-            }
-            long bucket = ((t - minTs) / bucketMs) * bucketMs + minTs;
-            double util = 0.0;
-            Object u = r.get("util");
-            if (u != null) {
-                try { util = Double.parseDouble(String.valueOf(u)); } catch (Exception ignore) { util = 0.0; }
-            }
-            acc.computeIfAbsent(port, k -> new java.util.HashMap<>());
-            sample.computeIfAbsent(port, k -> new java.util.HashMap<>());
-            double[] sarr = acc.get(port).computeIfAbsent(bucket, k -> new double[]{0.0, 0.0});
-            sarr[0] += util;
-            sarr[1] += 1.0;
-            sample.get(port).putIfAbsent(bucket, r);
-        }
-
-        java.util.ArrayList<Map<String, Object>> down = new java.util.ArrayList<>();
-        for (var perPort : acc.entrySet()) {
-            String port = perPort.getKey();
-            java.util.List<Long> buckets = new java.util.ArrayList<>(perPort.getValue().keySet());
-            java.util.Collections.sort(buckets);
-            for (Long b : buckets) {
-                double[] sarr = perPort.getValue().get(b);
-                double avg = sarr[1] > 0 ? (sarr[0] / sarr[1]) : 0.0;
-                Map<String, Object> r = new java.util.HashMap<>(sample.get(port).get(b));
-                r.put("timestamp", b);
-                r.put("port", Integer.parseInt(port));
-                r.put("util", String.format(java.util.Locale.US, "%.4f", avg));
-                down.add(r);
-            }
-        }
-
-        return down;
+        return esDownsampler.sessionTraffic(index, finalQuery, targetPoints);
     }
 
     @GetMapping("/session/traffic-trending")
@@ -661,21 +960,23 @@ public class ElasticsearchController {
     public Map<String, List<TrendingData>> getTrafficTrendingBySession(
             @RequestParam String sessionId,
             @RequestParam(defaultValue = "octopusx-data-*") String index,
-            @RequestParam(defaultValue = "20") Integer desiredPoints
+            @RequestParam(defaultValue = "20") Integer desiredPoints,
+            @RequestParam(required = false) Integer points
     ) throws IOException {
         // 1) 查询首末时间
         Query query = Query.of(q -> q
                 .bool(b -> b.must(m -> m.match(t -> t.field("filePath").query(sessionId))))
         );
+        List<String> targets = esIndexCatalog.resolveTimestamped(index);
 
         SearchResponse<JsonData> firstResp = esClient.search(s -> s
-                .index(index)
+                .index(targets)
                 .query(query)
                 .size(1)
                 .sort(sort -> sort.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Asc)))
         , JsonData.class);
         SearchResponse<JsonData> lastResp = esClient.search(s -> s
-                .index(index)
+                .index(targets)
                 .query(query)
                 .size(1)
                 .sort(sort -> sort.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Desc)))
@@ -714,11 +1015,11 @@ public class ElasticsearchController {
         }
 
         // 2) 计算合适的interval，目标点数 desiredPoints（默认20）
-        int target = Math.max(1, Math.min(desiredPoints != null ? desiredPoints : 20, 20));
+        int target = points != null ? autoBuckets(points) : Math.max(1, Math.min(desiredPoints != null ? desiredPoints : 20, 20));
         String interval = autoIntervalFromSpan(endMs - startMs, target);
 
-        // 3) 使用已有带宽趋势方法（按通道util）
-        return elasticsearchSyncService.getBandwidthTrends(startMs, endMs, sessionId, interval);
+        // 3) 使用已有带宽趋势方法（按通道util），指定 points 时再做 LTTB 降采样
+        return EsDownsampler.downsample(elasticsearchSyncService.getBandwidthTrends(startMs, endMs, sessionId, interval), points);
     }
 
     @GetMapping("/session/event-count")
@@ -729,6 +1030,12 @@ public class ElasticsearchController {
             @RequestParam(required = false) Long endTime,
             @RequestParam(defaultValue = "event-*") String index
     ) throws IOException {
+        if (startTime == null && endTime == null && sessionCatalogService.isEnabled()) {
+            return Map.of(
+                    "sessionId", sessionId,
+                    "eventCount", sessionCatalogService.summarize(sessionId, index).docs()
+            );
+        }
         Query filePathQuery = Query.of(q -> q.match(m -> m.field("filePath").query(sessionId)));
 
         Query finalQuery = (startTime != null && endTime != null)
@@ -743,7 +1050,8 @@ public class ElasticsearchController {
                 : filePathQuery;
 
         CountResponse countResp = esClient.count(c -> c
-                .index(index)
+                .index(startTime != null && endTime != null
+                        ? esIndexCatalog.resolve(index, startTime, endTime) : List.of(index))
                 .query(finalQuery)
         );
 
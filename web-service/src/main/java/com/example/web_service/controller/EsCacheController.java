@@ -0,0 +1,63 @@
+package com.example.web_service.controller;
+
+import com.example.web_service.service.LogService;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache;
+import com.example.web_service.service.elasticsearch.cache.BoundedTtlCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/es/cache")
+@Tag(name = "ES缓存管理接口", description = "查看与清空ES聚合结果缓存")
+public class EsCacheController {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private LogService logService;
+
+    @Autowired
+    private EsDayPartialCache dayPartialCache;
+
+    @GetMapping("/stats")
+    @Operation(summary = "查询缓存统计", description = "返回各缓存的条目数、命中/未命中次数、淘汰与过期次数")
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof BoundedTtlCache bounded) {
+                stats.add(bounded.stats());
+            } else if (cache != null) {
+                stats.add(Map.of("name", name));
+            }
+        }
+        stats.add(dayPartialCache.stats());
+        return stats;
+    }
+
+    @DeleteMapping
+    @Operation(summary = "清空缓存", description = "清空全部ES聚合结果缓存（含按天部分聚合缓存），下一次请求将直接查询ES")
+    public Map<String, Object> flush() {
+        int cleared = 0;
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+                cleared++;
+            }
+        }
+        dayPartialCache.clear();
+        cleared++;
+        logService.info("admin", "EsCache", "Flush ES aggregation caches: " + cleared);
+        return Map.of("cleared", cleared);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.web_service.controller;
+
+import com.example.web_service.service.LogService;
+import com.example.web_service.service.elasticsearch.EsMetrics;
+import com.example.web_service.service.elasticsearch.EsSlowQueryLog;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/es/metrics")
+@Tag(name = "ES调用指标接口", description = "按业务操作、索引模式与结果统计的ES调用耗时、took、响应字节数与命中/桶数，以及慢查询记录")
+public class EsMetricsController {
+
+    @Autowired
+    private EsMetrics esMetrics;
+
+    @Autowired
+    private EsSlowQueryLog slowQueryLog;
+
+    @Autowired
+    private LogService logService;
+
+    @GetMapping(value = "/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    @Operation(summary = "Prometheus 指标", description = "以 Prometheus 文本格式输出ES调用耗时/took 直方图、响应字节数、命中与桶数计数，以及并发限制与异步执行器状态")
+    public String prometheus() {
+        return esMetrics.prometheus();
+    }
+
+    @GetMapping
+    @Operation(summary = "查询ES调用汇总", description = "按累计耗时降序返回各调用分组的次数、平均/P95 耗时、平均 took、响应字节数与命中/桶数")
+    public List<Map<String, Object>> summary(@RequestParam(defaultValue = "50") int limit) {
+        return esMetrics.summary(limit);
+    }
+
+    @DeleteMapping
+    @Operation(summary = "清空ES调用指标", description = "清空全部调用分组的统计数据")
+    public Map<String, Object> reset() {
+        esMetrics.reset();
+        logService.info("admin", "EsMetrics", "Reset ES call metrics");
+        return Map.of("reset", true);
+    }
+
+    @GetMapping("/slow-queries")
+    @Operation(summary = "查询慢查询记录", description = "返回最近的慢查询与采样查询（新的在前），包含耗时、took、响应字节数、命中/桶数与请求体；可按 operation 过滤")
+    public List<EsSlowQueryLog.Entry> slowQueries(@RequestParam(defaultValue = "100") int limit,
+                                                  @RequestParam(required = false) String operation) {
+        return slowQueryLog.recent(limit, operation);
+    }
+
+    @GetMapping("/slow-queries/top")
+    @Operation(summary = "慢查询排行", description = "按业务操作/索引模式/ES API 汇总缓冲区中的慢查询，按累计耗时降序，附带最慢一次的请求体")
+    public List<Map<String, Object>> slowQueryTop(@RequestParam(defaultValue = "20") int limit) {
+        return slowQueryLog.topOffenders(limit);
+    }
+
+    @GetMapping("/slow-queries/stats")
+    @Operation(summary = "慢查询记录状态", description = "返回阈值、采样比例、缓冲区记录数、丢弃数与记录文件路径")
+    public Map<String, Object> slowQueryStats() {
+        return slowQueryLog.stats();
+    }
+
+    @DeleteMapping("/slow-queries")
+    @Operation(summary = "清空慢查询缓冲区", description = "清空内存中的慢查询记录，不影响记录文件")
+    public Map<String, Object> clearSlowQueries() {
+        slowQueryLog.clear();
+        logService.info("admin", "EsMetrics", "Clear ES slow query buffer");
+        return Map.of("cleared", true);
+    }
+}
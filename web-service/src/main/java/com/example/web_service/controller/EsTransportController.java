@@ -0,0 +1,37 @@
+package com.example.web_service.controller;
+
+import com.example.web_service.service.LogService;
+import com.example.web_service.service.elasticsearch.EsTransportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/es/transport")
+@Tag(name = "ES传输层接口", description = "查看ES节点健康状态与触发节点发现")
+public class EsTransportController {
+
+    @Autowired
+    private EsTransportService transportService;
+
+    @Autowired
+    private LogService logService;
+
+    @GetMapping("/nodes")
+    @Operation(summary = "查询节点健康", description = "返回客户端当前轮询的节点及失败次数；probe=true 时逐节点探测可达性与延迟，并附带集群节点视图")
+    public Map<String, Object> getNodes(@RequestParam(defaultValue = "false") boolean probe) {
+        return transportService.nodes(probe);
+    }
+
+    @PostMapping("/sniff")
+    @Operation(summary = "立即发现节点", description = "通过 _nodes/http 获取集群节点并替换客户端节点列表")
+    public Map<String, Object> sniff() throws IOException {
+        int discovered = transportService.sniff();
+        logService.info("admin", "EsTransport", "Sniff ES nodes: " + discovered);
+        return Map.of("discovered", discovered);
+    }
+}
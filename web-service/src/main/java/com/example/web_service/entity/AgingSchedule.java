@@ -23,6 +23,9 @@ public class AgingSchedule {
     
     @Column(name = "retention_days")
     private Integer retentionDays = 30;
+
+    @Column(name = "retention_mode")
+    private String retentionMode = "documents"; // documents: delete_by_query; partitions: 整体删除过期的时间分区索引
     
     @Column(name = "created_at")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
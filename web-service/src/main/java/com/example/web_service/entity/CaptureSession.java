@@ -0,0 +1,62 @@
+package com.example.web_service.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 采集会话目录：按 sessionId（即 ES 文档的 filePath）汇总的会话元数据，
+ * 会话页面直接读取，无需每次扫描 ES。
+ */
+@Data
+@Entity
+@Table(name = "capture_sessions")
+public class CaptureSession {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false, unique = true)
+    private String sessionId;
+
+    @Column(name = "collector_id")
+    private Long collectorId;
+
+    // RUNNING（采集中，定时刷新）, SETTLING（已停止，等待数据写完）, COMPLETED（最终结果）
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    // 毫秒时间戳
+    @Column(name = "first_timestamp")
+    private Long firstTimestamp;
+
+    @Column(name = "last_timestamp")
+    private Long lastTimestamp;
+
+    @Column(name = "total_docs")
+    private Long totalDocs;
+
+    // 各索引统计 JSON：{index: {docs, first, last, avgConnDuration}}
+    @Column(name = "index_stats", columnDefinition = "TEXT")
+    private String indexStats;
+
+    @Column(name = "stopped_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime stoppedAt;
+
+    @Column(name = "refreshed_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime refreshedAt;
+
+    @Column(name = "created_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.web_service.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * ES 数据删除任务（持久化），服务重启后可据此恢复未完成的任务。
+ * 时间字段 startedAt/finishedAt 为毫秒时间戳，与任务状态接口保持一致。
+ */
+@Data
+@Entity
+@Table(name = "es_deletion_tasks")
+public class EsDeletionTask {
+    @Id
+    @Column(name = "task_id", length = 36)
+    private String taskId;
+
+    // SESSION, FILE_PATHS, INDICES
+    @Column(nullable = false, length = 20)
+    private String kind;
+
+    // PENDING, RUNNING, DONE, FAILED, CANCELLED
+    @Column(nullable = false, length = 20)
+    private String state;
+
+    // 任务参数
+    @Column(name = "session_id")
+    private String sessionId;
+
+    @Column(name = "file_paths", columnDefinition = "TEXT")
+    private String filePaths;
+
+    @Column(columnDefinition = "TEXT")
+    private String indices;
+
+    // FILE_PATHS 任务额外排除的索引模式（逗号分隔），如分区老化时排除已按分区处理的 conn-*
+    @Column(name = "excluded_indices", columnDefinition = "TEXT")
+    private String excludedIndices;
+
+    @Column(name = "before_millis")
+    private Long beforeMillis;
+
+    // 执行进度
+    @Column(name = "es_task_id", length = 100)
+    private String esTaskId;
+
+    @Column(name = "deleted_count")
+    private Long deletedCount;
+
+    private Long total;
+
+    private Long batches;
+
+    @Column(name = "version_conflicts")
+    private Long versionConflicts;
+
+    private Double progress;
+
+    @Column(name = "cancel_requested")
+    private boolean cancelRequested;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "started_at")
+    private Long startedAt;
+
+    @Column(name = "finished_at")
+    private Long finishedAt;
+
+    @Column(name = "created_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.web_service.exception;
+
+/**
+ * ES 查询并发已满、无法在限定时间内获得执行名额或熔断器打开时抛出，由全局异常处理转换为 503
+ */
+public class EsOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public EsOverloadedException(String message) {
+        this(message, 1);
+    }
+
+    public EsOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
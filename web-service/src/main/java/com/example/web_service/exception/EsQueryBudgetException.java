@@ -0,0 +1,18 @@
+package com.example.web_service.exception;
+
+/**
+ * 查询的预估桶数超出预算且配置为拒绝时抛出，由全局异常处理转换为 400，并给出满足预算的最小间隔
+ */
+public class EsQueryBudgetException extends RuntimeException {
+
+    private final String suggestedInterval;
+
+    public EsQueryBudgetException(String message, String suggestedInterval) {
+        super(message);
+        this.suggestedInterval = suggestedInterval;
+    }
+
+    public String getSuggestedInterval() {
+        return suggestedInterval;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.web_service.exception;
+
+/**
+ * 客户端回传的深分页游标无法解析时抛出，由全局异常处理转换为 400
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.web_service.repository;
+
+import com.example.web_service.entity.CaptureSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CaptureSessionRepository extends JpaRepository<CaptureSession, Long> {
+    Optional<CaptureSession> findBySessionId(String sessionId);
+
+    List<CaptureSession> findByStatusIn(Collection<String> statuses);
+
+    // 删除数据后使目录失效，下次读取时重新计算
+    @Transactional
+    long deleteBySessionIdIn(Collection<String> sessionIds);
+}
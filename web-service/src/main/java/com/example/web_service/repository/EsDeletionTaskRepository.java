@@ -0,0 +1,19 @@
+package com.example.web_service.repository;
+
+import com.example.web_service.entity.EsDeletionTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EsDeletionTaskRepository extends JpaRepository<EsDeletionTask, String> {
+    // 服务启动时查找未完成的任务
+    List<EsDeletionTask> findByStateIn(Collection<String> states);
+
+    // 清理已结束的历史任务
+    @Transactional
+    long deleteByFinishedAtBefore(Long finishedAt);
+}
@@ -7,16 +7,23 @@ import org.slf4j.LoggerFactory;
 import com.example.web_service.entity.AgingSchedule;
 import com.example.web_service.repository.AgingScheduleRepository;
 import com.example.web_service.repository.CollectorRepository;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache;
+import com.example.web_service.service.elasticsearch.EsPartitionService;
+import com.example.web_service.service.elasticsearch.EsRollupService;
 
 import java.util.List;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.stream.Collectors;
 
 @Service
 public class AgingService {
     private static final Logger log = LoggerFactory.getLogger(AgingService.class);
 
+    private static final String PARTITIONS = "partitions";
+
     @Autowired
     private EsDeletionTaskService esDeletionTaskService;
 
@@ -29,6 +36,18 @@ public class AgingService {
     @Autowired
     private CollectorRepository collectorRepository;
 
+    @Autowired
+    private EsPartitionService esPartitionService;
+
+    @Autowired
+    private SessionCatalogService sessionCatalogService;
+
+    @Autowired
+    private EsDayPartialCache dayPartialCache;
+
+    @Autowired
+    private EsRollupService rollupService;
+
     /**
      * 执行手动老化删除
      * @param sessionId 会话ID
@@ -59,6 +78,9 @@ public class AgingService {
      * 保存自动删除计划
      */
     public void saveSchedule(AgingSchedule schedule) {
+        if (PARTITIONS.equalsIgnoreCase(schedule.getRetentionMode()) && !esPartitionService.isEnabled()) {
+            throw new IllegalArgumentException("Retention mode 'partitions' requires app.es-partition.enabled=true");
+        }
         // 获取现有配置或创建新配置
         AgingSchedule existingSchedule = agingScheduleRepository.findFirstByOrderByIdAsc();
         if (existingSchedule != null) {
@@ -67,6 +89,7 @@ public class AgingService {
             existingSchedule.setScheduleType(schedule.getScheduleType());
             existingSchedule.setExecutionTime(schedule.getExecutionTime());
             existingSchedule.setRetentionDays(schedule.getRetentionDays());
+            existingSchedule.setRetentionMode(schedule.getRetentionMode());
             agingScheduleRepository.save(existingSchedule);
         } else {
             // 创建新配置
@@ -92,14 +115,23 @@ public class AgingService {
             schedule.setScheduleType("daily");
             schedule.setExecutionTime("02:00");
             schedule.setRetentionDays(30);
+            schedule.setRetentionMode("documents");
         }
         return schedule;
     }
 
+    /**
+     * 分区老化是否可用（app.es-partition.enabled）
+     */
+    public boolean isPartitionAgingAvailable() {
+        return esPartitionService.isEnabled();
+    }
+
     /**
      * 执行自动老化删除 - 针对interfaceName="ens33"的collector数据
      * 该方法会查询所有interfaceName="ens33"的collector的sessionId，
-     * 然后删除ES中filePath匹配这些sessionId且超过保留天数的数据
+     * 然后删除ES中filePath匹配这些sessionId且超过保留天数的数据。
+     * 分区模式下分区索引整体删除，其余索引仍按文档删除；未启用分区时回退为按文档删除
      */
     public String executeAutoAging() {
         AgingSchedule schedule = getSchedule();
@@ -108,6 +140,23 @@ public class AgingService {
             return null;
         }
 
+        if (PARTITIONS.equalsIgnoreCase(schedule.getRetentionMode())) {
+            if (esPartitionService.isEnabled()) {
+                String boundaryTaskId = executePartitionAging(schedule);
+                String documentTaskId = executeDocumentAging(schedule, esPartitionService.partitionPatterns());
+                return boundaryTaskId != null ? boundaryTaskId : documentTaskId;
+            }
+            log.warn("Retention mode 'partitions' configured but partitioning is disabled, falling back to document aging");
+            logService.info("system", "Aging", "Partitioning is disabled, falling back to document aging");
+        }
+        return executeDocumentAging(schedule, null);
+    }
+
+    /**
+     * 按文档老化：删除 filePath 匹配 ens33 会话且早于截止时间的数据
+     * @param excludedIndices 额外跳过的索引模式（分区模式下为分区索引），可为空
+     */
+    private String executeDocumentAging(AgingSchedule schedule, List<String> excludedIndices) {
         log.info("Starting auto aging execution for interface ens33, retentionDays: {}", schedule.getRetentionDays());
         logService.info("system", "Aging", "Auto aging started for interface ens33, retention: " + schedule.getRetentionDays() + " days");
         
@@ -130,7 +179,8 @@ public class AgingService {
             log.info("Auto aging cutoff time: {} ({}ms)", cutoffDate, beforeMillis);
             
             // 3. 启动异步删除任务，删除filePath匹配sessionId且时间早于截止时间的数据
-            String taskId = esDeletionTaskService.startDeletionByFilePathsBefore(sessionIds, beforeMillis);
+            String taskId = esDeletionTaskService.startDeletionByFilePathsBefore(sessionIds, beforeMillis, excludedIndices);
+            rollupService.purgeBefore(beforeMillis);
             
             logService.info("system", "Aging", 
                 String.format("Auto aging task started: taskId=%s, sessionIds count=%d, before=%s", 
@@ -145,6 +195,39 @@ public class AgingService {
         }
     }
 
+    /**
+     * 分区模式的自动老化：整体删除完全早于截止时间的分区索引，
+     * 只对跨越截止时间的边界分区提交按文档删除任务
+     * @return 边界分区删除任务ID，无边界分区时返回 null
+     */
+    private String executePartitionAging(AgingSchedule schedule) {
+        long beforeMillis = Instant.now().minus(schedule.getRetentionDays(), ChronoUnit.DAYS).toEpochMilli();
+        log.info("Starting partition aging, retentionDays: {}, cutoff: {}", schedule.getRetentionDays(), Instant.ofEpochMilli(beforeMillis));
+        try {
+            EsPartitionService.RetentionResult result = esPartitionService.applyRetention(beforeMillis);
+            logService.info("system", "Aging",
+                String.format("Partition aging dropped %d indices: %s", result.droppedIndices().size(), result.droppedIndices()));
+            if (!result.droppedIndices().isEmpty()) {
+                sessionCatalogService.evictAll();
+                dayPartialCache.clear();
+            }
+            // 截止时间之前的原始数据均被删除（整个分区或边界分区内的文档），直接清除对应的汇总
+            rollupService.purgeBefore(beforeMillis);
+
+            if (result.boundaryIndices().isEmpty()) {
+                return null;
+            }
+            String taskId = esDeletionTaskService.startDeletionInIndicesBefore(result.boundaryIndices(), beforeMillis);
+            logService.info("system", "Aging",
+                String.format("Partition aging boundary task started: taskId=%s, indices=%s", taskId, result.boundaryIndices()));
+            return taskId;
+        } catch (Exception e) {
+            log.error("Partition aging execution failed", e);
+            logService.error("system", "Aging", "Partition aging execution failed: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * 检查是否应该执行自动老化（用于定时任务判断）
      */
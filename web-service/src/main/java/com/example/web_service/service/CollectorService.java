@@ -18,6 +18,9 @@ public class CollectorService {
     
     @Autowired
     private CollectorRepository collectorRepository;
+
+    @Autowired
+    private SessionCatalogService sessionCatalogService;
     
     public List<Collector> getAllCollectors() {
         return collectorRepository.findAll();
@@ -60,11 +63,20 @@ public class CollectorService {
         Collector collector = getCollectorById(id);
         collector.setStatus(status);
         collectorRepository.save(collector);
+        // 采集中持续刷新会话目录，停止后等待数据写完再固定
+        if ("running".equalsIgnoreCase(status)) {
+            sessionCatalogService.markRunning(collector.getSessionId(), id);
+        } else {
+            sessionCatalogService.markStopped(collector.getSessionId(), id);
+        }
     }
     
     public void updateSessionId(Long id, String sessionId) {
         Collector collector = getCollectorById(id);
         collector.setSessionId(sessionId);
         collectorRepository.save(collector);
+        if ("running".equalsIgnoreCase(collector.getStatus())) {
+            sessionCatalogService.markRunning(sessionId, id);
+        }
     }
 } 
\ No newline at end of file
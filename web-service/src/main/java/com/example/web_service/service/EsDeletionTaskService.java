@@ -1,32 +1,83 @@
 package com.example.web_service.service;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.example.web_service.config.EsDeletionProperties;
 import com.example.web_service.entity.Collector;
+import com.example.web_service.entity.EsDeletionTask;
+import com.example.web_service.exception.EsOverloadedException;
+import com.example.web_service.repository.EsDeletionTaskRepository;
 import com.example.web_service.service.elasticsearch.ElasticsearchSyncService;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache;
+import com.example.web_service.service.elasticsearch.EsRollupService;
 
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+
+/**
+ * ES 数据删除任务。
+ * 删除以单个多索引 delete_by_query 提交到 ES（slices=auto, wait_for_completion=false），
+ * 本地任务只负责通过 Tasks API 轮询进度并记录状态，支持取消。
+ * - 每类任务（SESSION / FILE_PATHS / INDICES）有独立的有界线程池：并发数受 maxConcurrent 限制，
+ *   超出的任务排队，队列满时拒绝提交（EsOverloadedException -> 503）
+ * - 任务参数与状态持久化到 es_deletion_tasks，服务重启后恢复未完成的任务
+ * - 状态变化通过 SSE 推送给订阅者（事件名 progress），任务结束后关闭连接
+ */
 @Service
-public class EsDeletionTaskService {
+public class EsDeletionTaskService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(EsDeletionTaskService.class);
+
+    public static final String KIND_SESSION = "SESSION";
+    public static final String KIND_FILE_PATHS = "FILE_PATHS";
+    public static final String KIND_INDICES = "INDICES";
+
+    private static final Set<String> TERMINAL = Set.of("DONE", "FAILED", "CANCELLED");
+
     public static class TaskStatus {
         public String taskId;
-        public String state; // PENDING, RUNNING, DONE, FAILED
+        public String kind;
+        public String state; // PENDING, RUNNING, DONE, FAILED, CANCELLED
         public Long deletedCount;
         public String errorMessage;
         public Long startedAt;
         public Long finishedAt;
+        public String esTaskId;      // ES 任务 ID（node:id）
+        public Long total;           // 匹配的文档总数
+        public Long batches;         // 已完成的批次数
+        public Long versionConflicts;
+        public Double progress;      // 0~100
+        public boolean cancelRequested;
     }
 
-    private final Map<String, TaskStatus> tasks = new ConcurrentHashMap<>();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    /** 执行中/排队中的任务，结束后移出（此后从数据库读取） */
+    private final Map<String, EsDeletionTask> active = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
 
     @Autowired
     private CollectorService collectorService;
@@ -34,15 +85,22 @@ public class EsDeletionTaskService {
     @Autowired
     private ElasticsearchSyncService elasticsearchSyncService;
 
-    public String startDeletion(Long collectorId) {
-        String taskId = UUID.randomUUID().toString();
-        TaskStatus status = new TaskStatus();
-        status.taskId = taskId;
-        status.state = "PENDING";
-        status.deletedCount = 0L;
-        status.startedAt = Instant.now().toEpochMilli();
-        tasks.put(taskId, status);
+    @Autowired
+    private EsDeletionTaskRepository taskRepository;
+
+    @Autowired
+    private EsDeletionProperties properties;
+
+    @Autowired
+    private SessionCatalogService sessionCatalogService;
 
+    @Autowired
+    private EsDayPartialCache dayPartialCache;
+
+    @Autowired
+    private EsRollupService rollupService;
+
+    public String startDeletion(Long collectorId) {
         // Get collector info before starting async task to avoid "not found" issues
         String sessionId = null;
         try {
@@ -52,31 +110,15 @@ public class EsDeletionTaskService {
             // If collector not found, still proceed with null sessionId
             sessionId = null;
         }
-        
-        final String finalSessionId = sessionId;
-
-        executor.submit(() -> {
-            status.state = "RUNNING";
-            try {
-                long deleted = 0L;
-                if (finalSessionId != null && !finalSessionId.isBlank()) {
-                    deleted = elasticsearchSyncService.deleteBySessionId(finalSessionId);
-                }
-                status.deletedCount = deleted;
-                status.state = "DONE";
-            } catch (Exception e) {
-                status.state = "FAILED";
-                status.errorMessage = e.getMessage();
-            } finally {
-                status.finishedAt = Instant.now().toEpochMilli();
-            }
-        });
-
-        return taskId;
+        return startDeletionBySessionId(sessionId);
     }
 
     public TaskStatus getStatus(String taskId) {
-        return tasks.get(taskId);
+        EsDeletionTask task = active.get(taskId);
+        if (task == null) {
+            task = taskRepository.findById(taskId).orElse(null);
+        }
+        return task != null ? toStatus(task) : null;
     }
 
     /**
@@ -85,32 +127,9 @@ public class EsDeletionTaskService {
      * @return 任务ID
      */
     public String startDeletionBySessionId(String sessionId) {
-        String taskId = UUID.randomUUID().toString();
-        TaskStatus status = new TaskStatus();
-        status.taskId = taskId;
-        status.state = "PENDING";
-        status.deletedCount = 0L;
-        status.startedAt = Instant.now().toEpochMilli();
-        tasks.put(taskId, status);
-
-        executor.submit(() -> {
-            status.state = "RUNNING";
-            try {
-                long deleted = 0L;
-                if (sessionId != null && !sessionId.isBlank()) {
-                    deleted = elasticsearchSyncService.deleteBySessionId(sessionId);
-                }
-                status.deletedCount = deleted;
-                status.state = "DONE";
-            } catch (Exception e) {
-                status.state = "FAILED";
-                status.errorMessage = e.getMessage();
-            } finally {
-                status.finishedAt = Instant.now().toEpochMilli();
-            }
-        });
-
-        return taskId;
+        EsDeletionTask task = newTask(KIND_SESSION);
+        task.setSessionId(sessionId);
+        return start(task);
     }
 
     /**
@@ -119,33 +138,437 @@ public class EsDeletionTaskService {
      * @param beforeMillis 删除 beforeMillis 之前的数据（可空）
      */
     public String startDeletionByFilePathsBefore(List<String> filePaths, Long beforeMillis) {
-        String taskId = UUID.randomUUID().toString();
-        TaskStatus status = new TaskStatus();
-        status.taskId = taskId;
-        status.state = "PENDING";
-        status.deletedCount = 0L;
-        status.startedAt = Instant.now().toEpochMilli();
-        tasks.put(taskId, status);
-
-        executor.submit(() -> {
-            status.state = "RUNNING";
+        return startDeletionByFilePathsBefore(filePaths, beforeMillis, null);
+    }
+
+    /**
+     * 同上，另外跳过匹配 excludedIndices（索引模式）的索引
+     */
+    public String startDeletionByFilePathsBefore(List<String> filePaths, Long beforeMillis, List<String> excludedIndices) {
+        EsDeletionTask task = newTask(KIND_FILE_PATHS);
+        task.setFilePaths(filePaths != null ? String.join(",", filePaths) : null);
+        task.setBeforeMillis(beforeMillis);
+        task.setExcludedIndices(excludedIndices != null && !excludedIndices.isEmpty() ? String.join(",", excludedIndices) : null);
+        return start(task);
+    }
+
+    /**
+     * 删除指定索引中 beforeMillis 之前的全部文档（分区老化时的边界分区）
+     */
+    public String startDeletionInIndicesBefore(List<String> indices, long beforeMillis) {
+        EsDeletionTask task = newTask(KIND_INDICES);
+        task.setIndices(indices != null ? String.join(",", indices) : null);
+        task.setBeforeMillis(beforeMillis);
+        return start(task);
+    }
+
+    /**
+     * 取消删除任务：同时取消 ES 端的 delete_by_query（含所有切片），已删除的文档不会恢复。
+     * 排队中的任务出队时直接标记为 CANCELLED。
+     * @return 任务存在且尚未结束时返回 true
+     */
+    public boolean cancel(String taskId) {
+        EsDeletionTask task = active.get(taskId);
+        if (task == null || task.getFinishedAt() != null) {
+            return false;
+        }
+        String esTaskId;
+        synchronized (task) {
+            task.setCancelRequested(true);
+            esTaskId = task.getEsTaskId();
+        }
+        update(task);
+        if (esTaskId != null) {
+            try {
+                elasticsearchSyncService.cancelTask(esTaskId);
+            } catch (Exception e) {
+                log.warn("Failed to cancel ES task {}: {}", esTaskId, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 订阅任务进度：立即推送一次当前状态，之后每次状态变化推送 progress 事件，任务结束后关闭连接。
+     * 任务不存在或已结束时推送最终状态后立即关闭。
+     */
+    public SseEmitter subscribe(String taskId) {
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeoutMillis());
+        List<SseEmitter> list = emitters.computeIfAbsent(taskId, k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        Runnable remove = () -> {
+            list.remove(emitter);
+            emitters.computeIfPresent(taskId, (k, v) -> v.isEmpty() ? null : v);
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        // 先注册再读取状态，避免错过注册期间的更新
+        TaskStatus status = getStatus(taskId);
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(status != null ? status : Map.of("taskId", taskId)));
+            if (status == null || TERMINAL.contains(status.state)) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 是否有执行中或排队中的删除任务
+     */
+    public boolean hasActiveTasks() {
+        return !active.isEmpty();
+    }
+
+    /**
+     * 各类任务执行器的并发与排队情况
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (String kind : List.of(KIND_SESSION, KIND_FILE_PATHS, KIND_INDICES)) {
+            ThreadPoolExecutor ex = executor(kind);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("maxConcurrent", ex.getMaximumPoolSize());
+            m.put("running", ex.getActiveCount());
+            m.put("queued", ex.getQueue().size());
+            m.put("queueCapacity", properties.getQueueCapacity());
+            out.put(kind, m);
+        }
+        out.put("subscribers", emitters.values().stream().mapToInt(List::size).sum());
+        return out;
+    }
+
+    /**
+     * 服务启动后恢复未完成的任务：已提交到 ES 的继续跟踪进度，尚未提交的重新入队
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverTasks() {
+        List<EsDeletionTask> pending;
+        try {
+            pending = taskRepository.findByStateIn(List.of("PENDING", "RUNNING"));
+        } catch (Exception e) {
+            log.warn("Failed to load unfinished ES deletion tasks: {}", e.getMessage());
+            return;
+        }
+        for (EsDeletionTask task : pending) {
+            log.info("Recovering ES deletion task {} (kind={}, state={}, esTaskId={})",
+                    task.getTaskId(), task.getKind(), task.getState(), task.getEsTaskId());
+            task.setState("PENDING");
+            active.put(task.getTaskId(), task);
             try {
-                long deleted = 0L;
-                if (filePaths != null && !filePaths.isEmpty()) {
-                    deleted = elasticsearchSyncService.deleteByFilePathsBefore(filePaths, beforeMillis);
+                executor(task.getKind()).execute(() -> run(task));
+            } catch (RejectedExecutionException e) {
+                finish(task, "FAILED", "Task queue is full after restart");
+            }
+        }
+    }
+
+    /**
+     * 定时清理数据库中过期的已结束任务
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void purgeHistory() {
+        long before = Instant.now().minus(Math.max(1, properties.getHistoryRetentionDays()), ChronoUnit.DAYS).toEpochMilli();
+        try {
+            long n = taskRepository.deleteByFinishedAtBefore(before);
+            if (n > 0) {
+                log.info("Purged {} finished ES deletion tasks", n);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to purge ES deletion task history: {}", e.getMessage());
+        }
+    }
+
+    private EsDeletionTask newTask(String kind) {
+        EsDeletionTask task = new EsDeletionTask();
+        task.setTaskId(UUID.randomUUID().toString());
+        task.setKind(kind);
+        task.setState("PENDING");
+        task.setDeletedCount(0L);
+        task.setStartedAt(Instant.now().toEpochMilli());
+        return task;
+    }
+
+    private String start(EsDeletionTask task) {
+        ThreadPoolExecutor ex = executor(task.getKind());
+        // 提前检查队列，避免为注定被拒绝的任务写库
+        if (ex.getQueue().remainingCapacity() == 0) {
+            throw overloaded(task.getKind());
+        }
+        taskRepository.save(task);
+        active.put(task.getTaskId(), task);
+        try {
+            ex.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            active.remove(task.getTaskId());
+            taskRepository.deleteById(task.getTaskId());
+            throw overloaded(task.getKind());
+        }
+        return task.getTaskId();
+    }
+
+    private void run(EsDeletionTask task) {
+        try {
+            if (task.isCancelRequested()) {
+                if (task.getEsTaskId() != null) {
+                    elasticsearchSyncService.cancelTask(task.getEsTaskId());
+                } else {
+                    finish(task, "CANCELLED", "Cancelled");
+                    return;
+                }
+            }
+            synchronized (task) {
+                task.setState("RUNNING");
+            }
+            update(task);
+            if (task.getEsTaskId() == null) {
+                String esTaskId = submit(task);
+                if (esTaskId == null) {
+                    synchronized (task) {
+                        task.setProgress(100.0);
+                    }
+                    finish(task, "DONE", null);
+                    return;
+                }
+                boolean cancelled;
+                synchronized (task) {
+                    task.setEsTaskId(esTaskId);
+                    cancelled = task.isCancelRequested();
+                }
+                update(task);
+                if (cancelled) {
+                    // 提交期间收到取消请求
+                    elasticsearchSyncService.cancelTask(esTaskId);
+                }
+            }
+            track(task);
+        } catch (InterruptedException e) {
+            // 服务关闭：保留 RUNNING 状态，重启后恢复
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            finish(task, "FAILED", e.getMessage());
+        }
+    }
+
+    // 按任务类型与参数提交 delete_by_query，无需删除时返回 null
+    private String submit(EsDeletionTask task) throws IOException {
+        switch (task.getKind()) {
+            case KIND_SESSION -> {
+                String sessionId = task.getSessionId();
+                return sessionId != null && !sessionId.isBlank()
+                        ? elasticsearchSyncService.submitDeleteBySessionId(sessionId,
+                                properties.getExcludedIndices(), properties.getRequestsPerSecond())
+                        : null;
+            }
+            case KIND_FILE_PATHS -> {
+                List<String> filePaths = split(task.getFilePaths());
+                return !filePaths.isEmpty()
+                        ? elasticsearchSyncService.submitDeleteByFilePathsBefore(filePaths, task.getBeforeMillis(),
+                                excludedIndices(task), properties.getRequestsPerSecond())
+                        : null;
+            }
+            case KIND_INDICES -> {
+                List<String> indices = split(task.getIndices());
+                return !indices.isEmpty() && task.getBeforeMillis() != null
+                        ? elasticsearchSyncService.submitDeleteBefore(indices, task.getBeforeMillis(), properties.getRequestsPerSecond())
+                        : null;
+            }
+            default -> throw new IllegalStateException("Unknown deletion task kind: " + task.getKind());
+        }
+    }
+
+    // 轮询 ES 任务直到完成
+    private void track(EsDeletionTask task) throws Exception {
+        while (true) {
+            GetTasksResponse resp = elasticsearchSyncService.getTask(task.getEsTaskId());
+            if (resp.task() != null && resp.task().status() != null) {
+                apply(task, resp.task().status().to(Map.class));
+            }
+            if (resp.completed()) {
+                if (resp.response() != null) {
+                    apply(task, resp.response().to(Map.class));
+                }
+                if (resp.error() != null) {
+                    finish(task, "FAILED", resp.error().reason());
+                } else if (task.isCancelRequested() || Boolean.TRUE.equals(resp.task() != null ? resp.task().cancelled() : null)) {
+                    finish(task, "CANCELLED", "Cancelled");
+                } else {
+                    synchronized (task) {
+                        task.setProgress(100.0);
+                    }
+                    finish(task, "DONE", null);
+                }
+                log.info("ES deletion task {} finished: state={}, deleted={}, total={}",
+                        task.getEsTaskId(), task.getState(), task.getDeletedCount(), task.getTotal());
+                return;
+            }
+            update(task);
+            Thread.sleep(Math.max(200L, properties.getPollIntervalMillis()));
+        }
+    }
+
+    private void finish(EsDeletionTask task, String state, String errorMessage) {
+        synchronized (task) {
+            task.setState(state);
+            task.setErrorMessage(errorMessage);
+            task.setFinishedAt(Instant.now().toEpochMilli());
+        }
+        update(task);
+        active.remove(task.getTaskId());
+        rebuildRollups(task);
+        invalidateSessions(task);
+        dayPartialCache.clear();
+        List<SseEmitter> list = emitters.remove(task.getTaskId());
+        if (list != null) {
+            list.forEach(SseEmitter::complete);
+        }
+    }
+
+    private List<String> excludedIndices(EsDeletionTask task) {
+        List<String> extra = split(task.getExcludedIndices());
+        if (extra.isEmpty()) {
+            return properties.getExcludedIndices();
+        }
+        List<String> all = new ArrayList<>(properties.getExcludedIndices());
+        all.addAll(extra);
+        return all;
+    }
+
+    // 预聚合中仍计入已删除的文档：重算受影响的会话时间范围（需在会话记录失效前读取）。
+    // 没有删除任何文档时跳过；INDICES 任务由老化流程直接清除截止时间之前的汇总（EsRollupService.purgeBefore）；
+    // 范围未知时不重算全部历史，只记录日志
+    private void rebuildRollups(EsDeletionTask task) {
+        if (task.getDeletedCount() == null || task.getDeletedCount() <= 0 || KIND_INDICES.equals(task.getKind())) {
+            return;
+        }
+        long[] range = switch (task.getKind()) {
+            case KIND_SESSION -> task.getSessionId() != null
+                    ? sessionCatalogService.timeRange(List.of(task.getSessionId()))
+                    : null;
+            case KIND_FILE_PATHS -> sessionCatalogService.timeRange(split(task.getFilePaths()));
+            default -> null;
+        };
+        if (range == null) {
+            log.info("Deletion task {} removed {} documents in an unknown time range; rollups are not rebuilt",
+                    task.getTaskId(), task.getDeletedCount());
+            return;
+        }
+        Long before = task.getBeforeMillis();
+        rollupService.rebuild(range[0], before != null ? Math.min(range[1], before) : range[1]);
+    }
+
+    // 失败或取消时也可能已删除部分文档，会话目录一律失效
+    private void invalidateSessions(EsDeletionTask task) {
+        switch (task.getKind()) {
+            case KIND_SESSION -> {
+                if (task.getSessionId() != null) {
+                    sessionCatalogService.evict(List.of(task.getSessionId()));
                 }
-                status.deletedCount = deleted;
-                status.state = "DONE";
+            }
+            case KIND_FILE_PATHS -> sessionCatalogService.evict(split(task.getFilePaths()));
+            default -> sessionCatalogService.evictAll();
+        }
+    }
+
+    // 持久化当前状态并推送给订阅者
+    private void update(EsDeletionTask task) {
+        TaskStatus status;
+        synchronized (task) {
+            try {
+                taskRepository.save(task);
             } catch (Exception e) {
-                status.state = "FAILED";
-                status.errorMessage = e.getMessage();
-            } finally {
-                status.finishedAt = Instant.now().toEpochMilli();
+                log.warn("Failed to persist ES deletion task {}: {}", task.getTaskId(), e.getMessage());
+            }
+            status = toStatus(task);
+        }
+        List<SseEmitter> list = emitters.get(task.getTaskId());
+        if (list == null) {
+            return;
+        }
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(status));
+            } catch (IOException | IllegalStateException e) {
+                list.remove(emitter);
             }
+        }
+    }
+
+    private ThreadPoolExecutor executor(String kind) {
+        return executors.computeIfAbsent(kind, k -> {
+            int limit = Math.max(1, properties.getMaxConcurrent()
+                    .getOrDefault(k.toLowerCase().replace('_', '-'), 1));
+            AtomicInteger seq = new AtomicInteger();
+            ThreadPoolExecutor ex = new ThreadPoolExecutor(limit, limit, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                    r -> {
+                        Thread t = new Thread(r, "es-delete-" + k.toLowerCase() + "-" + seq.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            ex.allowCoreThreadTimeOut(true);
+            return ex;
         });
+    }
 
-        return taskId;
+    private static EsOverloadedException overloaded(String kind) {
+        return new EsOverloadedException("Too many pending " + kind + " deletion tasks, please retry later");
     }
-}
 
+    // 任务 status / response 中的计数（切片任务为各切片之和）
+    private static void apply(EsDeletionTask task, Map<?, ?> m) {
+        synchronized (task) {
+            Long total = asLong(m.get("total"));
+            Long deleted = asLong(m.get("deleted"));
+            if (total != null) task.setTotal(total);
+            if (deleted != null) task.setDeletedCount(deleted);
+            Long batches = asLong(m.get("batches"));
+            if (batches != null) task.setBatches(batches);
+            Long conflicts = asLong(m.get("version_conflicts"));
+            if (conflicts != null) task.setVersionConflicts(conflicts);
+            if (task.getTotal() != null && task.getTotal() > 0) {
+                long done = task.getDeletedCount() + (task.getVersionConflicts() != null ? task.getVersionConflicts() : 0L);
+                task.setProgress(Math.min(100.0, done * 100.0 / task.getTotal()));
+            }
+        }
+    }
 
+    private static TaskStatus toStatus(EsDeletionTask task) {
+        TaskStatus s = new TaskStatus();
+        s.taskId = task.getTaskId();
+        s.kind = task.getKind();
+        s.state = task.getState();
+        s.deletedCount = task.getDeletedCount();
+        s.errorMessage = task.getErrorMessage();
+        s.startedAt = task.getStartedAt();
+        s.finishedAt = task.getFinishedAt();
+        s.esTaskId = task.getEsTaskId();
+        s.total = task.getTotal();
+        s.batches = task.getBatches();
+        s.versionConflicts = task.getVersionConflicts();
+        s.progress = task.getProgress();
+        s.cancelRequested = task.isCancelRequested();
+        return s;
+    }
+
+    private static List<String> split(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(csv.split(",")).map(String::trim).filter(v -> !v.isEmpty()).toList();
+    }
+
+    private static Long asLong(Object v) {
+        return v instanceof Number n ? n.longValue() : null;
+    }
+
+    @Override
+    public void destroy() {
+        // 不等待执行中的任务：已提交到 ES 的删除会继续执行，重启后由 recoverTasks 恢复跟踪
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+}
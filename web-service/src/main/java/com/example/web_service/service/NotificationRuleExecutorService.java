@@ -18,20 +18,15 @@ import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 
 @Service
 public class NotificationRuleExecutorService {
     private static final Logger log = LoggerFactory.getLogger(NotificationRuleExecutorService.class);
 
-    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-
     @Autowired private NotificationRuleService ruleService;
     @Autowired private NotificationSettingService notificationSettingService;
     @Autowired private ElasticsearchSyncService es;
@@ -61,48 +56,6 @@ public class NotificationRuleExecutorService {
             }
             Query query = Query.of(q -> q.bool(qb.build()));
 
-            // Log ES DSL for troubleshooting
-            try {
-                Map<String, Object> fullBody = new HashMap<>();
-                Map<String, Object> queryBody = new HashMap<>();
-                Map<String, Object> bool = new HashMap<>();
-                List<Object> must = new ArrayList<>();
-
-                Map<String, Object> tsRange = new HashMap<>();
-                Map<String, Object> tsBounds = new HashMap<>();
-                tsBounds.put("gte", startMs);
-                tsBounds.put("lte", endMs);
-                tsRange.put("timestamp", tsBounds);
-                Map<String, Object> rangeQuery = new HashMap<>();
-                rangeQuery.put("range", tsRange);
-                must.add(rangeQuery);
-
-                if (Objects.equals(rule.getTriggerCondition(), "condition")) {
-                    List<Map<String,Object>> filters = coerceFilterList(rule.getFilters());
-                    for (Map<String, Object> f : filters) {
-                        String field = String.valueOf(f.getOrDefault("field", "")).trim();
-                        Object val = f.get("value");
-                        if (field.isEmpty() || val == null) continue;
-                        String esField = mapEsField(field);
-                        Map<String, Object> matchField = new HashMap<>();
-                        Map<String, Object> matchBody = new HashMap<>();
-                        matchBody.put("query", String.valueOf(val));
-                        matchField.put(esField, matchBody);
-                        Map<String, Object> matchQuery = new HashMap<>();
-                        matchQuery.put("match", matchField);
-                        must.add(matchQuery);
-                    }
-                }
-                bool.put("must", must);
-                queryBody.put("bool", bool);
-                fullBody.put("query", queryBody);
-
-                String json = JSON.writeValueAsString(fullBody);
-                log.info("ES search request: index=event-realtime, body=\n{}", json);
-            } catch (Exception e) {
-                log.warn("Failed to serialize ES query DSL for logging", e);
-            }
-
             List<Map<String,Object>> rawHits = es.searchRaw("event-realtime", query);
             List<Map<String,Object>> hits = rawHits != null ? rawHits : List.of();
 
@@ -0,0 +1,354 @@
+package com.example.web_service.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.web_service.config.SessionCatalogProperties;
+import com.example.web_service.entity.CaptureSession;
+import com.example.web_service.entity.Collector;
+import com.example.web_service.repository.CaptureSessionRepository;
+import com.example.web_service.repository.CollectorRepository;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache;
+import com.example.web_service.service.elasticsearch.EsIndexCatalog;
+import com.example.web_service.service.elasticsearch.EsRollupService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+
+/**
+ * 采集会话目录。
+ * 按 sessionId（ES 文档的 filePath）保存首末时间、各索引文档数与平均连接时长，
+ * 会话相关接口（conn-stats / event-count / query-by-filepath）改为读取一行记录。
+ * - 采集中的会话定时刷新（一次 terms(_index) 聚合请求）
+ * - 采集停止后在 settleMillis 内继续刷新，等待解析结果写完，之后固定为 COMPLETED
+ * - 没有对应采集器（如离线导入）或尚无文档的 COMPLETED 记录不固定，按刷新间隔过期
+ * - 没有记录的会话在首次读取时计算并保存；删除 ES 数据后使对应记录失效
+ */
+@Service
+public class SessionCatalogService {
+    private static final Logger log = LoggerFactory.getLogger(SessionCatalogService.class);
+
+    public static final String RUNNING = "RUNNING";
+    public static final String SETTLING = "SETTLING";
+    public static final String COMPLETED = "COMPLETED";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** 单个索引内该会话的统计 */
+    public record IndexStat(long docs, Long first, Long last, Double avgConnDuration) {
+    }
+
+    /** 会话在一组索引内的汇总 */
+    public record Summary(String sessionId, String status, long docs, Long first, Long last, Double avgConnDuration) {
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsIndexCatalog indexCatalog;
+
+    @Autowired
+    private CaptureSessionRepository sessionRepository;
+
+    @Autowired
+    private CollectorRepository collectorRepository;
+
+    @Autowired
+    private SessionCatalogProperties properties;
+
+    @Autowired
+    private EsRollupService rollupService;
+
+    @Autowired
+    private EsDayPartialCache dayPartialCache;
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 会话在匹配 index 表达式的索引内的汇总；记录不存在或未完成且已过期时先刷新
+     */
+    public Summary summarize(String sessionId, String index) throws IOException {
+        CaptureSession session = getOrRefresh(sessionId);
+        long docs = 0;
+        Long first = null;
+        Long last = null;
+        double durationSum = 0;
+        long durationDocs = 0;
+        for (var e : parseStats(session.getIndexStats()).entrySet()) {
+            if (!EsIndexCatalog.matches(index, e.getKey())) {
+                continue;
+            }
+            IndexStat st = e.getValue();
+            docs += st.docs();
+            if (st.first() != null) first = first == null ? st.first() : Math.min(first, st.first());
+            if (st.last() != null) last = last == null ? st.last() : Math.max(last, st.last());
+            if (st.avgConnDuration() != null) {
+                durationSum += st.avgConnDuration() * st.docs();
+                durationDocs += st.docs();
+            }
+        }
+        return new Summary(sessionId, session.getStatus(), docs, first, last,
+                durationDocs > 0 ? durationSum / durationDocs : null);
+    }
+
+    public CaptureSession getOrRefresh(String sessionId) throws IOException {
+        CaptureSession session = sessionRepository.findBySessionId(sessionId).orElse(null);
+        if (session != null && !isStale(session)) {
+            return session;
+        }
+        return refresh(sessionId);
+    }
+
+    /**
+     * 重新计算会话统计并保存
+     */
+    public CaptureSession refresh(String sessionId) throws IOException {
+        synchronized (locks.computeIfAbsent(sessionId, k -> new Object())) {
+            CaptureSession session = sessionRepository.findBySessionId(sessionId).orElse(null);
+            if (session == null) {
+                session = new CaptureSession();
+                session.setSessionId(sessionId);
+                Collector collector = findCollector(sessionId);
+                session.setCollectorId(collector != null ? collector.getId() : null);
+                session.setStatus(collector != null && isRunning(collector.getStatus()) ? RUNNING : COMPLETED);
+            }
+            Map<String, IndexStat> stats = computeStats(sessionId);
+            long docs = 0;
+            Long first = null;
+            Long last = null;
+            for (IndexStat st : stats.values()) {
+                docs += st.docs();
+                if (st.first() != null) first = first == null ? st.first() : Math.min(first, st.first());
+                if (st.last() != null) last = last == null ? st.last() : Math.max(last, st.last());
+            }
+            session.setTotalDocs(docs);
+            session.setFirstTimestamp(first);
+            session.setLastTimestamp(last);
+            session.setIndexStats(JSON.writeValueAsString(stats));
+            session.setRefreshedAt(LocalDateTime.now());
+            return sessionRepository.save(session);
+        }
+    }
+
+    /**
+     * 采集开始/继续：会话进入定时刷新
+     */
+    public void markRunning(String sessionId, Long collectorId) {
+        updateStatus(sessionId, collectorId, RUNNING, null);
+    }
+
+    /**
+     * 采集停止：settleMillis 内继续刷新，之后固定为最终结果
+     */
+    public void markStopped(String sessionId, Long collectorId) {
+        updateStatus(sessionId, collectorId, SETTLING, LocalDateTime.now());
+    }
+
+    private void updateStatus(String sessionId, Long collectorId, String status, LocalDateTime stoppedAt) {
+        if (!properties.isEnabled() || sessionId == null || sessionId.isBlank()) {
+            return;
+        }
+        synchronized (locks.computeIfAbsent(sessionId, k -> new Object())) {
+            CaptureSession session = sessionRepository.findBySessionId(sessionId).orElseGet(() -> {
+                CaptureSession s = new CaptureSession();
+                s.setSessionId(sessionId);
+                return s;
+            });
+            session.setCollectorId(collectorId);
+            session.setStatus(status);
+            session.setStoppedAt(stoppedAt);
+            sessionRepository.save(session);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.session-catalog.refresh-interval-millis:30000}")
+    public void refreshActive() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<CaptureSession> active;
+        try {
+            active = sessionRepository.findByStatusIn(List.of(RUNNING, SETTLING));
+        } catch (Exception e) {
+            log.warn("Failed to load active capture sessions: {}", e.getMessage());
+            return;
+        }
+        for (CaptureSession session : active) {
+            try {
+                CaptureSession updated = refresh(session.getSessionId());
+                // 采集/导入中的数据可能落在已结束的日期上，使这些日期的部分聚合缓存失效
+                if (updated.getFirstTimestamp() != null && updated.getLastTimestamp() != null) {
+                    dayPartialCache.invalidate(updated.getFirstTimestamp(), updated.getLastTimestamp());
+                }
+                if (SETTLING.equals(updated.getStatus()) && updated.getStoppedAt() != null
+                        && Duration.between(updated.getStoppedAt(), LocalDateTime.now()).toMillis() >= properties.getSettleMillis()) {
+                    updated.setStatus(COMPLETED);
+                    sessionRepository.save(updated);
+                    // 导入的历史数据可能早于汇总的迟到窗口，只重算窗口之前的部分；实时采集的数据已由汇总任务覆盖
+                    if (updated.getFirstTimestamp() != null && updated.getLastTimestamp() != null) {
+                        rollupService.rebuildHistorical(updated.getFirstTimestamp(), updated.getLastTimestamp());
+                    }
+                    log.info("Capture session {} completed: docs={}, first={}, last={}",
+                            updated.getSessionId(), updated.getTotalDocs(), updated.getFirstTimestamp(), updated.getLastTimestamp());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to refresh capture session {}: {}", session.getSessionId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 目录中记录的这些会话的时间范围 [first, last]（毫秒）；任一会话没有记录或首末时间未知时返回 null
+     */
+    public long[] timeRange(Collection<String> sessionIds) {
+        if (sessionIds == null || sessionIds.isEmpty()) {
+            return null;
+        }
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (String sessionId : sessionIds) {
+            CaptureSession session = sessionRepository.findBySessionId(sessionId).orElse(null);
+            if (session == null || session.getFirstTimestamp() == null || session.getLastTimestamp() == null) {
+                return null;
+            }
+            first = Math.min(first, session.getFirstTimestamp());
+            last = Math.max(last, session.getLastTimestamp());
+        }
+        return new long[]{first, last};
+    }
+
+    /**
+     * 删除了这些会话的 ES 数据后调用，下次读取时重新计算
+     */
+    public void evict(Collection<String> sessionIds) {
+        if (sessionIds == null || sessionIds.isEmpty()) {
+            return;
+        }
+        try {
+            sessionRepository.deleteBySessionIdIn(sessionIds);
+        } catch (Exception e) {
+            log.warn("Failed to evict capture sessions {}: {}", sessionIds, e.getMessage());
+        }
+    }
+
+    /**
+     * 按索引/时间删除数据后调用（影响的会话未知）：全部标记为过期，下次读取时重新计算，状态保持不变
+     */
+    public void evictAll() {
+        try {
+            List<CaptureSession> all = sessionRepository.findAll();
+            for (CaptureSession s : all) {
+                s.setRefreshedAt(null);
+            }
+            sessionRepository.saveAll(all);
+        } catch (Exception e) {
+            log.warn("Failed to invalidate capture sessions: {}", e.getMessage());
+        }
+    }
+
+    private boolean isStale(CaptureSession session) {
+        if (session.getRefreshedAt() == null) {
+            return true;
+        }
+        if (COMPLETED.equals(session.getStatus()) && isSettled(session)) {
+            return false;
+        }
+        return Duration.between(session.getRefreshedAt(), LocalDateTime.now()).toMillis() > properties.getRefreshIntervalMillis();
+    }
+
+    // 有对应采集器且已有文档的记录才视为最终结果
+    private static boolean isSettled(CaptureSession session) {
+        return session.getCollectorId() != null && session.getTotalDocs() != null && session.getTotalDocs() > 0;
+    }
+
+    // 优先精确匹配 filePath（keyword / 原字段），无结果时回退到 match，与 query-by-filepath 的策略一致
+    private Map<String, IndexStat> computeStats(String sessionId) throws IOException {
+        Query exact = Query.of(q -> q.bool(b -> b
+                .should(s -> s.term(t -> t.field("filePath.keyword").value(v -> v.stringValue(sessionId))))
+                .should(s -> s.term(t -> t.field("filePath").value(v -> v.stringValue(sessionId))))
+                .minimumShouldMatch("1")));
+        Map<String, IndexStat> stats = aggregate(exact);
+        if (stats.isEmpty()) {
+            stats = aggregate(Query.of(q -> q.match(m -> m.field("filePath").query(sessionId))));
+        }
+        return stats;
+    }
+
+    private Map<String, IndexStat> aggregate(Query query) throws IOException {
+        var resp = esClient.search(s -> s
+                .index(indexCatalog.resolveTimestamped("*"))
+                .size(0)
+                .ignoreUnavailable(true)
+                .allowNoIndices(true)
+                .query(query)
+                .aggregations("by_index", a -> a
+                        .terms(t -> t.field("_index").size(Math.max(1, properties.getMaxIndices())))
+                        .aggregations("first", x -> x.min(m -> m.field("timestamp")))
+                        .aggregations("last", x -> x.max(m -> m.field("timestamp")))
+                        .aggregations("avg_duration", x -> x.avg(m -> m.field("connDuration")))), Void.class);
+        Map<String, IndexStat> out = new LinkedHashMap<>();
+        Aggregate byIndex = resp.aggregations() != null ? resp.aggregations().get("by_index") : null;
+        if (byIndex == null || !byIndex.isSterms()) {
+            return out;
+        }
+        for (var b : byIndex.sterms().buckets().array()) {
+            var aggs = b.aggregations();
+            out.put(b.key().stringValue(), new IndexStat(b.docCount(),
+                    toMillis(aggs.get("first").min().value()),
+                    toMillis(aggs.get("last").max().value()),
+                    finite(aggs.get("avg_duration").avg().value())));
+        }
+        return out;
+    }
+
+    private Collector findCollector(String sessionId) {
+        return collectorRepository.findAll().stream()
+                .filter(c -> sessionId.equals(c.getSessionId()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static boolean isRunning(String collectorStatus) {
+        return "running".equalsIgnoreCase(collectorStatus);
+    }
+
+    private static Map<String, IndexStat> parseStats(String json) {
+        if (json == null || json.isBlank()) {
+            return Map.of();
+        }
+        try {
+            return JSON.readValue(json, new TypeReference<LinkedHashMap<String, IndexStat>>() {});
+        } catch (IOException e) {
+            log.warn("Invalid capture session stats: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static Long toMillis(double v) {
+        return Double.isNaN(v) || Double.isInfinite(v) ? null : (long) v;
+    }
+
+    private static Double finite(double v) {
+        return Double.isNaN(v) || Double.isInfinite(v) ? null : v;
+    }
+}
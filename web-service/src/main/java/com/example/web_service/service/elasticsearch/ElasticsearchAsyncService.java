@@ -5,6 +5,7 @@ import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.json.JsonData;
+import com.example.web_service.model.es.ConnRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -35,6 +36,21 @@ public class ElasticsearchAsyncService {
         );
     }
 
+    // 与 ElasticsearchSyncService.searchConnRecords 行为一致：最多 100 条，过滤空 source
+    public CompletableFuture<List<ConnRecord>> searchConnRecordsAsync(String index, Query query) {
+        return esAsyncClient.search(s -> s
+                .index(index)
+                .query(query)
+                .size(100),
+                ConnRecord.class
+        ).thenApply(response ->
+            response.hits().hits().stream()
+                .map(hit -> hit.source())
+                .filter(source -> source != null)
+                .toList()
+        );
+    }
+
     public CompletableFuture<Map<String, Object>> searchRawAsync(String index, Query query) {
         return esAsyncClient.search(s -> s
                 .index(index)
@@ -12,6 +12,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -23,27 +24,52 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import co.elastic.clients.json.JsonData;
 import co.elastic.clients.elasticsearch.cat.aliases.AliasesRecord;
-import co.elastic.clients.elasticsearch._types.mapping.Property;
 import com.example.web_service.model.es.ConnRecord;
+import com.example.web_service.service.elasticsearch.cache.EsCacheConfig;
 import com.example.web_service.model.es.TrendingData;
 import com.example.web_service.model.es.widget.WidgetQueryRequest;
-import com.example.web_service.model.es.widget.WidgetFilter;
 import java.util.Optional;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
 import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
 import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
 import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
 import co.elastic.clients.elasticsearch._types.Conflicts;
-import co.elastic.clients.elasticsearch.cat.indices.IndicesRecord;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
 
 @Service
 public class ElasticsearchSyncService {
     private static final Logger log = LoggerFactory.getLogger(ElasticsearchSyncService.class);
+
+    /** 各趋势接口返回的序列数上限（terms size），也用于查询前的桶数预估（见 EsBucketBudget） */
+    public static final int PROTOCOL_TREND_TOP = 10;
+    public static final int BANDWIDTH_TREND_PORTS = 100;
+    public static final int NETWORK_PROTOCOL_TREND_TOP = 50;
+    public static final int EVENT_SEVERITY_LEVELS = 3;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
     private ElasticsearchClient esClient;
 
+    @Autowired
+    private EsSchemaRegistry schemaRegistry;
+
+    @Autowired
+    private WidgetQueryCompiler widgetQueryCompiler;
+
+    @Autowired
+    private EsIndexCatalog indexCatalog;
+
+    @Autowired
+    private EsRollupService rollupService;
+
+    @Autowired
+    private EsDayPartialCache dayPartialCache;
+
     public <T> SearchResponse<T> search(SearchRequest request, Class<T> tClass) throws IOException {
         return esClient.search(request, tClass);
     }
@@ -95,7 +121,7 @@ public class ElasticsearchSyncService {
     }
 
     // 统一设置 date_histogram 的 interval，支持 fixedInterval(如 5m/15m/3h/12h/3d/7d/14d/30d/90d/180d) 与 calendarInterval(如 1w/1mon/1q/1y)
-    private void applyInterval(DateHistogramAggregation.Builder h, String interval) {
+    static void applyInterval(DateHistogramAggregation.Builder h, String interval) {
         String s = (interval == null ? "1h" : interval.trim()).toLowerCase();
         // 首先处理日历型（ES 不支持以 fixed 表示年/月/周）
         switch (s) {
@@ -156,6 +182,8 @@ public class ElasticsearchSyncService {
         h.fixedInterval(Time.of(t -> t.time("1h")));
     }
 
+    @Cacheable(cacheNames = EsCacheConfig.ES_AGGREGATIONS, sync = true,
+            key = "@esCacheKeys.trend('trending', #index, #startTime, #endTime, #filePath, #interval)")
     public List<TrendingData> getTrending(String startTime, String endTime, String filePath, String index, String interval) throws IOException {
         // 构建查询条件
         var rangeQuery = new Query.Builder()
@@ -184,9 +212,27 @@ public class ElasticsearchSyncService {
                 )
             );
 
-        // 创建完整的搜索请求
+        // 已结束的日期读取按天缓存的部分结果，只实时查询首尾零头
+        Long startMillis = EsIndexCatalog.toMillis(startTime);
+        Long endMillis = EsIndexCatalog.toMillis(endTime);
+        if (startMillis != null && endMillis != null) {
+            Query filter = filePath != null ? Query.of(q -> q.match(m -> m.field("filePath").query(filePath))) : null;
+            var merged = dayPartialCache.aggregate(new EsDayPartialCache.Spec("trending", index, filter, filePath,
+                    EsDayPartialCache.Shape.HISTOGRAM, null, 0, interval), startMillis, endMillis);
+            if (merged != null) {
+                List<TrendingData> series = new java.util.ArrayList<>();
+                var buckets = merged.series().get("");
+                if (buckets != null) {
+                    buckets.forEach((ts, count) -> series.add(new TrendingData(ts, count)));
+                }
+                return series;
+            }
+        }
+
+        // 创建完整的搜索请求（按时间范围裁剪通配符目标）
+        List<String> targets = indexCatalog.resolve(index, startMillis, endMillis);
         var searchRequest = SearchRequest.of(s -> s
-                .index(index)
+                .index(targets)
                 .size(0)
                 .query(query)
                 .aggregations("trend", a -> a
@@ -238,19 +284,15 @@ public class ElasticsearchSyncService {
     }
 
     public Map<String, Object> searchRawWithPagination(String index, Query query, Integer size, Integer from) throws IOException {
+        return searchRawWithPagination(index, query, size, from, null);
+    }
+
+    /**
+     * fields 为 _source 投影（见 EsSourceFields），为空时返回完整 _source
+     */
+    public Map<String, Object> searchRawWithPagination(String index, Query query, Integer size, Integer from, String fields) throws IOException {
         // 构建SearchRequest
-        SearchRequest searchRequest = SearchRequest.of(s -> s
-                .index(index)
-                .query(query)
-                .size(size)
-                .from(from)
-                .sort(sort -> sort
-                    .field(f -> f
-                        .field("timestamp")
-                        .order(co.elastic.clients.elasticsearch._types.SortOrder.Desc)
-                    )
-                )
-        );
+        SearchRequest searchRequest = buildPaginationRequest(index, query, size, from, fields);
         
         // 输出请求日志
         try {
@@ -284,7 +326,145 @@ public class ElasticsearchSyncService {
         );
     }
 
+    /**
+     * 分页查询请求：timestamp 降序，可选 _source 投影。/query 的 Map 模式与直通模式共用
+     */
+    public SearchRequest buildPaginationRequest(String index, Query query, Integer size, Integer from, String fields) {
+        var source = EsSourceFields.parse(fields);
+        return SearchRequest.of(s -> {
+            s.index(index)
+                .query(query)
+                .size(size)
+                .from(from)
+                .sort(sort -> sort
+                    .field(f -> f
+                        .field("timestamp")
+                        .order(co.elastic.clients.elasticsearch._types.SortOrder.Desc)
+                    )
+                );
+            if (source != null) {
+                s.source(source);
+            }
+            return s;
+        });
+    }
+
+    /**
+     * 基于 PIT + search_after 的游标分页，排序为 timestamp 降序 + _shard_doc 作为并列时的决胜字段。
+     * - cursor 为空：打开 PIT 并返回第一页（仅首页统计 total）
+     * - cursor 非空：沿用游标中的 PIT 与 search_after 继续向后翻页，index 参数被忽略
+     * - fields 为 _source 投影（见 EsSourceFields）
+     * 返回 total / hits / cursor；最后一页 cursor 为 null 且 PIT 已关闭。每页开销与翻页深度无关。
+     */
+    public Map<String, Object> searchRawWithCursor(String index, Query query, Integer size, String cursor, String keepAlive, String fields) throws IOException {
+        var source = EsSourceFields.parse(fields);
+        int pageSize = size != null && size > 0 ? size : 10;
+        String alive = keepAlive != null && !keepAlive.isBlank() ? keepAlive : "2m";
+        boolean firstPage = cursor == null || cursor.isBlank();
+
+        EsCursor current;
+        if (firstPage) {
+            String pitId = esClient.openPointInTime(p -> p
+                    .index(index)
+                    .keepAlive(t -> t.time(alive))
+            ).id();
+            current = new EsCursor(pitId, List.of(), 0L);
+        } else {
+            current = EsCursor.decode(cursor);
+        }
+
+        final EsCursor page = current;
+        SearchResponse<JsonData> response = esClient.search(s -> {
+            s.pit(p -> p.id(page.pitId()).keepAlive(t -> t.time(alive)))
+                    .query(query)
+                    .size(pageSize)
+                    .trackTotalHits(t -> t.enabled(firstPage))
+                    .sort(so -> so.field(f -> f.field("timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Desc)))
+                    .sort(so -> so.field(f -> f.field("_shard_doc").order(co.elastic.clients.elasticsearch._types.SortOrder.Asc)));
+            if (!page.searchAfter().isEmpty()) {
+                s.searchAfter(page.searchAfter());
+            }
+            if (source != null) {
+                s.source(source);
+            }
+            return s;
+        }, JsonData.class);
+
+        List<Map<String, Object>> hits = new java.util.ArrayList<>();
+        List<co.elastic.clients.elasticsearch._types.FieldValue> lastSort = List.of();
+        for (var hit : response.hits().hits()) {
+            lastSort = hit.sort();
+            if (hit.source() != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> result = hit.source().to(Map.class);
+                hits.add(result);
+            }
+        }
+
+        long total = firstPage
+                ? Optional.ofNullable(response.hits().total()).map(t -> t.value()).orElse(0L)
+                : page.total();
+        // PIT id 可能随每次响应变化，始终使用最新的 id
+        String pitId = response.pitId() != null ? response.pitId() : page.pitId();
+
+        String next = null;
+        if (response.hits().hits().size() >= pageSize && !lastSort.isEmpty()) {
+            next = new EsCursor(pitId, lastSort, total).encode();
+        } else {
+            closePointInTime(pitId);
+        }
+
+        Map<String, Object> result = new java.util.HashMap<>();
+        result.put("total", total);
+        result.put("hits", hits);
+        result.put("cursor", next);
+        return result;
+    }
+
+    /**
+     * 提前结束游标分页时释放 PIT
+     */
+    public void closeCursor(String cursor) {
+        closePointInTime(EsCursor.decode(cursor).pitId());
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            esClient.closePointInTime(c -> c.id(pitId));
+        } catch (Exception e) {
+            // PIT 过期后会自动释放，关闭失败不影响结果
+            log.debug("Failed to close point in time: {}", e.getMessage());
+        }
+    }
+
+    @Cacheable(cacheNames = EsCacheConfig.ES_AGGREGATIONS, sync = true,
+            key = "@esCacheKeys.trend('protocolTrends', 'conn-*', #startTime, #endTime, #filePath, #interval)")
     public Map<String, List<TrendingData>> getProtocolTrends(Long startTime, Long endTime, String filePath, String interval) throws IOException {
+        // 不按会话过滤时优先读取预聚合（见 EsRollupService）
+        if (filePath == null || filePath.isBlank()) {
+            Map<String, List<TrendingData>> rolled = rollupService.trends(EsRollupService.SERVICE, startTime, endTime, interval, PROTOCOL_TREND_TOP);
+            if (rolled != null) {
+                rolled.keySet().removeIf(name -> name == null || name.trim().isEmpty() || "-".equals(name.trim()) || "null".equals(name));
+                return normalizeSeriesZeros(rolled);
+            }
+        }
+        Query filePathFilter = filePath != null ? Query.of(q -> q.match(m -> m.field("filePath").query(filePath))) : null;
+        var merged = dayPartialCache.aggregate(new EsDayPartialCache.Spec("protocolTrends", "conn-*", filePathFilter, filePath,
+                EsDayPartialCache.Shape.TERMS_HISTOGRAM, "serviceName", PROTOCOL_TREND_TOP, interval), startTime, endTime);
+        if (merged != null) {
+            if (merged.approximate()) {
+                log.info("Protocol trends top-10 merged from truncated daily terms, result is approximate");
+            }
+            Map<String, List<TrendingData>> result = new java.util.HashMap<>();
+            for (String serviceName : merged.top(PROTOCOL_TREND_TOP)) {
+                if (serviceName != null && !serviceName.trim().isEmpty() && !"-".equals(serviceName.trim()) && !"null".equals(serviceName)) {
+                    List<TrendingData> series = new java.util.ArrayList<>();
+                    merged.series().get(serviceName).forEach((ts, count) -> series.add(new TrendingData(ts, count)));
+                    result.put(serviceName, series);
+                }
+            }
+            return normalizeSeriesZeros(result);
+        }
         // 将时间戳转换为ISO字符串格式
         String startTimeStr = java.time.Instant.ofEpochMilli(startTime).toString();
         String endTimeStr = java.time.Instant.ofEpochMilli(endTime).toString();
@@ -318,11 +498,11 @@ public class ElasticsearchSyncService {
 
         // 使用 terms(serviceName) -> date_histogram 子聚合，按serviceName聚合前10个
         var searchRequest = SearchRequest.of(s -> s
-            .index("conn-*")
+            .index(indexCatalog.resolve("conn-*", startTime, endTime))
             .size(0)
             .query(query)
             .aggregations("by_service", a -> a
-                .terms(t -> t.field("serviceName").size(10)) // 获取前10个serviceName
+                .terms(t -> t.field("serviceName").size(PROTOCOL_TREND_TOP)) // 获取前10个serviceName
                 .aggregations("trend", sub -> sub
                     .dateHistogram(h -> {
                         h.field("timestamp");
@@ -362,30 +542,123 @@ public class ElasticsearchSyncService {
         return normalizeSeriesZeros(result);
     }
 
+    @Cacheable(cacheNames = EsCacheConfig.ES_AGGREGATIONS, sync = true,
+            key = "@esCacheKeys.trend('bandwidthTrends', 'octopusx-data-*', #startTime, #endTime, #filePath, #interval)")
     public Map<String, List<TrendingData>> getBandwidthTrends(Long startTime, Long endTime, String filePath, String interval) throws IOException {
-        Map<String, List<TrendingData>> result = new java.util.HashMap<>();
-        
+        if (filePath == null || filePath.isBlank()) {
+            Map<String, List<TrendingData>> rolled = rollupService.trends(EsRollupService.PORT_BPS, startTime, endTime, interval, BANDWIDTH_TREND_PORTS);
+            if (rolled != null) {
+                Map<String, List<TrendingData>> result = new java.util.HashMap<>();
+                rolled.forEach((port, series) -> {
+                    try {
+                        result.put("channel" + Integer.parseInt(port), series);
+                    } catch (NumberFormatException ignore) {
+                        // 无法解析的端口忽略，与 decodePortTrends 一致
+                    }
+                });
+                return normalizeSeriesZeros(result);
+            }
+        }
         // 将时间戳转换为ISO字符串格式
         String startTimeStr = java.time.Instant.ofEpochMilli(startTime).toString();
         String endTimeStr = java.time.Instant.ofEpochMilli(endTime).toString();
-        
-    // 首先获取所有可用的port/channel（可选 filePath 过滤，索引用通配）
-    Set<Integer> availablePorts = getAvailablePortsWithFilter(startTimeStr, endTimeStr, "octopusx-data-*", filePath);
-        
-        // 为每个port/channel获取趋势数据
-            for (Integer port : availablePorts) {
-                List<TrendingData> channelTrends = getBandwidthTrendingWithFilter(startTimeStr, endTimeStr, port, "octopusx-data-*", interval, filePath);
-                result.put("channel" + port, channelTrends);
+
+        var boolBuilder = new co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder()
+            .must(m -> m.range(r -> r.field("timestamp").gte(JsonData.of(startTimeStr)).lte(JsonData.of(endTimeStr))));
+        if (filePath != null && !filePath.trim().isEmpty()) {
+            boolBuilder.must(m -> m.match(t -> t.field("filePath").query(filePath)));
+        }
+        var query = Query.of(q -> q.bool(boolBuilder.build()));
+
+        // 一次请求完成 port -> 时间桶 -> 平均 bps，替代「先查端口、再逐个端口查趋势」的 N+1 次往返
+        var searchRequest = SearchRequest.of(s -> s
+            .index(indexCatalog.resolve("octopusx-data-*", startTime, endTime))
+            .size(0)
+            .query(query)
+            .aggregations("ports", a -> a
+                .terms(t -> t.field("port").size(BANDWIDTH_TREND_PORTS))
+                .aggregations("trend", t -> t
+                    .dateHistogram(h -> {
+                        h.field("timestamp");
+                        applyInterval(h, interval);
+                        h.format("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+                        h.minDocCount(0);
+                        return h;
+                    })
+                    .aggregations("avg_bps", avg -> avg.avg(av -> av.field("bps")))
+                )
+            )
+        );
+
+        var response = esClient.search(searchRequest, Void.class);
+        Map<String, List<TrendingData>> result = decodePortTrends(
+            response.aggregations() != null ? response.aggregations().get("ports") : null);
+
+        // 统一时间轴，缺失补 0
+        return normalizeSeriesZeros(result);
+    }
+
+    /**
+     * 将 ports(terms) -> trend(date_histogram) -> avg_bps 聚合结果一次遍历解析为 "channel{port}" -> 趋势序列。
+     * port 字段可能映射为数值或字符串，两种 terms 结果都支持；无法解析的端口忽略。
+     */
+    static Map<String, List<TrendingData>> decodePortTrends(co.elastic.clients.elasticsearch._types.aggregations.Aggregate ports) {
+        Map<String, List<TrendingData>> result = new java.util.HashMap<>();
+        if (ports == null) {
+            return result;
+        }
+        if (ports.isLterms()) {
+            for (var b : ports.lterms().buckets().array()) {
+                result.put("channel" + (int) b.key(), decodeBpsTrend(b.aggregations().get("trend")));
+            }
+        } else if (ports.isSterms()) {
+            for (var b : ports.sterms().buckets().array()) {
+                int port;
+                try {
+                    port = Integer.parseInt(b.key().stringValue());
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+                if (port > 0) {
+                    result.put("channel" + port, decodeBpsTrend(b.aggregations().get("trend")));
+                }
             }
+        }
+        return result;
+    }
 
-            // 统一时间轴，缺失补 0
-            return normalizeSeriesZeros(result);
+    private static List<TrendingData> decodeBpsTrend(co.elastic.clients.elasticsearch._types.aggregations.Aggregate trend) {
+        if (trend == null || !trend.isDateHistogram()) {
+            return List.of();
+        }
+        var buckets = trend.dateHistogram().buckets().array();
+        List<TrendingData> series = new java.util.ArrayList<>(buckets.size());
+        for (var b : buckets) {
+            double avgBps = 0.0;
+            var avg = b.aggregations().get("avg_bps");
+            // 空桶的 avg 为 null，客户端解析为 NaN
+            if (avg != null && avg.isAvg() && !Double.isNaN(avg.avg().value())) {
+                avgBps = avg.avg().value();
+            }
+            series.add(new TrendingData(b.key(), Math.round(avgBps)));
+        }
+        return series;
     }
 
     /**
      * 从 conn-realtime 索引聚合 protoName 的时间序列趋势
      */
+    @Cacheable(cacheNames = EsCacheConfig.ES_AGGREGATIONS, sync = true,
+            key = "@esCacheKeys.trend('connProtocolNameTrends', 'conn-*', #startTime, #endTime, #filePath, #interval)")
     public Map<String, List<TrendingData>> getConnProtocolNameTrends(Long startTime, Long endTime, String filePath, String interval) throws IOException {
+        if (filePath == null || filePath.isBlank()) {
+            Map<String, List<TrendingData>> rolled = rollupService.trends(EsRollupService.PROTO, startTime, endTime, interval, NETWORK_PROTOCOL_TREND_TOP);
+            if (rolled != null) {
+                Map<String, List<TrendingData>> result = new java.util.HashMap<>();
+                rolled.forEach((proto, series) -> result.put(proto.toUpperCase(), series));
+                return normalizeSeriesZeros(result);
+            }
+        }
         // 将时间戳转换为ISO字符串格式
         String startTimeStr = java.time.Instant.ofEpochMilli(startTime).toString();
         String endTimeStr = java.time.Instant.ofEpochMilli(endTime).toString();
@@ -419,11 +692,11 @@ public class ElasticsearchSyncService {
 
         // 重构：使用 terms(protoName) -> date_histogram 子聚合，时间桶补齐零
         var searchRequest = SearchRequest.of(s -> s
-            .index("conn-*")
+            .index(indexCatalog.resolve("conn-*", startTime, endTime))
             .size(0)
             .query(query)
             .aggregations("by_proto", a -> a
-                .terms(t -> t.field("protoName").size(50))
+                .terms(t -> t.field("protoName").size(NETWORK_PROTOCOL_TREND_TOP))
                 .aggregations("trend", sub -> sub
                     .dateHistogram(h -> {
                         h.field("timestamp");
@@ -457,6 +730,61 @@ public class ElasticsearchSyncService {
         return normalizeSeriesZeros(result);
     }
 
+    /**
+     * event-* 按 alert.severity 统计的事件数趋势（key 为 severity 数值：1高/2中/3低）
+     */
+    @Cacheable(cacheNames = EsCacheConfig.ES_AGGREGATIONS, sync = true,
+            key = "@esCacheKeys.trend('eventSeverityTrends', 'event-*', #startTime, #endTime, #filePath, #interval)")
+    public Map<String, List<TrendingData>> getEventSeverityTrends(Long startTime, Long endTime, String filePath, String interval) throws IOException {
+        if (filePath == null || filePath.isBlank()) {
+            Map<String, List<TrendingData>> rolled = rollupService.trends(EsRollupService.SEVERITY, startTime, endTime, interval, 10);
+            if (rolled != null) {
+                return normalizeSeriesZeros(rolled);
+            }
+        }
+        var boolBuilder = new co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder()
+            .must(m -> m.range(r -> r.field("timestamp").gte(JsonData.of(startTime)).lte(JsonData.of(endTime))));
+        if (filePath != null && !filePath.isBlank()) {
+            boolBuilder.must(m -> m.match(t -> t.field("filePath").query(filePath)));
+        }
+        var query = Query.of(q -> q.bool(boolBuilder.build()));
+
+        var searchRequest = SearchRequest.of(s -> s
+            .index(indexCatalog.resolve("event-*", startTime, endTime))
+            .size(0)
+            .allowNoIndices(true)
+            .ignoreUnavailable(true)
+            .query(query)
+            .aggregations("by_sev", a -> a
+                .terms(t -> t.field("alert.severity").size(10))
+                .aggregations("trend", sub -> sub
+                    .dateHistogram(h -> {
+                        h.field("timestamp");
+                        applyInterval(h, interval);
+                        h.minDocCount(0);
+                        return h;
+                    })
+                )
+            )
+        );
+
+        var response = esClient.search(searchRequest, Void.class);
+        Map<String, List<TrendingData>> result = new java.util.HashMap<>();
+        var bySev = response.aggregations() != null ? response.aggregations().get("by_sev") : null;
+        if (bySev == null || !bySev.isLterms()) return java.util.Collections.emptyMap();
+        for (var sb : bySev.lterms().buckets().array()) {
+            var trendAgg = sb.aggregations().get("trend");
+            if (trendAgg == null || !trendAgg.isDateHistogram()) continue;
+            List<TrendingData> series = trendAgg.dateHistogram().buckets().array().stream()
+                .map(b -> new TrendingData(b.key(), b.docCount()))
+                .collect(Collectors.toList());
+            result.put(String.valueOf(sb.key()), series);
+        }
+
+        // 统一时间轴，缺失补 0
+        return normalizeSeriesZeros(result);
+    }
+
     /**
      * 将每个系列的时间戳对齐到并集时间轴，并为缺失的时间桶补 0。
      * 要求每个系列的点按时间升序或可无序；输出按时间升序。
@@ -582,70 +910,6 @@ public class ElasticsearchSyncService {
         return portSet;
     }
 
-    // 带 filePath 过滤的可用端口查询
-    private Set<Integer> getAvailablePortsWithFilter(String startTime, String endTime, String index, String filePath) throws IOException {
-        // 时间范围
-        var rangeQuery = new Query.Builder()
-            .range(r -> r
-                .field("timestamp")
-                .gte(JsonData.of(startTime))
-                .lte(JsonData.of(endTime))
-            );
-
-        var boolBuilder = new co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder()
-            .must(rangeQuery.build());
-        if (filePath != null && !filePath.trim().isEmpty()) {
-            boolBuilder.must(m -> m
-                .match(t -> t
-                    .field("filePath")
-                    .query(filePath)
-                )
-            );
-        }
-        var query = Query.of(q -> q.bool(boolBuilder.build()));
-
-        var searchRequest = SearchRequest.of(s -> s
-            .index(index)
-            .size(0)
-            .query(query)
-            .aggregations("ports", a -> a
-                .terms(t -> t.field("port").size(100))
-            )
-        );
-
-        var response = esClient.search(searchRequest, Void.class);
-        if (response.aggregations() == null) return Set.of();
-        var ports = response.aggregations().get("ports");
-        if (ports == null) return Set.of();
-        
-        // 检查聚合结果的类型，支持 Long 和 String 类型
-        Set<Integer> portSet = new java.util.HashSet<>();
-        try {
-            // 尝试作为 Long terms 处理
-            var buckets = ports.lterms().buckets().array();
-            portSet = buckets.stream().map(b -> (int)b.key()).collect(Collectors.toSet());
-        } catch (IllegalStateException e) {
-            try {
-                // 如果失败，尝试作为 String terms 处理
-                var buckets = ports.sterms().buckets().array();
-                portSet = buckets.stream()
-                    .map(b -> {
-                        try {
-                            return Integer.parseInt(b.key().stringValue());
-                        } catch (NumberFormatException ex) {
-                            return 0; // 无法解析的端口号，返回0作为默认值
-                        }
-                    })
-                    .filter(port -> port > 0) // 过滤掉无效的端口号
-                    .collect(Collectors.toSet());
-            } catch (IllegalStateException e2) {
-                // 如果两种类型都不匹配，返回空集合
-                return Set.of();
-            }
-        }
-        return portSet;
-    }
-
     @SuppressWarnings("unused")
     private List<TrendingData> getBandwidthTrending(String startTime, String endTime, int port, String index, String interval) throws IOException {
         // 构建查询条件 - 包含时间范围和port过滤
@@ -738,80 +1002,15 @@ public class ElasticsearchSyncService {
         return result;
     }
 
-    // 带 filePath 过滤的带宽趋势查询（bps 时间桶平均）
-    private List<TrendingData> getBandwidthTrendingWithFilter(String startTime, String endTime, int port, String index, String interval, String filePath) throws IOException {
-        var rangeQuery = new Query.Builder()
-            .range(r -> r
-                .field("timestamp")
-                .gte(JsonData.of(startTime))
-                .lte(JsonData.of(endTime))
-            );
-        var portQuery = new Query.Builder()
-            .term(t -> t
-                .field("port")
-                .value(port)
-            );
-        var boolBuilder = new co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder()
-            .must(rangeQuery.build())
-            .must(portQuery.build());
-        if (filePath != null && !filePath.trim().isEmpty()) {
-            boolBuilder.must(m -> m
-                .match(t -> t
-                    .field("filePath")
-                    .query(filePath)
-                )
-            );
-        }
-        var query = Query.of(q -> q.bool(boolBuilder.build()));
-
-        var searchRequest = SearchRequest.of(s -> s
-            .index(index)
-            .size(0)
-            .query(query)
-            .aggregations("trend", a -> a
-                .dateHistogram(h -> {
-                    h.field("timestamp");
-                    applyInterval(h, interval);
-                    h.format("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
-                    h.minDocCount(0);
-                    return h;
-                })
-                .aggregations("avg_bps", avg -> avg
-                    .avg(av -> av.field("bps"))
-                )
-            )
-        );
-
-        var response = esClient.search(searchRequest, Void.class);
-        if (response.aggregations() == null) return List.of();
-        var trend = response.aggregations().get("trend");
-        if (trend == null || trend.dateHistogram() == null) return List.of();
-        var buckets = trend.dateHistogram().buckets().array();
-        return buckets.stream().map(b -> {
-            double avgBps = 0.0;
-            var avg = b.aggregations().get("avg_bps");
-            if (avg != null && avg.avg() != null) {
-                try {
-                    Double v = avg.avg().value();
-                    if (v != null) avgBps = v.doubleValue();
-                } catch (Exception ignore) {}
-            }
-            TrendingData td = new TrendingData();
-            td.setTimestamp(b.key());
-            td.setCount((long) Math.round(avgBps));
-            return td;
-        }).collect(Collectors.toList());
-    }
-
-    /**
-     * 获取serviceName字段的聚合统计数据
-     * @param topN 返回Top N的数据条数
-     * @return 聚合结果
-     * @throws IOException
-     */
-    public Map<String, Object> getServiceNameAggregation(Integer topN) throws IOException {
-        return getServiceNameAggregation(topN, null, null, null);
-    }
+    /**
+     * 获取serviceName字段的聚合统计数据
+     * @param topN 返回Top N的数据条数
+     * @return 聚合结果
+     * @throws IOException
+     */
+    public Map<String, Object> getServiceNameAggregation(Integer topN) throws IOException {
+        return getServiceNameAggregation(topN, null, null, null);
+    }
 
     /**
      * 获取serviceName字段的聚合统计数据（支持时间范围过滤和文件路径过滤）
@@ -822,14 +1021,59 @@ public class ElasticsearchSyncService {
      * @return 聚合结果
      * @throws IOException
      */
+    @Cacheable(cacheNames = EsCacheConfig.ES_AGGREGATIONS, sync = true,
+            key = "@esCacheKeys.topN('serviceNameAggregation', 'conn-*', #startTime, #endTime, #filePath, #topN)")
     public Map<String, Object> getServiceNameAggregation(Integer topN, Long startTime, Long endTime, String filePath) throws IOException {
         log.info("Getting serviceName aggregation with topN: {}, startTime: {}, endTime: {}, filePath: {}", topN, startTime, endTime, filePath);
-        String[] possibleFields = {"serviceName"};
+        // 字段类型取自 EsSchemaRegistry：serviceName 为 text 时直接使用 .keyword
+        String serviceField = schemaRegistry.aggregatableField("conn-*", "serviceName");
+        if (startTime != null && endTime != null && (filePath == null || filePath.trim().isEmpty())) {
+            Map<String, Long> rolled = rollupService.totals(EsRollupService.SERVICE, startTime, endTime, topN);
+            if (rolled != null && !rolled.isEmpty()) {
+                List<Map<String, Object>> data = new java.util.ArrayList<>();
+                rolled.forEach((serviceName, count) -> {
+                    Map<String, Object> item = new java.util.HashMap<>();
+                    item.put("serviceName", serviceName);
+                    item.put("count", count);
+                    data.add(item);
+                });
+                Map<String, Object> result = new java.util.HashMap<>();
+                result.put("data", data);
+                result.put("total", data.size());
+                result.put("field", serviceField != null ? serviceField : "serviceName");
+                return result;
+            }
+        }
+        if (startTime != null && endTime != null) {
+            Query filePathFilter = filePath != null && !filePath.trim().isEmpty()
+                    ? Query.of(q -> q.match(m -> m.field("filePath").query(filePath))) : null;
+            String field = serviceField != null ? serviceField : "serviceName";
+            var merged = dayPartialCache.aggregate(new EsDayPartialCache.Spec("serviceNameAggregation", "conn-*", filePathFilter,
+                    filePathFilter != null ? filePath : null, EsDayPartialCache.Shape.TERMS, field, topN, null), startTime, endTime);
+            if (merged != null && !merged.series().isEmpty()) {
+                List<Map<String, Object>> data = new java.util.ArrayList<>();
+                for (String serviceName : merged.top(topN)) {
+                    Map<String, Object> item = new java.util.HashMap<>();
+                    item.put("serviceName", serviceName);
+                    item.put("count", merged.total(serviceName));
+                    data.add(item);
+                }
+                Map<String, Object> result = new java.util.HashMap<>();
+                result.put("data", data);
+                result.put("total", data.size());
+                result.put("field", field);
+                // 由按天的 terms 合并而来：某天分组被截断时 Top N 可能不精确
+                result.put("approximate", merged.approximate());
+                return result;
+            }
+        }
+        String[] possibleFields = {serviceField != null ? serviceField : "serviceName"};
         for (String field : possibleFields) {
             try {
                 log.info("Trying field: {}", field);
                 SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
-                    .index("conn-*")
+                    .index(startTime != null && endTime != null
+                            ? indexCatalog.resolve("conn-*", startTime, endTime) : List.of("conn-*"))
                     .size(0);
                 
                 // 构建查询条件
@@ -950,16 +1194,22 @@ public class ElasticsearchSyncService {
      */
     public Map<String, Object> getServiceNameAggregation(Integer topN, Long startTime, Long endTime) throws IOException {
         log.info("Getting serviceName aggregation with topN: {}, startTime: {}, endTime: {}", topN, startTime, endTime);
-        String[] possibleFields = {"serviceName", "protoName", "serviceName.keyword", "protoName.keyword"};
+        // 通过 EsSchemaRegistry 直接选出可聚合字段（text 字段自动使用 .keyword），不再逐个试查；
+        // 仅当 serviceName 无数据时才回退到 protoName。字段信息不可用时沿用原有候选列表
+        List<String> resolvedFields = Stream.of("serviceName", "protoName")
+            .map(f -> schemaRegistry.aggregatableField("conn-realtime", f))
+            .filter(Objects::nonNull)
+            .toList();
+        String[] possibleFields = resolvedFields.isEmpty()
+            ? new String[]{"serviceName", "protoName", "serviceName.keyword", "protoName.keyword"}
+            : resolvedFields.toArray(new String[0]);
         for (String field : possibleFields) {
             try {
                 log.info("Trying field: {}", field);
                 SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
                     .index("conn-realtime")
                     .size(0);
-                boolean hasTimeRange = false;
                 if (startTime != null && endTime != null) {
-                    hasTimeRange = true;
                     log.info("Adding time range filter: {} to {}", startTime, endTime);
                     searchRequestBuilder.query(q -> q
                         .range(r -> r
@@ -979,34 +1229,6 @@ public class ElasticsearchSyncService {
                     )
                     .build();
 
-                // 打印完整查询（便于直接在 Kibana Console 中粘贴执行）
-                java.util.Map<String, Object> kibanaQuery = new java.util.HashMap<>();
-                kibanaQuery.put("size", 0);
-                if (hasTimeRange) {
-                    kibanaQuery.put("query", java.util.Map.of(
-                        "range", java.util.Map.of(
-                            "timestamp", java.util.Map.of(
-                                "gte", startTime,
-                                "lte", endTime
-                            )
-                        )
-                    ));
-                }
-                kibanaQuery.put("aggs", java.util.Map.of(
-                    "service_names", java.util.Map.of(
-                        "terms", java.util.Map.of(
-                            "field", field,
-                            "size", topN,
-                            "order", java.util.Map.of("_count", "desc")
-                        )
-                    )
-                ));
-                log.info("=== Full ES Query (Kibana Console) ===");
-                log.info("GET /conn-realtime/_search");
-                // 修复日志输出的字符串格式
-                log.info("{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(kibanaQuery));
-                log.info("=== End ES Query ===");
-
                 var response = esClient.search(searchRequest, Map.class);
                 log.info("ServiceName aggregation search completed for field: {}", field);
                 if (response.aggregations() == null) {
@@ -1138,851 +1360,93 @@ public class ElasticsearchSyncService {
      * @return list of field information
      */
     public List<Map<String, String>> listIndexFields(String index, String fieldTypeFilter) throws IOException {
-        var resp = esClient.indices().getMapping(g -> g.index(index));
-        var direct = resp.result().get(index);
-        List<Map<String, String>> fields = new java.util.ArrayList<>();
-        if (direct != null && direct.mappings() != null && direct.mappings().properties() != null) {
-            collectFields(direct.mappings().properties(), fields, "");
-        } else {
-            // Treat parameter as alias -> merge all concrete index mappings
-            resp.result().values().forEach(im -> {
-                if (im.mappings() != null && im.mappings().properties() != null) {
-                    collectFields(im.mappings().properties(), fields, "");
-                }
-            });
-        }
-        // Deduplicate by name keeping first occurrence
-        Map<String, Map<String, String>> dedup = new java.util.LinkedHashMap<>();
-        for (Map<String, String> f : fields) {
-            dedup.putIfAbsent(f.get("name"), f);
-        }
-        
-        Stream<Map<String, String>> fieldStream = dedup.values().stream()
-                .filter(f -> {
-                    String t = f.get("type");
-                    return t != null && !t.equals("object") && !t.equals("nested");
-                });
+        // 字段信息来自 EsSchemaRegistry（_field_caps 缓存），别名/通配会自动合并各索引字段
+        Stream<Map<String, String>> fieldStream = schemaRegistry.fieldList(index).stream();
         
         // Apply field type filtering
         if ("numeric".equalsIgnoreCase(fieldTypeFilter)) {
             fieldStream = fieldStream.filter(f -> {
                 String fieldType = f.get("type");
-                return isNumericType(fieldType);
+                return EsSchemaRegistry.isNumericType(fieldType);
             });
         } else if ("text".equalsIgnoreCase(fieldTypeFilter)) {
             fieldStream = fieldStream.filter(f -> {
                 String fieldType = f.get("type");
-                return isTextType(fieldType);
+                return EsSchemaRegistry.isTextType(fieldType);
             });
         }
         
-        return fieldStream
-                .sorted(java.util.Comparator.comparing(m -> m.get("name")))
-                .collect(Collectors.toList());
-    }
-
-    private void collectFields(Map<String, Property> props, List<Map<String, String>> out, String prefix) {
-        for (var entry : props.entrySet()) {
-            String fieldName = prefix.isEmpty() ? entry.getKey() : prefix + "." + entry.getKey();
-            Property p = entry.getValue();
-            String type = p._kind().jsonValue();
-            if (p.isObject()) {
-                if (p.object().properties() != null) {
-                    collectFields(p.object().properties(), out, fieldName);
-                }
-            } else if (p.isNested()) {
-                if (p.nested().properties() != null) {
-                    collectFields(p.nested().properties(), out, fieldName);
-                }
-            } else {
-                out.add(Map.of("name", fieldName, "type", type));
-            }
-        }
-    }
-
-    /**
-     * Check if a field is a numeric type suitable for Y-axis aggregations
-     */
-    private boolean isNumericField(String index, String fieldName) throws IOException {
-        try {
-            var resp = esClient.indices().getMapping(g -> g.index(index));
-            // Check all index mappings (in case index is an alias)
-            for (var indexMapping : resp.result().values()) {
-                if (indexMapping.mappings() != null && indexMapping.mappings().properties() != null) {
-                    Property fieldProperty = findFieldProperty(indexMapping.mappings().properties(), fieldName);
-                    if (fieldProperty != null) {
-                        String fieldType = fieldProperty._kind().jsonValue();
-                        return isNumericType(fieldType);
-                    }
-                }
-            }
-            return false;
-        } catch (Exception e) {
-            log.warn("Error checking field type for field '{}' in index '{}': {}", fieldName, index, e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Find a field property by name, supporting nested field names (e.g., "parent.child")
-     */
-    private Property findFieldProperty(Map<String, Property> properties, String fieldName) {
-        if (fieldName == null || fieldName.isBlank()) {
-            return null;
-        }
-        
-        String[] parts = fieldName.split("\\.");
-        Map<String, Property> currentProperties = properties;
-        
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            Property property = currentProperties.get(part);
-            
-            if (property == null) {
-                return null;
-            }
-            
-            if (i == parts.length - 1) {
-                // This is the final part, return the property
-                return property;
-            }
-            
-            // Navigate to nested properties
-            if (property.isObject() && property.object().properties() != null) {
-                currentProperties = property.object().properties();
-            } else if (property.isNested() && property.nested().properties() != null) {
-                currentProperties = property.nested().properties();
-            } else {
-                return null; // Can't navigate further
-            }
-        }
-        
-        return null;
+        return fieldStream.collect(Collectors.toList());
     }
 
     /**
-     * Check if a field type is numeric
+     * 执行单个 Widget 查询：查询计划按 Widget 定义缓存（见 WidgetQueryCompiler），每次只绑定时间范围与过滤值
      */
-    private boolean isNumericType(String fieldType) {
-        if (fieldType == null) {
-            return false;
-        }
-        
-        switch (fieldType.toLowerCase()) {
-            case "long":
-            case "integer":
-            case "short":
-            case "byte":
-            case "double":
-            case "float":
-            case "half_float":
-            case "scaled_float":
-                return true;
-            default:
-                return false;
+    public Map<String,Object> executeWidgetQuery(WidgetQueryRequest req) throws IOException {
+        WidgetQueryPlan.Bound prepared = widgetQueryCompiler.prepare(req);
+        if (prepared.error() != null) {
+            return prepared.error();
         }
+        // 按 Widget 类型区分调用指标，便于定位拖慢 ES 的仪表盘查询
+        SearchResponse<JsonData> resp = EsMetrics.withOperation("widget:" + req.getWidgetType(),
+                () -> esClient.search(prepared.toSearchRequest(), JsonData.class));
+        return prepared.decode(resp);
     }
 
     /**
-     * Check if a field type is text-based (suitable for categories/grouping)
+     * 批量执行多个 Widget 查询：所有可执行的 Widget 合并为一次 _msearch 请求。
+     * 返回结果与请求一一对应；单个 Widget 构建失败或 ES 报错只体现在对应位置的 error 字段中，不影响其它 Widget。
      */
-    private boolean isTextType(String fieldType) {
-        if (fieldType == null) {
-            return false;
-        }
-        
-        switch (fieldType.toLowerCase()) {
-            case "text":
-            case "keyword":
-            case "constant_keyword":
-            case "wildcard":
-                return true;
-            default:
-                return false;
+    public List<Map<String,Object>> executeWidgetQueries(List<WidgetQueryRequest> reqs) throws IOException {
+        if (reqs == null || reqs.isEmpty()) {
+            return List.of();
         }
-    }
-
-    public Map<String,Object> executeWidgetQuery(WidgetQueryRequest req) throws IOException {
-        String index = req.getIndex();
-        long now = System.currentTimeMillis();
-        long sevenDaysMillis = 7L * 24 * 60 * 60 * 1000;
-        long start = req.getStartTime() != null ? req.getStartTime() : (now - sevenDaysMillis);
-        long end = req.getEndTime() != null ? req.getEndTime() : now;
-
-        // debug request with full object details
-        log.info("Execute widget query: index={}, widgetType={}, aggField={}, aggType={}, yField={}", 
-            req.getIndex(), req.getWidgetType(), req.getAggregationField(), req.getAggregationType(), req.getYField());
-        log.info("Request object details: req.toString()={}", req);
-        log.info("YField detailed check: yField='{}', isNull={}, isEmpty={}", 
-            req.getYField(), req.getYField() == null, req.getYField() != null ? req.getYField().isEmpty() : "null");
-        log.info("Time range: {} to {} (start={}, end={})", 
-            java.time.Instant.ofEpochMilli(start), java.time.Instant.ofEpochMilli(end), start, end);
-            
-        // Extract and validate axis configuration
-        // For now, we use yField as the primary axis field and timestamp as default x-axis
-        String yFieldParam = req.getYField();
-        String aggField = req.getAggregationField();
-        String aggType = req.getAggregationType();
-        if (aggType == null || aggType.isBlank()) aggType = "count";
-        
-        // Determine axis mapping based on widget type and field types
-        final String chartXField;
-        final String chartYField;
-        
-        // Smart axis detection: if yField is provided and is NOT a time field, use it for X-axis (categories)
-        if (yFieldParam != null && !yFieldParam.isBlank() && !"null".equals(yFieldParam)) {
-            boolean yFieldIsTime = yFieldParam.equals("timestamp") || yFieldParam.contains("time") || yFieldParam.contains("date");
-            log.info("Axis mapping decision: yFieldParam='{}', yFieldIsTime={}", yFieldParam, yFieldIsTime);
-            if (yFieldIsTime) {
-                // Y-field is a time field, use it for x-axis (time series)
-                chartXField = yFieldParam;
-                chartYField = aggField; // Use aggregation field for y-axis values
-                log.info("Using TIME-based mapping: chartXField='{}', chartYField='{}'", chartXField, chartYField);
-            } else {
-                // Y-field is categorical, use it for grouping (becomes x-axis in terms aggregation)
-                chartXField = yFieldParam; // Category field for terms aggregation
-                chartYField = aggField; // Metric field for y-axis values
-                log.info("Using CATEGORY-based mapping: chartXField='{}', chartYField='{}'", chartXField, chartYField);
+        List<Map<String,Object>> results = new java.util.ArrayList<>(java.util.Collections.nCopies(reqs.size(), null));
+        List<WidgetQueryPlan.Bound> searches = new java.util.ArrayList<>();
+        List<Integer> positions = new java.util.ArrayList<>();
+        for (int i = 0; i < reqs.size(); i++) {
+            try {
+                WidgetQueryPlan.Bound prepared = widgetQueryCompiler.prepare(reqs.get(i));
+                if (prepared.error() != null) {
+                    results.set(i, prepared.error());
+                } else {
+                    searches.add(prepared);
+                    positions.add(i);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to build widget query #{}: {}", i, e.getMessage());
+                results.set(i, Map.of("error", String.valueOf(e.getMessage())));
             }
-        } else {
-            // Default: use timestamp for x-axis time series
-            chartXField = "timestamp";
-            chartYField = null; // Will use document count
-            log.info("Using DEFAULT mapping: chartXField='{}', chartYField='{}' (yFieldParam was: '{}')", chartXField, chartYField, yFieldParam);
         }
-        
-        log.info("Chart axis mapping: X-axis='{}', Y-axis='{}', aggField='{}', aggType='{}'", 
-            chartXField, chartYField, aggField, aggType);
-        if (req.getFilters() != null && !req.getFilters().isEmpty()) {
-            log.info("Applied filters:");
-            for (WidgetFilter f : req.getFilters()) {
-                log.info("  - field: {}, operator: {}, value: {}", f.getField(), f.getOperator(), f.getValue());
-            }
-        } else {
-            log.info("No filters applied");
+        if (searches.isEmpty()) {
+            return results;
         }
 
-        var boolBuilder = new co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder();
-        boolBuilder.must(m -> m.range(r -> r.field("timestamp").gte(JsonData.of(start)).lte(JsonData.of(end))));
-        if (req.getFilters() != null) {
-            for (WidgetFilter f : req.getFilters()) {
-                if (f.getField() == null || f.getField().isBlank() || f.getOperator() == null) continue;
-                switch (f.getOperator()) {
-                    case "exists":
-                        boolBuilder.must(m -> m.exists(e -> e.field(f.getField())));
-                        break;
-                    case "not_exists":
-                        boolBuilder.must(m -> m.bool(b -> b.mustNot(n -> n.exists(e -> e.field(f.getField())))));
-                        break;
-                    case "eq":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            String v = f.getValue();
-                            boolBuilder.must(m -> m.term(t -> t.field(f.getField()).value(vb -> vb.stringValue(v))));
-                        }
-                        break;
-                    case "neq":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            String v = f.getValue();
-                            boolBuilder.must(m -> m.bool(b -> b.mustNot(n -> n.term(t -> t.field(f.getField()).value(vb -> vb.stringValue(v))))));
-                        }
-                        break;
-                    case "gt":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            String v = f.getValue();
-                            boolBuilder.must(m -> m.range(r -> r.field(f.getField()).gt(JsonData.of(v))));
-                        }
-                        break;
-                    case "gte":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            String v = f.getValue();
-                            boolBuilder.must(m -> m.range(r -> r.field(f.getField()).gte(JsonData.of(v))));
-                        }
-                        break;
-                    case "lt":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            String v = f.getValue();
-                            boolBuilder.must(m -> m.range(r -> r.field(f.getField()).lt(JsonData.of(v))));
-                        }
-                        break;
-                    case "lte":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            String v = f.getValue();
-                            boolBuilder.must(m -> m.range(r -> r.field(f.getField()).lte(JsonData.of(v))));
-                        }
-                        break;
-                    default:
-                        break;
-                }
-            }
+        MsearchRequest.Builder msb = new MsearchRequest.Builder();
+        for (WidgetQueryPlan.Bound prepared : searches) {
+            msb.searches(prepared.toRequestItem());
         }
-        Query finalQuery = Query.of(q -> q.bool(boolBuilder.build()));
-        
-        // Log the final query structure with Kibana-compatible format
-        log.info("Final ES Query structure: {}", objectMapper.writeValueAsString(finalQuery));
-        
-        // Create a properly formatted Kibana query map for better readability
-        Map<String, Object> queryMap = new java.util.HashMap<>();
-        Map<String, Object> boolMap = new java.util.HashMap<>();
-        List<Map<String, Object>> mustClauses = new java.util.ArrayList<>();
-        
-        // Add time range
-        mustClauses.add(Map.of(
-            "range", Map.of(
-                "timestamp", Map.of(
-                    "gte", start,
-                    "lte", end
-                )
-            )
-        ));
-        
-        // Add filters
-        if (req.getFilters() != null) {
-            for (WidgetFilter f : req.getFilters()) {
-                if (f.getField() == null || f.getField().isBlank() || f.getOperator() == null) continue;
-                Map<String, Object> filterClause = new java.util.HashMap<>();
-                switch (f.getOperator()) {
-                    case "exists":
-                        filterClause.put("exists", Map.of("field", f.getField()));
-                        break;
-                    case "not_exists":
-                        filterClause.put("bool", Map.of("must_not", List.of(Map.of("exists", Map.of("field", f.getField())))));
-                        break;
-                    case "eq":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            filterClause.put("term", Map.of(f.getField(), Map.of("value", f.getValue())));
-                        }
-                        break;
-                    case "neq":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            filterClause.put("bool", Map.of("must_not", List.of(Map.of("term", Map.of(f.getField(), Map.of("value", f.getValue()))))));
-                        }
-                        break;
-                    case "gt":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            filterClause.put("range", Map.of(f.getField(), Map.of("gt", f.getValue())));
-                        }
-                        break;
-                    case "gte":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            filterClause.put("range", Map.of(f.getField(), Map.of("gte", f.getValue())));
-                        }
-                        break;
-                    case "lt":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            filterClause.put("range", Map.of(f.getField(), Map.of("lt", f.getValue())));
-                        }
-                        break;
-                    case "lte":
-                        if (f.getValue() != null && !f.getValue().isBlank()) {
-                            filterClause.put("range", Map.of(f.getField(), Map.of("lte", f.getValue())));
-                        }
-                        break;
-                }
-                if (!filterClause.isEmpty()) {
-                    mustClauses.add(filterClause);
-                }
-            }
-        }
-        
-        boolMap.put("must", mustClauses);
-        queryMap.put("bool", boolMap);
-        
-        log.info("=== Kibana Query Structure ===");
-        log.info("{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(Map.of("query", queryMap)));
-        log.info("=== End Query Structure ===");
-
-        String widgetType = req.getWidgetType();
-        if (widgetType != null && !"table".equalsIgnoreCase(widgetType)) {
-            // PIE chart separate logic (terms aggregation)
-            if ("pie".equalsIgnoreCase(widgetType)) {
-                if (aggField == null || aggField.isBlank()) {
-                    return Map.of("error", "Aggregation field required for pie widget");
-                }
-                if (aggType == null || aggType.isBlank()) aggType = "count";
-                
-                // For pie charts, aggField is the category field (text field)
-                // metricField is used for value calculation (numeric field)
-                boolean docCountMode = "count".equalsIgnoreCase(aggType);
-                String metricField = req.getMetricField();
-                
-                // Check if we have a metric field for non-count aggregations
-                if (!docCountMode && (metricField == null || metricField.isBlank())) {
-                    return Map.of("error", "Metric field is required for " + aggType + " aggregation in pie chart");
-                }
-                
-                var srb = new SearchRequest.Builder()
-                        .index(index)
-                        .size(0)
-                        .query(finalQuery);
-                
-                if (docCountMode) {
-                    // Simple terms aggregation for count
-                    srb.aggregations("pie", a -> a.terms(t -> t.field(aggField).size(10)));
+        MsearchResponse<JsonData> msResp = esClient.msearch(msb.build(), JsonData.class);
+        List<MultiSearchResponseItem<JsonData>> items = msResp.responses();
+        for (int j = 0; j < searches.size(); j++) {
+            int pos = positions.get(j);
+            MultiSearchResponseItem<JsonData> item = j < items.size() ? items.get(j) : null;
+            try {
+                if (item == null) {
+                    results.set(pos, Map.of("error", "No response for widget query"));
+                } else if (item.isFailure()) {
+                    var cause = item.failure().error();
+                    String reason = cause != null && cause.reason() != null ? cause.reason() : String.valueOf(cause);
+                    results.set(pos, Map.of("error", reason));
                 } else {
-                    // Terms aggregation with metric sub-aggregation
-                    switch (aggType) {
-                        case "sum":
-                            srb.aggregations("pie", a -> a.terms(t -> t.field(aggField).size(10))
-                                    .aggregations("metric", sub -> sub.sum(m -> m.field(metricField))));
-                            break;
-                        case "avg":
-                            srb.aggregations("pie", a -> a.terms(t -> t.field(aggField).size(10))
-                                    .aggregations("metric", sub -> sub.avg(m -> m.field(metricField))));
-                            break;
-                        case "min":
-                            srb.aggregations("pie", a -> a.terms(t -> t.field(aggField).size(10))
-                                    .aggregations("metric", sub -> sub.min(m -> m.field(metricField))));
-                            break;
-                        case "max":
-                            srb.aggregations("pie", a -> a.terms(t -> t.field(aggField).size(10))
-                                    .aggregations("metric", sub -> sub.max(m -> m.field(metricField))));
-                            break;
-                        case "count":
-                        default:
-                            srb.aggregations("pie", a -> a.terms(t -> t.field(aggField).size(10))
-                                    .aggregations("metric", sub -> sub.valueCount(m -> m.field(metricField))));
-                            break;
-                    }
-                }
-                
-                // Print Kibana query for PIE chart
-                log.info("=== Kibana Query for PIE Widget ===");
-                log.info("GET /{}/_search", index);
-                log.info("Content-Type: application/json");
-                log.info("");
-                
-                Map<String, Object> pieAggDef = new java.util.HashMap<>();
-                pieAggDef.put("terms", Map.of(
-                    "field", aggField,
-                    "size", 10
-                ));
-                
-                if (!docCountMode) {
-                    Map<String, Object> metricAggDef = new java.util.HashMap<>();
-                    switch (aggType) {
-                        case "sum":
-                            metricAggDef.put("sum", Map.of("field", metricField));
-                            break;
-                        case "avg":
-                            metricAggDef.put("avg", Map.of("field", metricField));
-                            break;
-                        case "min":
-                            metricAggDef.put("min", Map.of("field", metricField));
-                            break;
-                        case "max":
-                            metricAggDef.put("max", Map.of("field", metricField));
-                            break;
-                        case "count":
-                        default:
-                            metricAggDef.put("value_count", Map.of("field", metricField));
-                            break;
-                    }
-                    pieAggDef.put("aggs", Map.of("metric", metricAggDef));
-                }
-                
-                log.info("{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(Map.of(
-                    "size", 0,
-                    "query", finalQuery,
-                    "aggs", Map.of("pie", pieAggDef)
-                )));
-                log.info("=== End Kibana Query ===");
-                
-                var resp = esClient.search(srb.build(), Void.class);
-                var pieAgg = resp.aggregations().get("pie");
-                if (pieAgg == null || pieAgg.sterms() == null) {
-                    return Map.of("start", start, "end", end, "labels", List.of(), "values", List.of());
-                }
-                List<String> labels = new java.util.ArrayList<>();
-                List<Double> values = new java.util.ArrayList<>();
-                for (var b : pieAgg.sterms().buckets().array()) {
-                    String label = b.key().isString() ? b.key().stringValue() : b.key().toString();
-                    labels.add(label);
-                    
-                    Double val;
-                    if (!docCountMode && b.aggregations() != null && b.aggregations().get("metric") != null) {
-                        var metric = b.aggregations().get("metric");
-                        // Use aggType to determine which aggregation result to access
-                        switch (aggType) {
-                            case "sum":
-                                val = metric.sum() != null ? metric.sum().value() : 0d;
-                                break;
-                            case "avg":
-                                val = metric.avg() != null ? metric.avg().value() : 0d;
-                                break;
-                            case "min":
-                                val = metric.min() != null ? metric.min().value() : 0d;
-                                break;
-                            case "max":
-                                val = metric.max() != null ? metric.max().value() : 0d;
-                                break;
-                            case "count":
-                            default:
-                                val = metric.valueCount() != null ? (double) metric.valueCount().value() : 0d;
-                                break;
-                        }
-                    } else {
-                        val = (double) b.docCount();
-                    }
-                    values.add(val != null ? val : 0d);
-                }
-                return Map.of(
-                        "start", start,
-                        "end", end,
-                        "labels", labels,
-                        "values", values,
-                        "aggregation", aggType,
-                        "categoryField", aggField,
-                        "metricField", docCountMode ? "_doc_count" : metricField
-                );
-            }
-            // LINE / BAR: date_histogram or terms aggregation based on axis configuration
-            if (aggType == null || aggType.isBlank()) aggType = "count";
-
-            // For line/bar charts, determine the best axis mapping
-            // chartXField and chartYField were already determined above
-            
-            // Smart axis detection based on field types and user input
-
-            boolean docCountMode = (aggField == null || aggField.isBlank()) && "count".equalsIgnoreCase(aggType);
-            if (!docCountMode && (aggField == null || aggField.isBlank())) {
-                return Map.of("error", "Aggregation field required for chart widget");
-            }
-
-            // Validate Y-axis field type for line/bar charts
-            // For category-based charts (non-time X-axis), the aggregation field (Y-axis) must be numeric
-            boolean isDateField = chartXField != null && (chartXField.equals("timestamp") || chartXField.contains("time") || chartXField.contains("date"));
-            if (!isDateField && !docCountMode && aggField != null && !aggField.isBlank()) {
-                // Check if the aggregation field is numeric for category-based charts
-                boolean isAggFieldNumeric = isNumericField(index, aggField);
-                log.info("Y-axis field validation: aggField='{}', isNumeric={}, aggType='{}'", aggField, isAggFieldNumeric, aggType);
-                
-                if (!isAggFieldNumeric && !"count".equalsIgnoreCase(aggType)) {
-                    return Map.of("error", String.format("Y-axis field '%s' must be a numeric type for %s charts. Current field type is not numeric. Please select a numeric field or use 'count' aggregation.", aggField, isDateField ? "time-series" : "category"));
-                }
-            }
-
-            // Determine if chartXField is a date field or category field
-            
-            log.info("Chart configuration: xField='{}', yField='{}', isDateField={}, aggField='{}', aggType='{}', docCountMode={}", 
-                chartXField, chartYField, isDateField, aggField, aggType, docCountMode);
-            
-            var srb = new SearchRequest.Builder()
-                    .index(index)
-                    .size(0)
-                    .query(finalQuery);
-
-            if (isDateField) {
-                // Use date histogram for time-based charts
-                String timeField = (chartXField != null && !chartXField.isBlank()) ? chartXField : "timestamp";
-                srb.aggregations("time", a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0)));
-
-                if (!docCountMode) {
-                    // add metric sub agg only when a field provided
-                    switch (aggType) {
-                        case "sum":
-                            srb.aggregations("time", a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0))
-                                    .aggregations("metric", sub -> sub.sum(m -> m.field(aggField))));
-                            break;
-                        case "avg":
-                            srb.aggregations("time", a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0))
-                                    .aggregations("metric", sub -> sub.avg(m -> m.field(aggField))));
-                            break;
-                        case "min":
-                            srb.aggregations("time", a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0))
-                                    .aggregations("metric", sub -> sub.min(m -> m.field(aggField))));
-                            break;
-                        case "max":
-                            srb.aggregations("time", a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0))
-                                    .aggregations("metric", sub -> sub.max(m -> m.field(aggField))));
-                            break;
-                        case "count":
-                        default:
-                            srb.aggregations("time", a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0))
-                                    .aggregations("metric", sub -> sub.valueCount(m -> m.field(aggField))));
-                            break;
-                    }
-                }
-                
-                // Print Kibana query for TIME-based chart
-                Map<String, Object> kibanaQuery = new java.util.HashMap<>();
-                kibanaQuery.put("size", 0);
-                kibanaQuery.put("query", finalQuery);
-                
-                Map<String, Object> timeAggDef = new java.util.HashMap<>();
-                timeAggDef.put("date_histogram", Map.of(
-                    "field", timeField,
-                    "calendar_interval", "1h",
-                    "min_doc_count", 0
-                ));
-                
-                if (!docCountMode) {
-                    Map<String, Object> metricAggDef = new java.util.HashMap<>();
-                    switch (aggType) {
-                        case "sum":
-                            metricAggDef.put("sum", Map.of("field", aggField));
-                            break;
-                        case "avg":
-                            metricAggDef.put("avg", Map.of("field", aggField));
-                            break;
-                        case "min":
-                            metricAggDef.put("min", Map.of("field", aggField));
-                            break;
-                        case "max":
-                            metricAggDef.put("max", Map.of("field", aggField));
-                            break;
-                        case "count":
-                        default:
-                            metricAggDef.put("value_count", Map.of("field", aggField));
-                            break;
-                    }
-                    timeAggDef.put("aggs", Map.of("metric", metricAggDef));
+                    results.set(pos, searches.get(j).decode(item.result()));
                 }
-                
-                kibanaQuery.put("aggs", Map.of("time", timeAggDef));
-                
-                log.info("=== Kibana Query for TIME-based LINE/BAR Widget ===");
-                log.info("GET /{}/_search", index);
-                log.info("Content-Type: application/json");
-                log.info("");
-                log.info("{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(kibanaQuery));
-                log.info("=== End Kibana Query ===");
-                
-                var resp = esClient.search(srb.build(), Void.class);
-                var timeAgg = resp.aggregations().get("time");
-                if (timeAgg == null || timeAgg.dateHistogram() == null) {
-                    return Map.of("start", start, "end", end, "x", List.of(), "y", List.of());
-                }
-                List<Long> x = new java.util.ArrayList<>();
-                List<Double> y = new java.util.ArrayList<>();
-                for (var b : timeAgg.dateHistogram().buckets().array()) {
-                    x.add(b.key());
-                    Double val;
-                    if (!docCountMode && b.aggregations() != null && b.aggregations().get("metric") != null) {
-                        var metric = b.aggregations().get("metric");
-                        // Use aggType to determine which aggregation result to access
-                        switch (aggType) {
-                            case "sum":
-                                val = metric.sum() != null ? metric.sum().value() : 0d;
-                                break;
-                            case "avg":
-                                val = metric.avg() != null ? metric.avg().value() : 0d;
-                                break;
-                            case "min":
-                                val = metric.min() != null ? metric.min().value() : 0d;
-                                break;
-                            case "max":
-                                val = metric.max() != null ? metric.max().value() : 0d;
-                                break;
-                            case "count":
-                            default:
-                                val = metric.valueCount() != null ? (double) metric.valueCount().value() : 0d;
-                                break;
-                        }
-                    } else {
-                        val = (double) b.docCount();
-                    }
-                    y.add(val != null ? val : 0d);
-                }
-                return Map.of(
-                        "start", start,
-                        "end", end,
-                        "x", x,
-                        "y", y,
-                        "aggregation", aggType,
-                        "field", docCountMode ? "_doc_count" : aggField,
-                        "yField", timeField
-                );
-            } else {
-                // Use terms aggregation for category-based charts
-                log.info("Using category-based chart logic for xField='{}' (not null: {}, not blank: {})", 
-                    chartXField, chartXField != null, chartXField != null && !chartXField.isBlank());
-                    
-                if (chartXField == null || chartXField.isBlank()) {
-                    log.error("ERROR: chartXField validation failed - xField='{}', isNull={}, isBlank={}", 
-                        chartXField, chartXField == null, chartXField != null ? chartXField.isBlank() : "null");
-                    return Map.of("error", "X Field is required for category-based chart");
-                }
-                
-                srb.aggregations("categories", a -> a.terms(t -> t.field(chartXField).size(10)));
-
-                if (!docCountMode) {
-                    switch (aggType) {
-                        case "sum":
-                            srb.aggregations("categories", a -> a.terms(t -> t.field(chartXField).size(10))
-                                    .aggregations("metric", sub -> sub.sum(m -> m.field(aggField))));
-                            break;
-                        case "avg":
-                            srb.aggregations("categories", a -> a.terms(t -> t.field(chartXField).size(10))
-                                    .aggregations("metric", sub -> sub.avg(m -> m.field(aggField))));
-                            break;
-                        case "min":
-                            srb.aggregations("categories", a -> a.terms(t -> t.field(chartXField).size(10))
-                                    .aggregations("metric", sub -> sub.min(m -> m.field(aggField))));
-                            break;
-                        case "max":
-                            srb.aggregations("categories", a -> a.terms(t -> t.field(chartXField).size(10))
-                                    .aggregations("metric", sub -> sub.max(m -> m.field(aggField))));
-                            break;
-                        case "count":
-                        default:
-                            srb.aggregations("categories", a -> a.terms(t -> t.field(chartXField).size(10))
-                                    .aggregations("metric", sub -> sub.valueCount(m -> m.field(aggField))));
-                            break;
-                    }
-                }
-                
-                // Print Kibana query for CATEGORY-based chart
-                Map<String, Object> kibanaQuery = new java.util.HashMap<>();
-                kibanaQuery.put("size", 0);
-                kibanaQuery.put("query", finalQuery);
-                
-                Map<String, Object> categoriesAggDef = new java.util.HashMap<>();
-                categoriesAggDef.put("terms", Map.of(
-                    "field", chartXField,
-                    "size", 10
-                ));
-                
-                if (!docCountMode) {
-                    Map<String, Object> metricAggDef = new java.util.HashMap<>();
-                    switch (aggType) {
-                        case "sum":
-                            metricAggDef.put("sum", Map.of("field", aggField));
-                            break;
-                        case "avg":
-                            metricAggDef.put("avg", Map.of("field", aggField));
-                            break;
-                        case "min":
-                            metricAggDef.put("min", Map.of("field", aggField));
-                            break;
-                        case "max":
-                            metricAggDef.put("max", Map.of("field", aggField));
-                            break;
-                        case "count":
-                        default:
-                            metricAggDef.put("value_count", Map.of("field", aggField));
-                            break;
-                    }
-                    categoriesAggDef.put("aggs", Map.of("metric", metricAggDef));
-                }
-                
-                kibanaQuery.put("aggs", Map.of("categories", categoriesAggDef));
-                
-                log.info("=== Kibana Query for CATEGORY-based LINE/BAR Widget ===");
-                log.info("GET /{}/_search", index);
-                log.info("Content-Type: application/json");
-                log.info("");
-                log.info("{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(kibanaQuery));
-                log.info("=== End Kibana Query ===");
-                
-                var resp = esClient.search(srb.build(), Void.class);
-                var catAgg = resp.aggregations().get("categories");
-                if (catAgg == null || catAgg.sterms() == null) {
-                    return Map.of("start", start, "end", end, "x", List.of(), "y", List.of());
-                }
-                List<String> x = new java.util.ArrayList<>();
-                List<Double> y = new java.util.ArrayList<>();
-                for (var b : catAgg.sterms().buckets().array()) {
-                    String categoryName = b.key().isString() ? b.key().stringValue() : b.key().toString();
-                    x.add(categoryName);
-                    Double val;
-                    if (!docCountMode && b.aggregations() != null && b.aggregations().get("metric") != null) {
-                        var metric = b.aggregations().get("metric");
-                        // Use aggType to determine which aggregation result to access
-                        switch (aggType) {
-                            case "sum":
-                                val = metric.sum() != null ? metric.sum().value() : 0d;
-                                break;
-                            case "avg":
-                                val = metric.avg() != null ? metric.avg().value() : 0d;
-                                break;
-                            case "min":
-                                val = metric.min() != null ? metric.min().value() : 0d;
-                                break;
-                            case "max":
-                                val = metric.max() != null ? metric.max().value() : 0d;
-                                break;
-                            case "count":
-                            default:
-                                val = metric.valueCount() != null ? (double) metric.valueCount().value() : 0d;
-                                break;
-                        }
-                    } else {
-                        val = (double) b.docCount();
-                    }
-                    y.add(val != null ? val : 0d);
-                }
-                return Map.of(
-                        "start", start,
-                        "end", end,
-                        "x", x,  // category names instead of timestamps
-                        "y", y,
-                        "aggregation", aggType,
-                        "field", docCountMode ? "_doc_count" : aggField,
-                        "xField", chartXField,
-                        "yField", chartYField,
-                        "chartType", "category"
-                );
-            }
-        }
-
-        // table widget
-        log.info("=== Kibana Query for TABLE Widget ===");
-        log.info("GET /{}/_search", index);
-        log.info("Content-Type: application/json");
-        log.info("");
-        
-        // 处理表格参数
-        Integer tableSize = req.getTopN() != null ? req.getTopN() : 10;
-        String tableSortField = req.getSortField() != null && !req.getSortField().isEmpty() ? req.getSortField() : "timestamp";
-        String tableSortOrder = req.getSortOrder() != null && req.getSortOrder().equalsIgnoreCase("asc") ? "asc" : "desc";
-        
-        log.info("Table parameters: size={}, sortField={}, sortOrder={}", tableSize, tableSortField, tableSortOrder);
-        
-        log.info("{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(Map.of(
-            "size", tableSize,
-            "query", finalQuery,
-            "sort", List.of(Map.of(
-                tableSortField, Map.of(
-                    "order", tableSortOrder
-                )
-            ))
-        )));
-        log.info("=== End Kibana Query ===");
-        
-        // 根据排序顺序设置 SortOrder
-        co.elastic.clients.elasticsearch._types.SortOrder esSortOrder = 
-            "asc".equalsIgnoreCase(tableSortOrder) ? 
-                co.elastic.clients.elasticsearch._types.SortOrder.Asc : 
-                co.elastic.clients.elasticsearch._types.SortOrder.Desc;
-        
-        var tableResp = esClient.search(s -> s
-                .index(index)
-                .query(finalQuery)
-                .size(tableSize)
-                .sort(so -> so.field(f -> f.field(tableSortField).order(esSortOrder)))
-                , JsonData.class);
-        List<Map<String,Object>> docs = tableResp.hits().hits().stream()
-                .map(h -> h.source())
-                .filter(s -> s != null)
-                .map(s -> {
-                    @SuppressWarnings("unchecked")
-                    Map<String,Object> result = s.to(Map.class);
-                    return result;
-                })
-                .toList();
-        Long totalVal = null;
-        if (tableResp.hits() != null) {
-            var totalResult = tableResp.hits().total();
-            if (totalResult != null) {
-                totalVal = totalResult.value();
+            } catch (Exception e) {
+                log.warn("Failed to decode widget query #{}: {}", pos, e.getMessage());
+                results.set(pos, Map.of("error", String.valueOf(e.getMessage())));
             }
         }
-        return Map.of(
-                "start", start,
-                "end", end,
-                "total", totalVal != null ? totalVal : docs.size(),
-                "data", docs
-        );
+        return results;
     }
 
     /**
@@ -2006,7 +1470,7 @@ public class ElasticsearchSyncService {
 
         // 先按 alert.severity (long terms) -> 再按 src_ip (string terms) 并取 max(timestamp)
         var srb = new SearchRequest.Builder()
-            .index("event-*")
+            .index(indexCatalog.resolve("event-*", start, end))
             .size(0)
             .query(query)
             .aggregations("by_sev", a -> a
@@ -2110,15 +1574,22 @@ public class ElasticsearchSyncService {
         }
         Query query = Query.of(q -> q.bool(boolBuilder.build()));
 
-        // 构建请求（优先使用 keyword 字段），失败时回退到非 keyword 字段
+        // signature 字段由 EsSchemaRegistry 确定（可聚合的原字段或 .keyword）；
+        // 字段信息不可用时沿用原逻辑：优先 keyword 字段，失败时回退到非 keyword 字段
+        String signatureField = schemaRegistry.aggregatableField("event-*", "alert.signature");
+        List<String> targets = indexCatalog.resolve("event-*", start, end);
         SearchResponse<Void> resp;
-        try {
-            var req1 = buildAlarmAggRequest(query, topN, true);
-            resp = esClient.search(req1, Void.class);
-        } catch (Exception e) {
-            log.warn("alarm aggregation with keyword fields failed, fallback to non-keyword: {}", e.getMessage());
-            var req2 = buildAlarmAggRequest(query, topN, false);
-            resp = esClient.search(req2, Void.class);
+        if (signatureField != null) {
+            resp = esClient.search(buildAlarmAggRequest(targets, query, topN, signatureField), Void.class);
+        } else {
+            try {
+                var req1 = buildAlarmAggRequest(targets, query, topN, "alert.signature.keyword");
+                resp = esClient.search(req1, Void.class);
+            } catch (Exception e) {
+                log.warn("alarm aggregation with keyword fields failed, fallback to non-keyword: {}", e.getMessage());
+                var req2 = buildAlarmAggRequest(targets, query, topN, "alert.signature");
+                resp = esClient.search(req2, Void.class);
+            }
         }
     var sevAgg = resp.aggregations().get("by_sev");
         try {
@@ -2192,12 +1663,11 @@ public class ElasticsearchSyncService {
         }
     }
 
-    // 根据是否使用 keyword 字段构建告警聚合请求
-    private co.elastic.clients.elasticsearch.core.SearchRequest buildAlarmAggRequest(Query query, int topN, boolean useKeyword) {
-        String signatureField = useKeyword ? "alert.signature.keyword" : "alert.signature";
+    // 按指定 signature 字段构建告警聚合请求
+    private co.elastic.clients.elasticsearch.core.SearchRequest buildAlarmAggRequest(List<String> targets, Query query, int topN, String signatureField) {
 
         return new co.elastic.clients.elasticsearch.core.SearchRequest.Builder()
-            .index("event-*")
+            .index(targets)
             .size(0)
             .allowNoIndices(true)
             .ignoreUnavailable(true)
@@ -2220,98 +1690,43 @@ public class ElasticsearchSyncService {
     }
 
     /**
-     * Delete all documents in Elasticsearch associated with a given sessionId.
-     * Rather than hardcoding index patterns, this method enumerates all non-system indices
-     * via _cat/indices and executes delete-by-query against each. A document matches if any of:
-     * - sessionId term equals the provided sessionId
-     * - uuid term equals the provided sessionId
+     * Submit deletion of all documents belonging to a session as ONE delete-by-query task over
+     * every non-system index (slices=auto, wait_for_completion=false). A document matches if any of:
+     * - sessionId equals the provided sessionId
+     * - uuid equals the provided sessionId
      * - filePath contains the provided sessionId (match query)
-     * System or internal indices are skipped (names starting with "." or known internal prefixes).
+     * All clauses are lenient, see {@link #lenientMatch}.
+     * @return ES task id ("node:id"), progress is available through the Tasks API
      */
-    public long deleteBySessionId(String sessionId) throws IOException {
-        if (sessionId == null || sessionId.isBlank()) {
-            return 0L;
-        }
-
-        // Build a bool query matching sessionId in either sessionId or uuid fields, also try filePath contains sessionId
+    public String submitDeleteBySessionId(String sessionId, List<String> excludedIndices, Float requestsPerSecond) throws IOException {
         BoolQuery.Builder bool = new BoolQuery.Builder();
-        bool.should(s -> s.term(t -> t.field("sessionId").value(v -> v.stringValue(sessionId))))
-            .should(s -> s.term(t -> t.field("uuid").value(v -> v.stringValue(sessionId))))
-            .should(s -> s.match(m -> m.field("filePath").query(sessionId)))
+        bool.should(lenientMatch("sessionId", sessionId, Operator.And))
+            .should(lenientMatch("uuid", sessionId, Operator.And))
+            .should(lenientMatch("filePath", sessionId, Operator.Or))
             .minimumShouldMatch("1");
-        Query query = Query.of(q -> q.bool(bool.build()));
-
-        long totalDeleted = 0L;
-
-        // Enumerate all indices and filter out system/internal ones
-        List<co.elastic.clients.elasticsearch.cat.indices.IndicesRecord> all;
-        try {
-            all = esClient.cat().indices(c -> c).valueBody();
-        } catch (Exception e) {
-            log.warn("deleteBySessionId: failed to list indices via _cat/indices: {}", e.getMessage());
-            all = java.util.Collections.emptyList();
-        }
-
-        if (all.isEmpty()) {
-            log.warn("deleteBySessionId: no indices found (cat empty). Nothing to delete.");
-            return 0L;
-        }
-
-        for (var rec : all) {
-            String index = rec.index();
-            if (index == null || index.isBlank()) continue;
-            // Skip system and internal indices
-            if (index.startsWith(".")
-                || index.startsWith("kibana")
-                || index.startsWith("security")
-                || index.startsWith(".security")
-                || index.startsWith(".tasks")
-                || index.startsWith(".monitoring")
-                || index.startsWith(".kibana")
-                || index.startsWith(".apm")
-                || index.startsWith("apm-")
-                || index.startsWith(".ds-")
-            ) {
-                log.debug("deleteBySessionId: skip system/internal index: {}", index);
-                continue;
-            }
-
-            try {
-                DeleteByQueryRequest req = new DeleteByQueryRequest.Builder()
-                    .index(index)
-                    .query(query)
-                    .conflicts(Conflicts.Proceed)
-                    .refresh(true)
-                    .build();
-                DeleteByQueryResponse resp = esClient.deleteByQuery(req);
-                Long delBoxed = resp.deleted();
-                long deleted = delBoxed != null ? delBoxed.longValue() : 0L;
-                log.info("deleteBySessionId: index={}, deleted={}", index, deleted);
-                totalDeleted += deleted;
-            } catch (Exception e) {
-                log.warn("deleteBySessionId failed on index {}: {}", index, e.getMessage());
-            }
-        }
-        return totalDeleted;
+        return submitDeleteByQuery(Query.of(q -> q.bool(bool.build())), nonSystemTargets(excludedIndices), requestsPerSecond);
     }
 
     /**
-     * Delete documents where filePath contains ANY of the given values, and
-     * optionally timestamp <= beforeMillis. Works across all non-system indices.
+     * Submit deletion of documents where filePath contains ANY of the given values, and
+     * optionally timestamp <= beforeMillis, as one delete-by-query task over all non-system indices.
+     * @return ES task id, or null when there is nothing to match
      */
-    public long deleteByFilePathsBefore(List<String> filePaths, Long beforeMillis) throws IOException {
-        if (filePaths == null || filePaths.isEmpty()) {
-            return 0L;
-        }
-
+    public String submitDeleteByFilePathsBefore(List<String> filePaths, Long beforeMillis,
+            List<String> excludedIndices, Float requestsPerSecond) throws IOException {
         // Build bool query: (match filePath X) OR (match filePath Y) ...
         BoolQuery.Builder shoulds = new BoolQuery.Builder();
+        boolean any = false;
         for (String fp : filePaths) {
             if (fp == null || fp.isBlank()) continue;
-            shoulds.should(s -> s.match(m -> m.field("filePath").query(fp)));
+            any = true;
+            shoulds.should(lenientMatch("filePath", fp, Operator.Or));
             // 兼容一些索引使用 sessionId/uuid 字段
-            shoulds.should(s -> s.term(t -> t.field("sessionId").value(v -> v.stringValue(fp))));
-            shoulds.should(s -> s.term(t -> t.field("uuid").value(v -> v.stringValue(fp))));
+            shoulds.should(lenientMatch("sessionId", fp, Operator.And));
+            shoulds.should(lenientMatch("uuid", fp, Operator.And));
+        }
+        if (!any) {
+            return null;
         }
         BoolQuery.Builder bool = new BoolQuery.Builder()
             .minimumShouldMatch("1")
@@ -2325,56 +1740,65 @@ public class ElasticsearchSyncService {
             );
             bool.filter(f -> f.range(timeRange));
         }
-        Query query = Query.of(q -> q.bool(bool.build()));
+        return submitDeleteByQuery(Query.of(q -> q.bool(bool.build())), nonSystemTargets(excludedIndices), requestsPerSecond);
+    }
 
-        long totalDeleted = 0L;
+    /**
+     * Submit deletion of documents with timestamp < beforeMillis in the given indices only
+     * (e.g. the boundary partition of a time-partitioned retention run).
+     */
+    public String submitDeleteBefore(List<String> indices, long beforeMillis, Float requestsPerSecond) throws IOException {
+        Query query = Query.of(q -> q.range(r -> r.field("timestamp").lt(JsonData.of(beforeMillis))));
+        return submitDeleteByQuery(query, indices, requestsPerSecond);
+    }
 
-        List<IndicesRecord> all;
-        try {
-            all = esClient.cat().indices(c -> c).valueBody();
-        } catch (Exception e) {
-            log.warn("deleteByFilePathsBefore: failed to list indices via _cat/indices: {}", e.getMessage());
-            all = java.util.Collections.emptyList();
-        }
-        if (all.isEmpty()) {
-            log.warn("deleteByFilePathsBefore: no indices found (cat empty). Nothing to delete.");
-            return 0L;
+    // "*" 减去排除的系统索引模式
+    static List<String> nonSystemTargets(List<String> excludedIndices) {
+        List<String> targets = new java.util.ArrayList<>();
+        targets.add("*");
+        if (excludedIndices != null) {
+            for (String ex : excludedIndices) {
+                if (ex != null && !ex.isBlank()) targets.add("-" + ex.trim());
+            }
         }
+        return targets;
+    }
 
-        for (var rec : all) {
-            String index = rec.index();
-            if (index == null || index.isBlank()) continue;
-            if (index.startsWith(".")
-                || index.startsWith("kibana")
-                || index.startsWith("security")
-                || index.startsWith(".security")
-                || index.startsWith(".tasks")
-                || index.startsWith(".monitoring")
-                || index.startsWith(".kibana")
-                || index.startsWith(".apm")
-                || index.startsWith("apm-")
-                || index.startsWith(".ds-")
-            ) {
-                log.debug("deleteByFilePathsBefore: skip system/internal index: {}", index);
-                continue;
-            }
+    /**
+     * Match query that ignores format-based failures. The deletion runs as one request over every
+     * non-system index, and a field mapped as long/ip/date in a single index would otherwise fail the
+     * whole task with a parse error. On keyword fields, match with operator AND behaves like a term query.
+     */
+    private static Query lenientMatch(String field, String value, Operator operator) {
+        return Query.of(q -> q.match(m -> m.field(field).query(value).operator(operator).lenient(true)));
+    }
 
-            try {
-                DeleteByQueryRequest req = new DeleteByQueryRequest.Builder()
-                    .index(index)
-                    .query(query)
-                    .conflicts(Conflicts.Proceed)
-                    .refresh(true)
-                    .build();
-                DeleteByQueryResponse resp = esClient.deleteByQuery(req);
-                Long delBoxed = resp.deleted();
-                long deleted = delBoxed != null ? delBoxed.longValue() : 0L;
-                log.info("deleteByFilePathsBefore: index={}, deleted={}", index, deleted);
-                totalDeleted += deleted;
-            } catch (Exception e) {
-                log.warn("deleteByFilePathsBefore failed on index {}: {}", index, e.getMessage());
-            }
-        }
-        return totalDeleted;
+    /**
+     * 多索引 delete_by_query：由 ES 自动切片并行执行，结束后统一 refresh 一次；请求立即返回任务 ID
+     */
+    private String submitDeleteByQuery(Query query, List<String> targets, Float requestsPerSecond) throws IOException {
+        DeleteByQueryRequest req = new DeleteByQueryRequest.Builder()
+            .index(targets)
+            .query(query)
+            .conflicts(Conflicts.Proceed)
+            .slices(sl -> sl.computed(SlicesCalculation.Auto))
+            .waitForCompletion(false)
+            .requestsPerSecond(requestsPerSecond != null && requestsPerSecond > 0 ? requestsPerSecond : -1f)
+            .refresh(true)
+            .ignoreUnavailable(true)
+            .allowNoIndices(true)
+            .lenient(true)
+            .build();
+        DeleteByQueryResponse resp = esClient.deleteByQuery(req);
+        log.info("delete_by_query submitted: targets={}, task={}", targets, resp.task());
+        return resp.task();
+    }
+
+    public GetTasksResponse getTask(String esTaskId) throws IOException {
+        return esClient.tasks().get(g -> g.taskId(esTaskId));
+    }
+
+    public void cancelTask(String esTaskId) throws IOException {
+        esClient.tasks().cancel(c -> c.taskId(esTaskId));
     }
 }
\ No newline at end of file
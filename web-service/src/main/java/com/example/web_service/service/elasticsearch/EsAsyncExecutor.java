@@ -0,0 +1,238 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import com.example.web_service.config.EsAsyncProperties;
+import com.example.web_service.exception.EsOverloadedException;
+
+/**
+ * ES 查询异步执行器。
+ * - 阻塞式调用（ElasticsearchSyncService）在虚拟线程上执行，Controller 返回 CompletableFuture 后立即释放 Tomcat 工作线程
+ * - 原生异步调用（ElasticsearchAsyncService）直接挂接 ES 客户端返回的 future
+ * - 并发只由 EsConcurrencyLimiter 按查询类别（聚合 / 轻量请求）约束，这里不再设全局名额，避免轻量请求排在慢聚合后面；
+ *   仅在限流器关闭（app.es-limiter.enabled=false）时，同时执行的查询数不超过 maxInFlight，
+ *   等待名额的查询数超过 maxQueued 或等待超时时返回 503（EsOverloadedException）。
+ *   阻塞式调用的名额在任务首次实际访问 ES 时才获取（见 EsLimitedTransport），命中缓存或等待其他线程合并加载结果的任务不占名额
+ */
+@Component
+public class EsAsyncExecutor implements DisposableBean {
+
+    /** 可抛出 IOException 的 ES 调用 */
+    @FunctionalInterface
+    public interface EsCall<T> {
+        T call() throws IOException;
+    }
+
+    // 当前阻塞式任务的名额租约：限流器关闭时在首次访问 ES 时获取，任务结束时释放
+    private static final ThreadLocal<Lease> LEASE = new ThreadLocal<>();
+
+    private static final class Lease {
+        final EsAsyncExecutor owner;
+        boolean held;
+
+        Lease(EsAsyncExecutor owner) {
+            this.owner = owner;
+        }
+    }
+
+    private final EsAsyncProperties properties;
+    private final EsConcurrencyLimiter limiter;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder execNanos = new LongAdder();
+
+    public EsAsyncExecutor(EsAsyncProperties properties, EsConcurrencyLimiter limiter) {
+        this.properties = properties;
+        this.limiter = limiter;
+        this.permits = new Semaphore(Math.max(1, properties.getMaxInFlight()), true);
+    }
+
+    /**
+     * 在虚拟线程上执行阻塞式 ES 调用。
+     * 未启用异步时直接在当前线程执行并返回已完成的 future。
+     */
+    public <T> CompletableFuture<T> submit(EsCall<T> call) {
+        submitted.increment();
+        if (!properties.isEnabled()) {
+            long t0 = System.nanoTime();
+            try {
+                return CompletableFuture.completedFuture(record(call.call(), t0));
+            } catch (Exception e) {
+                failed.increment();
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            Lease lease = limiter.isEnabled() ? null : new Lease(this);
+            if (lease != null) {
+                LEASE.set(lease);
+            }
+            running.incrementAndGet();
+            long t0 = System.nanoTime();
+            try {
+                return record(call.call(), t0);
+            } catch (IOException e) {
+                failed.increment();
+                throw new CompletionException(e);
+            } catch (RuntimeException e) {
+                failed.increment();
+                throw e;
+            } finally {
+                running.decrementAndGet();
+                if (lease != null) {
+                    LEASE.remove();
+                    if (lease.held) {
+                        permits.release();
+                    }
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * 由传输层在每次 ES 请求前调用：当前线程是尚未持有名额的阻塞式任务时，在此等待并获取名额（持有到任务结束）。
+     * 名额不足时抛出 EsOverloadedException
+     */
+    public static void acquireLeasedPermit() {
+        Lease lease = LEASE.get();
+        if (lease == null || lease.held) {
+            return;
+        }
+        if (!lease.owner.enqueue()) {
+            throw lease.owner.overloaded();
+        }
+        lease.owner.acquire();
+        lease.held = true;
+    }
+
+    /**
+     * 执行原生异步 ES 调用（ElasticsearchAsyncClient），名额在 future 完成时释放。
+     * 限流器启用时在虚拟线程上发起请求（限流器可能等待名额，不阻塞请求线程）；
+     * 否则有空闲名额时直接在当前线程发起请求，无空闲名额时在虚拟线程上等待名额。
+     */
+    public <T> CompletableFuture<T> submitAsync(Supplier<CompletableFuture<T>> call) {
+        submitted.increment();
+        if (!properties.isEnabled()) {
+            return track(call, System.nanoTime(), false);
+        }
+        if (limiter.isEnabled()) {
+            return CompletableFuture.supplyAsync(() -> track(call, System.nanoTime(), false), executor)
+                    .thenCompose(f -> f);
+        }
+        if (permits.tryAcquire()) {
+            return track(call, System.nanoTime(), true);
+        }
+        if (!enqueue()) {
+            return CompletableFuture.failedFuture(overloaded());
+        }
+        return CompletableFuture.runAsync(this::acquire, executor)
+                .thenCompose(v -> track(call, System.nanoTime(), true));
+    }
+
+    private <T> CompletableFuture<T> track(Supplier<CompletableFuture<T>> call, long t0, boolean holdsPermit) {
+        CompletableFuture<T> future;
+        running.incrementAndGet();
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            failed.increment();
+            running.decrementAndGet();
+            if (holdsPermit) {
+                permits.release();
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((r, e) -> {
+            running.decrementAndGet();
+            if (holdsPermit) {
+                permits.release();
+            }
+            if (e != null) {
+                failed.increment();
+            } else {
+                record(r, t0);
+            }
+        });
+    }
+
+    private <T> T record(T value, long t0) {
+        completed.increment();
+        execNanos.add(System.nanoTime() - t0);
+        return value;
+    }
+
+    private boolean enqueue() {
+        if (waiting.incrementAndGet() > Math.max(0, properties.getMaxQueued())) {
+            waiting.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // 在执行线程上等待名额；调用前必须已 enqueue()
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(properties.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw overloaded();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private EsOverloadedException overloaded() {
+        return new EsOverloadedException("Elasticsearch query capacity exhausted, please retry later");
+    }
+
+    /**
+     * 执行统计，用于管理接口展示
+     */
+    public Map<String, Object> stats() {
+        int max = Math.max(1, properties.getMaxInFlight());
+        long done = completed.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", properties.isEnabled());
+        out.put("gatedByLimiter", limiter.isEnabled());
+        out.put("maxInFlight", max);
+        out.put("inFlight", running.get());
+        out.put("maxQueued", properties.getMaxQueued());
+        out.put("waiting", waiting.get());
+        out.put("submitted", submitted.sum());
+        out.put("completed", done);
+        out.put("failed", failed.sum());
+        out.put("rejected", rejected.sum());
+        out.put("avgExecMillis", done == 0 ? 0.0 : execNanos.sum() / 1_000_000.0 / done);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearchDocumentResponseBase;
+import co.elastic.clients.elasticsearch.tasks.NodeTasks;
+import co.elastic.clients.elasticsearch.tasks.TaskInfo;
+import co.elastic.clients.json.JsonData;
+import com.example.web_service.config.EsAsyncSearchProperties;
+import com.example.web_service.exception.EsOverloadedException;
+import com.example.web_service.model.es.widget.WidgetQueryRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 长时间范围查询的提交/轮询模式：提交后立即返回查询 id，客户端按 id 轮询结果，浏览器刷新或超时不会丢弃已在执行的查询。
+ * - Widget 查询以同一份编译后的请求提交为 ES _async_search，运行期间轮询可拿到已完成分片的部分聚合结果
+ * - 趋势查询由多次 search / 预聚合读取组合而成，只能在全部完成后解码，因此在后台执行，运行期间只返回状态、不返回部分结果。
+ *   后台查询在单独的线程池中执行（trend-concurrency），不占用 EsAsyncExecutor 的同步查询名额，
+ *   单次 ES 请求的读超时放宽为 trend-socket-timeout-millis；取消时中断执行线程并按 X-Opaque-Id 取消 ES 端的搜索任务
+ * 结果保留 keep-alive-millis；期间相同请求再次提交直接返回已有查询，重新打开的仪表盘无需重新执行查询。
+ * 查询登记只保存在内存中，应用重启后旧 id 失效（ES 端的异步结果按 keep_alive 自行过期）。
+ */
+@Service
+public class EsAsyncSearchService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EsAsyncSearchService.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private WidgetQueryCompiler widgetQueryCompiler;
+
+    @Autowired
+    private EsAsyncSearchProperties properties;
+
+    /** 一次异步查询：Widget 查询持有 ES 的 async search id，趋势查询持有后台执行的 future（登记前设置） */
+    private static final class Job {
+        final String id;
+        final String key;
+        final String type;
+        final long createdAt = System.currentTimeMillis();
+        final WidgetQueryPlan.Bound widget;
+        final String esId;
+        volatile Future<?> future;
+        volatile long expiresAt;
+        // Widget 查询完成后的状态，之后的轮询不再访问 ES
+        volatile Map<String, Object> completed;
+
+        Job(String key, String type, WidgetQueryPlan.Bound widget, String esId, long expiresAt) {
+            this.id = UUID.randomUUID().toString();
+            this.key = key;
+            this.type = type;
+            this.widget = widget;
+            this.esId = esId;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean failed() {
+            return future != null && future.state() == Future.State.FAILED;
+        }
+
+        String opaqueId() {
+            return "async-search:" + id;
+        }
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, String> byKey = new ConcurrentHashMap<>();
+    private ExecutorService trendWorkers;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        trendWorkers = Executors.newFixedThreadPool(Math.max(1, properties.getTrendConcurrency()), r -> {
+            Thread t = new Thread(r, "es-async-trend-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 提交 Widget 查询为 _async_search；在 wait-for-completion-millis 内完成的查询直接带结果返回
+     */
+    public Map<String, Object> submitWidget(WidgetQueryRequest req) throws IOException {
+        String key = "widget:" + keyOf(req);
+        Job existing = reusable(key);
+        if (existing != null) {
+            Map<String, Object> reused = get(existing.id);
+            if (reused != null) {
+                reused.put("reused", true);
+                return reused;
+            }
+        }
+        WidgetQueryPlan.Bound prepared = widgetQueryCompiler.prepare(req);
+        if (prepared.error() != null) {
+            return prepared.error();
+        }
+        reserve();
+        var resp = EsMetrics.withOperation("widget:" + req.getWidgetType(),
+                () -> esClient.asyncSearch().submit(prepared.toSubmitRequest(millis(properties.getKeepAliveMillis()),
+                        millis(properties.getWaitForCompletionMillis())), JsonData.class));
+        Job job = new Job(key, "widget", prepared, resp.id(), expiry(resp));
+        register(job);
+        return widgetStatus(job, resp, false);
+    }
+
+    /**
+     * 在后台执行趋势查询；key 相同且结果仍在保留期内的查询直接复用。
+     * 执行期间只返回状态，完成后一次性返回结果（不提供部分结果）
+     */
+    public Map<String, Object> submit(String key, EsAsyncExecutor.EsCall<?> call) {
+        Job existing = reusable(key);
+        if (existing != null) {
+            return status(existing, true);
+        }
+        reserve();
+        Job job = new Job(key, "trend", null, null, System.currentTimeMillis() + properties.getKeepAliveMillis());
+        EsBackgroundQuery.Context context = new EsBackgroundQuery.Context(job.opaqueId(), properties.getTrendSocketTimeoutMillis());
+        job.future = trendWorkers.submit(() -> EsBackgroundQuery.run(context, call));
+        register(job);
+        return status(job, false);
+    }
+
+    /**
+     * 查询状态与（部分）结果；id 不存在或已过期时返回 null
+     */
+    public Map<String, Object> get(String id) throws IOException {
+        Job job = live(id);
+        if (job == null) {
+            return null;
+        }
+        if (job.widget == null || job.completed != null) {
+            return status(job, false);
+        }
+        try {
+            var resp = esClient.asyncSearch().get(g -> g.id(job.esId), JsonData.class);
+            job.expiresAt = expiry(resp);
+            return widgetStatus(job, resp, false);
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                remove(job);
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 取消并删除查询；id 不存在时返回 false
+     */
+    public boolean delete(String id) throws IOException {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        remove(job);
+        if (job.future != null) {
+            cancel(job);
+        } else if (job.esId != null) {
+            try {
+                esClient.asyncSearch().delete(d -> d.id(job.esId));
+            } catch (ElasticsearchException e) {
+                if (e.status() != 404) {
+                    throw e;
+                }
+            }
+        }
+        return true;
+    }
+
+    public List<Map<String, Object>> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong((Job j) -> j.createdAt).reversed())
+                .map(j -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("id", j.id);
+                    m.put("type", j.type);
+                    m.put("key", j.key);
+                    m.put("createdAt", j.createdAt);
+                    m.put("expiresAt", j.expiresAt);
+                    return m;
+                })
+                .toList();
+    }
+
+    /** 清理过期查询，仍在执行的趋势查询一并取消 */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (Job job : jobs.values()) {
+            if (job.expiresAt <= now) {
+                remove(job);
+                if (job.future != null) {
+                    cancel(job);
+                }
+            }
+        }
+    }
+
+    private Map<String, Object> widgetStatus(Job job, AsyncSearchDocumentResponseBase<JsonData> resp, boolean reused) {
+        Map<String, Object> m = base(job, reused);
+        m.put("running", resp.isRunning());
+        m.put("partial", resp.isPartial());
+        if (resp.response() != null) {
+            if (resp.response().shards() != null) {
+                m.put("completedShards", resp.response().shards().successful().intValue() + resp.response().shards().failed().intValue());
+                m.put("totalShards", resp.response().shards().total().intValue());
+            }
+            m.put("result", job.widget.decode(resp.response()));
+        }
+        if (!resp.isRunning()) {
+            job.completed = m;
+        }
+        return m;
+    }
+
+    // 已完成的 Widget 查询或趋势查询的状态
+    private Map<String, Object> status(Job job, boolean reused) {
+        if (job.completed != null) {
+            Map<String, Object> m = new LinkedHashMap<>(job.completed);
+            m.put("reused", reused);
+            return m;
+        }
+        Map<String, Object> m = base(job, reused);
+        Future<?> future = job.future;
+        boolean done = future.isDone();
+        m.put("running", !done);
+        m.put("partial", !done);
+        if (future.state() == Future.State.SUCCESS) {
+            m.put("result", future.resultNow());
+        } else if (future.state() == Future.State.FAILED) {
+            m.put("error", String.valueOf(future.exceptionNow().getMessage()));
+        }
+        return m;
+    }
+
+    // 中断后台线程（阻塞中的 ES 调用随之返回），并取消 ES 端仍在执行的搜索任务
+    private void cancel(Job job) {
+        if (job.future.isDone()) {
+            return;
+        }
+        job.future.cancel(true);
+        try {
+            var tasks = esClient.tasks().list(l -> l.actions("*search*").detailed(true));
+            if (tasks.nodes() == null) {
+                return;
+            }
+            for (NodeTasks node : tasks.nodes().values()) {
+                for (Map.Entry<String, TaskInfo> e : node.tasks().entrySet()) {
+                    TaskInfo task = e.getValue();
+                    if (task.parentTaskId() == null && task.cancellable()
+                            && job.opaqueId().equals(task.headers().get(EsBackgroundQuery.OPAQUE_ID_HEADER))) {
+                        esClient.tasks().cancel(c -> c.taskId(e.getKey()));
+                        log.debug("Cancelled ES task {} of async query {}", e.getKey(), job.id);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to cancel ES tasks of async query {}: {}", job.id, e.getMessage());
+        }
+    }
+
+    private Map<String, Object> base(Job job, boolean reused) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", job.id);
+        m.put("type", job.type);
+        m.put("reused", reused);
+        m.put("createdAt", job.createdAt);
+        m.put("expiresAt", job.expiresAt);
+        return m;
+    }
+
+    // 相同请求的已有查询：未过期且未失败（失败的查询允许重新提交）
+    private Job reusable(String key) {
+        String id = byKey.get(key);
+        Job job = id != null ? live(id) : null;
+        return job != null && !job.failed() ? job : null;
+    }
+
+    private Job live(String id) {
+        Job job = jobs.get(id);
+        if (job != null && job.expiresAt <= System.currentTimeMillis()) {
+            remove(job);
+            return null;
+        }
+        return job;
+    }
+
+    private void reserve() {
+        if (jobs.size() >= properties.getMaxJobs()) {
+            purgeExpired();
+        }
+        if (jobs.size() >= properties.getMaxJobs()) {
+            throw new EsOverloadedException("Too many async queries retained (" + jobs.size() + "), try again later",
+                    Math.max(1, properties.getKeepAliveMillis() / 1000 / 10));
+        }
+    }
+
+    private void register(Job job) {
+        jobs.put(job.id, job);
+        byKey.put(job.key, job.id);
+        log.debug("Registered async {} query {} (es id: {})", job.type, job.id, job.esId);
+    }
+
+    private void remove(Job job) {
+        jobs.remove(job.id);
+        byKey.remove(job.key, job.id);
+    }
+
+    private long expiry(AsyncSearchDocumentResponseBase<JsonData> resp) {
+        return resp.expirationTimeInMillis() > 0 ? resp.expirationTimeInMillis()
+                : System.currentTimeMillis() + properties.getKeepAliveMillis();
+    }
+
+    private static Time millis(long millis) {
+        return Time.of(t -> t.time(Math.max(0, millis) + "ms"));
+    }
+
+    private static String keyOf(WidgetQueryRequest req) {
+        try {
+            return JSON.writeValueAsString(req);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid widget query: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (trendWorkers != null) {
+            trendWorkers.shutdownNow();
+        }
+    }
+}
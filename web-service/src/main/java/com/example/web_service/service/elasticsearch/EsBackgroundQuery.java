@@ -0,0 +1,44 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+
+/**
+ * 后台查询上下文。
+ * 在 run(...) 内发出的 ES 请求由传输层（见 EsBackgroundTransport）改用 socketTimeoutMillis 作为读超时，
+ * 并带上 X-Opaque-Id 请求头，取消时据此找到并取消 ES 端仍在执行的搜索任务。
+ */
+public final class EsBackgroundQuery {
+
+    public static final String OPAQUE_ID_HEADER = "X-Opaque-Id";
+
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<>();
+
+    private EsBackgroundQuery() {
+    }
+
+    /**
+     * @param opaqueId 写入 X-Opaque-Id 的标识
+     * @param socketTimeoutMillis 单次请求的读超时（毫秒），替代 app.es-transport.socket-timeout-millis
+     */
+    public record Context(String opaqueId, int socketTimeoutMillis) {
+    }
+
+    /** 当前线程的后台查询上下文，不在后台查询中时为 null */
+    public static Context current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T run(Context context, EsAsyncExecutor.EsCall<T> call) throws IOException {
+        Context previous = CURRENT.get();
+        CURRENT.set(context);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
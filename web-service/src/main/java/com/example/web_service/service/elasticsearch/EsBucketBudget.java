@@ -0,0 +1,87 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.web_service.config.EsBucketBudgetProperties;
+import com.example.web_service.exception.EsQueryBudgetException;
+
+/**
+ * 趋势查询的桶数预算：执行前按 (时间跨度 / 间隔 + 1) × 序列数 预估 date_histogram 桶数，
+ * 超出 max-buckets 时沿 EsIntervals.LADDER 放大到第一个满足预算的间隔，或在 reject 模式下拒绝请求。
+ * 用户显式指定的间隔同样受约束，避免 1m × 90 天这类请求触发 search.max_buckets 或撑爆两端堆内存。
+ */
+@Component
+public class EsBucketBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(EsBucketBudget.class);
+
+    @Autowired
+    private EsBucketBudgetProperties properties;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder coarsened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 检查结果
+     * @param interval 实际使用的间隔，未超预算时与 requestedInterval 相同
+     * @param estimatedBuckets 按实际间隔预估的总桶数
+     */
+    public record Decision(String requestedInterval, String interval, long estimatedBuckets, boolean coarsened) {
+    }
+
+    /**
+     * 检查 [start, end]（毫秒）按 interval 分桶、共 series 个序列的查询；时间范围未知时不做约束
+     */
+    public Decision check(String operation, Long start, Long end, String interval, int series) {
+        if (!properties.isEnabled() || start == null || end == null) {
+            return new Decision(interval, interval, -1, false);
+        }
+        checked.increment();
+        long span = Math.max(0, end - start);
+        int n = Math.max(1, series);
+        long estimate = EsIntervals.bucketCount(span, interval) * n;
+        long max = Math.max(1, properties.getMaxBuckets());
+        if (estimate <= max) {
+            return new Decision(interval, interval, estimate, false);
+        }
+
+        long requestedMillis = EsIntervals.toMillis(interval);
+        String fitted = EsIntervals.LADDER.get(EsIntervals.LADDER.size() - 1);
+        for (String candidate : EsIntervals.LADDER) {
+            if (EsIntervals.toMillis(candidate) > requestedMillis && EsIntervals.bucketCount(span, candidate) * n <= max) {
+                fitted = candidate;
+                break;
+            }
+        }
+        long fittedEstimate = EsIntervals.bucketCount(span, fitted) * n;
+        if (properties.isReject()) {
+            rejected.increment();
+            throw new EsQueryBudgetException(String.format(
+                    "Query %s would produce ~%d buckets (interval %s x %d series), exceeding the budget of %d; use interval %s or coarser",
+                    operation, estimate, interval, n, max, fitted), fitted);
+        }
+        coarsened.increment();
+        log.info("Coarsened {} interval {} -> {} ({} series, ~{} -> ~{} buckets, budget {})",
+                operation, interval, fitted, n, estimate, fittedEstimate, max);
+        return new Decision(interval, fitted, fittedEstimate, true);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", properties.isEnabled());
+        m.put("maxBuckets", properties.getMaxBuckets());
+        m.put("reject", properties.isReject());
+        m.put("checked", checked.sum());
+        m.put("coarsened", coarsened.sum());
+        m.put("rejected", rejected.sum());
+        return m;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.async_search.SubmitRequest;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.transport.TransportException;
+import com.example.web_service.config.EsLimiterProperties;
+import com.example.web_service.exception.EsOverloadedException;
+
+/**
+ * ES 请求隔离层：按查询类别（聚合 / 轻量请求）分别做自适应并发限制与熔断，挂在 ElasticsearchTransport 上（见 EsLimitedTransport），
+ * 所有经 ElasticsearchClient / ElasticsearchAsyncClient 发出的请求都受约束。
+ * - 并发上限按延迟梯度调整：耗时接近长期平均时逐步放大（每次约 sqrt(limit)），超过 rttTolerance 倍时按比例收缩，
+ *   超时/5xx/429 时乘以 backoffRatio（AIMD）；只有实际并发达到上限一半以上时才放大
+ * - 达到上限时最多等待 maxWaitMillis，仍无名额则返回 503，避免 ES 变慢时所有 Web 线程堆积在 ES 调用上
+ * - 熔断器统计最近 N 次调用的失败率（含慢调用），超过阈值后该类请求在 openMillis 内直接返回 503，之后放行少量试探调用
+ */
+@Component
+public class EsConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(EsConcurrencyLimiter.class);
+
+    // 长期平均耗时的 EWMA 窗口（样本数）
+    private static final int RTT_WINDOW = 100;
+
+    public enum QueryClass {
+        AGGREGATION, LOOKUP
+    }
+
+    public enum BreakerState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private enum Outcome {
+        SUCCESS, FAILURE, IGNORED
+    }
+
+    /**
+     * 一次调用持有的名额，调用结束后必须 release
+     */
+    public final class Permit {
+        private final Limiter limiter;
+        private final boolean trial;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        private Permit(Limiter limiter, boolean trial) {
+            this.limiter = limiter;
+            this.trial = trial;
+        }
+
+        /**
+         * 释放名额并记录结果，error 为空表示成功
+         */
+        public void release(Throwable error) {
+            if (released) {
+                return;
+            }
+            released = true;
+            limiter.release(this, System.nanoTime() - startNanos, classify(error));
+        }
+    }
+
+    private final EsLimiterProperties properties;
+    private final Map<QueryClass, Limiter> limiters = new EnumMap<>(QueryClass.class);
+
+    public EsConcurrencyLimiter(EsLimiterProperties properties) {
+        this.properties = properties;
+        limiters.put(QueryClass.AGGREGATION, new Limiter(QueryClass.AGGREGATION,
+                properties.getAggregationInitialLimit(), properties.getAggregationMinLimit(), properties.getAggregationMaxLimit()));
+        limiters.put(QueryClass.LOOKUP, new Limiter(QueryClass.LOOKUP,
+                properties.getLookupInitialLimit(), properties.getLookupMinLimit(), properties.getLookupMaxLimit()));
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 带聚合的搜索、msearch 与异步搜索为聚合类，其余（明细查询、get、count、_cat、bulk 等）为轻量请求
+     */
+    public static QueryClass classify(Object request) {
+        if (request instanceof SearchRequest search) {
+            return search.aggregations().isEmpty() ? QueryClass.LOOKUP : QueryClass.AGGREGATION;
+        }
+        if (request instanceof MsearchRequest || request instanceof SubmitRequest) {
+            return QueryClass.AGGREGATION;
+        }
+        return QueryClass.LOOKUP;
+    }
+
+    /**
+     * 获取名额；熔断打开或等待超时时抛出 EsOverloadedException（503）
+     */
+    public Permit acquire(QueryClass queryClass) {
+        return limiters.get(queryClass).acquire();
+    }
+
+    // 超时、连接失败、5xx 与 429 计为失败；其余 4xx（查询本身有误）说明 ES 正常响应，不影响限流与熔断
+    private static Outcome classify(Throwable error) {
+        Throwable e = error;
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e == null) {
+            return Outcome.SUCCESS;
+        }
+        if (e instanceof ElasticsearchException ee) {
+            return ee.status() == 429 || ee.status() >= 500 ? Outcome.FAILURE : Outcome.IGNORED;
+        }
+        if (e instanceof TransportException te) {
+            return te.statusCode() == 429 || te.statusCode() >= 500 || te.statusCode() <= 0 ? Outcome.FAILURE : Outcome.IGNORED;
+        }
+        return e instanceof IOException ? Outcome.FAILURE : Outcome.IGNORED;
+    }
+
+    /**
+     * 各类别的上限、并发、熔断状态与拒绝次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", properties.isEnabled());
+        for (Limiter limiter : limiters.values()) {
+            out.put(limiter.queryClass.name().toLowerCase(), limiter.stats());
+        }
+        return out;
+    }
+
+    private final class Limiter {
+        private final QueryClass queryClass;
+        private final int minLimit;
+        private final int maxLimit;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+
+        // 以下字段由 lock 保护
+        private double limit;
+        private int inFlight;
+        private double longRttNanos;
+        private BreakerState state = BreakerState.CLOSED;
+        private long openUntil;
+        private int trialsInFlight;
+        private int trialSuccesses;
+        private boolean[] window = new boolean[0];
+        private int windowPos;
+        private int windowCalls;
+        private int windowFailures;
+
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejectedLimit = new LongAdder();
+        private final LongAdder rejectedOpen = new LongAdder();
+        private final LongAdder breakerOpened = new LongAdder();
+
+        Limiter(QueryClass queryClass, int initialLimit, int minLimit, int maxLimit) {
+            this.queryClass = queryClass;
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        }
+
+        Permit acquire() {
+            boolean trial = false;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getMaxWaitMillis()));
+            lock.lock();
+            try {
+                trial = admitByBreaker();
+                while (inFlight >= (int) limit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        if (trial) {
+                            trialsInFlight--;
+                        }
+                        rejectedLimit.increment();
+                        throw new EsOverloadedException("Elasticsearch " + queryClass.name().toLowerCase()
+                                + " query concurrency limit reached (limit=" + (int) limit + "), please retry later");
+                    }
+                    available.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                if (trial) {
+                    trialsInFlight--;
+                }
+                Thread.currentThread().interrupt();
+                throw new EsOverloadedException("Interrupted while waiting for Elasticsearch query capacity");
+            } finally {
+                lock.unlock();
+            }
+            admitted.increment();
+            return new Permit(this, trial);
+        }
+
+        // 熔断打开时拒绝；到期后进入半开并放行有限的试探调用，返回本次是否为试探调用
+        private boolean admitByBreaker() {
+            if (state == BreakerState.OPEN) {
+                long now = System.currentTimeMillis();
+                if (now < openUntil) {
+                    rejectedOpen.increment();
+                    throw new EsOverloadedException("Elasticsearch circuit breaker open for " + queryClass.name().toLowerCase()
+                            + " queries, please retry later", (openUntil - now + 999) / 1000);
+                }
+                state = BreakerState.HALF_OPEN;
+                trialsInFlight = 0;
+                trialSuccesses = 0;
+            }
+            if (state == BreakerState.HALF_OPEN) {
+                if (trialsInFlight + trialSuccesses >= Math.max(1, properties.getBreakerHalfOpenCalls())) {
+                    rejectedOpen.increment();
+                    throw new EsOverloadedException("Elasticsearch circuit breaker half-open for "
+                            + queryClass.name().toLowerCase() + " queries, please retry later");
+                }
+                trialsInFlight++;
+                return true;
+            }
+            return false;
+        }
+
+        void release(Permit permit, long rttNanos, Outcome outcome) {
+            if (outcome == Outcome.FAILURE) {
+                failures.increment();
+            }
+            lock.lock();
+            try {
+                inFlight--;
+                adjustLimit(rttNanos, outcome);
+                boolean failed = outcome == Outcome.FAILURE
+                        || rttNanos > TimeUnit.MILLISECONDS.toNanos(properties.getBreakerSlowCallMillis());
+                if (permit.trial) {
+                    recordTrial(failed);
+                } else if (state == BreakerState.CLOSED) {
+                    recordCall(failed);
+                }
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adjustLimit(long rttNanos, Outcome outcome) {
+            if (outcome == Outcome.FAILURE) {
+                limit = Math.max(minLimit, limit * properties.getBackoffRatio());
+                return;
+            }
+            if (outcome == Outcome.IGNORED) {
+                return;
+            }
+            longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) / RTT_WINDOW;
+            // 并发远低于上限时延迟不能反映上限是否合适，不调整
+            if (inFlight + 1 < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, properties.getRttTolerance() * longRttNanos / Math.max(1, rttNanos)));
+            double target = limit * gradient + Math.sqrt(limit);
+            double smoothing = Math.max(0.01, Math.min(1.0, properties.getSmoothing()));
+            limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + target * smoothing));
+        }
+
+        private void recordTrial(boolean failed) {
+            trialsInFlight--;
+            if (state != BreakerState.HALF_OPEN) {
+                return;
+            }
+            if (failed) {
+                open();
+            } else if (++trialSuccesses >= Math.max(1, properties.getBreakerHalfOpenCalls())) {
+                state = BreakerState.CLOSED;
+                resetWindow();
+                log.info("Elasticsearch circuit breaker closed for {} queries", queryClass.name().toLowerCase());
+            }
+        }
+
+        private void recordCall(boolean failed) {
+            int size = Math.max(1, properties.getBreakerWindowSize());
+            if (window.length != size) {
+                window = new boolean[size];
+                resetWindow();
+            }
+            if (windowCalls == size && window[windowPos]) {
+                windowFailures--;
+            }
+            window[windowPos] = failed;
+            windowPos = (windowPos + 1) % size;
+            windowCalls = Math.min(size, windowCalls + 1);
+            if (failed) {
+                windowFailures++;
+            }
+            if (windowCalls >= Math.max(1, properties.getBreakerMinimumCalls())
+                    && windowFailures * 100 >= properties.getBreakerFailureRateThreshold() * windowCalls) {
+                open();
+            }
+        }
+
+        private void open() {
+            state = BreakerState.OPEN;
+            openUntil = System.currentTimeMillis() + properties.getBreakerOpenMillis();
+            breakerOpened.increment();
+            resetWindow();
+            log.warn("Elasticsearch circuit breaker opened for {} queries for {} ms (limit={})",
+                    queryClass.name().toLowerCase(), properties.getBreakerOpenMillis(), (int) limit);
+        }
+
+        private void resetWindow() {
+            Arrays.fill(window, false);
+            windowPos = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            lock.lock();
+            try {
+                m.put("limit", (int) limit);
+                m.put("minLimit", minLimit);
+                m.put("maxLimit", maxLimit);
+                m.put("inFlight", inFlight);
+                m.put("avgRttMillis", longRttNanos / 1_000_000.0);
+                m.put("breakerState", state.name());
+                m.put("windowFailureRate", windowCalls == 0 ? 0.0 : windowFailures * 100.0 / windowCalls);
+            } finally {
+                lock.unlock();
+            }
+            m.put("admitted", admitted.sum());
+            m.put("failures", failures.sum());
+            m.put("rejectedLimit", rejectedLimit.sum());
+            m.put("rejectedOpen", rejectedOpen.sum());
+            m.put("breakerOpened", breakerOpened.sum());
+            return m;
+        }
+    }
+}
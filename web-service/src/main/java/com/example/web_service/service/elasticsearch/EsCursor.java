@@ -0,0 +1,73 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.example.web_service.exception.InvalidCursorException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 深分页游标：PIT id + 上一页最后一条的 sort 值 + 首页统计的总数。
+ * 对外以 base64url 编码的不透明字符串传递，客户端原样回传即可获取下一页。
+ */
+public record EsCursor(String pitId, List<FieldValue> searchAfter, long total) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public String encode() {
+        List<Object> after = new ArrayList<>();
+        for (FieldValue v : searchAfter) {
+            after.add(v.isNull() ? null : v._get());
+        }
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(Map.of("pit", pitId, "after", after, "total", total));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode cursor", e);
+        }
+    }
+
+    /**
+     * 解析客户端回传的游标；任何格式错误（含 base64 非法字符）统一抛出 InvalidCursorException
+     */
+    public static EsCursor decode(String token) {
+        Map<?, ?> m;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token.trim());
+            m = MAPPER.readValue(new String(json, StandardCharsets.UTF_8), Map.class);
+        } catch (Exception e) {
+            throw new InvalidCursorException("Invalid cursor", e);
+        }
+        Object pit = m != null ? m.get("pit") : null;
+        Object after = m != null ? m.get("after") : null;
+        Object total = m != null ? m.get("total") : null;
+        if (!(pit instanceof String) || !(after instanceof List<?> values)) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        List<FieldValue> searchAfter = new ArrayList<>();
+        for (Object v : values) {
+            searchAfter.add(toFieldValue(v));
+        }
+        return new EsCursor((String) pit, searchAfter, total instanceof Number n ? n.longValue() : 0L);
+    }
+
+    private static FieldValue toFieldValue(Object v) {
+        if (v == null) {
+            return FieldValue.NULL;
+        }
+        if (v instanceof Integer || v instanceof Long || v instanceof java.math.BigInteger) {
+            return FieldValue.of(((Number) v).longValue());
+        }
+        if (v instanceof Number n) {
+            return FieldValue.of(n.doubleValue());
+        }
+        if (v instanceof Boolean b) {
+            return FieldValue.of(b);
+        }
+        return FieldValue.of(String.valueOf(v));
+    }
+}
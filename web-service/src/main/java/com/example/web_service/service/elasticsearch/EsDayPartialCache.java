@@ -0,0 +1,422 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.web_service.config.EsCacheProperties;
+
+/**
+ * 按天（UTC）缓存的部分聚合结果。
+ * 长时间范围的趋势请求中，已经结束的日期不会再变化：把查询范围拆成完整的已结束日期与首尾零头，
+ * 已结束日期的聚合（date_histogram 桶、terms 计数）按 (操作, 索引, 过滤条件, 形状, 天) 缓存，
+ * 只有零头（含当天）实时查询，各部分按 (分组, 时间桶) 相加合并。
+ * - date_histogram 的桶 key 为绝对时间（fixed 按 epoch 对齐，calendar 按 UTC 对齐），跨天的桶由各天的部分相加得到，计数合并是精确的
+ * - terms 在某一天被截断（sum_other_doc_count > 0）时，合并后的 Top N 可能不精确，结果带 approximate 标记
+ * - 缓存没有 TTL，按总桶数做 LRU 淘汰；导入历史数据或删除数据时由调用方按时间范围失效
+ */
+@Service
+public class EsDayPartialCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EsDayPartialCache.class);
+
+    private static final long DAY = EsIntervals.DAY;
+    // 单次按天加载请求的预估桶数上限，低于 ES 默认的 search.max_buckets（65536）
+    private static final long MAX_BUCKETS_PER_REQUEST = 40000;
+
+    /** 聚合形状：单序列 date_histogram、terms -> date_histogram、terms 合计 */
+    public enum Shape { HISTOGRAM, TERMS_HISTOGRAM, TERMS }
+
+    /**
+     * 一次聚合请求的描述
+     * @param filter 时间以外的过滤条件（可为空），filterKey 为其在缓存 key 中的表示
+     * @param size terms 期望返回的分组数，实际按天查询时不少于 day-partial-terms-size
+     */
+    public record Spec(String operation, String index, Query filter, String filterKey,
+                       Shape shape, String field, int size, String interval) {
+    }
+
+    /**
+     * 合并结果：分组 -> (时间桶 -> 计数)，HISTOGRAM 的分组为 ""，TERMS 的时间桶为 0。
+     * approximate 为 true 表示 terms 在某一部分被截断，Top N 与计数可能偏小
+     */
+    public record Merged(Map<String, TreeMap<Long, Long>> series, boolean approximate, int cachedDays, int queriedDays) {
+
+        /** 按合计降序的前 n 个分组 */
+        public List<String> top(int n) {
+            return series.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(total(b.getValue()), total(a.getValue())))
+                    .limit(Math.max(0, n))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+
+        public long total(String key) {
+            TreeMap<Long, Long> s = series.get(key);
+            return s != null ? total(s) : 0L;
+        }
+
+        private static long total(TreeMap<Long, Long> s) {
+            return s.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    private record DayKey(String operation, String index, String filterKey, Shape shape,
+                          String field, int size, String interval, long day) {
+    }
+
+    /** 一个部分（某一天或首尾零头）的聚合结果，truncated 表示 terms 被截断 */
+    record Partial(Map<String, Map<Long, Long>> series, boolean truncated, int weight) {
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsIndexCatalog indexCatalog;
+
+    @Autowired
+    private EsCacheProperties properties;
+
+    private final LinkedHashMap<DayKey, Partial> store = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBuckets;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * 聚合 [start, end]（毫秒，含两端）；范围内没有完整的已结束日期时返回 null，由调用方直接查询
+     */
+    public Merged aggregate(Spec spec, long start, long end) throws IOException {
+        if (!properties.isEnabled() || !properties.isDayPartialEnabled() || EsProfiler.isActive()) {
+            return null;
+        }
+        long firstDay = ceil(start, DAY);
+        long daysEnd = Math.min(floor(end + 1, DAY), floor(System.currentTimeMillis() - properties.getDayPartialSettleMillis(), DAY));
+        if (daysEnd - firstDay < DAY) {
+            return null;
+        }
+        Spec effective = spec.shape() == Shape.HISTOGRAM ? spec : new Spec(spec.operation(), spec.index(), spec.filter(),
+                spec.filterKey(), spec.shape(), spec.field(), Math.max(spec.size(), properties.getDayPartialTermsSize()), spec.interval());
+
+        List<Partial> parts = new ArrayList<>();
+        Set<Long> missing = new HashSet<>();
+        long missingFrom = Long.MAX_VALUE;
+        long missingTo = Long.MIN_VALUE;
+        for (long d = firstDay; d < daysEnd; d += DAY) {
+            Partial p = get(key(effective, d));
+            if (p != null) {
+                parts.add(p);
+            } else {
+                missing.add(d);
+                missingFrom = Math.min(missingFrom, d);
+                missingTo = Math.max(missingTo, d + DAY);
+            }
+        }
+        int cachedDays = parts.size();
+        if (!missing.isEmpty()) {
+            long step = daysPerRequest(effective) * DAY;
+            for (long from = missingFrom; from < missingTo; from += step) {
+                long to = Math.min(missingTo, from + step);
+                Map<Long, Partial> loaded = loadDays(effective, from, to);
+                for (long d = from; d < to; d += DAY) {
+                    // 没有文档的日期也缓存空结果，避免重复查询
+                    Partial p = loaded.getOrDefault(d, new Partial(Map.of(), false, 1));
+                    put(key(effective, d), p);
+                    if (missing.contains(d)) {
+                        parts.add(p);
+                    }
+                }
+            }
+        }
+
+        // 首尾零头：[start, firstDay) 与 [daysEnd, end]
+        List<long[]> live = new ArrayList<>();
+        if (start < firstDay) {
+            live.add(new long[]{start, firstDay});
+        }
+        if (daysEnd <= end) {
+            live.add(new long[]{daysEnd, end + 1});
+        }
+        if (!live.isEmpty()) {
+            var resp = esClient.search(s -> s
+                    .index(indexCatalog.resolve(effective.index(), start, end))
+                    .size(0)
+                    .ignoreUnavailable(true)
+                    .allowNoIndices(true)
+                    .query(query(effective, live))
+                    .aggregations("inner", a -> inner(a, effective)), Void.class);
+            parts.add(decode(resp.aggregations() != null ? resp.aggregations().get("inner") : null, effective));
+        }
+
+        Merged merged = merge(parts, effective, cachedDays, missing.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Day partial aggregation {}: {} cached days, {} queried days, live parts {}, approximate={}",
+                    spec.operation(), cachedDays, missing.size(), live.size(), merged.approximate());
+        }
+        return merged;
+    }
+
+    // 各部分按 (分组, 时间桶) 相加，跨天的桶（如 1w、1M）由多个部分的同一 key 累加得到
+    static Merged merge(List<Partial> parts, Spec spec, int cachedDays, int queriedDays) {
+        Map<String, TreeMap<Long, Long>> merged = new HashMap<>();
+        boolean approximate = false;
+        for (Partial p : parts) {
+            approximate |= p.truncated();
+            p.series().forEach((k, buckets) -> {
+                TreeMap<Long, Long> target = merged.computeIfAbsent(k, x -> new TreeMap<>());
+                buckets.forEach((ts, c) -> target.merge(ts, c, Long::sum));
+            });
+        }
+        if (spec.shape() != Shape.TERMS) {
+            merged.values().forEach(s -> fillGaps(s, spec.interval()));
+        }
+        return new Merged(merged, approximate, cachedDays, queriedDays);
+    }
+
+    /**
+     * 使与 [startMillis, endMillis] 重叠的日期失效（导入历史数据、删除数据后调用）
+     */
+    public void invalidate(long startMillis, long endMillis) {
+        long from = floor(startMillis, DAY);
+        synchronized (store) {
+            var it = store.entrySet().iterator();
+            while (it.hasNext()) {
+                var e = it.next();
+                long day = e.getKey().day();
+                if (day >= from && day <= endMillis) {
+                    storedBuckets -= e.getValue().weight();
+                    it.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (store) {
+            invalidations.add(store.size());
+            store.clear();
+            storedBuckets = 0;
+        }
+    }
+
+    /**
+     * 统计信息，格式与 BoundedTtlCache.stats 一致
+     */
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("name", "esDayPartials");
+        synchronized (store) {
+            out.put("size", store.size());
+            out.put("buckets", storedBuckets);
+        }
+        out.put("maxBuckets", properties.getDayPartialMaxBuckets());
+        out.put("hits", h);
+        out.put("misses", m);
+        out.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        out.put("evictions", evictions.sum());
+        out.put("invalidations", invalidations.sum());
+        return out;
+    }
+
+    // 一次请求按天分桶加载 [from, to) 内的多天
+    private Map<Long, Partial> loadDays(Spec spec, long from, long to) throws IOException {
+        var resp = esClient.search(s -> s
+                .index(indexCatalog.resolve(spec.index(), from, to - 1))
+                .size(0)
+                .ignoreUnavailable(true)
+                .allowNoIndices(true)
+                .query(query(spec, List.of(new long[]{from, to})))
+                .aggregations("day", a -> a
+                        .dateHistogram(h -> h.field("timestamp").fixedInterval(Time.of(t -> t.time("1d"))).minDocCount(1))
+                        .aggregations("inner", x -> inner(x, spec))), Void.class);
+        Map<Long, Partial> out = new HashMap<>();
+        Aggregate day = resp.aggregations() != null ? resp.aggregations().get("day") : null;
+        if (day != null && day.isDateHistogram()) {
+            for (var b : day.dateHistogram().buckets().array()) {
+                out.put(b.key(), decode(b.aggregations().get("inner"), spec));
+            }
+        }
+        return out;
+    }
+
+    private static Query query(Spec spec, List<long[]> ranges) {
+        BoolQuery.Builder bool = new BoolQuery.Builder();
+        if (spec.filter() != null) {
+            bool.filter(spec.filter());
+        }
+        for (long[] r : ranges) {
+            bool.should(s -> s.range(q -> q.field("timestamp").gte(JsonData.of(r[0])).lt(JsonData.of(r[1]))));
+        }
+        return Query.of(q -> q.bool(bool.minimumShouldMatch("1").build()));
+    }
+
+    private static ObjectBuilder<Aggregation> inner(Aggregation.Builder a, Spec spec) {
+        return switch (spec.shape()) {
+            case HISTOGRAM -> histogram(a, spec.interval());
+            case TERMS_HISTOGRAM -> a.terms(t -> t.field(spec.field()).size(spec.size()))
+                    .aggregations("trend", x -> histogram(x, spec.interval()));
+            case TERMS -> a.terms(t -> t.field(spec.field()).size(spec.size()));
+        };
+    }
+
+    private static Aggregation.Builder.ContainerBuilder histogram(Aggregation.Builder a, String interval) {
+        return a.dateHistogram(h -> {
+            h.field("timestamp");
+            ElasticsearchSyncService.applyInterval(h, interval);
+            h.minDocCount(1);
+            return h;
+        });
+    }
+
+    private static Partial decode(Aggregate agg, Spec spec) {
+        Map<String, Map<Long, Long>> series = new HashMap<>();
+        int weight = 1;
+        if (agg == null) {
+            return new Partial(series, false, weight);
+        }
+        if (spec.shape() == Shape.HISTOGRAM) {
+            if (agg.isDateHistogram()) {
+                Map<Long, Long> s = new HashMap<>();
+                agg.dateHistogram().buckets().array().forEach(b -> s.put(b.key(), b.docCount()));
+                series.put("", s);
+                weight += s.size();
+            }
+            return new Partial(series, false, weight);
+        }
+        for (var b : EsRollupService.termBuckets(agg)) {
+            Map<Long, Long> s = new HashMap<>();
+            if (spec.shape() == Shape.TERMS) {
+                s.put(0L, b.docCount());
+            } else {
+                Aggregate trend = b.aggs().get("trend");
+                if (trend != null && trend.isDateHistogram()) {
+                    trend.dateHistogram().buckets().array().forEach(h -> s.put(h.key(), h.docCount()));
+                }
+            }
+            series.put(b.key(), s);
+            weight += s.size() + 1;
+        }
+        return new Partial(series, sumOtherDocCount(agg) > 0, weight);
+    }
+
+    private static long sumOtherDocCount(Aggregate agg) {
+        Long other = null;
+        if (agg.isSterms()) {
+            other = agg.sterms().sumOtherDocCount();
+        } else if (agg.isLterms()) {
+            other = agg.lterms().sumOtherDocCount();
+        } else if (agg.isDterms()) {
+            other = agg.dterms().sumOtherDocCount();
+        }
+        return other != null ? other : 0L;
+    }
+
+    // 与原始查询的 min_doc_count=0 一致：首末桶之间缺失的桶补 0
+    private static void fillGaps(TreeMap<Long, Long> series, String interval) {
+        if (series.size() < 2) {
+            return;
+        }
+        long last = series.lastKey();
+        for (long ts = series.firstKey(); ts < last; ts = next(ts, interval)) {
+            series.putIfAbsent(ts, 0L);
+        }
+    }
+
+    // 下一个桶的起点：日历型间隔按 UTC 日历推进，其余按 EsIntervals 的毫秒数
+    static long next(long bucket, String interval) {
+        String s = (interval == null ? "1h" : interval.trim()).toLowerCase();
+        ZonedDateTime t = Instant.ofEpochMilli(bucket).atZone(ZoneOffset.UTC);
+        return switch (s) {
+            case "1y", "year" -> t.plusYears(1).toInstant().toEpochMilli();
+            case "1q", "quarter" -> t.plusMonths(3).toInstant().toEpochMilli();
+            case "1mon", "1mth", "1mo", "1month", "month" -> t.plusMonths(1).toInstant().toEpochMilli();
+            case "1w", "week" -> t.plusWeeks(1).toInstant().toEpochMilli();
+            default -> bucket + Math.max(1L, EsIntervals.toMillis(s));
+        };
+    }
+
+    private long daysPerRequest(Spec spec) {
+        long perDay = Math.max(1L, DAY / Math.max(1L, EsIntervals.toMillis(spec.interval())));
+        if (spec.shape() == Shape.TERMS) {
+            perDay = spec.size();
+        } else if (spec.shape() == Shape.TERMS_HISTOGRAM) {
+            perDay *= spec.size();
+        }
+        return Math.max(1L, MAX_BUCKETS_PER_REQUEST / perDay);
+    }
+
+    private static DayKey key(Spec spec, long day) {
+        return new DayKey(spec.operation(), spec.index(), spec.filterKey(), spec.shape(),
+                spec.field(), spec.size(), spec.interval(), day);
+    }
+
+    private Partial get(DayKey key) {
+        Partial p;
+        synchronized (store) {
+            p = store.get(key);
+        }
+        if (p != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return p;
+    }
+
+    private void put(DayKey key, Partial p) {
+        synchronized (store) {
+            Partial old = store.put(key, p);
+            if (old != null) {
+                storedBuckets -= old.weight();
+            }
+            storedBuckets += p.weight();
+            var it = store.entrySet().iterator();
+            while (storedBuckets > properties.getDayPartialMaxBuckets() && it.hasNext()) {
+                var eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                storedBuckets -= eldest.getValue().weight();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static long floor(long millis, long step) {
+        return Math.floorDiv(millis, step) * step;
+    }
+
+    private static long ceil(long millis, long step) {
+        return -Math.floorDiv(-millis, step) * step;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.example.web_service.model.es.TrendingData;
+
+/**
+ * 时间序列降采样：先由 ES date_histogram 预聚合成适量的桶（目标点数的 OVERSAMPLE 倍），
+ * 再用 Largest-Triangle-Three-Buckets (LTTB) 在原始数组上选出 points 个点，保留峰谷形状。
+ */
+@Service
+public class EsDownsampler {
+
+    /** ES 预聚合桶数相对目标点数的倍数 */
+    public static final int OVERSAMPLE = 4;
+
+    /** 单次请求的最大桶数，低于 ES 默认 search.max_buckets (65536) */
+    private static final int MAX_BUCKETS = 50_000;
+
+    private static final int MAX_PORTS = 100;
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    /**
+     * 按通道(port)返回降采样后的流量记录（timestamp/port/util/bps/pps），每个通道最多 points 个点。
+     * 先取数据的时间范围与通道数，据此计算 fixed_interval，使总桶数不超过 MAX_BUCKETS，
+     * 再以 terms(port) -> date_histogram -> avg 一次取回预聚合数据，按 bps 做 LTTB。
+     */
+    public List<Map<String, Object>> sessionTraffic(String index, Query query, int points) throws IOException {
+        var rangeResp = esClient.search(s -> s
+                .index(index)
+                .size(0)
+                .query(query)
+                .aggregations("min_ts", a -> a.min(m -> m.field("timestamp")))
+                .aggregations("max_ts", a -> a.max(m -> m.field("timestamp")))
+                .aggregations("ports", a -> a.cardinality(c -> c.field("port"))), Void.class);
+        var aggs = rangeResp.aggregations();
+        double minTs = aggs.get("min_ts").min().value();
+        double maxTs = aggs.get("max_ts").max().value();
+        if (Double.isNaN(minTs) || Double.isNaN(maxTs) || Double.isInfinite(minTs) || Double.isInfinite(maxTs)) {
+            return List.of();
+        }
+        long start = (long) minTs;
+        long span = Math.max(1L, (long) maxTs - start);
+        int ports = (int) Math.max(1, Math.min(MAX_PORTS, aggs.get("ports").cardinality().value()));
+        int bucketsPerPort = Math.max(points, Math.min(points * OVERSAMPLE, MAX_BUCKETS / ports));
+        long intervalMs = Math.max(1000L, (span + bucketsPerPort - 1) / bucketsPerPort);
+
+        var resp = esClient.search(s -> s
+                .index(index)
+                .size(0)
+                .query(query)
+                .aggregations("ports", a -> a
+                        .terms(t -> t.field("port").size(MAX_PORTS))
+                        .aggregations("trend", t -> t
+                                .dateHistogram(h -> h
+                                        .field("timestamp")
+                                        .fixedInterval(f -> f.time(intervalMs + "ms"))
+                                        .minDocCount(1))
+                                .aggregations("util", u -> u.avg(v -> v.field("util")))
+                                .aggregations("bps", u -> u.avg(v -> v.field("bps")))
+                                .aggregations("pps", u -> u.avg(v -> v.field("pps"))))), Void.class);
+
+        List<Map<String, Object>> out = new ArrayList<>();
+        Aggregate portsAgg = resp.aggregations().get("ports");
+        if (portsAgg == null) {
+            return out;
+        }
+        if (portsAgg.isLterms()) {
+            for (var b : portsAgg.lterms().buckets().array()) {
+                appendPortSeries(out, (int) b.key(), b.aggregations().get("trend"), points);
+            }
+        } else if (portsAgg.isSterms()) {
+            for (var b : portsAgg.sterms().buckets().array()) {
+                try {
+                    appendPortSeries(out, Integer.parseInt(b.key().stringValue()), b.aggregations().get("trend"), points);
+                } catch (NumberFormatException ignore) {
+                    // 无法解析的端口号忽略
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void appendPortSeries(List<Map<String, Object>> out, int port, Aggregate trend, int points) {
+        if (trend == null || !trend.isDateHistogram()) {
+            return;
+        }
+        var buckets = trend.dateHistogram().buckets().array();
+        int n = buckets.size();
+        long[] ts = new long[n];
+        double[] util = new double[n];
+        double[] bps = new double[n];
+        double[] pps = new double[n];
+        for (int i = 0; i < n; i++) {
+            var b = buckets.get(i);
+            ts[i] = b.key();
+            util[i] = avgValue(b.aggregations().get("util"));
+            bps[i] = avgValue(b.aggregations().get("bps"));
+            pps[i] = avgValue(b.aggregations().get("pps"));
+        }
+        for (int i : lttb(ts, bps, points)) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("timestamp", ts[i]);
+            r.put("port", port);
+            r.put("util", String.format(Locale.US, "%.4f", util[i]));
+            r.put("bps", Math.round(bps[i]));
+            r.put("pps", Math.round(pps[i]));
+            out.add(r);
+        }
+    }
+
+    private static double avgValue(Aggregate agg) {
+        if (agg == null || !agg.isAvg()) {
+            return 0.0;
+        }
+        double v = agg.avg().value();
+        return Double.isNaN(v) ? 0.0 : v;
+    }
+
+    /**
+     * 对每个系列分别做 LTTB 降采样；points 为空或不大于 0 时原样返回
+     */
+    public static Map<String, List<TrendingData>> downsample(Map<String, List<TrendingData>> series, Integer points) {
+        if (series == null || points == null || points <= 0) {
+            return series;
+        }
+        Map<String, List<TrendingData>> out = new LinkedHashMap<>();
+        for (var e : series.entrySet()) {
+            out.put(e.getKey(), downsample(e.getValue(), points));
+        }
+        return out;
+    }
+
+    public static List<TrendingData> downsample(List<TrendingData> series, Integer points) {
+        if (series == null || points == null || points <= 0 || series.size() <= points) {
+            return series;
+        }
+        int n = series.size();
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            TrendingData td = series.get(i);
+            x[i] = td.getTimestamp() != null ? td.getTimestamp() : 0L;
+            y[i] = td.getCount() != null ? td.getCount() : 0L;
+        }
+        int[] keep = lttb(x, y, points);
+        List<TrendingData> out = new ArrayList<>(keep.length);
+        for (int i : keep) {
+            out.add(series.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets：返回保留点的下标（升序）。
+     * 首尾点固定保留；中间点均分为 threshold-2 个桶，每个桶选出与「上一个已选点」和「下一个桶均值点」
+     * 构成三角形面积最大的点。x 需按升序排列。
+     */
+    public static int[] lttb(long[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n || threshold <= 0) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        if (threshold == 1) {
+            return new int[]{0};
+        }
+        if (threshold == 2) {
+            return new int[]{0, n - 1};
+        }
+        int[] sampled = new int[threshold];
+        int count = 0;
+        sampled[count++] = 0;
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            // 下一个桶的均值点
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            int avgLen = avgEnd - avgStart;
+            if (avgLen <= 0) {
+                avgX = x[n - 1];
+                avgY = y[n - 1];
+            } else {
+                for (int j = avgStart; j < avgEnd; j++) {
+                    avgX += x[j];
+                    avgY += y[j];
+                }
+                avgX /= avgLen;
+                avgY /= avgLen;
+            }
+
+            // 当前桶中选面积最大的点
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = Math.min((int) Math.floor((i + 1) * every) + 1, n - 1);
+            double ax = x[a];
+            double ay = y[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (y[j] - ay) - (ax - x[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled[count++] = next;
+            a = next;
+        }
+        sampled[count++] = n - 1;
+        return sampled;
+    }
+}
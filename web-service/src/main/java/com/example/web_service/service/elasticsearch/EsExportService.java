@@ -0,0 +1,272 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.example.web_service.config.EsExportProperties;
+import com.example.web_service.entity.ZeekLogAttribute;
+import com.example.web_service.entity.ZeekLogType;
+import com.example.web_service.entity.ZeekLogsConfig;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/**
+ * 查询结果流式导出（NDJSON / CSV）。
+ * 通过 PIT + search_after 逐批拉取，每批写出后即丢弃，内存占用与结果总量无关；
+ * 输出流写入阻塞时（客户端读取慢）不会继续拉取下一批，天然形成背压。
+ */
+@Service
+public class EsExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(EsExportService.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsExportProperties properties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** 文档 _source，按类型反序列化以免使用原始类型 Map */
+    private static final class Source extends LinkedHashMap<String, Object> {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private volatile ZeekLogsConfig zeekLogsConfig;
+
+    /**
+     * 解析导出列（字段别名 keyAlias）：
+     * - columns 为 "all"：该日志类型的全部字段
+     * - columns 为逗号分隔列表：按给定顺序导出，必须是该日志类型中的字段别名
+     * - columns 为空：zeek_logs.yml 中 defaultShow 的字段；找不到日志类型时返回空列表（导出完整 _source）
+     */
+    public List<String> resolveColumns(String logName, String columns) throws IOException {
+        List<ZeekLogAttribute> attrs = attributesOf(logName);
+        if (columns != null && !columns.isBlank() && !"all".equalsIgnoreCase(columns.trim())) {
+            Set<String> known = new LinkedHashSet<>();
+            attrs.forEach(a -> known.add(a.getKeyAlias()));
+            List<String> out = new ArrayList<>();
+            for (String c : columns.split(",")) {
+                String col = c.trim();
+                if (col.isEmpty()) continue;
+                if (!known.isEmpty() && !known.contains(col)) {
+                    throw new IllegalArgumentException("Unknown column '" + col + "' for log type " + logName);
+                }
+                out.add(col);
+            }
+            return out;
+        }
+        boolean all = columns != null && "all".equalsIgnoreCase(columns.trim());
+        List<String> out = new ArrayList<>();
+        for (ZeekLogAttribute a : attrs) {
+            if (all || Boolean.TRUE.equals(a.getDefaultShow())) {
+                out.add(a.getKeyAlias());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 将查询结果以 NDJSON 或 CSV 写入输出流，返回导出的文档数。
+     * columns 为空时 NDJSON 输出完整 _source；CSV 必须指定列。
+     */
+    public long export(String index, Query query, List<String> columns, String format, Long limit, OutputStream out) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (csv && columns.isEmpty()) {
+            throw new IllegalArgumentException("CSV export requires at least one column");
+        }
+        long max = limit != null && limit > 0 ? limit : Long.MAX_VALUE;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+        json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        // 行分隔由下方显式写入 '\n'
+        json.setRootValueSeparator(new SerializedString(""));
+        if (csv) {
+            writeCsvRow(writer, columns);
+        }
+
+        String keepAlive = Math.max(1000L, properties.getPitKeepAliveMillis()) + "ms";
+        String pitId = esClient.openPointInTime(p -> p.index(index).keepAlive(t -> t.time(keepAlive))).id();
+        long written = 0;
+        long t0 = System.currentTimeMillis();
+        try {
+            List<FieldValue> after = List.of();
+            while (written < max) {
+                final String pit = pitId;
+                final List<FieldValue> searchAfter = after;
+                final int batch = (int) Math.min(BATCH_SIZE, max - written);
+                SearchResponse<Source> resp = esClient.search(s -> {
+                    s.pit(p -> p.id(pit).keepAlive(t -> t.time(keepAlive)))
+                            .query(query)
+                            .size(batch)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .sort(so -> so.field(f -> f.field("timestamp").order(SortOrder.Asc)))
+                            .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+                    if (!columns.isEmpty()) {
+                        s.source(src -> src.filter(f -> f.includes(columns)));
+                    }
+                    if (!searchAfter.isEmpty()) {
+                        s.searchAfter(searchAfter);
+                    }
+                    return s;
+                }, Source.class);
+                if (resp.pitId() != null) {
+                    pitId = resp.pitId();
+                }
+                List<Hit<Source>> hits = resp.hits().hits();
+                for (Hit<Source> hit : hits) {
+                    Map<String, Object> source = hit.source() != null ? hit.source() : Map.of();
+                    if (csv) {
+                        List<String> row = new ArrayList<>(columns.size());
+                        for (String col : columns) {
+                            row.add(toCsvValue(valueAt(source, col)));
+                        }
+                        writeCsvRow(writer, row);
+                    } else {
+                        if (columns.isEmpty()) {
+                            json.writeObject(source);
+                        } else {
+                            Map<String, Object> projected = new LinkedHashMap<>();
+                            for (String col : columns) {
+                                projected.put(col, valueAt(source, col));
+                            }
+                            json.writeObject(projected);
+                        }
+                        json.flush();
+                        writer.write('\n');
+                    }
+                    written++;
+                }
+                // 每批刷新一次，将数据推送给客户端；客户端读取慢时此处阻塞
+                writer.flush();
+                if (hits.size() < batch) {
+                    break;
+                }
+                after = hits.get(hits.size() - 1).sort();
+            }
+        } finally {
+            final String pit = pitId;
+            try {
+                esClient.closePointInTime(c -> c.id(pit));
+            } catch (Exception e) {
+                log.debug("Failed to close point in time: {}", e.getMessage());
+            }
+            json.close();
+            writer.flush();
+        }
+        log.info("Exported {} documents from {} as {} in {} ms", written, index, csv ? "csv" : "ndjson", System.currentTimeMillis() - t0);
+        return written;
+    }
+
+    // 根据索引名推断日志类型，如 conn-realtime / conn-* -> conn
+    public static String logNameOf(String index) {
+        if (index == null) return null;
+        String name = index.trim();
+        int dash = name.indexOf('-');
+        if (dash > 0) name = name.substring(0, dash);
+        return name.replace("*", "");
+    }
+
+    private List<ZeekLogAttribute> attributesOf(String logName) throws IOException {
+        ZeekLogsConfig config = zeekLogsConfig();
+        List<ZeekLogAttribute> attrs = new ArrayList<>();
+        if (config.getZeek() == null || logName == null) {
+            return attrs;
+        }
+        ZeekLogType type = config.getZeek().stream()
+                .filter(t -> logName.equals(t.getLogName()))
+                .findFirst()
+                .orElse(null);
+        if (type == null) {
+            return attrs;
+        }
+        if (Boolean.TRUE.equals(type.getNeedBeginAttr()) && config.getBeginAttr() != null) {
+            attrs.addAll(config.getBeginAttr());
+        }
+        if (type.getAttribute() != null) {
+            attrs.addAll(type.getAttribute());
+        }
+        if (Boolean.TRUE.equals(type.getNeedEndAttr()) && config.getEndAttr() != null) {
+            attrs.addAll(config.getEndAttr());
+        }
+        return attrs;
+    }
+
+    private ZeekLogsConfig zeekLogsConfig() throws IOException {
+        ZeekLogsConfig config = zeekLogsConfig;
+        if (config == null) {
+            ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+            yamlMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            config = yamlMapper.readValue(new ClassPathResource("zeek_logs.yml").getInputStream(), ZeekLogsConfig.class);
+            zeekLogsConfig = config;
+        }
+        return config;
+    }
+
+    // 支持点号路径（如 alert.severity）；整体 key 优先
+    private static Object valueAt(Map<String, Object> source, String path) {
+        if (source.containsKey(path)) {
+            return source.get(path);
+        }
+        Object cur = source;
+        for (String part : path.split("\\.")) {
+            if (!(cur instanceof Map<?, ?> m)) {
+                return null;
+            }
+            cur = m.get(part);
+        }
+        return cur;
+    }
+
+    private String toCsvValue(Object v) throws IOException {
+        if (v == null) return "";
+        if (v instanceof Map<?, ?> || v instanceof List<?>) {
+            return objectMapper.writeValueAsString(v);
+        }
+        return String.valueOf(v);
+    }
+
+    private static void writeCsvRow(Writer writer, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) writer.write(',');
+            String v = values.get(i);
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(v.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(v);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ExpandWildcard;
+import com.example.web_service.config.EsCatalogProperties;
+
+/**
+ * 数据索引的时间范围目录，用于按查询时间范围裁剪通配符目标（conn-* / event-* / octopusx-data-* / *）。
+ * - 定时通过 _cat/indices 列出索引，只对新出现或文档数变化的索引用 min/max 聚合重新计算 timestamp 范围
+ * - 文档数持续 seal-quiet-millis 不变的索引视为已封存，其范围可信；仍在写入或刚停止写入的索引一律视为与任意时间范围重叠
+ *   （离线导入等场景可能间歇写入，只看相邻两次刷新会把仍在写入的索引过早排除）
+ * - 裁剪以「通配符 + 排除」的形式输出（如 conn-*,-conn-2024.01.01），查询时由 ES 展开通配符，
+ *   目录未收录的新索引仍会被查询，只有确认不重叠的已封存索引被排除
+ */
+@Service
+public class EsIndexCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(EsIndexCatalog.class);
+
+    /**
+     * 索引的文档数与时间范围。
+     * known 为 false 表示范围计算失败（如 timestamp 映射异常），此时不参与裁剪；
+     * minTimestamp/maxTimestamp 为空且 known 为 true 表示没有带时间的文档；changedAt 为最近一次观察到文档数变化的时间
+     */
+    public record IndexRange(String index, long docs, Long minTimestamp, Long maxTimestamp,
+                             boolean known, boolean sealed, long changedAt, long refreshedAt) {
+
+        boolean hasTimestamps() {
+            return minTimestamp != null && maxTimestamp != null;
+        }
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsCatalogProperties properties;
+
+    // 每次刷新整体替换，读取无需加锁
+    private volatile Map<String, IndexRange> catalog;
+
+    @Scheduled(fixedDelayString = "${app.es-catalog.refresh-interval-millis:60000}")
+    public void scheduledRefresh() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Failed to refresh ES index catalog: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 增量刷新：文档数未变且范围已知的索引沿用上次结果（不变持续 seal-quiet-millis 后标记为已封存），其余重新计算
+     */
+    public synchronized void refresh() throws IOException {
+        Map<String, IndexRange> previous = catalog != null ? catalog : Map.of();
+        var records = esClient.cat().indices(c -> c
+                .index(ElasticsearchSyncService.nonSystemTargets(properties.getExcludedIndices()))
+                .expandWildcards(ExpandWildcard.Open)).valueBody();
+        Map<String, IndexRange> next = new HashMap<>();
+        long now = System.currentTimeMillis();
+        int recomputed = 0;
+        for (var rec : records) {
+            String index = rec.index();
+            if (index == null || !"open".equals(rec.status())) {
+                continue;
+            }
+            long docs = parseLong(rec.docsCount());
+            IndexRange prev = previous.get(index);
+            if (prev != null && prev.known() && prev.docs() == docs) {
+                boolean sealed = prev.sealed() || now - prev.changedAt() >= properties.getSealQuietMillis();
+                next.put(index, prev.sealed() ? prev : new IndexRange(index, docs,
+                        prev.minTimestamp(), prev.maxTimestamp(), true, sealed, prev.changedAt(), now));
+            } else {
+                next.put(index, compute(index, docs));
+                recomputed++;
+            }
+        }
+        catalog = Map.copyOf(next);
+        if (recomputed > 0) {
+            log.debug("ES index catalog refreshed: {} indices, {} recomputed", next.size(), recomputed);
+        }
+    }
+
+    private IndexRange compute(String index, long docs) {
+        long now = System.currentTimeMillis();
+        if (docs == 0) {
+            return new IndexRange(index, 0, null, null, true, false, now, now);
+        }
+        String field = properties.getTimestampField();
+        try {
+            var resp = esClient.search(s -> s
+                    .index(index)
+                    .size(0)
+                    .aggregations("min_ts", a -> a.min(m -> m.field(field)))
+                    .aggregations("max_ts", a -> a.max(m -> m.field(field))), Void.class);
+            double min = resp.aggregations().get("min_ts").min().value();
+            double max = resp.aggregations().get("max_ts").max().value();
+            boolean valid = !Double.isNaN(min) && !Double.isNaN(max) && !Double.isInfinite(min) && !Double.isInfinite(max);
+            return new IndexRange(index, docs, valid ? (long) min : null, valid ? (long) max : null, true, false, now, now);
+        } catch (Exception e) {
+            log.debug("Failed to compute timestamp range of '{}': {}", index, e.getMessage());
+            return new IndexRange(index, docs, null, null, false, false, now, now);
+        }
+    }
+
+    /**
+     * 将查询目标按时间范围裁剪，startMillis/endMillis 为空表示该侧不限；两者都为空时不裁剪。
+     * 非通配符部分与排除表达式原样保留；目录未加载或未启用时返回原目标。
+     */
+    public List<String> resolve(String target, Long startMillis, Long endMillis) {
+        if (startMillis == null && endMillis == null) {
+            return Collections.singletonList(target);
+        }
+        return prune(target, r -> !overlaps(r, startMillis, endMillis));
+    }
+
+    /**
+     * 只排除没有带时间文档的已封存索引，用于不限时间但按 timestamp 排序/取值的查询（如 "*"）
+     */
+    public List<String> resolveTimestamped(String target) {
+        return prune(target, r -> r.sealed() && r.known() && !r.hasTimestamps());
+    }
+
+    private List<String> prune(String target, Predicate<IndexRange> excludable) {
+        Map<String, IndexRange> current = catalog;
+        if (target == null || !properties.isEnabled() || current == null) {
+            return Collections.singletonList(target);
+        }
+        List<String> out = new ArrayList<>();
+        for (String part : target.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            out.add(part);
+            if (!part.contains("*") || part.startsWith("-") || part.startsWith("<")) {
+                continue;
+            }
+            Pattern glob = glob(part);
+            List<IndexRange> matched = new ArrayList<>();
+            List<IndexRange> prunable = new ArrayList<>();
+            for (IndexRange r : current.values()) {
+                if (glob.matcher(r.index()).matches()) {
+                    matched.add(r);
+                    if (excludable.test(r)) {
+                        prunable.add(r);
+                    }
+                }
+            }
+            if (prunable.isEmpty()) {
+                continue;
+            }
+            if (prunable.size() == matched.size()) {
+                // 全部可排除时保留一个索引，使聚合仍返回完整（空）结构
+                IndexRange keep = prunable.stream()
+                        .max(Comparator.comparing((IndexRange r) -> r.maxTimestamp() != null ? r.maxTimestamp() : Long.MIN_VALUE))
+                        .get();
+                prunable.remove(keep);
+            }
+            prunable.sort(Comparator.comparingLong(IndexRange::docs).reversed());
+            prunable.stream()
+                    .limit(Math.max(0, properties.getMaxExclusions()))
+                    .forEach(r -> out.add("-" + r.index()));
+        }
+        return out.isEmpty() ? Collections.singletonList(target) : out;
+    }
+
+    /**
+     * 字符串形式的时间（毫秒时间戳或 ISO-8601）转毫秒；无法解析（如 now-1h）时返回 null，表示不裁剪该侧
+     */
+    public static Long toMillis(String time) {
+        if (time == null || time.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(time.trim());
+        } catch (NumberFormatException e) {
+            // 非数字
+        }
+        try {
+            return Instant.parse(time.trim()).toEpochMilli();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 目录快照，按索引名排序
+     */
+    public List<IndexRange> list() {
+        Map<String, IndexRange> current = catalog;
+        if (current == null) {
+            return List.of();
+        }
+        List<IndexRange> out = new ArrayList<>(current.values());
+        out.sort(Comparator.comparing(IndexRange::index));
+        return out;
+    }
+
+    /**
+     * 索引名是否匹配 index 表达式（逗号分隔，支持 * 通配与 - 排除）
+     */
+    public static boolean matches(String target, String index) {
+        if (target == null || target.isBlank() || "_all".equals(target)) {
+            return true;
+        }
+        boolean matched = false;
+        for (String part : target.split(",")) {
+            part = part.trim();
+            if (part.startsWith("-")) {
+                if (matched && glob(part.substring(1)).matcher(index).matches()) {
+                    matched = false;
+                }
+            } else if (!part.isEmpty() && glob(part).matcher(index).matches()) {
+                matched = true;
+            }
+        }
+        return matched;
+    }
+
+    // 未封存或范围未知的索引总是视为重叠
+    static boolean overlaps(IndexRange r, Long startMillis, Long endMillis) {
+        if (!r.sealed() || !r.known()) {
+            return true;
+        }
+        if (!r.hasTimestamps()) {
+            return false;
+        }
+        return (startMillis == null || r.maxTimestamp() >= startMillis)
+                && (endMillis == null || r.minTimestamp() <= endMillis);
+    }
+
+    private static Pattern glob(String pattern) {
+        List<String> pieces = new ArrayList<>();
+        for (String piece : pattern.split("\\*", -1)) {
+            pieces.add(Pattern.quote(piece));
+        }
+        return Pattern.compile(String.join(".*", pieces));
+    }
+
+    private static long parseLong(String v) {
+        try {
+            return v != null ? Long.parseLong(v) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
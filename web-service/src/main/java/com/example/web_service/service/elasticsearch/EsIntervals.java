@@ -0,0 +1,77 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.List;
+
+/**
+ * date_histogram interval 标签工具，标签规则与 ElasticsearchSyncService.applyInterval 保持一致。
+ */
+public final class EsIntervals {
+
+    public static final long MINUTE = 60_000L;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+
+    /** 由细到粗的候选间隔，放大间隔时按此顺序选取（月/季/年为日历型） */
+    public static final List<String> LADDER = List.of(
+            "1m", "5m", "15m", "30m", "1h", "3h", "6h", "12h", "1d", "3d", "7d", "14d", "1mon", "1q", "1y");
+
+    private EsIntervals() {
+    }
+
+    /**
+     * 将 interval 标签换算为近似毫秒数（月/季/年按 30/90/365 天计），无法识别时按 1h 处理。
+     */
+    public static long toMillis(String interval) {
+        String s = (interval == null ? "1h" : interval.trim()).toLowerCase();
+        switch (s) {
+            case "1y":
+            case "year":
+                return 365 * DAY;
+            case "1q":
+            case "quarter":
+                return 90 * DAY;
+            case "1mon":
+            case "1mth":
+            case "1mo":
+            case "1month":
+            case "month":
+                return 30 * DAY;
+            case "1w":
+            case "week":
+                return 7 * DAY;
+            case "1min":
+            case "minute":
+                return MINUTE;
+            case "hour":
+                return HOUR;
+            case "day":
+                return DAY;
+            default:
+                break;
+        }
+        var m = java.util.regex.Pattern.compile("^(\\d+)(ms|s|m|h|d)$").matcher(s);
+        if (m.matches()) {
+            long n = Long.parseLong(m.group(1));
+            switch (m.group(2)) {
+                case "ms":
+                    return n;
+                case "s":
+                    return n * 1000L;
+                case "m":
+                    return n * MINUTE;
+                case "h":
+                    return n * HOUR;
+                default:
+                    return n * DAY;
+            }
+        }
+        return HOUR;
+    }
+
+    /**
+     * 时间跨度 spanMillis 按 interval 分桶的预估桶数，含首尾不完整的桶
+     */
+    public static long bucketCount(long spanMillis, String interval) {
+        return Math.max(0, spanMillis) / Math.max(1, toMillis(interval)) + 1;
+    }
+}
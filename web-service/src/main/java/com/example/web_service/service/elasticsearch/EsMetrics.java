@@ -0,0 +1,560 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.elasticsearch.client.HeapBufferedAsyncResponseConsumer;
+import org.elasticsearch.client.RequestOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.MultiBucketAggregateBase;
+import co.elastic.clients.elasticsearch._types.aggregations.MultiBucketBase;
+import co.elastic.clients.elasticsearch._types.aggregations.SingleBucketAggregateBase;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearchDocumentResponseBase;
+import co.elastic.clients.elasticsearch.core.CountResponse;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResult;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.transport.TransportException;
+import com.example.web_service.config.EsMetricsProperties;
+import com.example.web_service.exception.EsOverloadedException;
+
+/**
+ * ES 调用指标。每次调用按 operation（发起调用的业务方法，如 ElasticsearchSyncService.getProtocolTrends）、
+ * index（去掉排除项并把日期后缀归并为 * 的索引模式）、endpoint（ES API）与 outcome 分组，记录：
+ * - 端到端耗时直方图与 ES 返回的 took 直方图（两者之差为网络传输、排队与反序列化开销）
+ * - 线上响应字节数（压缩时为压缩后字节数）、返回命中数与聚合桶数
+ * 以 Prometheus 文本格式输出（/es/metrics/prometheus），并附带并发限制与异步执行器的状态。
+ */
+@Component
+public class EsMetrics {
+
+    // 与 RestClient 默认响应缓冲上限一致
+    private static final int RESPONSE_BUFFER_LIMIT = 100 * 1024 * 1024;
+    private static final Pattern DATE_SUFFIX = Pattern.compile("\\d{4}[.\\-](w?\\d{2})([.\\-]\\d{2})?");
+    private static final String APP_PACKAGE = "com.example.web_service.";
+    private static final String TRANSPORT_PACKAGE = "com.example.web_service.service.elasticsearch.config.";
+
+    // 调用方显式指定的逻辑操作名，优先于调用栈推断
+    private static final ThreadLocal<String> OPERATION = new ThreadLocal<>();
+
+    private record Key(String operation, String index, String endpoint, String outcome) {
+    }
+
+    private static final class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] counts;
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.counts = new LongAdder[bounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void observe(double value) {
+            for (int i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    counts[i].increment();
+                    break;
+                }
+            }
+            sum.add(value);
+            count.increment();
+        }
+
+        // 按桶上界估算分位数
+        double quantile(double q) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                seen += counts[i].sum();
+                if (seen >= rank) {
+                    return bounds[i];
+                }
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static final class Series {
+        private final Histogram wall;
+        private final Histogram took;
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder buckets = new LongAdder();
+
+        Series(double[] bounds) {
+            this.wall = new Histogram(bounds);
+            this.took = new Histogram(bounds);
+        }
+    }
+
+    /** 可抛出 IOException 的调用 */
+    @FunctionalInterface
+    public interface EsCall<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * 一次进行中的调用：开始时确定 operation，结束时按结果分组记录
+     */
+    public final class Sample {
+        private final String operation;
+        private final String index;
+        private final String endpoint;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong bytes = new AtomicLong();
+        // 以下由 stop 填入
+        private long wallNanos;
+        private String outcome;
+        private Long tookMillis;
+        private long hits;
+        private long buckets;
+
+        private Sample(String operation, String index, String endpoint) {
+            this.operation = operation;
+            this.index = index;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * 在原请求选项上挂接统计线上字节数的响应消费者
+         */
+        public RequestOptions countingOptions(RequestOptions base) {
+            return base.toBuilder()
+                    .setHttpAsyncResponseConsumerFactory(this::newCountingConsumer)
+                    .build();
+        }
+
+        /**
+         * 统计本次调用线上字节数的响应消费者，每次 HTTP 请求（含失败节点重试）新建一个
+         */
+        public HttpAsyncResponseConsumer<HttpResponse> newCountingConsumer() {
+            return new CountingConsumer(bytes);
+        }
+
+        /**
+         * 结束计时；error 为空表示成功，response 用于提取 took、命中数与桶数
+         */
+        public void stop(Throwable error, Object response) {
+            wallNanos = System.nanoTime() - startNanos;
+            outcome = EsMetrics.outcome(error);
+            if (response instanceof ResponseBody<?> body) {
+                tookMillis = body.took();
+                hits = body.hits().hits().size();
+                buckets = countBuckets(body.aggregations());
+            } else if (response instanceof MultiSearchResult<?> multi) {
+                tookMillis = multi.took();
+                for (var item : multi.responses()) {
+                    if (item.isResult()) {
+                        hits += item.result().hits().hits().size();
+                        buckets += countBuckets(item.result().aggregations());
+                    }
+                }
+            } else if (response instanceof AsyncSearchDocumentResponseBase<?> async) {
+                tookMillis = async.response().took();
+                hits = async.response().hits().hits().size();
+                buckets = countBuckets(async.response().aggregations());
+            } else if (response instanceof CountResponse count) {
+                hits = count.count();
+            }
+            if (properties.isEnabled()) {
+                record(this);
+            }
+        }
+
+        public String operation() {
+            return operation;
+        }
+
+        public String index() {
+            return index;
+        }
+
+        public String endpoint() {
+            return endpoint;
+        }
+
+        public long wallNanos() {
+            return wallNanos;
+        }
+
+        public String outcome() {
+            return outcome;
+        }
+
+        public Long tookMillis() {
+            return tookMillis;
+        }
+
+        public long responseBytes() {
+            return bytes.get();
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long buckets() {
+            return buckets;
+        }
+    }
+
+    @Autowired
+    private EsMetricsProperties properties;
+
+    @Autowired
+    private EsConcurrencyLimiter limiter;
+
+    @Autowired
+    private EsAsyncExecutor asyncExecutor;
+
+    private final Map<Key, Series> series = new ConcurrentHashMap<>();
+    private volatile double[] bounds;
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 在指定逻辑操作名下执行调用，期间发出的 ES 请求以该名称记录（如 widget:line）
+     */
+    public static <T> T withOperation(String operation, EsCall<T> call) throws IOException {
+        String previous = OPERATION.get();
+        OPERATION.set(operation);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                OPERATION.remove();
+            } else {
+                OPERATION.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 开始一次调用；operation 取自显式指定的名称或调用栈中第一个业务类方法
+     */
+    public Sample start(String endpoint, String index) {
+        String operation = OPERATION.get();
+        return new Sample(operation != null ? operation : callerOperation(), normalizeIndex(index), endpoint);
+    }
+
+    private void record(Sample sample) {
+        Key key = new Key(sample.operation, sample.index, sample.endpoint, sample.outcome);
+        Series s = series.get(key);
+        if (s == null) {
+            if (series.size() >= Math.max(1, properties.getMaxSeries())) {
+                key = new Key("other", "-", sample.endpoint, sample.outcome);
+            }
+            s = series.computeIfAbsent(key, k -> new Series(bounds()));
+        }
+        s.wall.observe(sample.wallNanos / 1e9);
+        s.responseBytes.add(sample.bytes.get());
+        if (sample.tookMillis != null) {
+            s.took.observe(sample.tookMillis / 1000.0);
+        }
+        s.hits.add(sample.hits);
+        s.buckets.add(sample.buckets);
+    }
+
+    private double[] bounds() {
+        double[] b = bounds;
+        if (b == null) {
+            b = properties.getHistogramBuckets().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            bounds = b;
+        }
+        return b;
+    }
+
+    // 递归统计所有多桶聚合的桶数
+    static long countBuckets(Map<String, Aggregate> aggregations) {
+        long n = 0;
+        for (Aggregate agg : aggregations.values()) {
+            Object variant = agg._get();
+            if (variant instanceof MultiBucketAggregateBase<?> multi) {
+                Collection<?> buckets = multi.buckets().isArray() ? multi.buckets().array() : multi.buckets().keyed().values();
+                n += buckets.size();
+                for (Object b : buckets) {
+                    if (b instanceof MultiBucketBase bucket) {
+                        n += countBuckets(bucket.aggregations());
+                    }
+                }
+            } else if (variant instanceof SingleBucketAggregateBase single) {
+                n += countBuckets(single.aggregations());
+            }
+        }
+        return n;
+    }
+
+    static String outcome(Throwable error) {
+        Throwable e = error;
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e == null) {
+            return "success";
+        }
+        if (e instanceof EsOverloadedException) {
+            return "rejected";
+        }
+        int status = e instanceof ElasticsearchException ee ? ee.status()
+                : e instanceof TransportException te ? te.statusCode() : 0;
+        if (status == 429 || status >= 500) {
+            return "server_error";
+        }
+        if (status >= 400) {
+            return "client_error";
+        }
+        if (e instanceof SocketTimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof ConnectException) {
+            return "unavailable";
+        }
+        return "error";
+    }
+
+    /**
+     * 查询目标归一化为索引模式：去掉 -xxx 排除项（来自索引目录裁剪），日期/周后缀替换为 *，去重排序
+     */
+    static String normalizeIndex(String target) {
+        if (target == null || target.isBlank()) {
+            return "-";
+        }
+        TreeSet<String> patterns = new TreeSet<>();
+        for (String part : target.split(",")) {
+            part = part.trim();
+            if (part.isEmpty() || part.startsWith("-")) {
+                continue;
+            }
+            patterns.add(DATE_SUFFIX.matcher(part).replaceAll("*").replaceAll("\\*+", "*"));
+        }
+        String out = patterns.isEmpty() ? "-" : String.join(",", patterns);
+        return out.length() > 120 ? out.substring(0, 120) : out;
+    }
+
+    // 调用栈中第一个业务类（传输层包装类与本类除外）的方法，lambda 还原为外层方法名
+    private static String callerOperation() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(APP_PACKAGE)
+                        && !f.getClassName().startsWith(TRANSPORT_PACKAGE)
+                        && !f.getClassName().equals(EsMetrics.class.getName())
+                        && !f.getClassName().startsWith(EsMetrics.class.getName() + "$"))
+                .findFirst()
+                .map(f -> simpleClassName(f.getClassName()) + "." + methodName(f.getMethodName()))
+                .orElse("unknown"));
+    }
+
+    private static String simpleClassName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int proxy = name.indexOf("$$");
+        return proxy > 0 ? name.substring(0, proxy) : name;
+    }
+
+    private static String methodName(String method) {
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', 7);
+            return end > 7 ? method.substring(7, end) : method;
+        }
+        return method;
+    }
+
+    /**
+     * 按累计耗时降序的调用汇总，用于定位最耗资源的查询
+     */
+    public List<Map<String, Object>> summary(int limit) {
+        List<Map.Entry<Key, Series>> entries = new ArrayList<>(series.entrySet());
+        entries.sort(Comparator.comparingDouble((Map.Entry<Key, Series> e) -> e.getValue().wall.sum.sum()).reversed());
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (var e : entries.subList(0, Math.min(Math.max(0, limit), entries.size()))) {
+            Key k = e.getKey();
+            Series s = e.getValue();
+            long count = s.wall.count.sum();
+            long tookCount = s.took.count.sum();
+            double wallSeconds = s.wall.sum.sum();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("operation", k.operation());
+            m.put("index", k.index());
+            m.put("endpoint", k.endpoint());
+            m.put("outcome", k.outcome());
+            m.put("count", count);
+            m.put("totalSeconds", wallSeconds);
+            m.put("meanMillis", count == 0 ? 0.0 : wallSeconds * 1000 / count);
+            m.put("p95Millis", s.wall.quantile(0.95) * 1000);
+            m.put("meanTookMillis", tookCount == 0 ? null : s.took.sum.sum() * 1000 / tookCount);
+            m.put("responseBytes", s.responseBytes.sum());
+            m.put("meanResponseBytes", count == 0 ? 0 : s.responseBytes.sum() / count);
+            m.put("hits", s.hits.sum());
+            m.put("buckets", s.buckets.sum());
+            out.add(m);
+        }
+        return out;
+    }
+
+    public void reset() {
+        series.clear();
+    }
+
+    /**
+     * Prometheus 文本格式（0.0.4）
+     */
+    public String prometheus() {
+        StringBuilder sb = new StringBuilder(8192);
+        List<Map.Entry<Key, Series>> entries = new ArrayList<>(series.entrySet());
+        entries.sort(Comparator.comparing((Map.Entry<Key, Series> e) -> e.getKey().toString()));
+
+        header(sb, "es_client_request_seconds", "histogram", "Wall time of Elasticsearch client calls");
+        for (var e : entries) {
+            histogram(sb, "es_client_request_seconds", labels(e.getKey()), e.getValue().wall);
+        }
+        header(sb, "es_client_took_seconds", "histogram", "Server-side took reported by Elasticsearch");
+        for (var e : entries) {
+            if (e.getValue().took.count.sum() > 0) {
+                histogram(sb, "es_client_took_seconds", labels(e.getKey()), e.getValue().took);
+            }
+        }
+        counter(sb, entries, "es_client_response_bytes_total", "Response bytes received on the wire", s -> s.responseBytes.sum());
+        counter(sb, entries, "es_client_hits_total", "Hits returned to the application", s -> s.hits.sum());
+        counter(sb, entries, "es_client_buckets_total", "Aggregation buckets returned to the application", s -> s.buckets.sum());
+
+        Map<String, Object> limiterStats = limiter.stats();
+        header(sb, "es_limiter_limit", "gauge", "Current adaptive concurrency limit per query class");
+        limiterGauge(sb, limiterStats, "es_limiter_limit", "limit");
+        header(sb, "es_limiter_in_flight", "gauge", "Requests currently holding a limiter permit");
+        limiterGauge(sb, limiterStats, "es_limiter_in_flight", "inFlight");
+        header(sb, "es_limiter_breaker_open", "gauge", "1 when the circuit breaker is open, 0.5 when half-open");
+        for (var e : limiterStats.entrySet()) {
+            if (e.getValue() instanceof Map<?, ?> m) {
+                Object state = m.get("breakerState");
+                double v = "OPEN".equals(state) ? 1 : "HALF_OPEN".equals(state) ? 0.5 : 0;
+                sb.append("es_limiter_breaker_open{class=\"").append(e.getKey()).append("\"} ").append(v).append('\n');
+            }
+        }
+        header(sb, "es_limiter_rejected_total", "counter", "Requests rejected by the limiter or the circuit breaker");
+        for (var e : limiterStats.entrySet()) {
+            if (e.getValue() instanceof Map<?, ?> m) {
+                sb.append("es_limiter_rejected_total{class=\"").append(e.getKey()).append("\",reason=\"limit\"} ")
+                        .append(m.get("rejectedLimit")).append('\n');
+                sb.append("es_limiter_rejected_total{class=\"").append(e.getKey()).append("\",reason=\"breaker\"} ")
+                        .append(m.get("rejectedOpen")).append('\n');
+            }
+        }
+        header(sb, "es_limiter_failures_total", "counter", "Calls counted as failures by the limiter");
+        limiterGauge(sb, limiterStats, "es_limiter_failures_total", "failures");
+
+        Map<String, Object> asyncStats = asyncExecutor.stats();
+        header(sb, "es_async_in_flight", "gauge", "ES calls executing on the async executor");
+        sb.append("es_async_in_flight ").append(asyncStats.get("inFlight")).append('\n');
+        header(sb, "es_async_waiting", "gauge", "ES calls waiting for an async executor slot");
+        sb.append("es_async_waiting ").append(asyncStats.get("waiting")).append('\n');
+        header(sb, "es_async_rejected_total", "counter", "ES calls rejected by the async executor");
+        sb.append("es_async_rejected_total ").append(asyncStats.get("rejected")).append('\n');
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void histogram(StringBuilder sb, String name, String labels, Histogram h) {
+        long cumulative = 0;
+        for (int i = 0; i < h.bounds.length; i++) {
+            cumulative += h.counts[i].sum();
+            sb.append(name).append("_bucket{").append(labels).append(",le=\"").append(h.bounds[i]).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        long count = h.count.sum();
+        sb.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+        sb.append(name).append("_sum{").append(labels).append("} ").append(String.format(Locale.ROOT, "%.6f", h.sum.sum())).append('\n');
+        sb.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, List<Map.Entry<Key, Series>> entries, String name, String help,
+                                ToLongFunction<Series> value) {
+        header(sb, name, "counter", help);
+        for (var e : entries) {
+            sb.append(name).append('{').append(labels(e.getKey())).append("} ").append(value.applyAsLong(e.getValue())).append('\n');
+        }
+    }
+
+    private static void limiterGauge(StringBuilder sb, Map<String, Object> stats, String name, String field) {
+        for (var e : stats.entrySet()) {
+            if (e.getValue() instanceof Map<?, ?> m) {
+                sb.append(name).append("{class=\"").append(e.getKey()).append("\"} ").append(m.get(field)).append('\n');
+            }
+        }
+    }
+
+    private static String labels(Key k) {
+        return "operation=\"" + escape(k.operation()) + "\",index=\"" + escape(k.index())
+                + "\",endpoint=\"" + escape(k.endpoint()) + "\",outcome=\"" + k.outcome() + "\"";
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // 统计从连接读出的原始字节数（启用压缩时为压缩后的字节数，解压发生在其后）
+    private static final class CountingConsumer extends HeapBufferedAsyncResponseConsumer {
+        private final AtomicLong bytes;
+
+        CountingConsumer(AtomicLong bytes) {
+            super(RESPONSE_BUFFER_LIMIT);
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            super.onContentReceived(new ContentDecoder() {
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    int n = decoder.read(dst);
+                    if (n > 0) {
+                        bytes.addAndGet(n);
+                    }
+                    return n;
+                }
+
+                @Override
+                public boolean isCompleted() {
+                    return decoder.isCompleted();
+                }
+            }, ioControl);
+        }
+    }
+}
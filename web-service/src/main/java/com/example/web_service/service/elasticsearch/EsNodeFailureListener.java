@@ -0,0 +1,48 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * RestClient 节点失败回调：节点连接失败或返回 502/503/504 时由 RestClient 调用（随后该节点被暂时剔除，请求转到其他节点重试）。
+ * 记录每个节点的失败次数与最近失败时间，供节点健康接口展示，并在失败后触发一次节点发现（见 EsTransportService）
+ */
+@Component
+public class EsNodeFailureListener extends RestClient.FailureListener {
+
+    private static final Logger log = LoggerFactory.getLogger(EsNodeFailureListener.class);
+
+    public record Failures(long count, long lastFailureAt) {
+    }
+
+    private final Map<String, Failures> failures = new ConcurrentHashMap<>();
+    private final AtomicLong lastFailureAt = new AtomicLong();
+
+    @Override
+    public void onFailure(Node node) {
+        long now = System.currentTimeMillis();
+        String host = node.getHost().toURI();
+        Failures updated = failures.merge(host, new Failures(1, now),
+                (prev, one) -> new Failures(prev.count() + 1, now));
+        lastFailureAt.set(now);
+        log.warn("ES node {} failed ({} failures), retrying on other nodes", host, updated.count());
+    }
+
+    public Failures get(String host) {
+        return failures.getOrDefault(host, new Failures(0, 0));
+    }
+
+    /**
+     * 最近一次任意节点失败的时间，0 表示从未失败
+     */
+    public long lastFailureAt() {
+        return lastFailureAt.get();
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import com.example.web_service.config.EsPartitionProperties;
+
+/**
+ * 按时间分区的索引维护与整索引老化。
+ * - 首次维护时为每个 base 安装索引模板 {base}-partitions（mapping 复制自现有的非分区索引，如 conn-realtime），
+ *   已存在同名模板时不覆盖；无法安装模板时不创建分区，避免分区以动态 mapping 创建
+ * - 定时确保每个 base 的当前与下一分区存在，并把写别名 {base}-write 指向当前分区
+ * - 老化时整体删除完全过期的分区；只有跨越截止时间的边界分区需要按文档删除（由调用方提交）
+ * 采集端（不在本服务内）需改为写入 {base}-write，否则分区保持为空，数据仍留在原索引中。
+ * 分区时间按 UTC 计算，daily 为 {base}-yyyy.MM.dd，weekly 为 {base}-yyyy.wNN（ISO 周）。
+ */
+@Service
+public class EsPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(EsPartitionService.class);
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+    private static final Pattern DAILY = Pattern.compile("^(.+)-(\\d{4}\\.\\d{2}\\.\\d{2})$");
+    private static final Pattern WEEKLY = Pattern.compile("^(.+)-(\\d{4})\\.w(\\d{2})$");
+    // 高于 ES 内置模板（100），保证分区使用复制来的 mapping
+    private static final int TEMPLATE_PRIORITY = 200;
+
+    /** 一个分区索引及其覆盖的时间段 [start, end) */
+    public record Partition(String index, String base, long start, long end) {
+    }
+
+    /** 老化结果：已整体删除的分区与需要按文档删除的边界分区 */
+    public record RetentionResult(List<String> droppedIndices, List<String> boundaryIndices) {
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsPartitionProperties properties;
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 各分区基础名称对应的索引模式（{base}-*）
+     */
+    public List<String> partitionPatterns() {
+        return properties.getBases().stream().map(base -> base + "-*").toList();
+    }
+
+    @Scheduled(fixedDelayString = "${app.es-partition.check-interval-millis:600000}")
+    public void maintainPartitions() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (String base : properties.getBases()) {
+            try {
+                ensureCurrent(base);
+            } catch (Exception e) {
+                log.warn("Failed to maintain partitions for '{}': {}", base, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 创建当前与下一分区（已存在则跳过），并把写别名原子切换到当前分区
+     * @return 当前分区索引名
+     */
+    public String ensureCurrent(String base) throws IOException {
+        if (!ensureTemplate(base)) {
+            throw new IllegalStateException("No index template for partitions of '" + base
+                    + "' and no existing index to copy the mapping from");
+        }
+        boolean weekly = isWeekly();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        String current = partitionName(base, today, weekly);
+        String next = partitionName(base, weekly ? today.plusWeeks(1) : today.plusDays(1), weekly);
+        createIfMissing(current);
+        createIfMissing(next);
+
+        String alias = base + properties.getWriteAliasSuffix();
+        List<String> previous = new ArrayList<>();
+        if (esClient.indices().existsAlias(e -> e.name(alias)).value()) {
+            previous.addAll(esClient.indices().getAlias(g -> g.name(alias)).result().keySet());
+        }
+        if (previous.size() == 1 && previous.get(0).equals(current)) {
+            return current;
+        }
+        List<Action> actions = new ArrayList<>();
+        actions.add(Action.of(a -> a.add(add -> add.index(current).alias(alias).isWriteIndex(true))));
+        for (String old : previous) {
+            if (!old.equals(current)) {
+                actions.add(Action.of(a -> a.remove(r -> r.index(old).alias(alias))));
+            }
+        }
+        esClient.indices().updateAliases(u -> u.actions(actions));
+        log.info("Write alias '{}' -> '{}' (previous: {})", alias, current, previous);
+        return current;
+    }
+
+    /**
+     * 列出所有分区索引（daily 与 weekly 命名都识别，便于切换粒度后继续老化旧分区）
+     */
+    public List<Partition> listPartitions() throws IOException {
+        List<Partition> out = new ArrayList<>();
+        for (String base : properties.getBases()) {
+            var records = esClient.cat().indices(c -> c.index(base + "-*")).valueBody();
+            for (var rec : records) {
+                Partition p = parse(rec.index());
+                if (p != null && p.base().equals(base)) {
+                    out.add(p);
+                }
+            }
+        }
+        out.sort(Comparator.comparing(Partition::start).thenComparing(Partition::index));
+        return out;
+    }
+
+    /**
+     * 整体删除结束时间不晚于 cutoffMillis 的分区；返回被删除的分区与跨越截止时间的边界分区
+     */
+    public RetentionResult applyRetention(long cutoffMillis) throws IOException {
+        List<String> dropped = new ArrayList<>();
+        List<String> boundary = new ArrayList<>();
+        for (Partition p : listPartitions()) {
+            if (p.end() <= cutoffMillis) {
+                dropped.add(p.index());
+            } else if (p.start() < cutoffMillis) {
+                boundary.add(p.index());
+            }
+        }
+        if (!dropped.isEmpty()) {
+            esClient.indices().delete(d -> d.index(dropped).ignoreUnavailable(true));
+            log.info("Dropped {} expired partitions before {}: {}", dropped.size(), Instant.ofEpochMilli(cutoffMillis), dropped);
+        }
+        return new RetentionResult(dropped, boundary);
+    }
+
+    /**
+     * 安装分区索引模板：模式为 {base}-2*（只匹配以年份开头的分区名，不影响 {base}-realtime 等现有索引），
+     * mapping 取自字段最多的非分区索引 {base}-*
+     * @return 模板已存在或安装成功时返回 true
+     */
+    private boolean ensureTemplate(String base) throws IOException {
+        String name = base + "-partitions";
+        if (esClient.indices().existsIndexTemplate(e -> e.name(name)).value()) {
+            return true;
+        }
+        var mappings = esClient.indices().getMapping(g -> g.index(base + "-*").ignoreUnavailable(true).allowNoIndices(true)).result();
+        TypeMapping source = null;
+        String sourceIndex = null;
+        for (var e : mappings.entrySet()) {
+            TypeMapping m = e.getValue().mappings();
+            if (parse(e.getKey()) != null || m == null) {
+                continue;
+            }
+            if (source == null || m.properties().size() > source.properties().size()) {
+                source = m;
+                sourceIndex = e.getKey();
+            }
+        }
+        if (source == null) {
+            log.warn("Cannot install partition template '{}': no non-partition index matches '{}-*'", name, base);
+            return false;
+        }
+        TypeMapping mapping = source;
+        esClient.indices().putIndexTemplate(t -> t
+                .name(name)
+                .indexPatterns(base + "-2*")
+                .priority(TEMPLATE_PRIORITY)
+                .template(tm -> tm.mappings(mapping)));
+        log.info("Installed partition template '{}' with the mapping of '{}'", name, sourceIndex);
+        return true;
+    }
+
+    private void createIfMissing(String index) throws IOException {
+        if (esClient.indices().exists(e -> e.index(index)).value()) {
+            return;
+        }
+        try {
+            // 不带 mapping，由 ensureTemplate 安装的索引模板决定
+            esClient.indices().create(c -> c.index(index));
+            log.info("Created partition index '{}'", index);
+        } catch (ElasticsearchException e) {
+            // 并发创建
+            if (!"resource_already_exists_exception".equals(e.error().type())) {
+                throw e;
+            }
+        }
+    }
+
+    private boolean isWeekly() {
+        return "weekly".equalsIgnoreCase(properties.getGranularity());
+    }
+
+    static String partitionName(String base, LocalDate date, boolean weekly) {
+        if (weekly) {
+            return String.format("%s-%04d.w%02d", base,
+                    date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+        }
+        return base + "-" + DAY.format(date);
+    }
+
+    static Partition parse(String index) {
+        if (index == null) {
+            return null;
+        }
+        try {
+            Matcher m = DAILY.matcher(index);
+            if (m.matches()) {
+                LocalDate day = LocalDate.parse(m.group(2), DAY);
+                return new Partition(index, m.group(1), epochMillis(day), epochMillis(day.plusDays(1)));
+            }
+            m = WEEKLY.matcher(index);
+            if (m.matches()) {
+                int year = Integer.parseInt(m.group(2));
+                int week = Integer.parseInt(m.group(3));
+                LocalDate monday = LocalDate.of(year, 1, 4)
+                        .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, week)
+                        .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                return new Partition(index, m.group(1), epochMillis(monday), epochMillis(monday.plusWeeks(1)));
+            }
+        } catch (RuntimeException e) {
+            // 名称形似分区但日期非法，不作为分区处理
+        }
+        return null;
+    }
+
+    private static long epochMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.AggregationBreakdown;
+import co.elastic.clients.elasticsearch.core.search.AggregationProfile;
+import co.elastic.clients.elasticsearch.core.search.Collector;
+import co.elastic.clients.elasticsearch.core.search.QueryBreakdown;
+import co.elastic.clients.elasticsearch.core.search.QueryProfile;
+import co.elastic.clients.elasticsearch.core.search.SearchProfile;
+import co.elastic.clients.elasticsearch.core.search.ShardProfile;
+
+/**
+ * 查询剖析（ES profile API）。
+ * 在 profile(...) 内发出的 _search 请求由传输层改写为 profile=true、request_cache=false 后执行（见 EsProfilingTransport），
+ * 请求的其余部分与正常执行完全相同；结果旁附带每个分片的 query/collector/aggregation/fetch 耗时与按自身耗时排序的最慢组件。
+ * 剖析期间跳过应用层聚合缓存与按天部分结果（否则可能根本不访问 ES），预聚合索引仍按正常路径读取。
+ */
+public final class EsProfiler {
+
+    private static final int TOP_COMPONENTS = 10;
+    private static final ThreadLocal<Capture> CURRENT = new ThreadLocal<>();
+
+    private EsProfiler() {
+    }
+
+    /** 最慢组件；selfNanos 为扣除子节点后的自身耗时，phase 为 breakdown 中耗时最多的阶段 */
+    private record Component(String kind, String type, String description, String shard,
+                             long selfNanos, long totalNanos, String phase) {
+    }
+
+    /**
+     * 一次剖析期间收到的 profile 结果，异步请求在响应线程上写入
+     */
+    public static final class Capture {
+
+        private final List<Map<String, Object>> searches = new ArrayList<>();
+        private final List<Component> components = new ArrayList<>();
+
+        public void record(String index, SearchResponse<?> response) {
+            if (response == null || response.profile() == null) {
+                return;
+            }
+            List<Map<String, Object>> shards = new ArrayList<>();
+            List<Component> found = new ArrayList<>();
+            long query = 0, collector = 0, aggregation = 0, rewrite = 0, fetch = 0;
+            for (ShardProfile shard : response.profile().shards()) {
+                long shardQuery = 0, shardCollector = 0, shardAggregation = 0, shardRewrite = 0;
+                for (SearchProfile search : shard.searches()) {
+                    shardRewrite += search.rewriteTime();
+                    for (QueryProfile q : search.query()) {
+                        shardQuery += q.timeInNanos();
+                        collectQuery(q, shard.id(), found);
+                    }
+                    for (Collector c : search.collector()) {
+                        shardCollector += c.timeInNanos();
+                        collectCollector(c, shard.id(), found);
+                    }
+                }
+                for (AggregationProfile a : shard.aggregations()) {
+                    shardAggregation += a.timeInNanos();
+                    collectAggregation(a, shard.id(), found);
+                }
+                long shardFetch = shard.fetch() != null ? shard.fetch().timeInNanos() : 0;
+                if (shard.fetch() != null) {
+                    found.add(new Component("fetch", shard.fetch().type(), shard.fetch().description(), shard.id(),
+                            shardFetch, shardFetch, null));
+                }
+                Map<String, Object> s = new LinkedHashMap<>();
+                s.put("shard", shard.id());
+                s.put("queryMillis", millis(shardQuery));
+                s.put("rewriteMillis", millis(shardRewrite));
+                s.put("collectorMillis", millis(shardCollector));
+                s.put("aggregationMillis", millis(shardAggregation));
+                s.put("fetchMillis", millis(shardFetch));
+                shards.add(s);
+                query += shardQuery;
+                collector += shardCollector;
+                aggregation += shardAggregation;
+                rewrite += shardRewrite;
+                fetch += shardFetch;
+            }
+            shards.sort(Comparator.comparingDouble((Map<String, Object> s) -> (Double) s.get("queryMillis")
+                    + (Double) s.get("collectorMillis") + (Double) s.get("aggregationMillis")).reversed());
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("index", index);
+            m.put("tookMillis", response.took());
+            m.put("shardCount", shards.size());
+            m.put("queryMillis", millis(query));
+            m.put("rewriteMillis", millis(rewrite));
+            m.put("collectorMillis", millis(collector));
+            m.put("aggregationMillis", millis(aggregation));
+            m.put("fetchMillis", millis(fetch));
+            m.put("shards", shards);
+            synchronized (this) {
+                searches.add(m);
+                components.addAll(found);
+            }
+        }
+
+        /**
+         * 汇总：各次 _search 的分片耗时与全部分片中最慢的组件
+         */
+        public synchronized Map<String, Object> summary(long wallNanos) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("wallMillis", millis(wallNanos));
+            m.put("searchCount", searches.size());
+            m.put("searches", new ArrayList<>(searches));
+            m.put("slowest", components.stream()
+                    .sorted(Comparator.comparingLong(Component::selfNanos).reversed())
+                    .limit(TOP_COMPONENTS)
+                    .map(c -> {
+                        Map<String, Object> e = new LinkedHashMap<>();
+                        e.put("kind", c.kind());
+                        e.put("type", c.type());
+                        e.put("description", c.description());
+                        e.put("shard", c.shard());
+                        e.put("selfMillis", millis(c.selfNanos()));
+                        e.put("totalMillis", millis(c.totalNanos()));
+                        if (c.phase() != null) {
+                            e.put("slowestPhase", c.phase());
+                        }
+                        return e;
+                    })
+                    .toList());
+            return m;
+        }
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /** 当前线程的剖析上下文，未处于剖析中时为 null */
+    public static Capture current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以剖析模式执行调用，返回 {result, profile}
+     */
+    public static <T> Map<String, Object> profile(EsAsyncExecutor.EsCall<T> call) throws IOException {
+        Capture previous = CURRENT.get();
+        Capture capture = new Capture();
+        CURRENT.set(capture);
+        long t0 = System.nanoTime();
+        T result;
+        try {
+            result = call.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("result", result);
+        out.put("profile", capture.summary(System.nanoTime() - t0));
+        return out;
+    }
+
+    private static void collectQuery(QueryProfile q, String shard, List<Component> out) {
+        long children = q.children().stream().mapToLong(QueryProfile::timeInNanos).sum();
+        out.add(new Component("query", q.type(), q.description(), shard,
+                Math.max(0, q.timeInNanos() - children), q.timeInNanos(), slowestPhase(q.breakdown())));
+        q.children().forEach(c -> collectQuery(c, shard, out));
+    }
+
+    private static void collectCollector(Collector c, String shard, List<Component> out) {
+        long children = c.children().stream().mapToLong(Collector::timeInNanos).sum();
+        out.add(new Component("collector", c.reason(), c.name(), shard,
+                Math.max(0, c.timeInNanos() - children), c.timeInNanos(), null));
+        c.children().forEach(child -> collectCollector(child, shard, out));
+    }
+
+    private static void collectAggregation(AggregationProfile a, String shard, List<Component> out) {
+        long children = a.children().stream().mapToLong(AggregationProfile::timeInNanos).sum();
+        out.add(new Component("aggregation", a.type(), a.description(), shard,
+                Math.max(0, a.timeInNanos() - children), a.timeInNanos(), slowestPhase(a.breakdown())));
+        a.children().forEach(c -> collectAggregation(c, shard, out));
+    }
+
+    private static String slowestPhase(QueryBreakdown b) {
+        if (b == null) {
+            return null;
+        }
+        return slowest(Map.of("create_weight", b.createWeight(), "build_scorer", b.buildScorer(), "next_doc", b.nextDoc(),
+                "advance", b.advance(), "match", b.match(), "score", b.score(), "shallow_advance", b.shallowAdvance(),
+                "compute_max_score", b.computeMaxScore(), "set_min_competitive_score", b.setMinCompetitiveScore()));
+    }
+
+    private static String slowestPhase(AggregationBreakdown b) {
+        if (b == null) {
+            return null;
+        }
+        return slowest(Map.of("initialize", b.initialize(), "build_leaf_collector", b.buildLeafCollector(),
+                "collect", b.collect(), "post_collection", b.postCollection() != null ? b.postCollection() : 0L,
+                "build_aggregation", b.buildAggregation(), "reduce", b.reduce()));
+    }
+
+    private static String slowest(Map<String, Long> phases) {
+        return phases.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonpUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * _source 直通查询：通过低级 RestClient 执行 _search（filter_path 只保留 total 与 _source），
+ * 再以 Jackson 流式 token 拷贝的方式把每个 _source 原样写入 HTTP 响应，
+ * 不经过 JsonData -> Map -> JSON 的对象树构建与二次序列化。
+ * 输出结构与 searchRawWithPagination 一致：{"hits":[{...},...],"total":N}
+ */
+@Service
+public class EsRawSearchService {
+
+    private static final String FILTER_PATH = "hits.total.value,hits.hits._source";
+
+    @Autowired
+    private RestClient restClient;
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsMetrics esMetrics;
+
+    @Autowired
+    private EsSlowQueryLog slowQueryLog;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /** 已完成 ES 请求、等待写出的结果 */
+    @FunctionalInterface
+    public interface SourceStream {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 立即执行查询（ES 报错在此处抛出，尚未开始写响应），返回写出 _source 的流
+     */
+    public SourceStream search(SearchRequest request) throws IOException {
+        String index = request.index().isEmpty() ? "_all" : String.join(",", request.index());
+        // index 在路径中，请求体只包含 query/size/from/sort/_source 等部分
+        Request req = new Request("POST", "/" + index + "/_search");
+        req.addParameter("filter_path", FILTER_PATH);
+        String body = JsonpUtils.toJsonString(request, esClient._jsonpMapper());
+        req.setJsonEntity(body);
+        // 低级客户端不经过 EsMetricsTransport，单独记录调用指标与慢查询
+        EsMetrics.Sample sample = esMetrics.start("search", index);
+        req.setOptions(sample.countingOptions(req.getOptions()));
+        Response response;
+        try {
+            response = restClient.performRequest(req);
+        } catch (IOException | RuntimeException e) {
+            sample.stop(e, null);
+            slowQueryLog.offer(sample, req.getMethod(), req.getEndpoint(), body);
+            throw e;
+        }
+        sample.stop(null, null);
+        slowQueryLog.offer(sample, req.getMethod(), req.getEndpoint(), body);
+        return out -> copySources(response, out);
+    }
+
+    private void copySources(Response response, OutputStream out) throws IOException {
+        long total = 0;
+        try (InputStream in = response.getEntity().getContent();
+             JsonParser parser = jsonFactory.createParser(in);
+             JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            gen.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("hits");
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                String name = parser.currentName();
+                if ("_source".equals(name)) {
+                    parser.nextToken();
+                    gen.copyCurrentStructure(parser);
+                } else if ("total".equals(name)) {
+                    total = readTotal(parser);
+                }
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("total", total);
+            gen.writeEndObject();
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    // hits.total 可能是 {"value":N} 或数字（rest_total_hits_as_int）
+    private static long readTotal(JsonParser parser) throws IOException {
+        JsonToken t = parser.nextToken();
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        long value = 0;
+        if (t == JsonToken.START_OBJECT) {
+            while ((t = parser.nextToken()) != JsonToken.END_OBJECT && t != null) {
+                if (t == JsonToken.FIELD_NAME && "value".equals(parser.currentName())) {
+                    parser.nextToken();
+                    value = parser.getLongValue();
+                } else if (t == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,741 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.util.NamedValue;
+import com.example.web_service.config.EsRollupProperties;
+import com.example.web_service.model.es.TrendingData;
+
+/**
+ * 长时间范围仪表盘的预聚合。
+ * 后台任务把原始数据按分钟与小时汇总到隐藏索引 {prefix}-1m / {prefix}-1h，每个桶每个分组一条文档：
+ * - service：conn-* 按 serviceName 计数
+ * - proto：conn-* 按 protoName 计数
+ * - port_bps：octopusx-data-* 按 port 汇总 bps 的和与个数（读取时还原为与原始查询一致的平均值）
+ * - severity：event-* 按 alert.severity 计数
+ * 文档 ID 由 (指标, 分组, 桶) 决定，重复汇总同一时间段会覆盖而不是累加，因此每次执行都重算最近
+ * lateWindowMillis 以吸收迟到数据；历史导入或删除原始数据后通过 rebuild 重算对应范围：
+ * 先用本次重算的 generation 覆盖写入，再删除该块内 generation 不同的过期文档（已不存在的分组），
+ * 按块分批推进、进度保存在状态文档中，重算完成前读取时这段范围改查原始索引。
+ * 读取时选择能整除请求 interval 的最粗粒度：[from, to) 内完整的桶读汇总，首尾零头（含尚未汇总的最新数据）
+ * 用同样的聚合查原始索引，两部分按 (分组, 时间桶) 合并。
+ */
+@Service
+public class EsRollupService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EsRollupService.class);
+
+    public static final String SERVICE = "service";
+    public static final String PROTO = "proto";
+    public static final String PORT_BPS = "port_bps";
+    public static final String SEVERITY = "severity";
+
+    private static final String STATE = "_state";
+    private static final int BUCKETS_PER_CHUNK = 360;
+
+    /** 一种汇总：源索引、分组字段，valueField 不为空时同时汇总该字段的和与个数 */
+    record Metric(String name, String source, String keyField, String valueField) {
+    }
+
+    /** 一段待重算的范围 [from, to)：cursor 之前的块已按 generation 重写并清除过期文档 */
+    public record Rebuild(long from, long to, long cursor, long generation) {
+    }
+
+    /** 一个粒度的汇总进度：[coverageStart, watermark) 内的桶已写入，rebuilds 为尚未完成的重算 */
+    public record Level(String granularity, long stepMillis, String index, Long coverageStart, Long watermark, Long lastRunAt,
+                        List<Rebuild> rebuilds) {
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsRollupProperties properties;
+
+    @Autowired
+    private EsIndexCatalog indexCatalog;
+
+    @Autowired
+    private EsSchemaRegistry schemaRegistry;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "es-rollup");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    // {start, end（含）, 是否只重算迟到窗口之前的部分}
+    private final ConcurrentLinkedQueue<long[]> rebuilds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong purgeBefore = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong generations = new AtomicLong();
+    private final Map<String, Level> levels = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "${app.es-rollup.run-interval-millis:60000}")
+    public void scheduledRun() {
+        if (!properties.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                log.warn("ES rollup run failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * 请求重算 [startMillis, endMillis] 内的汇总（如删除了这段时间的部分原始数据），从下一次执行开始分批处理
+     */
+    public void rebuild(long startMillis, long endMillis) {
+        if (properties.isEnabled() && endMillis >= startMillis) {
+            rebuilds.add(new long[]{startMillis, endMillis, 0});
+        }
+    }
+
+    /**
+     * 导入的会话结束后调用：只重算早于 watermark - lateWindowMillis 的部分，
+     * 其余部分在每次执行的迟到窗口内已被重新汇总
+     */
+    public void rebuildHistorical(long startMillis, long endMillis) {
+        if (properties.isEnabled() && endMillis >= startMillis) {
+            rebuilds.add(new long[]{startMillis, endMillis, 1});
+        }
+    }
+
+    /**
+     * 老化删除了 beforeMillis 之前的原始数据：删除这之前的汇总并把覆盖起点推后，而不是逐段重算
+     */
+    public void purgeBefore(long beforeMillis) {
+        if (properties.isEnabled()) {
+            purgeBefore.accumulateAndGet(beforeMillis, Math::max);
+        }
+    }
+
+    public List<Level> levels() {
+        List<Level> out = new ArrayList<>(levels.values());
+        out.sort(Comparator.comparingLong(Level::stepMillis));
+        return out;
+    }
+
+    // ============ 写入 ============
+
+    private void runOnce() throws IOException {
+        // 请求在两个粒度都加入待办后才出队，期间 plan() 仍能看到它们
+        List<long[]> pending = new ArrayList<>(rebuilds);
+        long purge = purgeBefore.get();
+        for (Level level : List.of(load("1m", EsIntervals.MINUTE), load("1h", EsIntervals.HOUR))) {
+            long now = System.currentTimeMillis();
+            level = purgeExpired(level, now, purge);
+            level = schedule(level, pending);
+            // 小时级最多每 10 分钟重算一次最近窗口，分钟级每次执行都处理
+            if (level.lastRunAt() != null && now - level.lastRunAt() < level.stepMillis() / 6 && level.rebuilds().isEmpty()) {
+                continue;
+            }
+            level = rebuildChunks(level);
+            advance(level, now);
+        }
+        rebuilds.removeAll(pending);
+        purgeBefore.compareAndSet(purge, Long.MIN_VALUE);
+    }
+
+    private void advance(Level level, long now) throws IOException {
+        long step = level.stepMillis();
+        long target = floor(now - properties.getSettleDelayMillis(), step);
+        long lateFrom = floor(target - Math.max(step, properties.getLateWindowMillis()), step);
+        long from = Math.max(level.coverageStart(), Math.min(level.watermark(), lateFrom));
+        long chunk = step * BUCKETS_PER_CHUNK;
+        int chunks = 0;
+        while (from < target && chunks < Math.max(1, properties.getMaxChunksPerRun())) {
+            long to = Math.min(target, from + chunk);
+            rollup(level, from, to);
+            from = to;
+            chunks++;
+            if (to > level.watermark()) {
+                level = save(new Level(level.granularity(), step, level.index(), level.coverageStart(), to, now, level.rebuilds()));
+            }
+        }
+        levels.put(level.granularity(), new Level(level.granularity(), step, level.index(),
+                level.coverageStart(), level.watermark(), now, level.rebuilds()));
+    }
+
+    // 把重算请求裁剪到本粒度已汇总的范围内加入待办；已被未完成的重算覆盖的请求忽略
+    private Level schedule(Level level, List<long[]> pending) throws IOException {
+        long step = level.stepMillis();
+        List<Rebuild> scheduled = new ArrayList<>(level.rebuilds());
+        for (long[] r : pending) {
+            long from = Math.max(level.coverageStart(), floor(r[0], step));
+            long to = Math.min(level.watermark(), floor(Math.min(r[1], level.watermark()), step) + step);
+            if (r[2] != 0) {
+                to = Math.min(to, floor(level.watermark() - Math.max(step, properties.getLateWindowMillis()), step));
+            }
+            final long f = from;
+            final long t = to;
+            if (f >= t || scheduled.stream().anyMatch(x -> x.cursor() <= f && x.to() >= t)) {
+                continue;
+            }
+            scheduled.add(new Rebuild(f, t, f, generations.updateAndGet(g -> Math.max(g + 1, System.currentTimeMillis()))));
+        }
+        if (scheduled.size() == level.rebuilds().size()) {
+            return level;
+        }
+        return save(new Level(level.granularity(), step, level.index(), level.coverageStart(), level.watermark(),
+                level.lastRunAt(), scheduled));
+    }
+
+    // 按顺序推进待办的重算，每次执行最多 maxChunksPerRun 块；每块先覆盖写入，再删除块内 generation 不同的过期文档
+    private Level rebuildChunks(Level level) throws IOException {
+        long chunk = level.stepMillis() * BUCKETS_PER_CHUNK;
+        String index = level.index();
+        List<Rebuild> remaining = new ArrayList<>(level.rebuilds());
+        int chunks = 0;
+        while (!remaining.isEmpty() && chunks < Math.max(1, properties.getMaxChunksPerRun())) {
+            Rebuild r = remaining.get(0);
+            long from = r.cursor();
+            long to = Math.min(r.to(), from + chunk);
+            rollup(level, from, to, r.generation());
+            // 刷新后 delete_by_query 才能看到刚覆盖的文档，不会把它们当作过期文档
+            esClient.indices().refresh(x -> x.index(index));
+            esClient.deleteByQuery(d -> d
+                    .index(index)
+                    .conflicts(Conflicts.Proceed)
+                    .query(q -> q.bool(b -> b
+                            .filter(f -> f.range(x -> x.field("timestamp").gte(JsonData.of(from)).lt(JsonData.of(to))))
+                            .mustNot(n -> n.term(t -> t.field("generation").value(r.generation()))))));
+            chunks++;
+            if (to >= r.to()) {
+                remaining.remove(0);
+                log.info("Rebuilt {} rollups for {} - {}", level.granularity(), Instant.ofEpochMilli(r.from()), Instant.ofEpochMilli(r.to()));
+            } else {
+                remaining.set(0, new Rebuild(r.from(), r.to(), to, r.generation()));
+            }
+            level = save(new Level(level.granularity(), level.stepMillis(), level.index(), level.coverageStart(),
+                    level.watermark(), level.lastRunAt(), List.copyOf(remaining)));
+        }
+        return level;
+    }
+
+    // 汇总 [from, to) 内的所有指标；同一桶的文档 ID 固定，重复执行会覆盖；generation 仅在重算时写入
+    private void rollup(Level level, long from, long to) throws IOException {
+        rollup(level, from, to, null);
+    }
+
+    private void rollup(Level level, long from, long to, Long generation) throws IOException {
+        for (Metric metric : metrics()) {
+            Map<String, FieldValue> after = null;
+            do {
+                final Map<String, FieldValue> afterKey = after;
+                var resp = esClient.search(s -> s
+                        .index(indexCatalog.resolve(metric.source(), from, to - 1))
+                        .size(0)
+                        .ignoreUnavailable(true)
+                        .allowNoIndices(true)
+                        .query(q -> q.range(r -> r.field("timestamp").gte(JsonData.of(from)).lt(JsonData.of(to))))
+                        .aggregations("c", a -> {
+                            var agg = a.composite(c -> {
+                                c.size(Math.max(1, properties.getPageSize()))
+                                        .sources(List.of(
+                                                Map.of("ts", CompositeAggregationSource.of(src -> src.dateHistogram(d -> d
+                                                        .field("timestamp").fixedInterval(Time.of(t -> t.time(level.granularity())))))),
+                                                Map.of("key", CompositeAggregationSource.of(src -> src.terms(t -> t.field(metric.keyField()))))));
+                                if (afterKey != null) {
+                                    c.after(afterKey);
+                                }
+                                return c;
+                            });
+                            if (metric.valueField() != null) {
+                                agg.aggregations("sum", x -> x.sum(m -> m.field(metric.valueField())))
+                                        .aggregations("n", x -> x.valueCount(m -> m.field(metric.valueField())));
+                            }
+                            return agg;
+                        }), Void.class);
+                Aggregate composite = resp.aggregations() != null ? resp.aggregations().get("c") : null;
+                if (composite == null || !composite.isComposite()) {
+                    break;
+                }
+                var buckets = composite.composite().buckets().array();
+                List<BulkOperation> ops = new ArrayList<>(buckets.size());
+                for (var b : buckets) {
+                    String key = keyString(b.key().get("key"));
+                    FieldValue ts = b.key().get("ts");
+                    if (key == null || ts == null) {
+                        continue;
+                    }
+                    long bucket = ts.isLong() ? ts.longValue() : (long) ts.doubleValue();
+                    Map<String, Object> doc = new HashMap<>();
+                    doc.put("timestamp", bucket);
+                    doc.put("metric", metric.name());
+                    doc.put("key", key);
+                    doc.put("count", b.docCount());
+                    if (generation != null) {
+                        doc.put("generation", generation);
+                    }
+                    if (metric.valueField() != null) {
+                        doc.put("sum", finite(b.aggregations().get("sum").sum().value()));
+                        doc.put("valueCount", (long) b.aggregations().get("n").valueCount().value());
+                    }
+                    String id = docId(metric.name(), key, bucket);
+                    ops.add(BulkOperation.of(o -> o.index(i -> i.index(level.index()).id(id).document(doc))));
+                }
+                if (!ops.isEmpty()) {
+                    var bulk = esClient.bulk(br -> br.operations(ops));
+                    if (bulk.errors()) {
+                        throw new IOException("Rollup bulk write to '" + level.index() + "' had errors");
+                    }
+                }
+                after = buckets.size() < Math.max(1, properties.getPageSize()) ? null : composite.composite().afterKey();
+            } while (after != null && !after.isEmpty());
+        }
+    }
+
+    // 删除超过保留期（或早于老化截止时间 purgeBefore）的汇总，并相应推后覆盖起点与未完成的重算
+    private Level purgeExpired(Level level, long now, long purgeBefore) throws IOException {
+        int days = "1m".equals(level.granularity()) ? properties.getMinuteRetentionDays() : properties.getHourRetentionDays();
+        long cutoff = Math.max(floor(now - days * EsIntervals.DAY, level.stepMillis()),
+                purgeBefore != Long.MIN_VALUE ? ceil(purgeBefore, level.stepMillis()) : Long.MIN_VALUE);
+        if (level.coverageStart() >= cutoff) {
+            return level;
+        }
+        esClient.deleteByQuery(d -> d
+                .index(level.index())
+                .conflicts(Conflicts.Proceed)
+                .query(q -> q.range(r -> r.field("timestamp").lt(JsonData.of(cutoff)))));
+        log.info("Purged {} rollups before {}", level.granularity(), Instant.ofEpochMilli(cutoff));
+        List<Rebuild> remaining = level.rebuilds().stream()
+                .filter(r -> r.to() > cutoff)
+                .map(r -> new Rebuild(Math.max(r.from(), cutoff), r.to(), Math.max(r.cursor(), cutoff), r.generation()))
+                .toList();
+        return save(new Level(level.granularity(), level.stepMillis(), level.index(), cutoff,
+                Math.max(cutoff, level.watermark()), level.lastRunAt(), remaining));
+    }
+
+    private List<Metric> metrics() {
+        String service = schemaRegistry.aggregatableField("conn-*", "serviceName");
+        String proto = schemaRegistry.aggregatableField("conn-*", "protoName");
+        return List.of(
+                new Metric(SERVICE, "conn-*", service != null ? service : "serviceName", null),
+                new Metric(PROTO, "conn-*", proto != null ? proto : "protoName", null),
+                new Metric(PORT_BPS, "octopusx-data-*", "port", "bps"),
+                new Metric(SEVERITY, "event-*", "alert.severity", null));
+    }
+
+    private static Metric metric(String name, List<Metric> metrics) {
+        return metrics.stream().filter(m -> m.name().equals(name)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown rollup metric: " + name));
+    }
+
+    // 读取（首次时创建索引并加载进度文档）
+    private Level load(String granularity, long step) throws IOException {
+        Level cached = levels.get(granularity);
+        if (cached != null) {
+            return cached;
+        }
+        String index = properties.getIndexPrefix() + "-" + granularity;
+        createIfMissing(index);
+        var state = esClient.get(g -> g.index(index).id(STATE), Map.class);
+        Long coverageStart = null;
+        Long watermark = null;
+        List<Rebuild> pending = new ArrayList<>();
+        if (state.found() && state.source() != null) {
+            coverageStart = asLong(state.source().get("coverageStart"));
+            watermark = asLong(state.source().get("watermark"));
+            if (state.source().get("rebuilds") instanceof List<?> saved) {
+                for (Object o : saved) {
+                    if (o instanceof Map<?, ?> r && asLong(r.get("from")) != null && asLong(r.get("to")) != null
+                            && asLong(r.get("cursor")) != null && asLong(r.get("generation")) != null) {
+                        pending.add(new Rebuild(asLong(r.get("from")), asLong(r.get("to")),
+                                asLong(r.get("cursor")), asLong(r.get("generation"))));
+                        generations.accumulateAndGet(asLong(r.get("generation")), Math::max);
+                    }
+                }
+            }
+        }
+        if (coverageStart == null || watermark == null) {
+            long start = floor(System.currentTimeMillis() - Math.max(0, properties.getBackfillDays()) * EsIntervals.DAY, step);
+            coverageStart = start;
+            watermark = start;
+        }
+        Level level = new Level(granularity, step, index, coverageStart, watermark, null, List.copyOf(pending));
+        levels.put(granularity, level);
+        return level;
+    }
+
+    private Level save(Level level) throws IOException {
+        Map<String, Object> doc = Map.of(
+                "metric", STATE,
+                "coverageStart", level.coverageStart(),
+                "watermark", level.watermark(),
+                "rebuilds", level.rebuilds().stream()
+                        .map(r -> Map.of("from", r.from(), "to", r.to(), "cursor", r.cursor(), "generation", r.generation()))
+                        .toList());
+        esClient.index(i -> i.index(level.index()).id(STATE).document(doc));
+        levels.put(level.granularity(), level);
+        return level;
+    }
+
+    private void createIfMissing(String index) throws IOException {
+        if (esClient.indices().exists(e -> e.index(index)).value()) {
+            return;
+        }
+        try {
+            esClient.indices().create(c -> c
+                    .index(index)
+                    .settings(s -> s.hidden(true))
+                    .mappings(m -> m
+                            .properties("timestamp", p -> p.date(d -> d.format("epoch_millis")))
+                            .properties("metric", p -> p.keyword(k -> k))
+                            .properties("key", p -> p.keyword(k -> k))
+                            .properties("count", p -> p.long_(l -> l))
+                            .properties("sum", p -> p.double_(d -> d))
+                            .properties("valueCount", p -> p.long_(l -> l))
+                            .properties("generation", p -> p.long_(l -> l))
+                            .properties("coverageStart", p -> p.long_(l -> l))
+                            .properties("watermark", p -> p.long_(l -> l))
+                            .properties("rebuilds", p -> p.object(o -> o.enabled(false)))));
+            log.info("Created rollup index '{}'", index);
+        } catch (ElasticsearchException e) {
+            // 并发创建
+            if (!"resource_already_exists_exception".equals(e.error().type())) {
+                throw e;
+            }
+        }
+    }
+
+    // ============ 读取 ============
+
+    /** 汇总部分 [from, to)，其余（首尾零头）查原始索引 */
+    private record Plan(Level level, long from, long to) {
+    }
+
+    /**
+     * 选择能整除 interval 的最粗粒度；汇总覆盖不到至少一个完整桶时返回 null（全部查原始索引）。
+     * 尚未完成（含尚未开始）的重算范围不读汇总，汇总部分收缩到其外侧，由原始索引补齐
+     * @param interval 为空时只要求粒度可用（不分时间桶的 Top N）
+     */
+    private Plan plan(long start, long end, String interval) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        long intervalMillis = interval != null ? EsIntervals.toMillis(interval) : Long.MAX_VALUE;
+        for (String granularity : List.of("1h", "1m")) {
+            Level level = levels.get(granularity);
+            if (level == null || level.lastRunAt() == null) {
+                continue;
+            }
+            long step = level.stepMillis();
+            if (interval != null && (intervalMillis < step || intervalMillis % step != 0)) {
+                continue;
+            }
+            long from = ceil(start, step);
+            long to = Math.min(level.watermark(), floor(end + 1, step));
+            if (from < level.coverageStart()) {
+                continue;
+            }
+            for (long[] r : rebuilding(level)) {
+                if (r[1] <= from || r[0] >= to) {
+                    continue;
+                }
+                if (r[0] <= from) {
+                    from = ceil(r[1], step);
+                } else {
+                    to = floor(r[0], step);
+                }
+            }
+            if (to - from >= step) {
+                return new Plan(level, from, to);
+            }
+        }
+        return null;
+    }
+
+    // 本粒度尚未重写的范围 [from, to)（含队列中尚未调度的请求），按起点升序
+    private List<long[]> rebuilding(Level level) {
+        List<long[]> out = new ArrayList<>();
+        for (Rebuild r : level.rebuilds()) {
+            out.add(new long[]{r.cursor(), r.to()});
+        }
+        for (long[] r : rebuilds) {
+            out.add(new long[]{floor(r[0], level.stepMillis()), r[1] == Long.MAX_VALUE ? r[1] : r[1] + 1});
+        }
+        out.sort(Comparator.comparingLong(r -> r[0]));
+        return out;
+    }
+
+    /**
+     * 按分组的时间序列（计数或 port_bps 的平均值），按分组合计取前 topN 个；无法使用汇总时返回 null。
+     * 结果未补零，由调用方统一时间轴。
+     */
+    public Map<String, List<TrendingData>> trends(String metricName, long start, long end, String interval, int topN) throws IOException {
+        Plan plan = plan(start, end, interval);
+        if (plan == null) {
+            return null;
+        }
+        Metric metric = metric(metricName, metrics());
+        boolean average = metric.valueField() != null;
+        int size = Math.max(topN * 5, 100);
+        // key -> ts -> [计数或和, 个数]
+        Map<String, TreeMap<Long, double[]>> merged = new HashMap<>();
+
+        var rollupResp = esClient.search(s -> s
+                .index(plan.level().index())
+                .size(0)
+                .query(rollupQuery(metric, plan))
+                .aggregations("by_key", a -> a
+                        .terms(t -> t.field("key").size(size)
+                                .order(List.of(NamedValue.of("total", SortOrder.Desc))))
+                        .aggregations("total", x -> x.sum(m -> m.field(average ? "valueCount" : "count")))
+                        .aggregations("trend", x -> histogram(x, interval)
+                                .aggregations("count", y -> y.sum(m -> m.field("count")))
+                                .aggregations("sum", y -> y.sum(m -> m.field("sum")))
+                                .aggregations("n", y -> y.sum(m -> m.field("valueCount"))))), Void.class);
+        for (var b : termBuckets(rollupResp.aggregations().get("by_key"))) {
+            Aggregate trend = b.aggs().get("trend");
+            if (trend == null || !trend.isDateHistogram()) continue;
+            for (var h : trend.dateHistogram().buckets().array()) {
+                double[] v = merged.computeIfAbsent(b.key(), k -> new TreeMap<>()).computeIfAbsent(h.key(), k -> new double[2]);
+                if (average) {
+                    v[0] += h.aggregations().get("sum").sum().value();
+                    v[1] += h.aggregations().get("n").sum().value();
+                } else {
+                    v[0] += h.aggregations().get("count").sum().value();
+                }
+            }
+        }
+
+        Query raw = rawRemainder(start, end, plan);
+        if (raw != null) {
+            var rawResp = esClient.search(s -> s
+                    .index(indexCatalog.resolve(metric.source(), start, end))
+                    .size(0)
+                    .ignoreUnavailable(true)
+                    .allowNoIndices(true)
+                    .query(raw)
+                    .aggregations("by_key", a -> a
+                            .terms(t -> t.field(metric.keyField()).size(size))
+                            .aggregations("trend", x -> {
+                                var h = histogram(x, interval);
+                                if (average) {
+                                    h.aggregations("sum", y -> y.sum(m -> m.field(metric.valueField())))
+                                            .aggregations("n", y -> y.valueCount(m -> m.field(metric.valueField())));
+                                }
+                                return h;
+                            })), Void.class);
+            for (var b : termBuckets(rawResp.aggregations().get("by_key"))) {
+                Aggregate trend = b.aggs().get("trend");
+                if (trend == null || !trend.isDateHistogram()) continue;
+                for (var h : trend.dateHistogram().buckets().array()) {
+                    double[] v = merged.computeIfAbsent(b.key(), k -> new TreeMap<>()).computeIfAbsent(h.key(), k -> new double[2]);
+                    if (average) {
+                        v[0] += finite(h.aggregations().get("sum").sum().value());
+                        v[1] += h.aggregations().get("n").valueCount().value();
+                    } else {
+                        v[0] += h.docCount();
+                    }
+                }
+            }
+        }
+
+        Map<String, List<TrendingData>> out = new LinkedHashMap<>();
+        for (String key : topKeys(merged, average, topN)) {
+            List<TrendingData> series = new ArrayList<>();
+            merged.get(key).forEach((ts, v) -> series.add(new TrendingData(ts,
+                    average ? (v[1] > 0 ? Math.round(v[0] / v[1]) : 0L) : Math.round(v[0]))));
+            out.put(key, series);
+        }
+        return out;
+    }
+
+    /**
+     * 按分组的合计，降序取前 topN 个；无法使用汇总时返回 null
+     */
+    public Map<String, Long> totals(String metricName, long start, long end, int topN) throws IOException {
+        Plan plan = plan(start, end, null);
+        if (plan == null) {
+            return null;
+        }
+        Metric metric = metric(metricName, metrics());
+        int size = Math.max(topN * 5, 100);
+        Map<String, Long> merged = new HashMap<>();
+
+        var rollupResp = esClient.search(s -> s
+                .index(plan.level().index())
+                .size(0)
+                .query(rollupQuery(metric, plan))
+                .aggregations("by_key", a -> a
+                        .terms(t -> t.field("key").size(size)
+                                .order(List.of(NamedValue.of("total", SortOrder.Desc))))
+                        .aggregations("total", x -> x.sum(m -> m.field("count")))), Void.class);
+        for (var b : termBuckets(rollupResp.aggregations().get("by_key"))) {
+            merged.merge(b.key(), (long) b.aggs().get("total").sum().value(), Long::sum);
+        }
+
+        Query raw = rawRemainder(start, end, plan);
+        if (raw != null) {
+            var rawResp = esClient.search(s -> s
+                    .index(indexCatalog.resolve(metric.source(), start, end))
+                    .size(0)
+                    .ignoreUnavailable(true)
+                    .allowNoIndices(true)
+                    .query(raw)
+                    .aggregations("by_key", a -> a.terms(t -> t.field(metric.keyField()).size(size))), Void.class);
+            for (var b : termBuckets(rawResp.aggregations().get("by_key"))) {
+                merged.merge(b.key(), b.docCount(), Long::sum);
+            }
+        }
+
+        Map<String, Long> out = new LinkedHashMap<>();
+        merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(Math.max(1, topN))
+                .forEach(e -> out.put(e.getKey(), e.getValue()));
+        return out;
+    }
+
+    private static Query rollupQuery(Metric metric, Plan plan) {
+        return Query.of(q -> q.bool(b -> b
+                .filter(f -> f.term(t -> t.field("metric").value(metric.name())))
+                .filter(f -> f.range(r -> r.field("timestamp").gte(JsonData.of(plan.from())).lt(JsonData.of(plan.to()))))));
+    }
+
+    // 汇总未覆盖的首尾零头 [start, from) 与 [to, end]；没有零头时返回 null
+    private static Query rawRemainder(long start, long end, Plan plan) {
+        BoolQuery.Builder bool = new BoolQuery.Builder();
+        boolean any = false;
+        if (start < plan.from()) {
+            bool.should(s -> s.range(r -> r.field("timestamp").gte(JsonData.of(start)).lt(JsonData.of(plan.from()))));
+            any = true;
+        }
+        if (plan.to() <= end) {
+            bool.should(s -> s.range(r -> r.field("timestamp").gte(JsonData.of(plan.to())).lte(JsonData.of(end))));
+            any = true;
+        }
+        return any ? Query.of(q -> q.bool(bool.minimumShouldMatch("1").build())) : null;
+    }
+
+    private static Aggregation.Builder.ContainerBuilder histogram(Aggregation.Builder x, String interval) {
+        return x.dateHistogram(h -> {
+            h.field("timestamp");
+            ElasticsearchSyncService.applyInterval(h, interval);
+            h.minDocCount(0);
+            return h;
+        });
+    }
+
+    private static List<String> topKeys(Map<String, TreeMap<Long, double[]>> merged, boolean average, int topN) {
+        Map<String, Double> totals = new HashMap<>();
+        merged.forEach((key, series) -> totals.put(key,
+                series.values().stream().mapToDouble(v -> average ? v[1] : v[0]).sum()));
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(Math.max(1, topN))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /** terms 桶（字符串/整数/浮点 terms 统一为字符串 key） */
+    record TermBucket(String key, long docCount, Map<String, Aggregate> aggs) {
+    }
+
+    static List<TermBucket> termBuckets(Aggregate agg) {
+        List<TermBucket> out = new ArrayList<>();
+        if (agg == null) {
+            return out;
+        }
+        if (agg.isSterms()) {
+            agg.sterms().buckets().array().forEach(b -> out.add(new TermBucket(b.key().stringValue(), b.docCount(), b.aggregations())));
+        } else if (agg.isLterms()) {
+            agg.lterms().buckets().array().forEach(b -> out.add(new TermBucket(String.valueOf(b.key()), b.docCount(), b.aggregations())));
+        } else if (agg.isDterms()) {
+            agg.dterms().buckets().array().forEach(b -> out.add(new TermBucket(keyString(FieldValue.of(b.key())), b.docCount(), b.aggregations())));
+        }
+        return out;
+    }
+
+    // 与 terms 桶的 key 保持一致：整数值不带小数点
+    private static String keyString(FieldValue v) {
+        if (v == null || v.isNull()) {
+            return null;
+        }
+        if (v.isString()) {
+            return v.stringValue();
+        }
+        if (v.isLong()) {
+            return String.valueOf(v.longValue());
+        }
+        if (v.isDouble()) {
+            double d = v.doubleValue();
+            return d == Math.rint(d) && !Double.isInfinite(d) ? String.valueOf((long) d) : String.valueOf(d);
+        }
+        if (v.isBoolean()) {
+            return String.valueOf(v.booleanValue());
+        }
+        return String.valueOf(v._get());
+    }
+
+    private static String docId(String metric, String key, long bucket) {
+        String id = metric + ":" + bucket + ":" + key;
+        // ES 文档 ID 上限 512 字节
+        return id.getBytes(StandardCharsets.UTF_8).length <= 256
+                ? id
+                : metric + ":" + bucket + ":" + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long floor(long millis, long step) {
+        return Math.floorDiv(millis, step) * step;
+    }
+
+    private static long ceil(long millis, long step) {
+        return -Math.floorDiv(-millis, step) * step;
+    }
+
+    private static double finite(double v) {
+        return Double.isNaN(v) || Double.isInfinite(v) ? 0.0 : v;
+    }
+
+    private static Long asLong(Object v) {
+        return v instanceof Number n ? n.longValue() : null;
+    }
+
+    @Override
+    public void destroy() {
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.field_caps.FieldCapability;
+import com.example.web_service.config.EsSchemaProperties;
+
+/**
+ * 索引字段信息注册表。
+ * 每个索引表达式（索引名/别名/通配）首次使用时通过 _field_caps 加载一次，之后由后台定时刷新；
+ * 字段是否存在、是否数值、是否可聚合、是否有 .keyword 子字段等判断均直接读取内存。
+ */
+@Service
+public class EsSchemaRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(EsSchemaRegistry.class);
+
+    private static final long RETRY_MILLIS = 30_000L;
+
+    /** 单个字段的能力信息；跨索引类型不一致时 types 含多个值 */
+    public record FieldInfo(String name, Set<String> types, boolean aggregatable, boolean searchable) {
+        public String type() {
+            return types.iterator().next();
+        }
+    }
+
+    private record IndexSchema(Map<String, FieldInfo> fields, boolean loaded, long loadedAt) {
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsSchemaProperties properties;
+
+    private final Map<String, IndexSchema> schemas = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        for (String index : properties.getPreloadIndices()) {
+            schemas.put(index, load(index));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.es-schema.refresh-interval-millis:300000}",
+            initialDelayString = "${app.es-schema.refresh-interval-millis:300000}")
+    public void refreshAll() {
+        for (String index : new ArrayList<>(schemas.keySet())) {
+            IndexSchema fresh = load(index);
+            // 刷新失败时保留旧数据
+            if (fresh.loaded() || !schemas.get(index).loaded()) {
+                schemas.put(index, fresh);
+            }
+        }
+    }
+
+    /**
+     * 立即重新加载指定索引（为空时全部），用于新建索引或修改 mapping 后
+     */
+    public void invalidate(String index) {
+        if (index == null || index.isBlank()) {
+            schemas.clear();
+        } else {
+            schemas.remove(index);
+        }
+    }
+
+    public FieldInfo field(String index, String field) {
+        if (field == null || field.isBlank()) {
+            return null;
+        }
+        return schema(index).fields().get(field);
+    }
+
+    public boolean hasField(String index, String field) {
+        return field(index, field) != null;
+    }
+
+    public boolean isNumeric(String index, String field) {
+        FieldInfo info = field(index, field);
+        return info != null && info.types().stream().allMatch(EsSchemaRegistry::isNumericType);
+    }
+
+    /**
+     * 返回可用于 terms 等聚合的字段名：字段本身可聚合则返回自身，否则返回可聚合的 .keyword 子字段；都不存在时返回 null
+     */
+    public String aggregatableField(String index, String field) {
+        FieldInfo info = field(index, field);
+        if (info != null && info.aggregatable()) {
+            return field;
+        }
+        FieldInfo keyword = field(index, field + ".keyword");
+        if (keyword != null && keyword.aggregatable()) {
+            return keyword.name();
+        }
+        return null;
+    }
+
+    /**
+     * 按顺序返回第一个存在且可聚合的候选字段（含 .keyword 回退），都不存在时返回 null
+     */
+    public String firstAggregatable(String index, String... candidates) {
+        for (String c : candidates) {
+            String f = aggregatableField(index, c);
+            if (f != null) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 字段列表（不含元数据字段与 object/nested），按名称排序，元素为 {name, type}
+     */
+    public List<Map<String, String>> fieldList(String index) {
+        return schema(index).fields().values().stream()
+                .filter(f -> !f.types().contains("object") && !f.types().contains("nested"))
+                .sorted(Comparator.comparing(FieldInfo::name))
+                .map(f -> Map.of("name", f.name(), "type", f.type()))
+                .toList();
+    }
+
+    private IndexSchema schema(String index) {
+        IndexSchema schema = schemas.get(index);
+        if (schema == null) {
+            schema = schemas.computeIfAbsent(index, this::load);
+        } else if (!schema.loaded() && System.currentTimeMillis() - schema.loadedAt() > RETRY_MILLIS) {
+            // 上次加载失败（如启动时 ES 不可用），间隔一段时间后在调用时重试
+            schema = load(index);
+            schemas.put(index, schema);
+        }
+        return schema;
+    }
+
+    private IndexSchema load(String index) {
+        try {
+            var resp = esClient.fieldCaps(f -> f
+                    .index(index)
+                    .fields("*")
+                    .ignoreUnavailable(true)
+                    .allowNoIndices(true));
+            Map<String, FieldInfo> fields = new LinkedHashMap<>();
+            for (var entry : resp.fields().entrySet()) {
+                String name = entry.getKey();
+                Map<String, FieldCapability> byType = entry.getValue();
+                boolean metadata = byType.values().stream().anyMatch(c -> Boolean.TRUE.equals(c.metadataField()));
+                if (metadata || name.startsWith("_")) {
+                    continue;
+                }
+                Set<String> types = new LinkedHashSet<>(byType.keySet());
+                boolean aggregatable = byType.values().stream().allMatch(FieldCapability::aggregatable);
+                boolean searchable = byType.values().stream().allMatch(FieldCapability::searchable);
+                fields.put(name, new FieldInfo(name, types, aggregatable, searchable));
+            }
+            log.debug("Loaded {} fields for index '{}'", fields.size(), index);
+            return new IndexSchema(Map.copyOf(fields), true, System.currentTimeMillis());
+        } catch (Exception e) {
+            // 加载失败时暂存空结构，由后台刷新重试，避免每次调用都访问 ES
+            log.warn("Failed to load field caps for index '{}': {}", index, e.getMessage());
+            return new IndexSchema(Map.of(), false, System.currentTimeMillis());
+        }
+    }
+
+    public static boolean isNumericType(String fieldType) {
+        if (fieldType == null) {
+            return false;
+        }
+        switch (fieldType.toLowerCase()) {
+            case "long":
+            case "integer":
+            case "short":
+            case "byte":
+            case "double":
+            case "float":
+            case "half_float":
+            case "scaled_float":
+            case "unsigned_long":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static boolean isTextType(String fieldType) {
+        if (fieldType == null) {
+            return false;
+        }
+        switch (fieldType.toLowerCase()) {
+            case "text":
+            case "keyword":
+            case "constant_keyword":
+            case "wildcard":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.stats.IndexStats;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import com.example.web_service.config.EsMaintenanceProperties;
+import com.example.web_service.service.EsDeletionTaskService;
+import com.example.web_service.service.LogService;
+
+/**
+ * 老化后的段维护。
+ * delete_by_query 只是把文档标记为删除，段中的已删除文档要等 ES 自行合并才回收，期间占用磁盘并拖慢聚合。
+ * 本服务在低峰窗口内按 _stats 找出已删除文档占比高的索引，逐个执行
+ * forcemerge?only_expunge_deletes=true（wait_for_completion=false，通过 Tasks API 等待完成），
+ * 两次合并之间暂停 pauseBetweenIndicesMillis，并记录合并前后的段数与磁盘占用。
+ * 有删除任务执行或排队时不开始合并，避免与老化删除争抢 IO、合并后又产生新的已删除文档。
+ */
+@Service
+public class EsSegmentMaintenanceService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EsSegmentMaintenanceService.class);
+
+    private static final DateTimeFormatter HH_MM = DateTimeFormatter.ofPattern("HH:mm");
+
+    /** 索引的文档与段统计（主分片） */
+    public record SegmentStats(String index, long docs, long deletedDocs, double deletedRatio, int segments, long storeBytes) {
+    }
+
+    /** 单个索引的合并报告 */
+    public record MergeReport(String index, String state, long startedAt, Long finishedAt,
+                              SegmentStats before, SegmentStats after, String errorMessage) {
+    }
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsMaintenanceProperties properties;
+
+    @Autowired
+    private EsDeletionTaskService esDeletionTaskService;
+
+    @Autowired
+    private LogService logService;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "es-segment-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Deque<MergeReport> reports = new ArrayDeque<>();
+
+    @Scheduled(fixedDelayString = "${app.es-maintenance.check-interval-millis:300000}")
+    public void scheduledRun() {
+        if (!properties.isEnabled() || !inWindow(LocalTime.now())) {
+            return;
+        }
+        trigger(false);
+    }
+
+    /**
+     * 在后台线程启动一轮维护（同一时间只有一轮）
+     * @param ignoreWindow 为 true 时不检查低峰窗口（手动触发）
+     * @return 已有一轮在执行时返回 false
+     */
+    public boolean trigger(boolean ignoreWindow) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        worker.execute(() -> {
+            try {
+                runOnce(ignoreWindow);
+            } catch (Exception e) {
+                log.warn("Segment maintenance run failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 已删除文档占比达到阈值的索引，按已删除文档数降序
+     */
+    public List<SegmentStats> candidates() throws IOException {
+        List<SegmentStats> out = new ArrayList<>();
+        for (SegmentStats s : stats(ElasticsearchSyncService.nonSystemTargets(properties.getExcludedIndices())).values()) {
+            if (s.deletedDocs() >= properties.getMinDeletedDocs() && s.deletedRatio() >= properties.getMinDeletedRatio()) {
+                out.add(s);
+            }
+        }
+        out.sort(Comparator.comparingLong(SegmentStats::deletedDocs).reversed());
+        return out;
+    }
+
+    /**
+     * 最近的合并报告（新的在前）
+     */
+    public List<MergeReport> reports() {
+        synchronized (reports) {
+            return new ArrayList<>(reports);
+        }
+    }
+
+    private void runOnce(boolean ignoreWindow) throws Exception {
+        if (esDeletionTaskService.hasActiveTasks()) {
+            log.info("Segment maintenance skipped: ES deletion tasks are still running");
+            return;
+        }
+        List<SegmentStats> candidates = candidates();
+        if (candidates.isEmpty()) {
+            log.debug("Segment maintenance: no index above deleted ratio {}", properties.getMinDeletedRatio());
+            return;
+        }
+        int limit = Math.max(1, properties.getMaxIndicesPerRun());
+        log.info("Segment maintenance: {} candidate indices, merging up to {}", candidates.size(), limit);
+        int merged = 0;
+        for (SegmentStats before : candidates) {
+            if (merged >= limit) {
+                break;
+            }
+            if (!ignoreWindow && !inWindow(LocalTime.now())) {
+                log.info("Segment maintenance: off-peak window closed, stopping after {} indices", merged);
+                break;
+            }
+            if (esDeletionTaskService.hasActiveTasks()) {
+                log.info("Segment maintenance: ES deletion task started, stopping after {} indices", merged);
+                break;
+            }
+            if (merged > 0) {
+                Thread.sleep(Math.max(0L, properties.getPauseBetweenIndicesMillis()));
+            }
+            addReport(expungeDeletes(before));
+            merged++;
+        }
+    }
+
+    private MergeReport expungeDeletes(SegmentStats before) {
+        String index = before.index();
+        long startedAt = System.currentTimeMillis();
+        try {
+            String taskId = esClient.indices().forcemerge(f -> f
+                    .index(index)
+                    .onlyExpungeDeletes(true)
+                    .waitForCompletion(false)).task();
+            if (taskId != null) {
+                waitFor(taskId);
+            }
+            SegmentStats after = stats(List.of(index)).get(index);
+            log.info("Expunged deletes in '{}': segments {} -> {}, deleted docs {} -> {}, store {} -> {} bytes",
+                    index, before.segments(), after != null ? after.segments() : null,
+                    before.deletedDocs(), after != null ? after.deletedDocs() : null,
+                    before.storeBytes(), after != null ? after.storeBytes() : null);
+            logService.info("system", "EsMaintenance", String.format(
+                    "Force-merged %s: segments %d -> %s, store %d -> %s bytes", index, before.segments(),
+                    after != null ? after.segments() : "?", before.storeBytes(), after != null ? after.storeBytes() : "?"));
+            return new MergeReport(index, "DONE", startedAt, System.currentTimeMillis(), before, after, null);
+        } catch (Exception e) {
+            log.warn("Force-merge of '{}' failed: {}", index, e.getMessage());
+            logService.error("system", "EsMaintenance", "Force-merge of " + index + " failed: " + e.getMessage());
+            return new MergeReport(index, "FAILED", startedAt, System.currentTimeMillis(), before, null, e.getMessage());
+        }
+    }
+
+    private void waitFor(String taskId) throws IOException, InterruptedException {
+        while (true) {
+            GetTasksResponse resp = esClient.tasks().get(g -> g.taskId(taskId));
+            if (resp.completed()) {
+                if (resp.error() != null) {
+                    throw new IOException(resp.error().reason());
+                }
+                return;
+            }
+            Thread.sleep(Math.max(1000L, properties.getPollIntervalMillis()));
+        }
+    }
+
+    private Map<String, SegmentStats> stats(List<String> targets) throws IOException {
+        var resp = esClient.indices().stats(s -> s.index(targets).metric("docs", "store", "segments"));
+        Map<String, SegmentStats> out = new LinkedHashMap<>();
+        resp.indices().forEach((index, st) -> {
+            IndexStats p = st.primaries();
+            if (p == null || p.docs() == null) {
+                return;
+            }
+            long docs = p.docs().count();
+            long deleted = p.docs().deleted() != null ? p.docs().deleted() : 0L;
+            double ratio = docs + deleted > 0 ? (double) deleted / (docs + deleted) : 0.0;
+            int segments = p.segments() != null ? p.segments().count() : 0;
+            long store = p.store() != null ? p.store().sizeInBytes() : 0L;
+            out.put(index, new SegmentStats(index, docs, deleted, ratio, segments, store));
+        });
+        return out;
+    }
+
+    private void addReport(MergeReport report) {
+        synchronized (reports) {
+            reports.addFirst(report);
+            while (reports.size() > Math.max(1, properties.getReportHistorySize())) {
+                reports.removeLast();
+            }
+        }
+    }
+
+    // 窗口 [start, end)，start 晚于 end 时跨零点
+    boolean inWindow(LocalTime now) {
+        try {
+            LocalTime start = LocalTime.parse(properties.getWindowStart(), HH_MM);
+            LocalTime end = LocalTime.parse(properties.getWindowEnd(), HH_MM);
+            if (start.equals(end)) {
+                return true;
+            }
+            return start.isBefore(end)
+                    ? !now.isBefore(start) && now.isBefore(end)
+                    : !now.isBefore(start) || now.isBefore(end);
+        } catch (RuntimeException e) {
+            log.warn("Invalid maintenance window {}-{}, expected HH:mm", properties.getWindowStart(), properties.getWindowEnd());
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        worker.shutdownNow();
+    }
+}
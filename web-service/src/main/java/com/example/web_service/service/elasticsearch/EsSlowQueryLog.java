@@ -0,0 +1,250 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.transport.Endpoint;
+import com.example.web_service.config.EsSlowLogProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ES 慢查询记录：只有耗时超过阈值或被采样命中的调用才序列化请求体，其余调用没有额外开销。
+ * 记录保存在内存环形缓冲区（最近 ringSize 条），同时以 JSON 行追加到滚动文件。
+ * 请求体序列化与文件写入在单独线程上进行，不占用 ES 客户端 I/O 线程；写入积压时丢弃新记录。
+ */
+@Component
+public class EsSlowQueryLog implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EsSlowQueryLog.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public record Entry(long timestamp, String reason, String operation, String index, String endpoint, String outcome,
+                        long wallMillis, Long tookMillis, long responseBytes, long hits, long buckets,
+                        String method, String path, String body) {
+    }
+
+    @Autowired
+    private EsSlowLogProperties properties;
+
+    private final Deque<Entry> ring = new ArrayDeque<>();
+    private final LongAdder dropped = new LongAdder();
+    private final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1000), r -> {
+                Thread t = new Thread(r, "es-slowlog");
+                t.setDaemon(true);
+                return t;
+            }, (r, executor) -> dropped.increment());
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 高级客户端调用结束时调用，按阈值或采样决定是否记录
+     */
+    public <RequestT> void offer(EsMetrics.Sample sample, RequestT request, Endpoint<RequestT, ?, ?> endpoint, JsonpMapper mapper) {
+        String reason = reason(sample);
+        if (reason == null) {
+            return;
+        }
+        capture(sample, reason, () -> endpoint.method(request), () -> endpoint.requestUrl(request), () -> {
+            Object body = endpoint.body(request);
+            return body instanceof JsonpSerializable serializable ? JsonpUtils.toJsonString(serializable, mapper) : null;
+        });
+    }
+
+    /**
+     * 低级客户端调用结束时调用，请求体已是 JSON 字符串
+     */
+    public void offer(EsMetrics.Sample sample, String method, String path, String body) {
+        String reason = reason(sample);
+        if (reason != null) {
+            capture(sample, reason, () -> method, () -> path, () -> body);
+        }
+    }
+
+    private String reason(EsMetrics.Sample sample) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        if (sample.wallNanos() >= TimeUnit.MILLISECONDS.toNanos(properties.getThresholdMillis())) {
+            return "slow";
+        }
+        double rate = properties.getSampleRate();
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate ? "sampled" : null;
+    }
+
+    private void capture(EsMetrics.Sample sample, String reason, Supplier<String> method, Supplier<String> path, Supplier<String> body) {
+        long now = System.currentTimeMillis();
+        writer.execute(() -> {
+            String json;
+            try {
+                json = truncate(body.get());
+            } catch (RuntimeException e) {
+                json = "<unserializable: " + e.getMessage() + ">";
+            }
+            Entry entry = new Entry(now, reason, sample.operation(), sample.index(), sample.endpoint(), sample.outcome(),
+                    sample.wallNanos() / 1_000_000, sample.tookMillis(), sample.responseBytes(), sample.hits(), sample.buckets(),
+                    method.get(), path.get(), json);
+            synchronized (ring) {
+                ring.addFirst(entry);
+                while (ring.size() > Math.max(1, properties.getRingSize())) {
+                    ring.removeLast();
+                }
+            }
+            append(entry);
+        });
+    }
+
+    private String truncate(String body) {
+        int max = Math.max(0, properties.getMaxBodyChars());
+        if (body == null || body.length() <= max) {
+            return body;
+        }
+        return body.substring(0, max) + "...(truncated " + (body.length() - max) + " chars)";
+    }
+
+    // 仅在写线程上调用
+    private void append(Entry entry) {
+        String file = properties.getFile();
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        try {
+            Path path = Paths.get(file);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            if (Files.exists(path) && Files.size(path) >= properties.getFileMaxBytes()) {
+                rotate(path);
+            }
+            try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(JSON.writeValueAsString(entry));
+                w.write('\n');
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write ES slow query log '{}': {}", file, e.getMessage());
+        }
+    }
+
+    // file -> file.1 -> file.2 ...，超过 fileMaxHistory 的最旧文件删除
+    private void rotate(Path path) throws IOException {
+        int history = Math.max(0, properties.getFileMaxHistory());
+        Files.deleteIfExists(Paths.get(path + "." + history));
+        for (int i = history - 1; i >= 1; i--) {
+            Path from = Paths.get(path + "." + i);
+            if (Files.exists(from)) {
+                Files.move(from, Paths.get(path + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (history > 0) {
+            Files.move(path, Paths.get(path + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * 最近的记录（新的在前），operation 不为空时只返回该操作的记录
+     */
+    public List<Entry> recent(int limit, String operation) {
+        List<Entry> out = new ArrayList<>();
+        synchronized (ring) {
+            for (Entry e : ring) {
+                if (out.size() >= limit) {
+                    break;
+                }
+                if (operation == null || operation.equals(e.operation())) {
+                    out.add(e);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 按 operation/index/endpoint 汇总缓冲区中的记录，按累计耗时降序；附带最慢一次的请求体
+     */
+    public List<Map<String, Object>> topOffenders(int limit) {
+        Map<String, List<Entry>> groups = new LinkedHashMap<>();
+        synchronized (ring) {
+            for (Entry e : ring) {
+                groups.computeIfAbsent(e.operation() + "|" + e.index() + "|" + e.endpoint(), k -> new ArrayList<>()).add(e);
+            }
+        }
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (List<Entry> entries : groups.values()) {
+            Entry slowest = entries.stream().max(Comparator.comparingLong(Entry::wallMillis)).get();
+            long total = entries.stream().mapToLong(Entry::wallMillis).sum();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("operation", slowest.operation());
+            m.put("index", slowest.index());
+            m.put("endpoint", slowest.endpoint());
+            m.put("count", entries.size());
+            m.put("slowCount", entries.stream().filter(e -> "slow".equals(e.reason())).count());
+            m.put("totalMillis", total);
+            m.put("avgMillis", total / entries.size());
+            m.put("maxMillis", slowest.wallMillis());
+            m.put("lastSeen", entries.get(0).timestamp());
+            m.put("slowestPath", slowest.path());
+            m.put("slowestBody", slowest.body());
+            out.add(m);
+        }
+        out.sort(Comparator.comparingLong((Map<String, Object> m) -> (Long) m.get("totalMillis")).reversed());
+        return out.subList(0, Math.min(Math.max(0, limit), out.size()));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", properties.isEnabled());
+        m.put("thresholdMillis", properties.getThresholdMillis());
+        m.put("sampleRate", properties.getSampleRate());
+        synchronized (ring) {
+            m.put("buffered", ring.size());
+        }
+        m.put("dropped", dropped.sum());
+        m.put("file", properties.getFile());
+        return m;
+    }
+
+    public void clear() {
+        synchronized (ring) {
+            ring.clear();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        writer.shutdown();
+    }
+}
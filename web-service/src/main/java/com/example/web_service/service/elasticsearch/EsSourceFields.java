@@ -0,0 +1,44 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+
+/**
+ * fields 请求参数 -> _source 投影。
+ * 逗号分隔，"-" 前缀表示排除，支持通配符，如 "timestamp,srcIP,dst*,-payload"。
+ */
+public final class EsSourceFields {
+
+    private EsSourceFields() {
+    }
+
+    /**
+     * 解析 fields 参数，参数为空时返回 null（返回完整 _source）
+     */
+    public static SourceConfig parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        for (String f : fields.split(",")) {
+            String field = f.trim();
+            if (field.isEmpty()) continue;
+            if (field.startsWith("-")) {
+                if (field.length() > 1) excludes.add(field.substring(1));
+            } else {
+                includes.add(field);
+            }
+        }
+        if (includes.isEmpty() && excludes.isEmpty()) {
+            return null;
+        }
+        return SourceConfig.of(s -> s.filter(sf -> {
+            if (!includes.isEmpty()) sf.includes(includes);
+            if (!excludes.isEmpty()) sf.excludes(excludes);
+            return sf;
+        }));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.web_service.config.EsTransportProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ES 传输层节点管理：
+ * - 节点发现：定时（以及节点失败后）通过 _nodes/http 获取集群节点地址与角色，替换 RestClient 节点列表，
+ *   使新增数据节点自动参与轮询、专用 master 节点被跳过
+ * - 节点健康：列出客户端当前节点及其失败次数，可逐节点探测 GET / 的可达性与延迟，并附带 _cat/nodes 的集群视图
+ */
+@Service
+public class EsTransportService {
+
+    private static final Logger log = LoggerFactory.getLogger(EsTransportService.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Autowired
+    private RestClient restClient;
+
+    @Autowired
+    private EsTransportProperties properties;
+
+    @Autowired
+    private EsNodeFailureListener failureListener;
+
+    private volatile long lastSniffAt;
+    private volatile String lastSniffError;
+
+    // 每 10 秒检查一次是否到达发现间隔，或自上次发现后有节点失败
+    @Scheduled(fixedDelay = 10000)
+    public void scheduledSniff() {
+        if (!properties.isSniffEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean due = now - lastSniffAt >= properties.getSniffIntervalMillis();
+        boolean failedSince = failureListener.lastFailureAt() > lastSniffAt
+                && now - lastSniffAt >= properties.getSniffAfterFailureDelayMillis();
+        if (due || failedSince) {
+            try {
+                sniff();
+            } catch (Exception e) {
+                log.warn("Failed to sniff ES nodes: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 通过 _nodes/http 发现节点并替换 RestClient 节点列表，返回发现的节点数；未发现任何 HTTP 节点时保留原列表
+     */
+    public synchronized int sniff() throws IOException {
+        lastSniffAt = System.currentTimeMillis();
+        try {
+            Request req = new Request("GET", "/_nodes/http");
+            req.addParameter("filter_path", "nodes.*.name,nodes.*.version,nodes.*.roles,nodes.*.attributes,nodes.*.http.publish_address");
+            JsonNode nodes = JSON.readTree(restClient.performRequest(req).getEntity().getContent()).path("nodes");
+            String scheme = restClient.getNodes().isEmpty() ? "http" : restClient.getNodes().get(0).getHost().getSchemeName();
+            List<Node> discovered = new ArrayList<>();
+            for (Iterator<JsonNode> it = nodes.elements(); it.hasNext(); ) {
+                JsonNode n = it.next();
+                String address = n.path("http").path("publish_address").asText(null);
+                if (address == null || address.isBlank()) {
+                    continue;
+                }
+                Set<String> roles = new HashSet<>();
+                n.path("roles").forEach(r -> roles.add(r.asText()));
+                Map<String, List<String>> attributes = new LinkedHashMap<>();
+                n.path("attributes").fields().forEachRemaining(e -> attributes.put(e.getKey(), List.of(e.getValue().asText())));
+                discovered.add(new Node(publishHost(scheme, address), null,
+                        n.path("name").asText(null), n.path("version").asText(null), new Node.Roles(roles), attributes));
+            }
+            if (discovered.isEmpty()) {
+                lastSniffError = "no http nodes";
+                return 0;
+            }
+            restClient.setNodes(discovered);
+            lastSniffError = null;
+            log.debug("Sniffed {} ES nodes", discovered.size());
+            return discovered.size();
+        } catch (IOException | RuntimeException e) {
+            lastSniffError = e.getMessage();
+            throw e;
+        }
+    }
+
+    // publish_address 形如 "ip:port"、"hostname/ip:port" 或 "[::1]:9200"，有主机名时使用主机名
+    static HttpHost publishHost(String scheme, String address) {
+        String hostPart = address;
+        int slash = address.indexOf('/');
+        if (slash >= 0) {
+            String name = address.substring(0, slash);
+            String ipPort = address.substring(slash + 1);
+            String port = ipPort.substring(ipPort.lastIndexOf(':') + 1);
+            hostPart = name.isEmpty() ? ipPort : name + ":" + port;
+        }
+        return HttpHost.create(scheme + "://" + hostPart);
+    }
+
+    /**
+     * 节点健康：客户端节点列表（含失败统计），probe 为 true 时逐节点直连探测 GET /；附带集群 _cat/nodes 视图
+     */
+    public Map<String, Object> nodes(boolean probe) {
+        List<Map<String, Object>> clientNodes = new ArrayList<>();
+        for (Node node : restClient.getNodes()) {
+            String host = node.getHost().toURI();
+            EsNodeFailureListener.Failures failures = failureListener.get(host);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("host", host);
+            m.put("name", node.getName());
+            m.put("version", node.getVersion());
+            m.put("roles", node.getRoles() != null ? node.getRoles().toString() : null);
+            m.put("failures", failures.count());
+            m.put("lastFailureAt", failures.lastFailureAt() > 0 ? failures.lastFailureAt() : null);
+            if (probe) {
+                m.putAll(probe(node.getHost()));
+            }
+            clientNodes.add(m);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("compressionEnabled", properties.isCompressionEnabled());
+        result.put("sniffEnabled", properties.isSniffEnabled());
+        result.put("lastSniffAt", lastSniffAt > 0 ? lastSniffAt : null);
+        result.put("lastSniffError", lastSniffError);
+        result.put("nodes", clientNodes);
+        result.put("cluster", clusterNodes());
+        return result;
+    }
+
+    // 绕过轮询，复用 RestClient 的连接池直接请求指定节点
+    private Map<String, Object> probe(HttpHost host) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse response = restClient.getHttpClient().execute(host, new HttpGet("/"), null)
+                    .get(properties.getConnectTimeoutMillis() + 5000L, TimeUnit.MILLISECONDS);
+            int status = response.getStatusLine().getStatusCode();
+            m.put("reachable", status < 500);
+            m.put("status", status);
+        } catch (Exception e) {
+            m.put("reachable", false);
+            m.put("error", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+        m.put("latencyMs", (System.nanoTime() - t0) / 1_000_000);
+        return m;
+    }
+
+    private List<Map<String, Object>> clusterNodes() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        try {
+            Request req = new Request("GET", "/_cat/nodes");
+            req.addParameter("format", "json");
+            req.addParameter("h", "name,ip,http_address,node.role,master,heap.percent,cpu,load_1m");
+            JsonNode rows = JSON.readTree(restClient.performRequest(req).getEntity().getContent());
+            for (JsonNode row : rows) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                row.fields().forEachRemaining(e -> m.put(e.getKey(), e.getValue().asText()));
+                out.add(m);
+            }
+        } catch (Exception e) {
+            log.debug("Failed to read _cat/nodes: {}", e.getMessage());
+        }
+        return out;
+    }
+}
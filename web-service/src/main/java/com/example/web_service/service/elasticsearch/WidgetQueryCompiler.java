@@ -0,0 +1,358 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CalendarInterval;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpUtils;
+import com.example.web_service.config.EsWidgetProperties;
+import com.example.web_service.model.es.widget.WidgetFilter;
+import com.example.web_service.model.es.widget.WidgetQueryRequest;
+import com.example.web_service.service.elasticsearch.cache.BoundedTtlCache;
+
+/**
+ * Widget 查询编译器：把 Widget 定义（索引、类型、字段、聚合方式、过滤条件结构、表格参数）编译为不可变的
+ * {@link WidgetQueryPlan} 并按定义缓存。仪表盘重复刷新时只绑定时间范围与过滤值，不再重复做轴判断、
+ * 字段校验和聚合构建。
+ */
+@Service
+public class WidgetQueryCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(WidgetQueryCompiler.class);
+
+    private static final long DEFAULT_RANGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /** 查询计划的缓存 key：Widget 定义中除时间范围与过滤值以外的全部内容 */
+    private record PlanKey(String index, String widgetType, String aggregationField, String aggregationType,
+            String metricField, String yField, List<String> filterShape, Integer topN, String sortField, String sortOrder) {
+
+        static PlanKey of(WidgetQueryRequest req) {
+            List<String> shape = new ArrayList<>();
+            if (req.getFilters() != null) {
+                for (WidgetFilter f : req.getFilters()) {
+                    shape.add(f.getField() + "\u0000" + f.getOperator());
+                }
+            }
+            return new PlanKey(req.getIndex(), req.getWidgetType(), req.getAggregationField(), req.getAggregationType(),
+                    req.getMetricField(), req.getYField(), shape, req.getTopN(), req.getSortField(), req.getSortOrder());
+        }
+    }
+
+    @Autowired
+    private EsSchemaRegistry schemaRegistry;
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private EsIndexCatalog indexCatalog;
+
+    private final EsWidgetProperties properties;
+    private final BoundedTtlCache plans;
+
+    public WidgetQueryCompiler(EsWidgetProperties properties) {
+        this.properties = properties;
+        this.plans = new BoundedTtlCache("widgetPlans", properties.getPlanCacheSize(), properties.getPlanTtlSeconds() * 1000L);
+    }
+
+    /**
+     * 取得（必要时编译）查询计划，并绑定本次的时间范围与过滤值
+     */
+    public WidgetQueryPlan.Bound prepare(WidgetQueryRequest req) {
+        long now = System.currentTimeMillis();
+        long start = req.getStartTime() != null ? req.getStartTime() : (now - DEFAULT_RANGE_MILLIS);
+        long end = req.getEndTime() != null ? req.getEndTime() : now;
+        WidgetQueryPlan plan = plans.get(PlanKey.of(req), () -> compile(req));
+        WidgetQueryPlan.Bound bound = plan.bind(start, end, req.getFilters(), indexCatalog.resolve(plan.index(), start, end));
+        if (properties.isLogDsl() && bound.error() == null) {
+            log.info("Widget query DSL: POST /{}/_search {}", String.join(",", bound.indices()),
+                    JsonpUtils.toJsonString(bound.toSearchRequest(), esClient._jsonpMapper()));
+        }
+        return bound;
+    }
+
+    /** 清空查询计划，如索引 mapping 变更后 */
+    public void clear() {
+        plans.clear();
+    }
+
+    public Map<String, Object> stats() {
+        return plans.stats();
+    }
+
+    WidgetQueryPlan compile(WidgetQueryRequest req) {
+        String index = req.getIndex();
+        String yFieldParam = req.getYField();
+        String aggField = req.getAggregationField();
+        String aggType = req.getAggregationType();
+        if (aggType == null || aggType.isBlank()) aggType = "count";
+
+        // 轴映射：yField 存在时作为 X 轴（时间字段 -> 时间序列，否则为分类），否则默认 timestamp 时间序列
+        final String chartXField;
+        final String chartYField;
+        if (yFieldParam != null && !yFieldParam.isBlank() && !"null".equals(yFieldParam)) {
+            chartXField = yFieldParam;
+            chartYField = aggField;
+        } else {
+            chartXField = "timestamp";
+            chartYField = null;
+        }
+        log.debug("Compile widget plan: index={}, widgetType={}, xField={}, yField={}, aggField={}, aggType={}",
+                index, req.getWidgetType(), chartXField, chartYField, aggField, aggType);
+
+        List<WidgetQueryPlan.FilterTemplate> filters = compileFilters(req.getFilters());
+
+        String widgetType = req.getWidgetType();
+        if (widgetType != null && !"table".equalsIgnoreCase(widgetType)) {
+            // PIE chart: aggField 为分类字段，metricField 为数值字段
+            if ("pie".equalsIgnoreCase(widgetType)) {
+                if (aggField == null || aggField.isBlank()) {
+                    return WidgetQueryPlan.error(Map.of("error", "Aggregation field required for pie widget"));
+                }
+                final String pieAggType = aggType;
+                boolean docCountMode = "count".equalsIgnoreCase(pieAggType);
+                String metricField = req.getMetricField();
+                if (!docCountMode && (metricField == null || metricField.isBlank())) {
+                    return WidgetQueryPlan.error(Map.of("error", "Metric field is required for " + pieAggType + " aggregation in pie chart"));
+                }
+                Aggregation pieAgg = docCountMode
+                        ? Aggregation.of(a -> a.terms(t -> t.field(aggField).size(10)))
+                        : Aggregation.of(a -> a.terms(t -> t.field(aggField).size(10))
+                                .aggregations("metric", metricAggregation(pieAggType, metricField)));
+                return WidgetQueryPlan.aggregation(index, filters, "pie", pieAgg, (resp, start, end) -> {
+                    var pieResult = resp.aggregations().get("pie");
+                    if (pieResult == null || pieResult.sterms() == null) {
+                        return Map.of("start", start, "end", end, "labels", List.of(), "values", List.of());
+                    }
+                    List<String> labels = new ArrayList<>();
+                    List<Double> values = new ArrayList<>();
+                    for (var b : pieResult.sterms().buckets().array()) {
+                        String label = b.key().isString() ? b.key().stringValue() : b.key().toString();
+                        labels.add(label);
+                        values.add(bucketValue(docCountMode, pieAggType, b.docCount(), b.aggregations()));
+                    }
+                    return Map.of(
+                            "start", start,
+                            "end", end,
+                            "labels", labels,
+                            "values", values,
+                            "aggregation", pieAggType,
+                            "categoryField", aggField,
+                            "metricField", docCountMode ? "_doc_count" : metricField
+                    );
+                });
+            }
+            // LINE / BAR: 时间轴用 date_histogram，分类轴用 terms
+            final String chartAggType = aggType;
+            boolean docCountMode = (aggField == null || aggField.isBlank()) && "count".equalsIgnoreCase(chartAggType);
+            if (!docCountMode && (aggField == null || aggField.isBlank())) {
+                return WidgetQueryPlan.error(Map.of("error", "Aggregation field required for chart widget"));
+            }
+
+            // 非 count 聚合要求 Y 轴字段为数值类型
+            boolean isDateField = chartXField.equals("timestamp") || chartXField.contains("time") || chartXField.contains("date");
+            if (!isDateField && !docCountMode && aggField != null && !aggField.isBlank()
+                    && !schemaRegistry.isNumeric(index, aggField) && !"count".equalsIgnoreCase(chartAggType)) {
+                return WidgetQueryPlan.error(Map.of("error", String.format("Y-axis field '%s' must be a numeric type for %s charts. Current field type is not numeric. Please select a numeric field or use 'count' aggregation.", aggField, isDateField ? "time-series" : "category")));
+            }
+
+            if (isDateField) {
+                String timeField = chartXField;
+                Aggregation timeAgg = docCountMode
+                        ? Aggregation.of(a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0)))
+                        : Aggregation.of(a -> a.dateHistogram(d -> d.field(timeField).calendarInterval(CalendarInterval.Hour).minDocCount(0))
+                                .aggregations("metric", metricAggregation(chartAggType, aggField)));
+                return WidgetQueryPlan.aggregation(index, filters, "time", timeAgg, (resp, start, end) -> {
+                    var timeResult = resp.aggregations().get("time");
+                    if (timeResult == null || timeResult.dateHistogram() == null) {
+                        return Map.of("start", start, "end", end, "x", List.of(), "y", List.of());
+                    }
+                    List<Long> x = new ArrayList<>();
+                    List<Double> y = new ArrayList<>();
+                    for (var b : timeResult.dateHistogram().buckets().array()) {
+                        x.add(b.key());
+                        y.add(bucketValue(docCountMode, chartAggType, b.docCount(), b.aggregations()));
+                    }
+                    return Map.of(
+                            "start", start,
+                            "end", end,
+                            "x", x,
+                            "y", y,
+                            "aggregation", chartAggType,
+                            "field", docCountMode ? "_doc_count" : aggField,
+                            "yField", timeField
+                    );
+                });
+            }
+
+            Aggregation categoriesAgg = docCountMode
+                    ? Aggregation.of(a -> a.terms(t -> t.field(chartXField).size(10)))
+                    : Aggregation.of(a -> a.terms(t -> t.field(chartXField).size(10))
+                            .aggregations("metric", metricAggregation(chartAggType, aggField)));
+            return WidgetQueryPlan.aggregation(index, filters, "categories", categoriesAgg, (resp, start, end) -> {
+                var catResult = resp.aggregations().get("categories");
+                if (catResult == null || catResult.sterms() == null) {
+                    return Map.of("start", start, "end", end, "x", List.of(), "y", List.of());
+                }
+                List<String> x = new ArrayList<>();
+                List<Double> y = new ArrayList<>();
+                for (var b : catResult.sterms().buckets().array()) {
+                    String categoryName = b.key().isString() ? b.key().stringValue() : b.key().toString();
+                    x.add(categoryName);
+                    y.add(bucketValue(docCountMode, chartAggType, b.docCount(), b.aggregations()));
+                }
+                return Map.of(
+                        "start", start,
+                        "end", end,
+                        "x", x,  // category names instead of timestamps
+                        "y", y,
+                        "aggregation", chartAggType,
+                        "field", docCountMode ? "_doc_count" : aggField,
+                        "xField", chartXField,
+                        "yField", chartYField,
+                        "chartType", "category"
+                );
+            });
+        }
+
+        // table widget
+        int tableSize = req.getTopN() != null ? req.getTopN() : 10;
+        String tableSortField = req.getSortField() != null && !req.getSortField().isEmpty() ? req.getSortField() : "timestamp";
+        SortOrder sortOrder = "asc".equalsIgnoreCase(req.getSortOrder()) ? SortOrder.Asc : SortOrder.Desc;
+        SortOptions tableSort = SortOptions.of(so -> so.field(f -> f.field(tableSortField).order(sortOrder)));
+        return WidgetQueryPlan.hits(index, filters, tableSize, tableSort, (tableResp, start, end) -> {
+            List<Map<String, Object>> docs = tableResp.hits().hits().stream()
+                    .map(h -> h.source())
+                    .filter(s -> s != null)
+                    .map(s -> {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> result = s.to(Map.class);
+                        return result;
+                    })
+                    .toList();
+            Long totalVal = null;
+            if (tableResp.hits() != null) {
+                var totalResult = tableResp.hits().total();
+                if (totalResult != null) {
+                    totalVal = totalResult.value();
+                }
+            }
+            return Map.of(
+                    "start", start,
+                    "end", end,
+                    "total", totalVal != null ? totalVal : docs.size(),
+                    "data", docs
+            );
+        });
+    }
+
+    // 过滤条件按操作符编译为子句模板；字段/操作符缺失或操作符未知的条件忽略
+    private static List<WidgetQueryPlan.FilterTemplate> compileFilters(List<WidgetFilter> filters) {
+        List<WidgetQueryPlan.FilterTemplate> templates = new ArrayList<>();
+        if (filters == null) {
+            return templates;
+        }
+        for (int i = 0; i < filters.size(); i++) {
+            WidgetFilter f = filters.get(i);
+            if (f.getField() == null || f.getField().isBlank() || f.getOperator() == null) continue;
+            String field = f.getField();
+            Function<String, Query> clause;
+            boolean needsValue = true;
+            switch (f.getOperator()) {
+                case "exists": {
+                    Query q = Query.of(m -> m.exists(e -> e.field(field)));
+                    clause = v -> q;
+                    needsValue = false;
+                    break;
+                }
+                case "not_exists": {
+                    Query q = Query.of(m -> m.bool(b -> b.mustNot(n -> n.exists(e -> e.field(field)))));
+                    clause = v -> q;
+                    needsValue = false;
+                    break;
+                }
+                case "eq":
+                    clause = v -> Query.of(m -> m.term(t -> t.field(field).value(vb -> vb.stringValue(v))));
+                    break;
+                case "neq":
+                    clause = v -> Query.of(m -> m.bool(b -> b.mustNot(n -> n.term(t -> t.field(field).value(vb -> vb.stringValue(v))))));
+                    break;
+                case "gt":
+                    clause = v -> Query.of(m -> m.range(r -> r.field(field).gt(JsonData.of(v))));
+                    break;
+                case "gte":
+                    clause = v -> Query.of(m -> m.range(r -> r.field(field).gte(JsonData.of(v))));
+                    break;
+                case "lt":
+                    clause = v -> Query.of(m -> m.range(r -> r.field(field).lt(JsonData.of(v))));
+                    break;
+                case "lte":
+                    clause = v -> Query.of(m -> m.range(r -> r.field(field).lte(JsonData.of(v))));
+                    break;
+                default:
+                    continue;
+            }
+            templates.add(new WidgetQueryPlan.FilterTemplate(i, needsValue, clause));
+        }
+        return templates;
+    }
+
+    // 根据 aggType 构建 metric 子聚合（count 模式下统计字段非空值个数）
+    private static Aggregation metricAggregation(String aggType, String field) {
+        switch (aggType) {
+            case "sum":
+                return Aggregation.of(a -> a.sum(m -> m.field(field)));
+            case "avg":
+                return Aggregation.of(a -> a.avg(m -> m.field(field)));
+            case "min":
+                return Aggregation.of(a -> a.min(m -> m.field(field)));
+            case "max":
+                return Aggregation.of(a -> a.max(m -> m.field(field)));
+            case "count":
+            default:
+                return Aggregation.of(a -> a.valueCount(m -> m.field(field)));
+        }
+    }
+
+    // 读取桶的值：docCount 模式取文档数，否则按 aggType 读取 metric 子聚合
+    private static double bucketValue(boolean docCountMode, String aggType, long docCount, Map<String, Aggregate> subAggs) {
+        if (docCountMode || subAggs == null || subAggs.get("metric") == null) {
+            return (double) docCount;
+        }
+        var metric = subAggs.get("metric");
+        Double val;
+        switch (aggType) {
+            case "sum":
+                val = metric.sum() != null ? metric.sum().value() : 0d;
+                break;
+            case "avg":
+                val = metric.avg() != null ? metric.avg().value() : 0d;
+                break;
+            case "min":
+                val = metric.min() != null ? metric.min().value() : 0d;
+                break;
+            case "max":
+                val = metric.max() != null ? metric.max().value() : 0d;
+                break;
+            case "count":
+            default:
+                val = metric.valueCount() != null ? (double) metric.valueCount().value() : 0d;
+                break;
+        }
+        return val != null ? val : 0d;
+    }
+}
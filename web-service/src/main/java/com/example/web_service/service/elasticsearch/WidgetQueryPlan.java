@@ -0,0 +1,161 @@
+package com.example.web_service.service.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearch;
+import co.elastic.clients.elasticsearch.async_search.SubmitRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonData;
+import com.example.web_service.model.es.widget.WidgetFilter;
+
+/**
+ * 编译后的 Widget 查询计划（不可变）。
+ * 索引、聚合、排序、过滤条件结构与结果解析函数在编译时确定；
+ * 时间范围与过滤条件的值在执行时通过 bind 绑定，生成单次请求。
+ */
+public final class WidgetQueryPlan {
+
+    /** 结果解析函数，start/end 为本次执行绑定的时间范围 */
+    @FunctionalInterface
+    public interface Decoder {
+        Map<String, Object> decode(ResponseBody<JsonData> resp, long start, long end);
+    }
+
+    /**
+     * 过滤条件模板：position 为条件在请求 filters 中的位置，clause 根据值生成查询子句。
+     * needsValue 为 true 时值为空则忽略该条件（与 exists/not_exists 区分）
+     */
+    record FilterTemplate(int position, boolean needsValue, Function<String, Query> clause) {
+    }
+
+    private final String index;
+    private final Map<String, Object> error;
+    private final int size;
+    private final Map<String, Aggregation> aggregations;
+    private final List<SortOptions> sort;
+    private final List<FilterTemplate> filters;
+    private final Decoder decoder;
+
+    private WidgetQueryPlan(String index, Map<String, Object> error, int size, Map<String, Aggregation> aggregations,
+            List<SortOptions> sort, List<FilterTemplate> filters, Decoder decoder) {
+        this.index = index;
+        this.error = error;
+        this.size = size;
+        this.aggregations = aggregations;
+        this.sort = sort;
+        this.filters = filters;
+        this.decoder = decoder;
+    }
+
+    static WidgetQueryPlan error(Map<String, Object> error) {
+        return new WidgetQueryPlan(null, error, 0, Map.of(), List.of(), List.of(), null);
+    }
+
+    static WidgetQueryPlan aggregation(String index, List<FilterTemplate> filters, String name, Aggregation agg, Decoder decoder) {
+        return new WidgetQueryPlan(index, null, 0, Map.of(name, agg), List.of(), List.copyOf(filters), decoder);
+    }
+
+    static WidgetQueryPlan hits(String index, List<FilterTemplate> filters, int size, SortOptions sort, Decoder decoder) {
+        return new WidgetQueryPlan(index, null, size, Map.of(), List.of(sort), List.copyOf(filters), decoder);
+    }
+
+    public String index() {
+        return index;
+    }
+
+    public Map<String, Object> error() {
+        return error;
+    }
+
+    /**
+     * 绑定时间范围与过滤条件的值，生成本次执行的请求
+     * @param indices 本次查询的目标（按时间范围裁剪后的 index 表达式）
+     */
+    public Bound bind(long start, long end, List<WidgetFilter> filterValues, List<String> indices) {
+        if (error != null) {
+            return new Bound(this, indices, null, start, end);
+        }
+        List<Query> must = new ArrayList<>(filters.size() + 1);
+        must.add(Query.of(q -> q.range(r -> r.field("timestamp").gte(JsonData.of(start)).lte(JsonData.of(end)))));
+        for (FilterTemplate f : filters) {
+            String value = filterValues != null && f.position() < filterValues.size()
+                    ? filterValues.get(f.position()).getValue() : null;
+            if (f.needsValue() && (value == null || value.isBlank())) {
+                continue;
+            }
+            must.add(f.clause().apply(value));
+        }
+        Query query = Query.of(q -> q.bool(b -> b.must(must)));
+        return new Bound(this, indices, query, start, end);
+    }
+
+    /**
+     * 绑定后的单次查询。同一份请求既可单独执行，也可作为 _msearch 的一项
+     */
+    public record Bound(WidgetQueryPlan plan, List<String> indices, Query query, long start, long end) {
+
+        public Map<String, Object> error() {
+            return plan.error;
+        }
+
+        public SearchRequest toSearchRequest() {
+            return SearchRequest.of(s -> s
+                    .index(indices)
+                    .query(query)
+                    .size(plan.size)
+                    .aggregations(plan.aggregations)
+                    .sort(plan.sort));
+        }
+
+        public RequestItem toRequestItem() {
+            return RequestItem.of(r -> r
+                    .header(h -> h.index(indices))
+                    .body(b -> b
+                            .query(query)
+                            .size(plan.size)
+                            .aggregations(plan.aggregations)
+                            .sort(plan.sort)));
+        }
+
+        /**
+         * 以 _async_search 提交同一份请求，完成后结果保留 keepAlive
+         */
+        public SubmitRequest toSubmitRequest(Time keepAlive, Time waitForCompletion) {
+            return SubmitRequest.of(s -> s
+                    .index(indices)
+                    .query(query)
+                    .size(plan.size)
+                    .aggregations(plan.aggregations)
+                    .sort(plan.sort)
+                    .keepAlive(keepAlive)
+                    .keepOnCompletion(true)
+                    .waitForCompletionTimeout(waitForCompletion));
+        }
+
+        public Map<String, Object> decode(ResponseBody<JsonData> resp) {
+            return plan.decoder.decode(resp, start, end);
+        }
+
+        /**
+         * 解析 _async_search 返回的（部分）结果，与同步查询共用解析函数
+         */
+        public Map<String, Object> decode(AsyncSearch<JsonData> resp) {
+            return decode(SearchResponse.<JsonData>of(r -> r
+                    .took(resp.took())
+                    .timedOut(resp.timedOut())
+                    .shards(resp.shards())
+                    .hits(resp.hits())
+                    .aggregations(resp.aggregations())));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.web_service.service.elasticsearch.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import com.example.web_service.service.elasticsearch.EsProfiler;
+
+/**
+ * 有容量上限与 TTL 的 Spring Cache 实现。
+ * - 超出 maxEntries 时淘汰最近最少访问的条目（LRU）
+ * - 条目超过 ttlMillis 视为过期，读取时惰性清除
+ * - get(key, loader) 对同一 key 只加载一次，并发请求等待同一结果，避免缓存击穿时重复查询 ES；
+ *   ES 执行名额只在加载方实际发出请求时获取（见 EsAsyncExecutor.acquireLeasedPermit），命中与等待方不占名额
+ */
+public class BoundedTtlCache extends AbstractValueAdaptingCache {
+
+    private static final class Entry {
+        final Object value;
+        final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Object, Entry> store;
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public BoundedTtlCache(String name, int maxEntries, long ttlMillis) {
+        super(false);
+        this.name = name;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = Math.max(1L, ttlMillis);
+        this.store = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > BoundedTtlCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value;
+        synchronized (store) {
+            Entry e = store.get(key);
+            if (e == null) {
+                value = null;
+            } else if (e.expiresAt <= System.currentTimeMillis()) {
+                store.remove(key);
+                expirations.increment();
+                value = null;
+            } else {
+                value = e.value;
+            }
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // 剖析模式必须真实访问 ES：既不读缓存也不合并到进行中的加载，结果也不写回
+        if (EsProfiler.isActive()) {
+            try {
+                return valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (T) fromStoreValue(cached);
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+        long t0 = System.nanoTime();
+        try {
+            T value = valueLoader.call();
+            put(key, value);
+            mine.complete(value);
+            return value;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - t0);
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        synchronized (store) {
+            store.put(key, new Entry(toStoreValue(value), System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        synchronized (store) {
+            store.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (store) {
+            store.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (store) {
+            return store.size();
+        }
+    }
+
+    /**
+     * 命中/未命中等统计信息，用于管理接口展示
+     */
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("name", name);
+        out.put("size", size());
+        out.put("maxEntries", maxEntries);
+        out.put("ttlMillis", ttlMillis);
+        out.put("hits", h);
+        out.put("misses", m);
+        out.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        out.put("evictions", evictions.sum());
+        out.put("expirations", expirations.sum());
+        long l = loads.sum();
+        out.put("loads", l);
+        out.put("avgLoadMillis", l == 0 ? 0.0 : loadNanos.sum() / 1_000_000.0 / l);
+        return out;
+    }
+}
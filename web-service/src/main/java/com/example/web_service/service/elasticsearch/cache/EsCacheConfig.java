@@ -0,0 +1,33 @@
+package com.example.web_service.service.elasticsearch.cache;
+
+import java.util.List;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.web_service.config.EsCacheProperties;
+
+@Configuration
+@EnableCaching
+public class EsCacheConfig {
+
+    /** 仪表盘聚合结果缓存名称 */
+    public static final String ES_AGGREGATIONS = "esAggregations";
+
+    @Bean
+    public CacheManager cacheManager(EsCacheProperties properties) {
+        if (!properties.isEnabled()) {
+            return new NoOpCacheManager();
+        }
+        SimpleCacheManager manager = new SimpleCacheManager();
+        manager.setCaches(List.of(new BoundedTtlCache(
+                ES_AGGREGATIONS,
+                properties.getMaxEntries(),
+                properties.getTtlSeconds() * 1000L)));
+        return manager;
+    }
+}
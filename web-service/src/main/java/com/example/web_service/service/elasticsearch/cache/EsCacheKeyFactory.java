@@ -0,0 +1,66 @@
+package com.example.web_service.service.elasticsearch.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.web_service.config.EsCacheProperties;
+import com.example.web_service.service.elasticsearch.EsIntervals;
+
+/**
+ * 生成聚合缓存 key：在 @Cacheable 的 SpEL 中以 {@code @esCacheKeys} 引用。
+ * 起止时间按 min(interval, keyAlignMaxMillis) 向下对齐，使仪表盘以 "now" 为终点的多次刷新落到同一条缓存上；
+ * 由此带来的最后一个桶的滞后不超过对齐粒度与 TTL。
+ */
+@Component("esCacheKeys")
+public class EsCacheKeyFactory {
+
+    public record Key(String operation, String index, Object start, Object end, String filePath, String interval, Object extra) {
+    }
+
+    @Autowired
+    private EsCacheProperties properties;
+
+    public Key trend(String operation, String index, Object start, Object end, String filePath, String interval) {
+        long step = alignStep(EsIntervals.toMillis(interval));
+        return new Key(operation, index, align(start, step), align(end, step), normalizePath(filePath), interval, null);
+    }
+
+    public Key topN(String operation, String index, Object start, Object end, String filePath, Integer topN) {
+        long step = alignStep(properties.getKeyAlignMaxMillis());
+        return new Key(operation, index, align(start, step), align(end, step), normalizePath(filePath), null, topN);
+    }
+
+    private long alignStep(long intervalMillis) {
+        return Math.max(1L, Math.min(intervalMillis, properties.getKeyAlignMaxMillis()));
+    }
+
+    private static Object align(Object time, long step) {
+        Long millis = toMillis(time);
+        if (millis == null) {
+            // 无法解析的时间不做对齐，原样参与 key 比较
+            return time;
+        }
+        return Math.floorDiv(millis, step) * step;
+    }
+
+    private static Long toMillis(Object time) {
+        if (time == null) return null;
+        if (time instanceof Number n) return n.longValue();
+        String s = String.valueOf(time).trim();
+        if (s.isEmpty()) return null;
+        try {
+            return java.time.Instant.parse(s).toEpochMilli();
+        } catch (Exception ignore) {}
+        try {
+            return java.time.OffsetDateTime.parse(s).toInstant().toEpochMilli();
+        } catch (Exception ignore) {}
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException ignore) {}
+        return null;
+    }
+
+    private static String normalizePath(String filePath) {
+        return (filePath == null || filePath.isBlank()) ? null : filePath.trim();
+    }
+}
@@ -5,12 +5,21 @@ import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.web_service.config.EsTransportProperties;
+import com.example.web_service.service.elasticsearch.EsConcurrencyLimiter;
+import com.example.web_service.service.elasticsearch.EsMetrics;
+import com.example.web_service.service.elasticsearch.EsNodeFailureListener;
+import com.example.web_service.service.elasticsearch.EsSlowQueryLog;
 import org.apache.http.HttpHost;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class ElasticsearchConfig {
     
@@ -23,14 +32,47 @@ public class ElasticsearchConfig {
     @Value("${elasticsearch.scheme:http}")
     private String scheme;
     
+    /**
+     * 多节点 RestClient：节点间轮询，失败节点暂时剔除并在其他节点重试；
+     * 连接池大小、超时与 keep-alive 可配置，默认开启 gzip 请求/响应压缩（见 app.es-transport）
+     */
     @Bean
-    public RestClient restClient() {
-        return RestClient.builder(new HttpHost(host, port, scheme)).build();
+    public RestClient restClient(EsTransportProperties properties, EsNodeFailureListener failureListener) {
+        List<String> hosts = properties.getHosts();
+        HttpHost[] httpHosts = hosts == null || hosts.isEmpty()
+                ? new HttpHost[] {new HttpHost(host, port, scheme)}
+                : hosts.stream().map(String::trim).filter(h -> !h.isEmpty()).map(HttpHost::create).toArray(HttpHost[]::new);
+        long keepAlive = properties.getKeepAliveMillis();
+        return RestClient.builder(httpHosts)
+                .setCompressionEnabled(properties.isCompressionEnabled())
+                .setNodeSelector(properties.isSkipDedicatedMasters() ? NodeSelector.SKIP_DEDICATED_MASTERS : NodeSelector.ANY)
+                .setFailureListener(failureListener)
+                .setRequestConfigCallback(rc -> rc
+                        .setConnectTimeout(properties.getConnectTimeoutMillis())
+                        .setSocketTimeout(properties.getSocketTimeoutMillis()))
+                .setHttpClientConfigCallback(hc -> hc
+                        .setMaxConnTotal(properties.getMaxConnTotal())
+                        .setMaxConnPerRoute(properties.getMaxConnPerRoute())
+                        // 服务端给出的 Keep-Alive 优先，否则使用配置值（默认策略会无限期保持）
+                        .setKeepAliveStrategy((response, context) -> {
+                            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+                        }))
+                .build();
     }
 
+    /**
+     * 所有高级客户端请求经过按查询类别的自适应并发限制与熔断（见 app.es-limiter），
+     * 并记录调用指标与慢查询（见 app.es-metrics / app.es-slowlog）；剖析模式下 _search 请求改为带 profile 执行（见 EsProfiler），
+     * 后台查询使用单独的读超时并带 X-Opaque-Id（见 EsBackgroundQuery）
+     */
     @Bean
-    public ElasticsearchTransport elasticsearchTransport(RestClient restClient) {
-        return new RestClientTransport(restClient, new JacksonJsonpMapper());
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient, EsConcurrencyLimiter limiter,
+                                                         EsMetrics metrics, EsSlowQueryLog slowQueryLog,
+                                                         EsTransportProperties properties) {
+        return new EsBackgroundTransport(new EsMetricsTransport(
+                new EsLimitedTransport(new EsProfilingTransport(new RestClientTransport(restClient, new JacksonJsonpMapper())), limiter),
+                metrics, slowQueryLog), properties.getConnectTimeoutMillis());
     }
 
     @Bean
@@ -42,4 +84,4 @@ public class ElasticsearchConfig {
     public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
         return new ElasticsearchAsyncClient(transport);
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.example.web_service.service.elasticsearch.config;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
+import com.example.web_service.service.elasticsearch.EsBackgroundQuery;
+import org.apache.http.client.config.RequestConfig;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 处于后台查询（见 EsBackgroundQuery）时，按次替换请求的读超时并带上 X-Opaque-Id，其余请求原样发出。
+ * 按次的 RequestConfig 会整体替换客户端默认配置，因此连接超时沿用 app.es-transport.connect-timeout-millis
+ */
+public class EsBackgroundTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+    private final int connectTimeoutMillis;
+
+    public EsBackgroundTransport(ElasticsearchTransport delegate, int connectTimeoutMillis) {
+        this.delegate = delegate;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        return delegate.performRequest(request, endpoint, background(options));
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                         Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                         TransportOptions options) {
+        return delegate.performRequestAsync(request, endpoint, background(options));
+    }
+
+    private TransportOptions background(TransportOptions options) {
+        EsBackgroundQuery.Context context = EsBackgroundQuery.current();
+        if (context == null) {
+            return options;
+        }
+        TransportOptions base = options != null ? options : delegate.options();
+        if (!(base instanceof RestClientOptions restOptions)) {
+            return options;
+        }
+        RestClientOptions.Builder builder = restOptions.toBuilder();
+        builder.setHeader(EsBackgroundQuery.OPAQUE_ID_HEADER, context.opaqueId());
+        builder.restClientRequestOptionsBuilder()
+                .setRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMillis)
+                        .setSocketTimeout(context.socketTimeoutMillis())
+                        .build());
+        return builder.build();
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
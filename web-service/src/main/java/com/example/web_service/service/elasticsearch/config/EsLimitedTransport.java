@@ -0,0 +1,86 @@
+package com.example.web_service.service.elasticsearch.config;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.example.web_service.service.elasticsearch.EsAsyncExecutor;
+import com.example.web_service.service.elasticsearch.EsConcurrencyLimiter;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 在 ES 传输层上施加按查询类别的并发限制与熔断（见 EsConcurrencyLimiter），
+ * 同步请求在当前线程等待名额，异步请求在 future 完成时释放名额；
+ * 限流器关闭时改为在此获取 EsAsyncExecutor 的执行名额（见 EsAsyncExecutor.acquireLeasedPermit）
+ */
+public class EsLimitedTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+    private final EsConcurrencyLimiter limiter;
+
+    public EsLimitedTransport(ElasticsearchTransport delegate, EsConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        if (!limiter.isEnabled()) {
+            EsAsyncExecutor.acquireLeasedPermit();
+            return delegate.performRequest(request, endpoint, options);
+        }
+        EsConcurrencyLimiter.Permit permit = limiter.acquire(EsConcurrencyLimiter.classify(request));
+        try {
+            ResponseT response = delegate.performRequest(request, endpoint, options);
+            permit.release(null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                         Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                         TransportOptions options) {
+        if (!limiter.isEnabled()) {
+            try {
+                EsAsyncExecutor.acquireLeasedPermit();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return delegate.performRequestAsync(request, endpoint, options);
+        }
+        EsConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire(EsConcurrencyLimiter.classify(request));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return delegate.performRequestAsync(request, endpoint, options).whenComplete((r, e) -> permit.release(e));
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.web_service.service.elasticsearch.config;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
+import com.example.web_service.service.elasticsearch.EsMetrics;
+import com.example.web_service.service.elasticsearch.EsSlowQueryLog;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 为每次 ES 调用记录耗时、took、响应字节数与命中/桶数（见 EsMetrics），慢调用与采样调用另记请求体（见 EsSlowQueryLog）。
+ * 位于并发限制之外，被限流或熔断拒绝的调用以 outcome=rejected 记录
+ */
+public class EsMetricsTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+    private final EsMetrics metrics;
+    private final EsSlowQueryLog slowQueryLog;
+
+    public EsMetricsTransport(ElasticsearchTransport delegate, EsMetrics metrics, EsSlowQueryLog slowQueryLog) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        if (!metrics.isEnabled() && !slowQueryLog.isEnabled()) {
+            return delegate.performRequest(request, endpoint, options);
+        }
+        EsMetrics.Sample sample = start(request, endpoint);
+        try {
+            ResponseT response = delegate.performRequest(request, endpoint, counting(sample, options));
+            finish(sample, null, response, request, endpoint);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            finish(sample, e, null, request, endpoint);
+            throw e;
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                         Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                         TransportOptions options) {
+        if (!metrics.isEnabled() && !slowQueryLog.isEnabled()) {
+            return delegate.performRequestAsync(request, endpoint, options);
+        }
+        EsMetrics.Sample sample = start(request, endpoint);
+        try {
+            return delegate.performRequestAsync(request, endpoint, counting(sample, options))
+                    .whenComplete((response, e) -> finish(sample, e, response, request, endpoint));
+        } catch (RuntimeException e) {
+            finish(sample, e, null, request, endpoint);
+            throw e;
+        }
+    }
+
+    private <RequestT> void finish(EsMetrics.Sample sample, Throwable error, Object response,
+                                   RequestT request, Endpoint<RequestT, ?, ?> endpoint) {
+        sample.stop(error, response);
+        slowQueryLog.offer(sample, request, endpoint, delegate.jsonpMapper());
+    }
+
+    private <RequestT> EsMetrics.Sample start(RequestT request, Endpoint<RequestT, ?, ?> endpoint) {
+        String id = endpoint.id();
+        return metrics.start(id.startsWith("es/") ? id.substring(3) : id, endpoint.pathParameters(request).get("index"));
+    }
+
+    // 按次替换响应消费者以统计线上字节数，其余请求选项（请求头、参数、告警处理）保持不变
+    private TransportOptions counting(EsMetrics.Sample sample, TransportOptions options) {
+        TransportOptions base = options != null ? options : delegate.options();
+        if (!(base instanceof RestClientOptions restOptions)) {
+            return options;
+        }
+        RestClientOptions.Builder builder = restOptions.toBuilder();
+        builder.restClientRequestOptionsBuilder()
+                .setHttpAsyncResponseConsumerFactory(sample::newCountingConsumer);
+        return builder.build();
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.web_service.service.elasticsearch.config;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.endpoints.SimpleEndpoint;
+import com.example.web_service.service.elasticsearch.EsProfiler;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 处于剖析模式（见 EsProfiler）时，把 _search 请求改写为 profile=true、request_cache=false 后发出，并把响应中的 profile 交给剖析上下文。
+ * 请求体按原请求序列化后追加 profile 字段，URL、路径与查询参数沿用原请求，保证剖析的是同一个编译后的查询
+ */
+public class EsProfilingTransport implements ElasticsearchTransport {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ElasticsearchTransport delegate;
+
+    public EsProfilingTransport(ElasticsearchTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        EsProfiler.Capture capture = EsProfiler.current();
+        Endpoint<RequestT, ResponseT, ?> profiled = capture != null ? profiled(request, endpoint) : null;
+        if (profiled == null) {
+            return delegate.performRequest(request, endpoint, options);
+        }
+        ResponseT response = delegate.performRequest(request, profiled, options);
+        record(capture, request, endpoint, response);
+        return response;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                         Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                         TransportOptions options) {
+        EsProfiler.Capture capture = EsProfiler.current();
+        Endpoint<RequestT, ResponseT, ?> profiled = capture != null ? profiled(request, endpoint) : null;
+        if (profiled == null) {
+            return delegate.performRequestAsync(request, endpoint, options);
+        }
+        return delegate.performRequestAsync(request, profiled, options)
+                .whenComplete((response, e) -> record(capture, request, endpoint, response));
+    }
+
+    private <RequestT> void record(EsProfiler.Capture capture, RequestT request, Endpoint<RequestT, ?, ?> endpoint, Object response) {
+        if (response instanceof SearchResponse<?> search) {
+            capture.record(endpoint.pathParameters(request).get("index"), search);
+        }
+    }
+
+    // 仅改写带 JSON 响应解析器的 _search 端点，其余请求原样发出
+    private <RequestT, ResponseT> Endpoint<RequestT, ResponseT, ?> profiled(RequestT request, Endpoint<RequestT, ResponseT, ?> endpoint) {
+        if (!(request instanceof SearchRequest search) || !(endpoint instanceof JsonEndpoint<RequestT, ResponseT, ?> json)) {
+            return null;
+        }
+        Map<String, Object> body;
+        try {
+            body = JSON.readValue(JsonpUtils.toJsonString(search, delegate.jsonpMapper()), new TypeReference<Map<String, Object>>() {});
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to prepare profiled search: " + e.getMessage(), e);
+        }
+        body.put("profile", true);
+        JsonData profiledBody = JsonData.of(body);
+        Map<String, String> params = new HashMap<>(endpoint.queryParameters(request));
+        params.put("request_cache", "false");
+        return new SimpleEndpoint<>(endpoint.id(),
+                r -> endpoint.method(request),
+                r -> endpoint.requestUrl(request),
+                r -> endpoint.pathParameters(request),
+                r -> params,
+                r -> endpoint.headers(request),
+                r -> profiledBody,
+                json.responseDeserializer());
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
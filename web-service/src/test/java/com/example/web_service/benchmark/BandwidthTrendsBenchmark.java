@@ -0,0 +1,187 @@
+package com.example.web_service.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+
+/**
+ * 带宽趋势查询延迟对比（独立运行，非单元测试，需要可访问的 ES）：
+ * 分别为 8/32/100 个端口写入模拟的 octopusx-data 数据（每端口每分钟一条），比较
+ * 「先 terms 查端口、再逐端口 date_histogram」的 N+1 次查询与「terms -> date_histogram -> avg」单次聚合的延迟。
+ * 测试索引在结束时删除。
+ *
+ * 运行：java -cp target/classes:target/test-classes:(spring jars)
+ *       com.example.web_service.benchmark.BandwidthTrendsBenchmark [esUrl] [hours] [iterations]
+ */
+public class BandwidthTrendsBenchmark {
+
+    private static final int[] PORT_COUNTS = {8, 32, 100};
+    private static final String INTERVAL = "10m";
+
+    public static void main(String[] args) throws Exception {
+        String esUrl = args.length > 0 ? args[0] : "http://localhost:9200";
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        RestClient restClient = RestClient.builder(HttpHost.create(esUrl)).build();
+        ElasticsearchClient esClient = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+        System.out.printf("es=%s hours=%d interval=%s iterations=%d%n", esUrl, hours, INTERVAL, iterations);
+        try {
+            for (int ports : PORT_COUNTS) {
+                String index = "bench-bandwidth-" + ports;
+                long end = System.currentTimeMillis() / 60_000 * 60_000;
+                long start = end - hours * 3_600_000L;
+                load(restClient, index, ports, start, end);
+                Query query = Query.of(q -> q.range(r -> r.field("timestamp").gte(JsonData.of(start)).lte(JsonData.of(end))));
+
+                // 预热
+                for (int i = 0; i < 3; i++) {
+                    perPort(esClient, index, query);
+                    onePass(esClient, index, query);
+                }
+                List<Long> loop = new ArrayList<>();
+                List<Long> single = new ArrayList<>();
+                int loopSeries = 0;
+                int singleSeries = 0;
+                for (int i = 0; i < iterations; i++) {
+                    loopSeries = time(loop, () -> perPort(esClient, index, query));
+                    singleSeries = time(single, () -> onePass(esClient, index, query));
+                }
+                report(ports, "per-port", loop, loopSeries, ports + 1);
+                report(ports, "one-pass", single, singleSeries, 1);
+                restClient.performRequest(new Request("DELETE", "/" + index));
+            }
+        } finally {
+            restClient.close();
+        }
+    }
+
+    // 原实现：terms 取端口列表，再为每个端口单独执行 date_histogram
+    private static int perPort(ElasticsearchClient esClient, String index, Query query) {
+        try {
+            var portsResp = esClient.search(SearchRequest.of(s -> s
+                    .index(index).size(0).query(query)
+                    .aggregations("ports", a -> a.terms(t -> t.field("port").size(100)))), Void.class);
+            int series = 0;
+            for (var b : portsResp.aggregations().get("ports").lterms().buckets().array()) {
+                long port = b.key();
+                var resp = esClient.search(SearchRequest.of(s -> s
+                        .index(index).size(0)
+                        .query(q -> q.bool(bq -> bq.must(query).must(m -> m.term(t -> t.field("port").value(port)))))
+                        .aggregations("trend", a -> a
+                                .dateHistogram(h -> h.field("timestamp").fixedInterval(f -> f.time(INTERVAL)).minDocCount(0))
+                                .aggregations("avg_bps", avg -> avg.avg(av -> av.field("bps"))))), Void.class);
+                if (!resp.aggregations().get("trend").dateHistogram().buckets().array().isEmpty()) {
+                    series++;
+                }
+            }
+            return series;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 新实现：terms -> date_histogram -> avg 一次聚合
+    private static int onePass(ElasticsearchClient esClient, String index, Query query) {
+        try {
+            var resp = esClient.search(SearchRequest.of(s -> s
+                    .index(index).size(0).query(query)
+                    .aggregations("ports", a -> a
+                            .terms(t -> t.field("port").size(100))
+                            .aggregations("trend", tr -> tr
+                                    .dateHistogram(h -> h.field("timestamp").fixedInterval(f -> f.time(INTERVAL)).minDocCount(0))
+                                    .aggregations("avg_bps", avg -> avg.avg(av -> av.field("bps")))))), Void.class);
+            int series = 0;
+            for (var b : resp.aggregations().get("ports").lterms().buckets().array()) {
+                Aggregate trend = b.aggregations().get("trend");
+                if (!trend.dateHistogram().buckets().array().isEmpty()) {
+                    series++;
+                }
+            }
+            return series;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void load(RestClient restClient, String index, int ports, long start, long end) throws Exception {
+        try {
+            restClient.performRequest(new Request("DELETE", "/" + index));
+        } catch (ResponseException ignore) {
+            // 索引不存在
+        }
+        Request create = new Request("PUT", "/" + index);
+        create.setJsonEntity("{\"settings\":{\"number_of_shards\":1,\"number_of_replicas\":0},"
+                + "\"mappings\":{\"properties\":{\"timestamp\":{\"type\":\"date\"},\"port\":{\"type\":\"integer\"},"
+                + "\"bps\":{\"type\":\"long\"},\"filePath\":{\"type\":\"keyword\"}}}}");
+        restClient.performRequest(create);
+
+        StringBuilder bulk = new StringBuilder();
+        int pending = 0;
+        long docs = 0;
+        for (long ts = start; ts <= end; ts += 60_000) {
+            for (int port = 1; port <= ports; port++) {
+                long bps = 1_000_000L * port + (ts / 60_000 % 600) * 1_000;
+                bulk.append("{\"index\":{}}\n")
+                        .append("{\"timestamp\":").append(ts)
+                        .append(",\"port\":").append(port)
+                        .append(",\"bps\":").append(bps)
+                        .append(",\"filePath\":\"bench\"}\n");
+                docs++;
+                if (++pending == 5000) {
+                    flush(restClient, index, bulk);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            flush(restClient, index, bulk);
+        }
+        restClient.performRequest(new Request("POST", "/" + index + "/_refresh"));
+        System.out.printf("loaded %s: %d ports, %d docs%n", index, ports, docs);
+    }
+
+    private static void flush(RestClient restClient, String index, StringBuilder bulk) throws Exception {
+        Request req = new Request("POST", "/" + index + "/_bulk");
+        req.setJsonEntity(bulk.toString());
+        restClient.performRequest(req);
+        bulk.setLength(0);
+    }
+
+    private static int time(List<Long> samples, IntSupplier run) {
+        long t0 = System.nanoTime();
+        int series = run.getAsInt();
+        samples.add(System.nanoTime() - t0);
+        return series;
+    }
+
+    private static void report(int ports, String mode, List<Long> nanos, int series, int roundTrips) {
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        double mean = sorted.stream().mapToLong(Long::longValue).average().orElse(0) / 1e6;
+        System.out.printf("ports=%-3d %-8s roundTrips=%-3d series=%-3d mean=%7.1fms p50=%7.1fms p95=%7.1fms%n",
+                ports, mode, roundTrips, series, mean, pct(sorted, 0.50), pct(sorted, 0.95));
+    }
+
+    private static double pct(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int idx = (int) Math.min(sorted.size() - 1, Math.round(p * (sorted.size() - 1)));
+        return sorted.get(idx) / 1e6;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.web_service.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.example.web_service.config.EsAsyncProperties;
+import com.example.web_service.config.EsLimiterProperties;
+import com.example.web_service.service.elasticsearch.EsAsyncExecutor;
+import com.example.web_service.service.elasticsearch.EsConcurrencyLimiter;
+
+/**
+ * 并发慢查询下的吞吐对比（独立运行，非单元测试）：
+ * 用固定大小线程池模拟 Tomcat 工作线程，同时发起一批慢 ES 聚合（sleep 模拟）与一批廉价请求，
+ * 分别测量「阻塞模式」与「EsAsyncExecutor 异步模式」下廉价请求的延迟与整体吞吐。
+ *
+ * 运行：java -cp target/classes:target/test-classes:(spring jars)
+ *       com.example.web_service.benchmark.EsAsyncExecutorBenchmark [workers] [slow] [slowMillis] [cheap] [maxInFlight]
+ */
+public class EsAsyncExecutorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int slow = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        long slowMillis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+        int cheap = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        // 默认与工作线程数相同，使两种模式下慢查询的并发度一致，只比较工作线程占用的差异
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : workers;
+
+        System.out.printf("workers=%d slowQueries=%d slowMillis=%d cheapRequests=%d maxInFlight=%d%n", workers, slow, slowMillis, cheap, maxInFlight);
+        run("blocking", workers, slow, slowMillis, cheap, null);
+
+        EsAsyncProperties props = new EsAsyncProperties();
+        props.setMaxInFlight(maxInFlight);
+        props.setMaxQueued(1000);
+        props.setAcquireTimeoutMillis(60_000);
+        // 关闭限流器，使慢查询的并发由执行器的 maxInFlight 约束
+        EsLimiterProperties limiterProps = new EsLimiterProperties();
+        limiterProps.setEnabled(false);
+        EsAsyncExecutor executor = new EsAsyncExecutor(props, new EsConcurrencyLimiter(limiterProps));
+        try {
+            run("async", workers, slow, slowMillis, cheap, executor);
+            System.out.println("executor stats: " + executor.stats());
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    private static void run(String mode, int workers, int slow, long slowMillis, int cheap, EsAsyncExecutor executor)
+            throws Exception {
+        ExecutorService tomcat = Executors.newFixedThreadPool(workers);
+        List<CompletableFuture<Long>> slowDone = new ArrayList<>();
+        List<CompletableFuture<Long>> cheapDone = new ArrayList<>();
+        long t0 = System.nanoTime();
+        try {
+            for (int i = 0; i < slow; i++) {
+                CompletableFuture<Long> done = new CompletableFuture<>();
+                slowDone.add(done);
+                long submittedAt = System.nanoTime();
+                tomcat.execute(() -> {
+                    if (executor == null) {
+                        sleep(slowMillis);
+                        done.complete(System.nanoTime() - submittedAt);
+                    } else {
+                        // 工作线程只负责提交，查询结果由 future 回调完成响应
+                        executor.submit(() -> {
+                            // 模拟的 ES 请求：与传输层一样在此获取执行名额
+                            EsAsyncExecutor.acquireLeasedPermit();
+                            sleep(slowMillis);
+                            return null;
+                        }).whenComplete((r, e) -> done.complete(System.nanoTime() - submittedAt));
+                    }
+                });
+            }
+            // 慢查询先占满工作线程后再到达廉价请求（如 /indices、/collectors）
+            sleep(50);
+            for (int i = 0; i < cheap; i++) {
+                CompletableFuture<Long> done = new CompletableFuture<>();
+                cheapDone.add(done);
+                long submittedAt = System.nanoTime();
+                tomcat.execute(() -> {
+                    sleep(5);
+                    done.complete(System.nanoTime() - submittedAt);
+                });
+            }
+            CompletableFuture.allOf(cheapDone.toArray(new CompletableFuture[0])).get(10, TimeUnit.MINUTES);
+            long cheapWall = System.nanoTime() - t0;
+            CompletableFuture.allOf(slowDone.toArray(new CompletableFuture[0])).get(10, TimeUnit.MINUTES);
+            long totalWall = System.nanoTime() - t0;
+
+            List<Long> cheapLat = join(cheapDone);
+            List<Long> slowLat = join(slowDone);
+            System.out.printf("[%s] cheap p50=%.1fms p99=%.1fms throughput=%.1f req/s | slow p50=%.0fms max=%.0fms | total %.0fms%n",
+                    mode,
+                    pct(cheapLat, 0.50), pct(cheapLat, 0.99), cheap / (cheapWall / 1e9),
+                    pct(slowLat, 0.50), pct(slowLat, 1.0),
+                    totalWall / 1e6);
+        } finally {
+            tomcat.shutdownNow();
+        }
+    }
+
+    private static List<Long> join(List<CompletableFuture<Long>> futures) {
+        List<Long> out = new ArrayList<>();
+        for (CompletableFuture<Long> f : futures) {
+            out.add(f.join());
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private static double pct(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int idx = (int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1);
+        return sorted.get(Math.max(0, idx)) / 1e6;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
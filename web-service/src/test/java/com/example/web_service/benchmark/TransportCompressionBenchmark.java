@@ -0,0 +1,219 @@
+package com.example.web_service.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+
+/**
+ * ES 响应压缩对比（独立运行，非单元测试）：
+ * 1. 离线：按 getProtocolTrends 的响应结构（terms(serviceName, 10) -> date_histogram）生成 JSON，
+ *    比较原始/gzip 字节数与压缩、解压耗时，不需要 ES
+ * 2. 在线（提供 esUrl 时）：写入模拟的 conn 数据，分别以不带 / 带 Accept-Encoding: gzip 执行相同聚合，
+ *    比较线上传输字节数（响应体原样读取，不解压）与端到端延迟（含解压）。测试索引在结束时删除。
+ *
+ * 运行：java -cp target/classes:target/test-classes:(spring jars)
+ *       com.example.web_service.benchmark.TransportCompressionBenchmark [esUrl|-] [hours] [iterations]
+ */
+public class TransportCompressionBenchmark {
+
+    private static final String[] SERVICES = {"dns", "http", "ssl", "ssh", "smtp", "ftp", "ntp", "dhcp", "smb", "rdp"};
+    private static final String INDEX = "bench-conn-compression";
+    private static final String INTERVAL = "1m";
+
+    public static void main(String[] args) throws Exception {
+        String esUrl = args.length > 0 && !"-".equals(args[0]) ? args[0] : null;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        System.out.printf("hours=%d interval=%s iterations=%d%n", hours, INTERVAL, iterations);
+        offline(hours, iterations);
+        if (esUrl != null) {
+            online(esUrl, hours, iterations);
+        }
+    }
+
+    private static void offline(int hours, int iterations) throws Exception {
+        byte[] raw = syntheticResponse(hours).getBytes(StandardCharsets.UTF_8);
+        byte[] gz = gzip(raw);
+        List<Long> zipNanos = new ArrayList<>();
+        List<Long> unzipNanos = new ArrayList<>();
+        for (int i = 0; i < iterations + 3; i++) {
+            long t0 = System.nanoTime();
+            gzip(raw);
+            long t1 = System.nanoTime();
+            gunzip(gz);
+            long t2 = System.nanoTime();
+            // 前 3 次为预热
+            if (i >= 3) {
+                zipNanos.add(t1 - t0);
+                unzipNanos.add(t2 - t1);
+            }
+        }
+        System.out.printf("offline  raw=%,d B gzip=%,d B ratio=%.1fx gzip p50=%.2fms gunzip p50=%.2fms%n",
+                raw.length, gz.length, (double) raw.length / gz.length, pct(sorted(zipNanos), 0.5), pct(sorted(unzipNanos), 0.5));
+    }
+
+    // 与 ES 对 by_service -> trend 聚合的响应结构一致
+    private static String syntheticResponse(int hours) {
+        long end = System.currentTimeMillis() / 60_000 * 60_000;
+        long start = end - hours * 3_600_000L;
+        StringBuilder sb = new StringBuilder("{\"took\":42,\"timed_out\":false,\"_shards\":{\"total\":3,\"successful\":3,\"skipped\":0,\"failed\":0},")
+                .append("\"hits\":{\"total\":{\"value\":10000,\"relation\":\"gte\"},\"max_score\":null,\"hits\":[]},")
+                .append("\"aggregations\":{\"by_service\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":[");
+        for (int s = 0; s < SERVICES.length; s++) {
+            if (s > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"key\":\"").append(SERVICES[s]).append("\",\"doc_count\":").append(100_000 / (s + 1))
+                    .append(",\"trend\":{\"buckets\":[");
+            boolean first = true;
+            for (long ts = start; ts <= end; ts += 60_000) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append("{\"key_as_string\":\"").append(Instant.ofEpochMilli(ts)).append("\",\"key\":").append(ts)
+                        .append(",\"doc_count\":").append((ts / 60_000 * 31 + s * 7) % 97).append('}');
+            }
+            sb.append("]}}");
+        }
+        return sb.append("]}}}").toString();
+    }
+
+    private static void online(String esUrl, int hours, int iterations) throws Exception {
+        long end = System.currentTimeMillis() / 60_000 * 60_000;
+        long start = end - hours * 3_600_000L;
+        RestClient restClient = RestClient.builder(HttpHost.create(esUrl)).build();
+        HttpClient http = HttpClient.newHttpClient();
+        try {
+            load(restClient, start, end);
+            String body = "{\"size\":0,\"query\":{\"range\":{\"timestamp\":{\"gte\":" + start + ",\"lte\":" + end + "}}},"
+                    + "\"aggs\":{\"by_service\":{\"terms\":{\"field\":\"serviceName\",\"size\":10},"
+                    + "\"aggs\":{\"trend\":{\"date_histogram\":{\"field\":\"timestamp\",\"fixed_interval\":\"" + INTERVAL + "\","
+                    + "\"format\":\"yyyy-MM-dd'T'HH:mm:ss.SSSXXX\",\"min_doc_count\":0}}}}}}";
+            for (boolean compressed : new boolean[] {false, true}) {
+                HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(esUrl + "/" + INDEX + "/_search"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body));
+                if (compressed) {
+                    req.header("Accept-Encoding", "gzip");
+                }
+                HttpRequest request = req.build();
+                for (int i = 0; i < 3; i++) {
+                    send(http, request);
+                }
+                List<Long> nanos = new ArrayList<>();
+                long wireBytes = 0;
+                long jsonBytes = 0;
+                for (int i = 0; i < iterations; i++) {
+                    long t0 = System.nanoTime();
+                    HttpResponse<byte[]> resp = send(http, request);
+                    byte[] wire = resp.body();
+                    boolean gzipped = resp.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+                    byte[] json = gzipped ? gunzip(wire) : wire;
+                    nanos.add(System.nanoTime() - t0);
+                    wireBytes = wire.length;
+                    jsonBytes = json.length;
+                }
+                List<Long> sorted = sorted(nanos);
+                System.out.printf("online   %-5s wire=%,d B json=%,d B mean=%7.1fms p50=%7.1fms p95=%7.1fms%n",
+                        compressed ? "gzip" : "plain", wireBytes, jsonBytes,
+                        sorted.stream().mapToLong(Long::longValue).average().orElse(0) / 1e6, pct(sorted, 0.50), pct(sorted, 0.95));
+            }
+            restClient.performRequest(new Request("DELETE", "/" + INDEX));
+        } finally {
+            restClient.close();
+        }
+    }
+
+    private static HttpResponse<byte[]> send(HttpClient http, HttpRequest request) throws Exception {
+        HttpResponse<byte[]> resp = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (resp.statusCode() != 200) {
+            throw new IllegalStateException("search failed: " + resp.statusCode());
+        }
+        return resp;
+    }
+
+    private static void load(RestClient restClient, long start, long end) throws Exception {
+        try {
+            restClient.performRequest(new Request("DELETE", "/" + INDEX));
+        } catch (ResponseException ignore) {
+            // 索引不存在
+        }
+        Request create = new Request("PUT", "/" + INDEX);
+        create.setJsonEntity("{\"settings\":{\"number_of_shards\":1,\"number_of_replicas\":0},"
+                + "\"mappings\":{\"properties\":{\"timestamp\":{\"type\":\"date\"},\"serviceName\":{\"type\":\"keyword\"}}}}");
+        restClient.performRequest(create);
+
+        StringBuilder bulk = new StringBuilder();
+        int pending = 0;
+        long docs = 0;
+        for (long ts = start; ts <= end; ts += 60_000) {
+            for (int s = 0; s < SERVICES.length; s++) {
+                bulk.append("{\"index\":{}}\n")
+                        .append("{\"timestamp\":").append(ts)
+                        .append(",\"serviceName\":\"").append(SERVICES[s]).append("\"}\n");
+                docs++;
+                if (++pending == 5000) {
+                    flush(restClient, bulk);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            flush(restClient, bulk);
+        }
+        restClient.performRequest(new Request("POST", "/" + INDEX + "/_refresh"));
+        System.out.printf("loaded %s: %d docs%n", INDEX, docs);
+    }
+
+    private static void flush(RestClient restClient, StringBuilder bulk) throws Exception {
+        Request req = new Request("POST", "/" + INDEX + "/_bulk");
+        req.setJsonEntity(bulk.toString());
+        restClient.performRequest(req);
+        bulk.setLength(0);
+    }
+
+    private static byte[] gzip(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static List<Long> sorted(List<Long> nanos) {
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static double pct(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int idx = (int) Math.min(sorted.size() - 1, Math.round(p * (sorted.size() - 1)));
+        return sorted.get(idx) / 1e6;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.web_service.service.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.web_service.config.EsBucketBudgetProperties;
+import com.example.web_service.exception.EsQueryBudgetException;
+
+/**
+ * 桶数预算：恰好等于预算时放行，超出一个桶时沿 LADDER 放大间隔或在 reject 模式下拒绝
+ */
+class EsBucketBudgetTest {
+
+    private static final long START = 1_700_000_000_000L;
+    // 1 天按 1h 分桶为 25 个桶（含首尾不完整的桶），4 个序列共 100 个桶
+    private static final long END = START + EsIntervals.DAY;
+
+    private static EsBucketBudget budget(long maxBuckets, boolean reject) {
+        EsBucketBudgetProperties properties = new EsBucketBudgetProperties();
+        properties.setMaxBuckets(maxBuckets);
+        properties.setReject(reject);
+        EsBucketBudget budget = new EsBucketBudget();
+        ReflectionTestUtils.setField(budget, "properties", properties);
+        return budget;
+    }
+
+    @Test
+    void estimateAtBudgetIsKept() {
+        EsBucketBudget.Decision d = budget(100, false).check("trend", START, END, "1h", 4);
+        assertFalse(d.coarsened());
+        assertEquals("1h", d.interval());
+        assertEquals(100, d.estimatedBuckets());
+    }
+
+    @Test
+    void oneBucketOverBudgetCoarsensToNextFittingInterval() {
+        EsBucketBudget budget = budget(99, false);
+        EsBucketBudget.Decision d = budget.check("trend", START, END, "1h", 4);
+        assertTrue(d.coarsened());
+        assertEquals("1h", d.requestedInterval());
+        // 3h：9 个桶 × 4 个序列
+        assertEquals("3h", d.interval());
+        assertEquals(36, d.estimatedBuckets());
+        assertEquals(1L, budget.stats().get("coarsened"));
+    }
+
+    @Test
+    void fallsBackToCoarsestIntervalWhenNothingFits() {
+        EsBucketBudget.Decision d = budget(1, false).check("trend", START, START + 10 * 365 * EsIntervals.DAY, "1m", 1);
+        assertTrue(d.coarsened());
+        assertEquals("1y", d.interval());
+    }
+
+    @Test
+    void rejectModeThrowsWithSuggestedInterval() {
+        EsBucketBudget budget = budget(99, true);
+        EsQueryBudgetException e = assertThrows(EsQueryBudgetException.class,
+                () -> budget.check("trend", START, END, "1h", 4));
+        assertEquals("3h", e.getSuggestedInterval());
+        assertEquals(1L, budget.stats().get("rejected"));
+
+        // 预算之内的请求在 reject 模式下同样放行
+        assertFalse(budget(100, true).check("trend", START, END, "1h", 4).coarsened());
+    }
+
+    @Test
+    void unknownRangeOrDisabledIsNotChecked() {
+        EsBucketBudget budget = budget(1, true);
+        EsBucketBudget.Decision d = budget.check("trend", null, END, "1m", 4);
+        assertEquals("1m", d.interval());
+        assertEquals(-1, d.estimatedBuckets());
+        assertEquals(0L, budget.stats().get("checked"));
+
+        EsBucketBudget disabled = budget(1, true);
+        ((EsBucketBudgetProperties) ReflectionTestUtils.getField(disabled, "properties")).setEnabled(false);
+        assertEquals("1m", disabled.check("trend", START, END, "1m", 4).interval());
+    }
+}
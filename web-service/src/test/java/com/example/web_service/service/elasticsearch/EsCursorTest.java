@@ -0,0 +1,70 @@
+package com.example.web_service.service.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.example.web_service.exception.InvalidCursorException;
+
+/**
+ * 深分页游标：编码后原样解码，非法游标统一拒绝为 InvalidCursorException（由全局异常处理映射为 400）
+ */
+class EsCursorTest {
+
+    private static String token(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void roundTrip() {
+        List<FieldValue> after = List.of(FieldValue.of(1_700_000_000_123L), FieldValue.of(0.25),
+                FieldValue.of("session-42"), FieldValue.of(true), FieldValue.NULL);
+        EsCursor cursor = new EsCursor("pit-id==", after, 12345L);
+
+        String encoded = cursor.encode();
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), "cursor must be url-safe without padding");
+
+        EsCursor decoded = EsCursor.decode(encoded);
+        assertEquals("pit-id==", decoded.pitId());
+        assertEquals(12345L, decoded.total());
+        assertEquals(after.size(), decoded.searchAfter().size());
+        for (int i = 0; i < after.size(); i++) {
+            assertEquals(after.get(i)._kind(), decoded.searchAfter().get(i)._kind());
+            if (!after.get(i).isNull()) {
+                assertEquals(after.get(i)._get(), decoded.searchAfter().get(i)._get());
+            }
+        }
+    }
+
+    @Test
+    void decodeToleratesSurroundingWhitespaceAndMissingTotal() {
+        EsCursor cursor = EsCursor.decode("  " + token("{\"pit\":\"p\",\"after\":[7]}") + "\n");
+        assertEquals("p", cursor.pitId());
+        assertEquals(0L, cursor.total());
+        assertEquals(7L, cursor.searchAfter().get(0).longValue());
+    }
+
+    @Test
+    void rejectsInvalidCursors() {
+        for (String bad : new String[]{
+                "",
+                "not base64!",
+                token("not json"),
+                token("null"),
+                token("[1,2]"),
+                token("{\"after\":[1]}"),
+                token("{\"pit\":1,\"after\":[1]}"),
+                token("{\"pit\":\"p\",\"after\":\"x\"}")}) {
+            InvalidCursorException e = assertThrows(InvalidCursorException.class, () -> EsCursor.decode(bad));
+            assertEquals("Invalid cursor", e.getMessage());
+        }
+        assertThrows(InvalidCursorException.class, () -> EsCursor.decode(null));
+    }
+}
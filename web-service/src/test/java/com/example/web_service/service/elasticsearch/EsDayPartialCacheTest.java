@@ -0,0 +1,112 @@
+package com.example.web_service.service.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.web_service.service.elasticsearch.EsDayPartialCache.Merged;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache.Partial;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache.Shape;
+import com.example.web_service.service.elasticsearch.EsDayPartialCache.Spec;
+
+/**
+ * 按天部分结果的合并：跨天的桶由各部分相加，缺失的桶按 fixed / 日历间隔补 0
+ */
+class EsDayPartialCacheTest {
+
+    private static long t(String iso) {
+        return Instant.parse(iso).toEpochMilli();
+    }
+
+    private static Spec spec(Shape shape, String interval) {
+        return new Spec("trend", "idx", null, "", shape, "field", 10, interval);
+    }
+
+    private static Partial part(Map<Long, Long> buckets) {
+        return new Partial(Map.of("", buckets), false, buckets.size() + 1);
+    }
+
+    @Test
+    void fixedIntervalMergesCachedDaysWithLiveTail() {
+        long d1 = t("2024-03-01T00:00:00Z");
+        long d2 = t("2024-03-02T00:00:00Z");
+        long h12 = 12 * EsIntervals.HOUR;
+        List<Partial> parts = List.of(
+                part(Map.of(d1, 5L, d1 + h12, 3L)),
+                part(Map.of(d2 + h12, 4L)),
+                // 尾部零头与已缓存的 d2 落在同一个 12h 桶
+                part(Map.of(d2 + h12, 1L)));
+
+        Merged merged = EsDayPartialCache.merge(parts, spec(Shape.HISTOGRAM, "12h"), 2, 0);
+
+        TreeMap<Long, Long> series = merged.series().get("");
+        assertEquals(List.of(d1, d1 + h12, d2, d2 + h12), List.copyOf(series.keySet()));
+        assertEquals(List.of(5L, 3L, 0L, 5L), List.copyOf(series.values()));
+        assertFalse(merged.approximate());
+        assertEquals(2, merged.cachedDays());
+    }
+
+    @Test
+    void weeklyBucketSumsEveryDayOfTheWeek() {
+        // 2024-01-01 为周一，1w 日历桶以周一 00:00 UTC 为起点
+        long prevWeek = t("2023-12-25T00:00:00Z");
+        long week = t("2024-01-01T00:00:00Z");
+        long nextWeek = t("2024-01-08T00:00:00Z");
+        List<Partial> parts = new ArrayList<>();
+        // 首部零头（12-31 下午）属于上一周
+        parts.add(part(Map.of(prevWeek, 2L)));
+        for (int day = 0; day < 7; day++) {
+            parts.add(part(Map.of(week, 1L)));
+        }
+        parts.add(part(Map.of(nextWeek, 1L)));
+
+        TreeMap<Long, Long> series = EsDayPartialCache.merge(parts, spec(Shape.HISTOGRAM, "1w"), 8, 0).series().get("");
+
+        assertEquals(Map.of(prevWeek, 2L, week, 7L, nextWeek, 1L), series);
+    }
+
+    @Test
+    void monthlyGapsFollowCalendar() {
+        long jan = t("2024-01-01T00:00:00Z");
+        long apr = t("2024-04-01T00:00:00Z");
+        List<Partial> parts = List.of(part(Map.of(jan, 10L)), part(Map.of(apr, 5L)));
+
+        TreeMap<Long, Long> series = EsDayPartialCache.merge(parts, spec(Shape.HISTOGRAM, "1mon"), 2, 0).series().get("");
+
+        assertEquals(List.of(jan, t("2024-02-01T00:00:00Z"), t("2024-03-01T00:00:00Z"), apr), List.copyOf(series.keySet()));
+        assertEquals(List.of(10L, 0L, 0L, 5L), List.copyOf(series.values()));
+    }
+
+    @Test
+    void nextAdvancesCalendarAndFixedIntervals() {
+        long jan = t("2024-01-01T00:00:00Z");
+        assertEquals(t("2024-02-01T00:00:00Z"), EsDayPartialCache.next(jan, "1mon"));
+        assertEquals(t("2024-03-01T00:00:00Z"), EsDayPartialCache.next(t("2024-02-01T00:00:00Z"), "month"));
+        assertEquals(t("2024-04-01T00:00:00Z"), EsDayPartialCache.next(jan, "1q"));
+        assertEquals(t("2025-01-01T00:00:00Z"), EsDayPartialCache.next(jan, "1y"));
+        assertEquals(t("2024-01-08T00:00:00Z"), EsDayPartialCache.next(jan, "1w"));
+        assertEquals(jan + 3 * EsIntervals.HOUR, EsDayPartialCache.next(jan, "3h"));
+    }
+
+    @Test
+    void truncatedTermsMarkResultApproximate() {
+        List<Partial> parts = List.of(
+                new Partial(Map.of("a", Map.of(0L, 5L), "b", Map.of(0L, 2L)), false, 5),
+                new Partial(Map.of("b", Map.of(0L, 4L), "c", Map.of(0L, 1L)), true, 5));
+
+        Merged merged = EsDayPartialCache.merge(parts, spec(Shape.TERMS, "1h"), 1, 1);
+
+        assertTrue(merged.approximate());
+        assertEquals(6L, merged.total("b"));
+        assertEquals(List.of("b", "a"), merged.top(2));
+        assertEquals(Map.of(0L, 1L), merged.series().get("c"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.web_service.service.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.web_service.model.es.TrendingData;
+
+/**
+ * LTTB 降采样：首尾点保留、输出点数等于目标点数、下标升序且保留尖峰
+ */
+class EsDownsamplerTest {
+
+    private static long[] xs(int n) {
+        long[] x = new long[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 1_700_000_000_000L + i * 60_000L;
+        }
+        return x;
+    }
+
+    @Test
+    void keepsEndpointsAndReturnsThresholdPoints() {
+        int n = 1000;
+        long[] x = xs(n);
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = Math.sin(i / 20.0) * 100;
+        }
+        for (int threshold : new int[]{3, 10, 50, 999}) {
+            int[] keep = EsDownsampler.lttb(x, y, threshold);
+            assertEquals(threshold, keep.length);
+            assertEquals(0, keep[0]);
+            assertEquals(n - 1, keep[keep.length - 1]);
+            for (int i = 1; i < keep.length; i++) {
+                assertTrue(keep[i] > keep[i - 1], "indices must be strictly increasing");
+            }
+        }
+    }
+
+    @Test
+    void keepsIsolatedSpike() {
+        int n = 500;
+        double[] y = new double[n];
+        y[317] = 10_000;
+        int[] keep = EsDownsampler.lttb(xs(n), y, 20);
+        assertTrue(Arrays.stream(keep).anyMatch(i -> i == 317), "spike must be selected");
+    }
+
+    @Test
+    void smallThresholds() {
+        long[] x = xs(5);
+        double[] y = {1, 2, 3, 4, 5};
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, EsDownsampler.lttb(x, y, 5));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, EsDownsampler.lttb(x, y, 0));
+        assertArrayEquals(new int[]{0}, EsDownsampler.lttb(x, y, 1));
+        assertArrayEquals(new int[]{0, 4}, EsDownsampler.lttb(x, y, 2));
+    }
+
+    @Test
+    void downsampleSeries() {
+        List<TrendingData> series = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            series.add(new TrendingData(1_700_000_000_000L + i * 3_600_000L, (long) (i % 17)));
+        }
+        List<TrendingData> out = EsDownsampler.downsample(series, 40);
+        assertEquals(40, out.size());
+        assertSame(series.get(0), out.get(0));
+        assertSame(series.get(199), out.get(39));
+
+        // 点数不超过目标或未指定目标时原样返回
+        assertSame(series, EsDownsampler.downsample(series, 200));
+        assertSame(series, EsDownsampler.downsample(series, (Integer) null));
+
+        Map<String, List<TrendingData>> bySeries = new LinkedHashMap<>();
+        bySeries.put("a", series);
+        bySeries.put("b", series.subList(0, 10));
+        Map<String, List<TrendingData>> sampled = EsDownsampler.downsample(bySeries, 40);
+        assertEquals(40, sampled.get("a").size());
+        assertEquals(10, sampled.get("b").size());
+    }
+}